@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.common;
+
+import org.broadleafcommerce.cms.page.dao.PageDao;
+import org.broadleafcommerce.cms.page.domain.Page;
+import org.broadleafcommerce.cms.structure.dao.StructuredContentDao;
+import org.broadleafcommerce.cms.structure.domain.StructuredContent;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.rule.AbstractMvelRulePrecompiler;
+import org.broadleafcommerce.common.rule.MvelHelper;
+import org.broadleafcommerce.common.rule.SimpleRule;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+/**
+ * Compiles the targeting rules of every {@link StructuredContent} item and {@link Page} into the default
+ * {@link MvelHelper} expression cache at startup.
+ *
+ * The rule expressions are built the same way as in
+ * {@link org.broadleafcommerce.cms.structure.service.StructuredContentServiceImpl} and
+ * {@link org.broadleafcommerce.cms.page.service.PageServiceUtility} so that the precompiled entries are the ones
+ * that the rule processors will look up.
+ *
+ * @see AbstractMvelRulePrecompiler
+ */
+@Component("blContentRulePrecompiler")
+public class ContentRulePrecompiler extends AbstractMvelRulePrecompiler {
+
+    protected static final String AND = " && ";
+
+    @Resource(name = "blStructuredContentDao")
+    protected StructuredContentDao structuredContentDao;
+
+    @Resource(name = "blPageDao")
+    protected PageDao pageDao;
+
+    @Override
+    protected void registerStatistics(StatisticsService statisticsService) {
+        MvelHelper.getDefaultExpressionCache().setStatisticsService(statisticsService);
+    }
+
+    @Override
+    protected int precompileRules() {
+        int count = 0;
+        for (StructuredContent sc : structuredContentDao.findAllContentItems()) {
+            count += precompile(buildRuleExpression(sc.getStructuredContentMatchRules()));
+        }
+        for (Page page : pageDao.readAllPages()) {
+            count += precompile(buildRuleExpression(page.getPageMatchRules()));
+        }
+        return count;
+    }
+
+    protected int precompile(String rule) {
+        if (rule == null) {
+            return 0;
+        }
+        MvelHelper.precompileRule(rule);
+        return 1;
+    }
+
+    protected String buildRuleExpression(Map<String, ? extends SimpleRule> ruleMap) {
+        StringBuilder ruleExpression = null;
+        if (ruleMap != null) {
+            for (SimpleRule rule : ruleMap.values()) {
+                if (rule.getMatchRule() == null) {
+                    continue;
+                }
+                if (ruleExpression == null) {
+                    ruleExpression = new StringBuilder(rule.getMatchRule());
+                } else {
+                    ruleExpression.append(AND);
+                    ruleExpression.append(rule.getMatchRule());
+                }
+            }
+        }
+        return ruleExpression == null ? null : ruleExpression.toString();
+    }
+
+}
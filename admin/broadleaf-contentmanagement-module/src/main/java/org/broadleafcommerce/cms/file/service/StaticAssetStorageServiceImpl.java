@@ -275,9 +275,11 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
     }
 
     protected Map<String, String> buildModel(String returnFilePath, String mimeType) {
-        Map<String, String> model = new HashMap<String, String>(2);
+        Map<String, String> model = new HashMap<String, String>(3);
         model.put("cacheFilePath", returnFilePath);
         model.put("mimeType", mimeType);
+        // the cache file name embeds a digest of the update date and conversion parameters (see constructCacheFileName)
+        model.put("eTag", new File(returnFilePath).getName());
 
         return model;
     }
@@ -39,6 +39,9 @@ import org.broadleafcommerce.common.rule.RuleProcessor;
 import org.broadleafcommerce.common.site.domain.Site;
 import org.broadleafcommerce.common.template.TemplateOverrideExtensionManager;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -92,6 +95,9 @@ public class PageServiceImpl implements PageService {
     @Resource(name = "blPageQueryExtensionManager")
     protected PageQueryExtensionManager queryExtensionManager;
 
+    @Autowired
+    protected ApplicationContext applicationContext;
+
     
     protected Cache pageCache;
     protected Cache pageMapCache;
@@ -477,6 +483,7 @@ public class PageServiceImpl implements PageService {
                 }
             }
         }
+        publishRenderedPageCacheInvalidation();
 
         return success == null ? Boolean.FALSE : success;
     }
@@ -498,6 +505,18 @@ public class PageServiceImpl implements PageService {
             }
             getPageCache().remove(cKey);
         }
+        publishRenderedPageCacheInvalidation();
         return true;
     }
+
+    /**
+     * The evicted cache keys cannot be traced back to the pages they belong to, so every rendered CMS page is dropped
+     * from the rendered page cache.
+     */
+    protected void publishRenderedPageCacheInvalidation() {
+        if (applicationContext != null) {
+            applicationContext.publishEvent(new RenderedPageCacheInvalidationEvent(this, RenderedPageCacheInvalidationEvent.PAGE,
+                    Collections.<Long>emptySet()));
+        }
+    }
 }
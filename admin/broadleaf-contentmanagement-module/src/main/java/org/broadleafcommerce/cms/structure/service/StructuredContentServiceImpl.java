@@ -54,8 +54,11 @@ import org.broadleafcommerce.common.structure.dto.ItemCriteriaDTO;
 import org.broadleafcommerce.common.structure.dto.StructuredContentDTO;
 import org.broadleafcommerce.common.util.FormatUtil;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Projections;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -104,6 +107,9 @@ public class StructuredContentServiceImpl implements StructuredContentService {
     @Resource(name = "blStatisticsService")
     protected StatisticsService statisticsService;
 
+    @Autowired
+    protected ApplicationContext applicationContext;
+
     protected Cache structuredContentCache;
 
     @Override
@@ -386,6 +392,11 @@ public class StructuredContentServiceImpl implements StructuredContentService {
             typeKey = buildTypeKey(null, sc);
             removeItemFromCacheByKey(typeKey);
         }
+
+        // structured content can be rendered on any page, so none of the rendered pages can be kept
+        if (applicationContext != null) {
+            applicationContext.publishEvent(RenderedPageCacheInvalidationEvent.allPages(this));
+        }
     }
 
     @Override
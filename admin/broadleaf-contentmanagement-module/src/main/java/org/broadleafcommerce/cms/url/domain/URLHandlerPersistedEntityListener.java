@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.url.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+
+/**
+ * Publishes a {@link URLHandlerPersistedEvent} once a transaction that saved or removed a {@link URLHandler} commits.
+ * This allows the regex matching index kept by {@link org.broadleafcommerce.cms.url.service.URLHandlerServiceImpl} to be
+ * updated without reloading every handler.
+ *
+ * @see {@link URLHandlerPersistedEvent}
+ */
+public class URLHandlerPersistedEntityListener {
+
+    @PostPersist
+    @PostUpdate
+    public void handlerUpdated(final Object entity) {
+        publishAfterCommit((URLHandler) entity, false);
+    }
+
+    @PostRemove
+    public void handlerRemoved(final Object entity) {
+        publishAfterCommit((URLHandler) entity, true);
+    }
+
+    protected void publishAfterCommit(final URLHandler handler, final boolean removed) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        ApplicationContextHolder.getApplicationContext().publishEvent(new URLHandlerPersistedEvent(handler, removed));
+                    }
+                }
+            });
+        }
+    }
+
+}
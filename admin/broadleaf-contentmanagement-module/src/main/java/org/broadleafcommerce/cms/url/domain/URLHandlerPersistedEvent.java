@@ -0,0 +1,59 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.url.domain;
+
+import org.broadleafcommerce.common.event.BroadleafApplicationEvent;
+
+
+/**
+ * An event for whenever a {@link URLHandlerImpl} has been persisted, updated or removed
+ *
+ * @see {@link URLHandlerPersistedEntityListener}
+ */
+public class URLHandlerPersistedEvent extends BroadleafApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final boolean removed;
+
+    /**
+     * @param handler the persisted handler
+     * @param removed whether the handler was deleted
+     */
+    public URLHandlerPersistedEvent(URLHandler handler, boolean removed) {
+        super(handler);
+        this.removed = removed;
+    }
+
+    /**
+     * Gets the {@link URLHandler} set by the {@link URLHandlerPersistedEntityListener}
+     * 
+     * @return
+     */
+    public URLHandler getURLHandler() {
+        return (URLHandler) source;
+    }
+
+    /**
+     * @return whether the handler was deleted rather than saved
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+}
@@ -0,0 +1,311 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.url.service;
+
+import org.broadleafcommerce.cms.url.domain.URLHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable index of the {@link URLHandler} patterns used by {@link URLHandlerServiceImpl} to avoid running every
+ * handler's regex against every URI that has no exact match.
+ * </p>
+ * Each anchored regex is reduced to the literal text that any match must start with (for example "/blog/" for
+ * "^/blog/(.*)$"). These literal prefixes are stored in a character trie, so walking the trie along a URI yields only the
+ * handlers whose prefix is consistent with that URI. Handlers without a usable prefix are always candidates. Candidates
+ * are returned in the order the handlers were given to the index, which preserves the first-match semantics of a linear
+ * scan.
+ * </p>
+ * Instances are never modified. {@link #withoutHandler(Long)}, {@link #withReplacedEntry(Entry)} and {@link #asStale()}
+ * return copies that share the compiled patterns of this index.
+ *
+ * @see URLHandlerServiceImpl#checkForMatches(String)
+ */
+public class URLHandlerMatcherIndex {
+
+    protected static final String REGEX_META_CHARS = "[](){}.*+?^$|";
+    protected static final String OPTIONAL_QUANTIFIERS = "?*{";
+
+    protected final List<Entry> entries;
+    protected final Map<Long, Entry> entriesById = new HashMap<>();
+    protected final Node root = new Node();
+    protected final long createdTime;
+    protected final boolean stale;
+
+    public URLHandlerMatcherIndex(List<Entry> entries) {
+        this(entries, System.currentTimeMillis(), false);
+    }
+
+    protected URLHandlerMatcherIndex(List<Entry> entries, long createdTime, boolean stale) {
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.createdTime = createdTime;
+        this.stale = stale;
+        int ordinal = 0;
+        for (Entry entry : this.entries) {
+            entry.ordinal = ordinal++;
+            if (entry.getHandler().getId() != null) {
+                entriesById.put(entry.getHandler().getId(), entry);
+            }
+            Node node = root;
+            String prefix = entry.getLiteralPrefix();
+            for (int i = 0; i < prefix.length(); i++) {
+                Character c = prefix.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            node.entries.add(entry);
+        }
+    }
+
+    /**
+     * Returns the entries whose regex could match the given URI, in handler order. Every other entry is guaranteed
+     * not to match.
+     *
+     * @param uri the request URI
+     * @return the candidate entries
+     */
+    public List<Entry> findCandidates(String uri) {
+        List<Entry> candidates = new ArrayList<>(root.entries);
+        boolean sorted = true;
+        Node node = root;
+        for (int i = 0; i < uri.length(); i++) {
+            node = node.children.get(uri.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (!node.entries.isEmpty()) {
+                sorted &= candidates.isEmpty();
+                candidates.addAll(node.entries);
+            }
+        }
+        if (!sorted) {
+            Collections.sort(candidates, ORDINAL_COMPARATOR);
+        }
+        return candidates;
+    }
+
+    /**
+     * @return a copy of this index without the handler with the given id, or this index if it does not contain it
+     */
+    public URLHandlerMatcherIndex withoutHandler(Long handlerId) {
+        Entry removed = entriesById.get(handlerId);
+        if (removed == null) {
+            return this;
+        }
+        List<Entry> remaining = new ArrayList<>(entries.size() - 1);
+        for (Entry entry : entries) {
+            if (entry != removed) {
+                remaining.add(entry.copy());
+            }
+        }
+        return new URLHandlerMatcherIndex(remaining, createdTime, stale);
+    }
+
+    /**
+     * @return a copy of this index where the entry for the same handler id is replaced by the given entry, keeping its
+     * position, or this index if it does not contain that handler
+     */
+    public URLHandlerMatcherIndex withReplacedEntry(Entry replacement) {
+        Entry existing = entriesById.get(replacement.getHandler().getId());
+        if (existing == null) {
+            return this;
+        }
+        List<Entry> copies = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            copies.add(entry == existing ? replacement.copy() : entry.copy());
+        }
+        return new URLHandlerMatcherIndex(copies, createdTime, stale);
+    }
+
+    /**
+     * @return a copy of this index that is flagged to be reloaded on its next use
+     */
+    public URLHandlerMatcherIndex asStale() {
+        if (stale) {
+            return this;
+        }
+        List<Entry> copies = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            copies.add(entry.copy());
+        }
+        return new URLHandlerMatcherIndex(copies, createdTime, true);
+    }
+
+    public boolean containsHandler(Long handlerId) {
+        return entriesById.containsKey(handlerId);
+    }
+
+    public Entry getEntry(Long handlerId) {
+        return entriesById.get(handlerId);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Determines the literal text that every match of the given anchored regex starts with. Returns an empty String
+     * when the regex is not anchored with '^' or contains a top-level alternation, since no such prefix exists.
+     *
+     * @param regex the regex as it will be compiled
+     * @return the required literal prefix, possibly empty
+     */
+    public static String extractLiteralPrefix(String regex) {
+        if (regex == null || !regex.startsWith("^") || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = 1;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char literal;
+            int next;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // character classes, back references and quoting
+                    break;
+                }
+                literal = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                break;
+            } else {
+                literal = c;
+                next = i + 1;
+            }
+            if (next < regex.length() && OPTIONAL_QUANTIFIERS.indexOf(regex.charAt(next)) >= 0) {
+                // the literal may not be present at all
+                break;
+            }
+            prefix.append(literal);
+            if (next < regex.length() && regex.charAt(next) == '+') {
+                break;
+            }
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    protected static boolean hasTopLevelAlternation(String regex) {
+        int groupDepth = 0;
+        int classDepth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    int end = regex.indexOf("\\E", i + 2);
+                    if (end < 0) {
+                        return false;
+                    }
+                    i = end + 1;
+                } else {
+                    i++;
+                }
+            } else if (c == '[') {
+                classDepth++;
+            } else if (c == ']' && classDepth > 0) {
+                classDepth--;
+            } else if (classDepth == 0) {
+                if (c == '(') {
+                    groupDepth++;
+                } else if (c == ')' && groupDepth > 0) {
+                    groupDepth--;
+                } else if (c == '|' && groupDepth == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected static final Comparator<Entry> ORDINAL_COMPARATOR = new Comparator<Entry>() {
+
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return Integer.compare(o1.ordinal, o2.ordinal);
+        }
+    };
+
+    protected static class Node {
+
+        protected final Map<Character, Node> children = new HashMap<>();
+        protected final List<Entry> entries = new ArrayList<>(1);
+
+    }
+
+    /**
+     * A regex handler along with its compiled, anchored pattern
+     */
+    public static class Entry {
+
+        protected final URLHandler handler;
+        protected final String regex;
+        protected final Pattern pattern;
+        protected final String literalPrefix;
+        protected int ordinal;
+
+        public Entry(URLHandler handler, String regex, Pattern pattern) {
+            this(handler, regex, pattern, extractLiteralPrefix(regex));
+        }
+
+        protected Entry(URLHandler handler, String regex, Pattern pattern, String literalPrefix) {
+            this.handler = handler;
+            this.regex = regex;
+            this.pattern = pattern;
+            this.literalPrefix = literalPrefix;
+        }
+
+        protected Entry copy() {
+            return new Entry(handler, regex, pattern, literalPrefix);
+        }
+
+        public URLHandler getHandler() {
+            return handler;
+        }
+
+        public String getRegex() {
+            return regex;
+        }
+
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        public String getLiteralPrefix() {
+            return literalPrefix;
+        }
+    }
+}
@@ -24,15 +24,21 @@ import org.broadleafcommerce.cms.url.dao.URLHandlerDao;
 import org.broadleafcommerce.cms.url.domain.NullURLHandler;
 import org.broadleafcommerce.cms.url.domain.URLHandler;
 import org.broadleafcommerce.cms.url.domain.URLHandlerDTO;
+import org.broadleafcommerce.cms.url.domain.URLHandlerPersistedEvent;
 import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.persistence.Status;
 import org.broadleafcommerce.common.site.domain.Site;
 import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,11 +53,12 @@ import net.sf.ehcache.Element;
  * Created by bpolster.
  */
 @Service("blURLHandlerService")
-public class URLHandlerServiceImpl implements URLHandlerService {
+public class URLHandlerServiceImpl implements URLHandlerService, ApplicationListener<URLHandlerPersistedEvent> {
 
     protected static final String REGEX_SPECIAL_CHARS_PATTERN = "([\\[\\]\\.\\|\\?\\*\\+\\(\\)\\\\~`\\!@#%&\\-_+={}'\"\"<>:;, \\/])"; //other than ^ and $
     //This is just a placeholder object to allow us to cache a URI that does not have a URL handler.
     protected static final NullURLHandler NULL_URL_HANDLER = new NullURLHandler();
+    protected static final Long DEFAULT_SITE_KEY = 0L;
     private static final Log LOG = LogFactory.getLog(URLHandlerServiceImpl.class);
     protected Cache urlHandlerCache;
 
@@ -63,6 +70,14 @@ public class URLHandlerServiceImpl implements URLHandlerService {
 
     protected Map<String, Pattern> urlPatternMap = new EfficientLRUMap<String, Pattern>(2000);
 
+    /**
+     * Matcher index per site id, see {@link #getMatcherIndex(Site)}
+     */
+    protected final Map<Long, URLHandlerMatcherIndex> matcherIndexes = new ConcurrentHashMap<>();
+
+    @Value("${url.handler.matcher.index.refresh.seconds:3600}")
+    protected long matcherIndexRefreshSeconds = 3600;
+
     /**
      * Checks the passed in URL to determine if there is a matching URLHandler.
      * Returns null if no handler was found.
@@ -143,20 +158,29 @@ public class URLHandlerServiceImpl implements URLHandlerService {
         return urlHandlerDao.saveURLHandler(handler);
     }
 
+    /**
+     * Finds the first handler whose incoming URL, as a regex, matches the given URI. In production, the handlers are
+     * kept in a {@link URLHandlerMatcherIndex} per site so that only the handlers whose literal prefix is consistent with
+     * the URI are evaluated. Sandbox requests build a throwaway index so that unpromoted changes are visible.
+     *
+     * @param requestURI
+     * @return the matching handler, or null
+     */
     protected URLHandler checkForMatches(String requestURI) {
+        URLHandlerMatcherIndex index;
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context == null || context.isProductionSandBox()) {
+            index = getMatcherIndex(context == null ? null : context.getNonPersistentSite());
+        } else {
+            index = buildMatcherIndex(null);
+        }
+
         URLHandler currentHandler = null;
         try {
-            List<URLHandler> urlHandlers = findAllURLHandlers();
-            for (URLHandler urlHandler : urlHandlers) {
+            for (URLHandlerMatcherIndex.Entry entry : index.findCandidates(requestURI)) {
+                URLHandler urlHandler = entry.getHandler();
                 currentHandler = urlHandler;
-                String incomingUrl = wrapStringsWithAnchors(currentHandler.getIncomingURL());
-
-                Pattern p = urlPatternMap.get(incomingUrl);
-                if (p == null) {
-                    p = Pattern.compile(incomingUrl);
-                    urlPatternMap.put(incomingUrl, p);
-                }
-                Matcher m = p.matcher(requestURI);
+                Matcher m = entry.getPattern().matcher(requestURI);
                 if (m.find()) {
                     String newUrl = m.replaceFirst(urlHandler.getNewURL());
                     if (newUrl.equals(urlHandler.getNewURL())) {
@@ -180,6 +204,112 @@ public class URLHandlerServiceImpl implements URLHandlerService {
         return null;
     }
 
+    /**
+     * Returns the index for the given site, building it if it does not exist yet, has been flagged as stale or is older
+     * than {@link #matcherIndexRefreshSeconds}. Rebuilding reuses the compiled patterns of the previous index.
+     */
+    protected URLHandlerMatcherIndex getMatcherIndex(Site site) {
+        Long key = site == null ? DEFAULT_SITE_KEY : site.getId();
+        URLHandlerMatcherIndex index = matcherIndexes.get(key);
+        if (index == null || index.isStale() || isExpired(index)) {
+            synchronized (matcherIndexes) {
+                index = matcherIndexes.get(key);
+                if (index == null || index.isStale() || isExpired(index)) {
+                    index = buildMatcherIndex(index);
+                    matcherIndexes.put(key, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    protected boolean isExpired(URLHandlerMatcherIndex index) {
+        return matcherIndexRefreshSeconds >= 0
+                && System.currentTimeMillis() - index.getCreatedTime() > matcherIndexRefreshSeconds * 1000L;
+    }
+
+    /**
+     * Builds an index from {@link #findAllURLHandlers()}, the same handlers (and in the same order) that were
+     * previously scanned one by one.
+     *
+     * @param previous an earlier index whose compiled patterns can be reused, may be null
+     */
+    protected URLHandlerMatcherIndex buildMatcherIndex(URLHandlerMatcherIndex previous) {
+        List<URLHandler> urlHandlers = findAllURLHandlers();
+        List<URLHandlerMatcherIndex.Entry> entries = new ArrayList<>(urlHandlers.size());
+        for (URLHandler urlHandler : urlHandlers) {
+            URLHandlerMatcherIndex.Entry entry = createMatcherEntry(urlHandler, previous);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return new URLHandlerMatcherIndex(entries);
+    }
+
+    /**
+     * @return the index entry for the given handler, or null if its incoming URL is not a valid regex
+     */
+    protected URLHandlerMatcherIndex.Entry createMatcherEntry(URLHandler urlHandler, URLHandlerMatcherIndex previous) {
+        try {
+            return createMatcherEntryInternal(urlHandler, previous);
+        } catch (RuntimeException re) {
+            // We don't want an invalid regex to cause tons of logging, so it is only reported when the index is built
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Error parsing URL Handler (incoming =" + urlHandler.getIncomingURL() + "), outgoing = ( "
+                        + urlHandler.getNewURL() + ")");
+            }
+            return null;
+        }
+    }
+
+    protected URLHandlerMatcherIndex.Entry createMatcherEntryInternal(URLHandler urlHandler, URLHandlerMatcherIndex previous) {
+        String incomingUrl = wrapStringsWithAnchors(urlHandler.getIncomingURL());
+        Pattern p = null;
+        if (previous != null && urlHandler.getId() != null) {
+            URLHandlerMatcherIndex.Entry existing = previous.getEntry(urlHandler.getId());
+            if (existing != null && existing.getRegex().equals(incomingUrl)) {
+                p = existing.getPattern();
+            }
+        }
+        if (p == null) {
+            p = urlPatternMap.get(incomingUrl);
+        }
+        if (p == null) {
+            p = Pattern.compile(incomingUrl);
+            urlPatternMap.put(incomingUrl, p);
+        }
+        return new URLHandlerMatcherIndex.Entry(urlHandler, incomingUrl, p);
+    }
+
+    /**
+     * Keeps the production indexes in sync with handler changes. Deleted or archived handlers are removed and updated
+     * handlers are replaced in place. A handler that is not yet part of an index may belong to any site, so those
+     * indexes are flagged to be reloaded instead.
+     */
+    @Override
+    public void onApplicationEvent(URLHandlerPersistedEvent event) {
+        URLHandler handler = event.getURLHandler();
+        Long id = handler.getId();
+        if (id == null) {
+            return;
+        }
+        boolean removed = event.isRemoved() || (handler instanceof Status && !((Status) handler).isActive());
+        synchronized (matcherIndexes) {
+            for (Map.Entry<Long, URLHandlerMatcherIndex> indexEntry : matcherIndexes.entrySet()) {
+                URLHandlerMatcherIndex index = indexEntry.getValue();
+                if (removed) {
+                    index = index.withoutHandler(id);
+                } else if (index.containsHandler(id)) {
+                    URLHandlerMatcherIndex.Entry entry = createMatcherEntry(handler, index);
+                    index = entry == null ? index.withoutHandler(id) : index.withReplacedEntry(entry);
+                } else {
+                    index = index.asStale();
+                }
+                indexEntry.setValue(index);
+            }
+        }
+    }
+
     @Override
     public Boolean removeURLHandlerFromCache(String mapKey) {
         Boolean success = Boolean.FALSE;
@@ -189,6 +319,12 @@ public class URLHandlerServiceImpl implements URLHandlerService {
             if (e != null && e.getObjectValue() != null) {
                 success = Boolean.valueOf(getUrlHandlerCache().remove(mapKey));
             }
+            // the change that caused this eviction may have happened on another node, so the indexes are reloaded
+            synchronized (matcherIndexes) {
+                for (Map.Entry<Long, URLHandlerMatcherIndex> indexEntry : matcherIndexes.entrySet()) {
+                    indexEntry.setValue(indexEntry.getValue().asStale());
+                }
+            }
         }
 
         return success;
@@ -26,6 +26,8 @@ import org.broadleafcommerce.common.page.dto.PageDTO;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.web.BLCAbstractHandlerMapping;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.net.URLDecoder;
@@ -88,6 +90,7 @@ public class PageHandlerMapping extends BLCAbstractHandlerMapping {
 
             if (page != null && ! (page instanceof NullPageDTO)) {
                 context.getRequest().setAttribute(PAGE_ATTRIBUTE_NAME, page);
+                RenderedPageCacheContext.markCacheable(context.getRequest(), RenderedPageCacheInvalidationEvent.PAGE, page.getId());
                 return controllerName;
             }
         }
@@ -25,10 +25,13 @@ import org.springframework.web.servlet.View;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Map;
@@ -40,8 +43,15 @@ public class StaticAssetView implements View {
 
     private static final Log LOG = LogFactory.getLog(StaticAssetView.class);
 
+    protected static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    protected static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    protected static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    protected static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
     protected boolean browserAssetCachingEnabled = true;
     protected long cacheSeconds = 60 * 60 * 24;
+    protected boolean useContainerSendfile = true;
+    protected int bufferSize = 64 * 1024;
 
     @Override
     public String getContentType() {
@@ -51,10 +61,12 @@ public class StaticAssetView implements View {
     @Override
     public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
         String cacheFilePath = (String) model.get("cacheFilePath");
-        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(cacheFilePath));
+        File file = new File(cacheFilePath);
+        FileInputStream fis = new FileInputStream(file);
         try {
             String mimeType = (String) model.get("mimeType");
             response.setContentType(mimeType);
+            String eTag = getETag(model, file);
             if (!browserAssetCachingEnabled) {
                 response.setHeader("Cache-Control","no-cache");
                 response.setHeader("Pragma","no-cache");
@@ -62,7 +74,13 @@ public class StaticAssetView implements View {
             } else {
                 response.setHeader("Cache-Control","public");
                 response.setHeader("Pragma","cache");
-                if (!StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
+                response.setHeader("ETag", eTag);
+                if (!StringUtils.isEmpty(request.getHeader("If-None-Match"))) {
+                    if (matchesETag(request.getHeader("If-None-Match"), eTag)) {
+                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        return;
+                    }
+                } else if (!StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
                     long lastModified = request.getDateHeader("If-Modified-Since");
                     Calendar last = Calendar.getInstance();
                     last.setTime(new Date(lastModified));
@@ -72,7 +90,8 @@ public class StaticAssetView implements View {
                         response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
                         return;
                     }
-                } else {
+                }
+                if (StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
                     Calendar check = Calendar.getInstance();
                     check.add(Calendar.SECOND, -1 * new Long(cacheSeconds).intValue());
                     response.setDateHeader ("Last-Modified", check.getTimeInMillis());
@@ -82,16 +101,43 @@ public class StaticAssetView implements View {
                 cal.add(Calendar.SECOND, new Long(year).intValue());
                 response.setDateHeader ("Expires", cal.getTimeInMillis());
             }
-            OutputStream os = response.getOutputStream();
-            boolean eof = false;
-            while (!eof) {
-                int temp = bis.read();
-                if (temp < 0) {
-                    eof = true;
-                } else {
-                    os.write(temp);
+
+            FileChannel channel = fis.getChannel();
+            long length = channel.size();
+            long start = 0;
+            long end = length - 1;
+            response.setHeader("Accept-Ranges", "bytes");
+            String range = request.getHeader("Range");
+            if (!StringUtils.isEmpty(range) && isRangeApplicable(request.getHeader("If-Range"), eTag)) {
+                long[] bounds = parseRange(range, length);
+                if (bounds == null) {
+                    response.setHeader("Content-Range", "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (bounds.length == 2) {
+                    start = bounds[0];
+                    end = bounds[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
                 }
             }
+            long count = end - start + 1;
+            response.setContentLengthLong(count);
+            if (count <= 0 || "HEAD".equalsIgnoreCase(request.getMethod())) {
+                return;
+            }
+
+            if (useContainerSendfile && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+                // The container writes the file straight from the page cache once this view returns
+                request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getCanonicalPath());
+                request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+                request.setAttribute(SENDFILE_END_ATTRIBUTE, end + 1);
+                return;
+            }
+
+            OutputStream os = response.getOutputStream();
+            copy(channel, start, count, os);
             os.flush();
         } catch (Exception e) {
             if (e.getCause() instanceof SocketException) {
@@ -104,13 +150,111 @@ public class StaticAssetView implements View {
             }
         } finally {
             try {
-                bis.close();
+                fis.close();
             } catch (Throwable e) {
                 //do nothing
             }
         }
     }
 
+    /**
+     * Copies the requested part of the file to the response with a single reusable buffer. A servlet output stream is
+     * not a channel, so {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} could not
+     * avoid the copy here anyway.
+     */
+    protected void copy(FileChannel channel, long start, long count, OutputStream os) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(bufferSize, count)];
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+        long position = start;
+        long remaining = count;
+        while (remaining > 0) {
+            byteBuffer.clear();
+            if (remaining < buffer.length) {
+                byteBuffer.limit((int) remaining);
+            }
+            int read = channel.read(byteBuffer, position);
+            if (read < 0) {
+                break;
+            }
+            os.write(buffer, 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * The ETag is the name of the cache file, which StaticAssetStorageServiceImpl derives from a digest of the asset's
+     * last update date and the requested conversion parameters. It therefore changes whenever the served content does.
+     */
+    protected String getETag(Map<String, ?> model, File file) {
+        String eTag = (String) model.get("eTag");
+        if (eTag == null) {
+            eTag = file.getName();
+        }
+        return "\"" + eTag + "\"";
+    }
+
+    protected boolean matchesETag(String ifNoneMatch, String eTag) {
+        for (String candidate : StringUtils.split(ifNoneMatch, ',')) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || eTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A Range request is only honored if there is no If-Range header or it still matches the current ETag
+     */
+    protected boolean isRangeApplicable(String ifRange, String eTag) {
+        return StringUtils.isEmpty(ifRange) || eTag.equals(ifRange.trim());
+    }
+
+    /**
+     * Parses a single byte range. Multiple ranges are not supported, in which case the whole file is served as allowed
+     * by RFC 7233.
+     *
+     * @param range the Range header
+     * @param length the length of the file
+     * @return the inclusive start and end of the range, an empty array to serve the whole file, or null if the range
+     * cannot be satisfied
+     */
+    protected long[] parseRange(String range, long length) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
     public boolean isBrowserAssetCachingEnabled() {
         return browserAssetCachingEnabled;
     }
@@ -126,4 +270,27 @@ public class StaticAssetView implements View {
     public void setCacheSeconds(long cacheSeconds) {
         this.cacheSeconds = cacheSeconds;
     }
+
+    public boolean isUseContainerSendfile() {
+        return useContainerSendfile;
+    }
+
+    /**
+     * Whether to hand the file to the container when it supports sendfile (Tomcat's NIO and APR connectors advertise
+     * this through a request attribute). Defaults to true.
+     */
+    public void setUseContainerSendfile(boolean useContainerSendfile) {
+        this.useContainerSendfile = useContainerSendfile;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * The size of the buffer used to copy the file to the response when sendfile is not available
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
 }
@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import junit.framework.TestCase;
 
@@ -105,4 +106,31 @@ public class URLHandlerServiceTest extends TestCase {
         assertTrue(expectedNewURL.equals(h.getNewURL()));
     }
 
+    @Test
+    public void testLiteralPrefixExtraction() {
+        assertEquals("/blogs/", URLHandlerMatcherIndex.extractLiteralPrefix("^/blogs/(.*)/(.*)$"));
+        assertEquals("/simple_url", URLHandlerMatcherIndex.extractLiteralPrefix("^/simple_url$"));
+        assertEquals("/a.b", URLHandlerMatcherIndex.extractLiteralPrefix("^/a\\.b[0-9]+$"));
+        assertEquals("/shop", URLHandlerMatcherIndex.extractLiteralPrefix("^/shops?/(.*)$"));
+        assertEquals("", URLHandlerMatcherIndex.extractLiteralPrefix("^(.*)/shirts-tops(.*)$"));
+        assertEquals("", URLHandlerMatcherIndex.extractLiteralPrefix("^/old|/older$"));
+    }
+
+    @Test
+    public void testIndexPreservesFirstMatch() {
+        List<URLHandlerMatcherIndex.Entry> entries = new ArrayList<URLHandlerMatcherIndex.Entry>();
+        for (URLHandler handler : buildUrlHandlerList()) {
+            String regex = handlerService.wrapStringsWithAnchors(handler.getIncomingURL());
+            entries.add(new URLHandlerMatcherIndex.Entry(handler, regex, Pattern.compile(regex)));
+        }
+        URLHandlerMatcherIndex index = new URLHandlerMatcherIndex(entries);
+
+        List<URLHandlerMatcherIndex.Entry> candidates = index.findCandidates("/blogs/shirts-tops/x");
+        assertEquals(2, candidates.size());
+        assertEquals("/newblogs/$2/$1", candidates.get(0).getHandler().getNewURL());
+        assertEquals("$1/shirts$2", candidates.get(1).getHandler().getNewURL());
+
+        assertEquals(1, index.findCandidates("/unknown").size());
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.web.file;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the conditional and ranged responses of {@link StaticAssetView}.
+ */
+public class StaticAssetViewTest extends TestCase {
+
+    protected StaticAssetView view = new StaticAssetView();
+
+    protected byte[] createContent(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    protected Map<String, String> createModel(byte[] content) throws Exception {
+        File file = File.createTempFile("asset---0123456789abcdef0123456789abcdef", ".jpg");
+        file.deleteOnExit();
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+        Map<String, String> model = new HashMap<String, String>();
+        model.put("cacheFilePath", file.getAbsolutePath());
+        model.put("mimeType", "image/jpeg");
+        model.put("eTag", file.getName());
+        return model;
+    }
+
+    public void testFullResponse() throws Exception {
+        byte[] content = createContent(200 * 1024);
+        Map<String, String> model = createModel(content);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(model, new MockHttpServletRequest("GET", "/img/asset.jpg"), response);
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals("\"" + model.get("eTag") + "\"", response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertTrue(Arrays.equals(content, response.getContentAsByteArray()));
+    }
+
+    public void testIfNoneMatch() throws Exception {
+        Map<String, String> model = createModel(createContent(1024));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("If-None-Match", "\"other\", \"" + model.get("eTag") + "\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(model, request, response);
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    public void testRange() throws Exception {
+        byte[] content = createContent(10000);
+        Map<String, String> model = createModel(content);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=100-199");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(model, request, response);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 100-199/10000", response.getHeader("Content-Range"));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray()));
+
+        request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=-10");
+        response = new MockHttpServletResponse();
+        view.render(model, request, response);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 9990, 10000), response.getContentAsByteArray()));
+
+        request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=20000-");
+        response = new MockHttpServletResponse();
+        view.render(model, request, response);
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */10000", response.getHeader("Content-Range"));
+    }
+
+    public void testSendfile() throws Exception {
+        Map<String, String> model = createModel(createContent(1024));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.setAttribute(StaticAssetView.SENDFILE_SUPPORT_ATTRIBUTE, Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(model, request, response);
+
+        assertNotNull(request.getAttribute(StaticAssetView.SENDFILE_FILENAME_ATTRIBUTE));
+        assertEquals(0L, request.getAttribute(StaticAssetView.SENDFILE_START_ATTRIBUTE));
+        assertEquals(1024L, request.getAttribute(StaticAssetView.SENDFILE_END_ATTRIBUTE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+}
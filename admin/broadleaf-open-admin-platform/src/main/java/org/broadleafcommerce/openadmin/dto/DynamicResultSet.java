@@ -78,6 +78,9 @@ public class DynamicResultSet implements Serializable {
     @JsonProperty
     private Boolean promptSearch;
 
+    @JsonProperty
+    private Boolean hasMoreRecords;
+
     @JsonIgnore
     private Map<String, Tab> unselectedTabMetadata = new HashMap<String, Tab>();
 
@@ -215,4 +218,18 @@ public class DynamicResultSet implements Serializable {
     public void setPromptSearch(Boolean promptSearch) {
         this.promptSearch = promptSearch;
     }
+
+    /**
+     * Whether there are records after the last one of this page. Only set when the page was fetched without counting
+     * the records, in which case {@link #getTotalRecords()} is the number of records on this page.
+     *
+     * @return whether there is a next page, or null if the records were counted
+     */
+    public Boolean getHasMoreRecords() {
+        return hasMoreRecords;
+    }
+
+    public void setHasMoreRecords(Boolean hasMoreRecords) {
+        this.hasMoreRecords = hasMoreRecords;
+    }
 }
@@ -18,7 +18,6 @@
 package org.broadleafcommerce.openadmin.server.dao;
 
 
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.logging.Log;
@@ -83,6 +82,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Resource;
@@ -102,14 +102,17 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
 
     private static final Log LOG = LogFactory.getLog(DynamicEntityDaoImpl.class);
 
-    protected static final Map<String, Map<String, FieldMetadata>> METADATA_CACHE = new LRUMap<>(1000);
+    /**
+     * Shared by all instances, configured by {@link EntityMetadataCacheManager}
+     */
+    protected static final EntityMetadataCache METADATA_CACHE = new EntityMetadataCache();
 
     /**
      * Lifetime cache for the existence of DynamicEntityDaoImpl that just stores how many properties we have cached in METADATA_CACHE over the lifetime
      * of the application. This should survive evictions from METADATA_CACHE because it is for the purpose of diagnosing when we store different property
      * counts in METADATA_CACHE as a result of cache eviction
      */
-    protected static final Map<String, Integer> METADATA_CACHE_SIZES = new HashMap<>();
+    protected static final Map<String, Integer> METADATA_CACHE_SIZES = new ConcurrentHashMap<>();
 
     /*
      * This is the same as POLYMORPHIC_ENTITY_CACHE, except that it does not contain classes that are abstract or have been marked for exclusion
@@ -144,8 +147,6 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
     @Value("${validate.metadata.cache.sizes:false}")
     protected boolean validateMetadataCacheSizes;
 
-    protected long lastCacheFlushTime = System.currentTimeMillis();
-
     protected ApplicationContext applicationContext;
 
     protected FieldManager fieldManager;
@@ -215,25 +216,13 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
         return HibernateMappingProvider.getMapping(targetClassName);
     }
 
+    /**
+     * A positive {@link #cacheEntityMetaDataTtl} no longer flushes the whole cache once it elapses, it is the time to
+     * live of every single entry of {@link #METADATA_CACHE} instead.
+     */
     @Override
     public boolean useCache() {
-        if (cacheEntityMetaDataTtl < 0) {
-            return true;
-        }
-        if (cacheEntityMetaDataTtl == 0) {
-            return false;
-        } else {
-            if ((System.currentTimeMillis() - lastCacheFlushTime) > cacheEntityMetaDataTtl) {
-                lastCacheFlushTime = System.currentTimeMillis();
-                METADATA_CACHE.clear();
-                DynamicDaoHelperImpl.POLYMORPHIC_ENTITY_CACHE.clear();
-                DynamicDaoHelperImpl.POLYMORPHIC_ENTITY_CACHE_WO_EXCLUSIONS.clear();
-                LOG.trace("Metadata cache evicted");
-                return true; // cache is empty
-            } else {
-                return true;
-            }
-        }
+        return cacheEntityMetaDataTtl != 0;
     }
 
     @Override
@@ -755,71 +744,30 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
             String prefix,
             Boolean isParentExcluded,
             String parentPrefix) {
-        for (Class<?> clazz : entities) {
-            String cacheKey = getCacheKey(ceilingEntityFullyQualifiedClassname, foreignField, additionalNonPersistentProperties, additionalForeignFields, mergedPropertyType, populateManyToOneFields, clazz, configurationKey, isParentExcluded);
-
-            Map<String, FieldMetadata> cacheData = null;
-            synchronized (DynamicDaoHelperImpl.LOCK_OBJECT) {
-                if (useCache()) {
-                    cacheData = METADATA_CACHE.get(cacheKey);
-                }
-
-                if (cacheData == null) {
-                    Map<String, FieldMetadata> props = getPropertiesForEntityClass(
-                            clazz,
-                            foreignField,
-                            additionalNonPersistentProperties,
-                            additionalForeignFields,
-                            mergedPropertyType,
-                            populateManyToOneFields,
-                            includeFields,
-                            excludeFields,
-                            configurationKey,
-                            ceilingEntityFullyQualifiedClassname,
-                            parentClasses,
-                            prefix,
-                            isParentExcluded,
-                            parentPrefix);
-                    //first check all the properties currently in there to see if my entity inherits from them
-                    for (Class<?> clazz2 : entities) {
-                        if (!clazz2.getName().equals(clazz.getName())) {
-                            for (Map.Entry<String, FieldMetadata> entry : props.entrySet()) {
-                                FieldMetadata metadata = entry.getValue();
-                                try {
-                                    if (Class.forName(metadata.getInheritedFromType()).isAssignableFrom(clazz2)) {
-                                        String[] both = ArrayUtils.addAll(metadata.getAvailableToTypes(), new String[]{clazz2.getName()});
-                                        metadata.setAvailableToTypes(both);
-                                    }
-                                } catch (ClassNotFoundException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            }
-                        }
-                    }
-                    METADATA_CACHE.put(cacheKey, props);
-
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Added " + props.size() + " to the metadata cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
+        for (final Class<?> clazz : entities) {
+            final String cacheKey = getCacheKey(ceilingEntityFullyQualifiedClassname, foreignField, additionalNonPersistentProperties, additionalForeignFields, mergedPropertyType, populateManyToOneFields, clazz, configurationKey, isParentExcluded);
+
+            // Metadata used to be built while holding DynamicDaoHelperImpl.LOCK_OBJECT, which serialized every build
+            // with each other and with SessionFactoryChangeListener clearing the cache. METADATA_CACHE takes over
+            // both: it builds each key once without blocking other keys, and metadata whose build overlapped a
+            // clear or an invalidation is returned but not cached. LOCK_OBJECT still guards the polymorphic entity
+            // caches and the persistence managers.
+            Map<String, FieldMetadata> cacheData;
+            if (useCache()) {
+                cacheData = METADATA_CACHE.get(cacheKey, ceilingEntityFullyQualifiedClassname, clazz, new EntityMetadataCache.MetadataLoader() {
+                    @Override
+                    public Map<String, FieldMetadata> load() {
+                        return buildPropertiesForEntityClass(clazz, entities, foreignField, additionalNonPersistentProperties,
+                                additionalForeignFields, mergedPropertyType, populateManyToOneFields, includeFields,
+                                excludeFields, configurationKey, ceilingEntityFullyQualifiedClassname, parentClasses, prefix,
+                                isParentExcluded, parentPrefix, cacheKey);
                     }
-
-                    if (validateMetadataCacheSizes) {
-                        Integer previousSize = METADATA_CACHE_SIZES.get(cacheKey);
-                        Integer currentSize = props.size();
-                        if (previousSize == null) {
-                            METADATA_CACHE_SIZES.put(cacheKey, currentSize);
-                        } else if (!currentSize.equals(previousSize)) {
-                            String msg = "Attempted to store " + currentSize + " properties in the cache for the key " + cacheKey + " but we had previously stored " + previousSize + " properties";
-                            LOG.error(msg);
-                            throw new RuntimeException(msg);
-                        }
-                    }
-
-                    cacheData = props;
-                } else {
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Read " + cacheData.size() + " from the metada cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
-                    }
-                }
+                });
+            } else {
+                cacheData = buildPropertiesForEntityClass(clazz, entities, foreignField, additionalNonPersistentProperties,
+                        additionalForeignFields, mergedPropertyType, populateManyToOneFields, includeFields,
+                        excludeFields, configurationKey, ceilingEntityFullyQualifiedClassname, parentClasses, prefix,
+                        isParentExcluded, parentPrefix, cacheKey);
             }
             //clone the metadata before passing to the system
             Map<String, FieldMetadata> clonedCache = new HashMap<>(cacheData.size());
@@ -830,6 +778,73 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
         }
     }
 
+    /**
+     * Builds the metadata of a single entity of the polymorphic hierarchy as it is kept in {@link #METADATA_CACHE}
+     */
+    protected Map<String, FieldMetadata> buildPropertiesForEntityClass(
+            Class<?> clazz,
+            Class<?>[] entities,
+            ForeignKey foreignField,
+            String[] additionalNonPersistentProperties,
+            ForeignKey[] additionalForeignFields,
+            MergedPropertyType mergedPropertyType,
+            Boolean populateManyToOneFields,
+            String[] includeFields,
+            String[] excludeFields,
+            String configurationKey,
+            String ceilingEntityFullyQualifiedClassname,
+            List<Class<?>> parentClasses,
+            String prefix,
+            Boolean isParentExcluded,
+            String parentPrefix,
+            String cacheKey) {
+        Map<String, FieldMetadata> props = getPropertiesForEntityClass(
+                clazz,
+                foreignField,
+                additionalNonPersistentProperties,
+                additionalForeignFields,
+                mergedPropertyType,
+                populateManyToOneFields,
+                includeFields,
+                excludeFields,
+                configurationKey,
+                ceilingEntityFullyQualifiedClassname,
+                parentClasses,
+                prefix,
+                isParentExcluded,
+                parentPrefix);
+        //first check all the properties currently in there to see if my entity inherits from them
+        for (Class<?> clazz2 : entities) {
+            if (!clazz2.getName().equals(clazz.getName())) {
+                for (Map.Entry<String, FieldMetadata> entry : props.entrySet()) {
+                    FieldMetadata metadata = entry.getValue();
+                    try {
+                        if (Class.forName(metadata.getInheritedFromType()).isAssignableFrom(clazz2)) {
+                            String[] both = ArrayUtils.addAll(metadata.getAvailableToTypes(), new String[]{clazz2.getName()});
+                            metadata.setAvailableToTypes(both);
+                        }
+                    } catch (ClassNotFoundException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+        }
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Built " + props.size() + " properties for the metadata cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
+        }
+
+        if (validateMetadataCacheSizes) {
+            Integer previousSize = METADATA_CACHE_SIZES.putIfAbsent(cacheKey, props.size());
+            if (previousSize != null && previousSize != props.size()) {
+                String msg = "Attempted to store " + props.size() + " properties in the cache for the key " + cacheKey + " but we had previously stored " + previousSize + " properties";
+                LOG.error(msg);
+                throw new RuntimeException(msg);
+            }
+        }
+        return props;
+    }
+
     @Override
     public Field[] getAllFields(Class<?> targetClass) {
         Field[] allFields = new Field[]{};
@@ -0,0 +1,346 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.dao;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.util.LatencyHistogram;
+import org.broadleafcommerce.openadmin.dto.FieldMetadata;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+/**
+ * Cache of the {@link FieldMetadata} that {@link DynamicEntityDaoImpl} builds per entity class, kept in the
+ * "blEntityMetadataCache" region, which bounds its size.
+ * </p>
+ * Loading is single-flight per key: the first thread asking for a key builds the metadata while other threads asking
+ * for the same key wait for that result, and threads asking for other keys are not held up at all. A thread that is
+ * itself in the middle of building metadata (metadata for related entities is built recursively) never waits on
+ * another thread, since that thread could be waiting on it. It builds the metadata itself without caching it instead.
+ * </p>
+ * Entries expire {@link #getTimeToLiveMillis()} after they were built when that is positive.
+ * {@link #invalidate(Collection)} drops only the entries that involve one of the given classes, which is what should
+ * happen when the metadata overrides for those classes change.
+ *
+ * @see EntityMetadataCacheManager
+ */
+public class EntityMetadataCache {
+
+    private static final Log LOG = LogFactory.getLog(EntityMetadataCache.class);
+
+    public static final String CACHE_NAME = "blEntityMetadataCache";
+
+    /**
+     * Builds the metadata for a key that is not cached
+     */
+    public interface MetadataLoader {
+
+        Map<String, FieldMetadata> load();
+
+    }
+
+    protected Cache cache;
+
+    /**
+     * The keys being built, so that other threads asking for them wait instead of building them again
+     */
+    protected final ConcurrentMap<String, PendingLoad> pendingLoads = new ConcurrentHashMap<>();
+
+    protected final ThreadLocal<int[]> loadDepth = new ThreadLocal<>();
+
+    /**
+     * Incremented on every invalidation. Metadata that was being built while it changed is returned but not cached,
+     * since it may have been built from the old overrides.
+     */
+    protected final AtomicLong invalidationVersion = new AtomicLong();
+
+    protected final LongAdder hitCount = new LongAdder();
+    protected final LongAdder missCount = new LongAdder();
+    protected final LongAdder waitCount = new LongAdder();
+    protected final LongAdder uncachedLoadCount = new LongAdder();
+    protected final LongAdder invalidatedCount = new LongAdder();
+    protected final LatencyHistogram loadTimes = new LatencyHistogram();
+
+    protected volatile long timeToLiveMillis = -1L;
+
+    public Map<String, FieldMetadata> get(String key, String ceilingEntity, Class<?> entityClass, MetadataLoader loader) {
+        while (true) {
+            Element element = getCache().get(key);
+            if (element != null) {
+                hitCount.increment();
+                return ((CachedMetadata) element.getObjectValue()).getValue();
+            }
+            PendingLoad pending = pendingLoads.get(key);
+            if (pending != null) {
+                if (isLoading()) {
+                    uncachedLoadCount.increment();
+                    return load(loader);
+                }
+                waitCount.increment();
+                try {
+                    return pending.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for the metadata of " + entityClass.getName(), e);
+                }
+            }
+
+            PendingLoad created = new PendingLoad();
+            if (pendingLoads.putIfAbsent(key, created) != null) {
+                continue;
+            }
+            missCount.increment();
+            long version = invalidationVersion.get();
+            Map<String, FieldMetadata> value;
+            try {
+                value = load(loader);
+            } catch (RuntimeException | Error e) {
+                pendingLoads.remove(key, created);
+                created.fail(e);
+                throw e;
+            }
+            if (version == invalidationVersion.get()) {
+                put(key, new CachedMetadata(ceilingEntity, entityClass, value));
+                if (version != invalidationVersion.get()) {
+                    getCache().remove(key);
+                }
+            }
+            pendingLoads.remove(key, created);
+            created.complete(value);
+            return value;
+        }
+    }
+
+    protected void put(String key, CachedMetadata metadata) {
+        Element element = new Element(key, metadata);
+        long ttl = timeToLiveMillis;
+        if (ttl > 0L) {
+            element.setTimeToLive((int) Math.max(1L, (ttl + 999L) / 1000L));
+        }
+        getCache().put(element);
+    }
+
+    /**
+     * Removes every entry whose entity, ceiling entity or fields involve one of the given class names. Interface and
+     * superclass names match the entries of their implementations.
+     */
+    public int invalidate(Collection<String> classNames) {
+        invalidationVersion.incrementAndGet();
+        int removed = 0;
+        for (Object key : getCache().getKeys()) {
+            Element element = getCache().getQuiet(key);
+            if (element != null && ((CachedMetadata) element.getObjectValue()).involvesAny(classNames)
+                    && getCache().remove(key)) {
+                removed++;
+            }
+        }
+        invalidatedCount.add(removed);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Invalidated " + removed + " metadata cache entries for " + classNames);
+        }
+        return removed;
+    }
+
+    public void clear() {
+        invalidationVersion.incrementAndGet();
+        invalidatedCount.add(getCache().getSize());
+        getCache().removeAll();
+    }
+
+    public boolean isLoading() {
+        int[] depth = loadDepth.get();
+        return depth != null && depth[0] > 0;
+    }
+
+    protected Map<String, FieldMetadata> load(MetadataLoader loader) {
+        int[] depth = loadDepth.get();
+        if (depth == null) {
+            depth = new int[1];
+            loadDepth.set(depth);
+        }
+        depth[0]++;
+        long start = System.nanoTime();
+        try {
+            return loader.load();
+        } finally {
+            loadTimes.record(System.nanoTime() - start);
+            if (--depth[0] == 0) {
+                loadDepth.remove();
+            }
+        }
+    }
+
+    public Cache getCache() {
+        if (cache == null) {
+            cache = CacheManager.getInstance().getCache(CACHE_NAME);
+        }
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public int size() {
+        return getCache().getSize();
+    }
+
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    public void setTimeToLiveMillis(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return how many requests waited for another thread to build the metadata they asked for
+     */
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * @return how many nested requests built metadata another thread was building, without caching it
+     */
+    public long getUncachedLoadCount() {
+        return uncachedLoadCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return getCache().getStatistics().cacheEvictedCount();
+    }
+
+    public long getInvalidatedCount() {
+        return invalidatedCount.sum();
+    }
+
+    public LatencyHistogram getLoadTimes() {
+        return loadTimes;
+    }
+
+    public void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        waitCount.reset();
+        uncachedLoadCount.reset();
+        invalidatedCount.reset();
+        loadTimes.reset();
+    }
+
+    /**
+     * The cached metadata of an entity, along with the types it involves
+     */
+    protected static class CachedMetadata implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final Set<String> involvedTypes = new HashSet<>();
+        protected final Map<String, FieldMetadata> value;
+
+        public CachedMetadata(String ceilingEntity, Class<?> entityClass, Map<String, FieldMetadata> value) {
+            this.value = value;
+            addType(ceilingEntity);
+            addType(entityClass.getName());
+            for (Class<?> type : ClassUtils.getAllSuperclasses(entityClass)) {
+                addType(type.getName());
+            }
+            for (Class<?> type : ClassUtils.getAllInterfaces(entityClass)) {
+                addType(type.getName());
+            }
+            for (FieldMetadata metadata : value.values()) {
+                addType(metadata.getInheritedFromType());
+                addType(metadata.getOwningClass());
+                addType(metadata.getTargetClass());
+            }
+        }
+
+        protected void addType(String type) {
+            if (type != null) {
+                involvedTypes.add(type);
+            }
+        }
+
+        public Map<String, FieldMetadata> getValue() {
+            return value;
+        }
+
+        public boolean involvesAny(Collection<String> classNames) {
+            for (String className : classNames) {
+                if (involvedTypes.contains(className)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Metadata being built by one thread that others are waiting for
+     */
+    protected static class PendingLoad {
+
+        protected final CountDownLatch loaded = new CountDownLatch(1);
+        protected volatile Map<String, FieldMetadata> value;
+        protected volatile Throwable failure;
+
+        protected void complete(Map<String, FieldMetadata> value) {
+            this.value = value;
+            loaded.countDown();
+        }
+
+        protected void fail(Throwable failure) {
+            this.failure = failure;
+            loaded.countDown();
+        }
+
+        public Map<String, FieldMetadata> await() throws InterruptedException {
+            loaded.await();
+            Throwable cause = failure;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.dao;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.openadmin.server.domain.PersistencePackageRequest;
+import org.broadleafcommerce.openadmin.server.security.dao.AdminNavigationDao;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminSection;
+import org.broadleafcommerce.openadmin.server.service.AdminEntityService;
+import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Configures the shared {@link EntityMetadataCache} of {@link DynamicEntityDaoImpl}, invalidates the entries of the
+ * entities named by a {@link MetadataOverridesChangedEvent} (published by
+ * {@link org.broadleafcommerce.openadmin.server.service.MetadataOverrideService}), reports the cache statistics through JMX and, when
+ * "cache.entity.dao.metadata.warmup.sectionCount" is positive, builds the metadata of that many admin sections (in
+ * navigation order) in the background once the context has started, so the first admin users opening them do not
+ * have to.
+ */
+@Component("blEntityMetadataCacheManager")
+@ManagedResource(objectName = "org.broadleafcommerce:name=EntityMetadataCache", description = "Admin Entity Metadata Cache",
+        currencyTimeLimit = 15)
+public class EntityMetadataCacheManager {
+
+    private static final Log LOG = LogFactory.getLog(EntityMetadataCacheManager.class);
+
+    @Value("${cache.entity.dao.metadata.ttl}")
+    protected long cacheEntityMetaDataTtl;
+
+    @Value("${cache.entity.dao.metadata.warmup.sectionCount:0}")
+    protected int warmupSectionCount = 0;
+
+    @PostConstruct
+    public void init() {
+        getCache().setTimeToLiveMillis(cacheEntityMetaDataTtl);
+    }
+
+    public EntityMetadataCache getCache() {
+        return DynamicEntityDaoImpl.METADATA_CACHE;
+    }
+
+    @EventListener
+    public void onMetadataOverridesChanged(MetadataOverridesChangedEvent event) {
+        if (event.isAllClasses()) {
+            getCache().clear();
+            LOG.info("Admin metadata overrides changed, cleared the entity metadata cache");
+        } else {
+            int removed = getCache().invalidate(event.getClassNames());
+            LOG.info("Admin metadata overrides changed for " + event.getClassNames() + ", removed " + removed
+                    + " entity metadata cache entries");
+        }
+    }
+
+    /**
+     * Only the refresh of the root context starts the warm up, the servlet contexts below it refresh on their own
+     */
+    @EventListener
+    public void onContextRefreshed(ContextRefreshedEvent event) {
+        final ApplicationContext applicationContext = event.getApplicationContext();
+        if (applicationContext.getParent() != null || warmupSectionCount <= 0 || cacheEntityMetaDataTtl == 0
+                || !applicationContext.containsBean(PersistenceManagerFactory.getPersistenceManagerRef())
+                || !applicationContext.containsBean("blAdminEntityService")) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("entity-metadata-warmup-");
+        threadFactory.setDaemon(true);
+        threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                warmUp(applicationContext);
+            }
+        }).start();
+    }
+
+    /**
+     * Builds the metadata of the first {@link #warmupSectionCount} admin sections. Failures are logged and skipped,
+     * the metadata of those sections is simply built on first use instead.
+     */
+    protected void warmUp(ApplicationContext applicationContext) {
+        boolean contextWasNull = false;
+        if (BroadleafRequestContext.getBroadleafRequestContext() == null) {
+            BroadleafRequestContext brc = new BroadleafRequestContext();
+            brc.setIgnoreSite(true);
+            BroadleafRequestContext.setBroadleafRequestContext(brc);
+            contextWasNull = true;
+        }
+        try {
+            applicationContext.getBean("blPersistenceManagerFactory");
+            AdminNavigationDao navigationDao = applicationContext.getBean("blAdminNavigationDao", AdminNavigationDao.class);
+            AdminEntityService adminEntityService = applicationContext.getBean("blAdminEntityService", AdminEntityService.class);
+
+            long start = System.nanoTime();
+            int warmed = 0;
+            for (String ceilingEntity : getWarmupCeilingEntities(navigationDao.readAllAdminSections())) {
+                try {
+                    adminEntityService.getClassMetadata(PersistencePackageRequest.standard().withCeilingEntityClassname(ceilingEntity));
+                    warmed++;
+                } catch (Exception e) {
+                    LOG.warn("Unable to warm up the entity metadata cache for " + ceilingEntity + ": " + e.getMessage());
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Entity metadata warm up failure", e);
+                    }
+                }
+            }
+            LOG.info("Warmed up the entity metadata of " + warmed + " admin sections in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        } catch (Exception e) {
+            LOG.warn("Unable to warm up the entity metadata cache", e);
+        } finally {
+            if (contextWasNull) {
+                BroadleafRequestContext.setBroadleafRequestContext(null);
+            }
+        }
+    }
+
+    /**
+     * @return the distinct ceiling entities of the first {@link #warmupSectionCount} sections, ordered the way the
+     * admin navigation shows them
+     */
+    protected Set<String> getWarmupCeilingEntities(List<AdminSection> sections) {
+        List<AdminSection> sorted = new ArrayList<>(sections);
+        Collections.sort(sorted, new Comparator<AdminSection>() {
+            @Override
+            public int compare(AdminSection o1, AdminSection o2) {
+                int result = compareDisplayOrder(o1.getModule() == null ? null : o1.getModule().getDisplayOrder(),
+                        o2.getModule() == null ? null : o2.getModule().getDisplayOrder());
+                return result != 0 ? result : compareDisplayOrder(o1.getDisplayOrder(), o2.getDisplayOrder());
+            }
+        });
+        Set<String> ceilingEntities = new LinkedHashSet<>();
+        for (AdminSection section : sorted) {
+            if (ceilingEntities.size() >= warmupSectionCount) {
+                break;
+            }
+            if (StringUtils.isNotBlank(section.getCeilingEntity())) {
+                ceilingEntities.add(section.getCeilingEntity());
+            }
+        }
+        return ceilingEntities;
+    }
+
+    protected int compareDisplayOrder(Integer order1, Integer order2) {
+        return Integer.compare(order1 == null ? Integer.MAX_VALUE : order1, order2 == null ? Integer.MAX_VALUE : order2);
+    }
+
+    @ManagedAttribute(description = "Number of cached entity metadata entries")
+    public int getSize() {
+        return getCache().size();
+    }
+
+    @ManagedAttribute(description = "Number of requests served from the cache")
+    public long getHitCount() {
+        return getCache().getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of requests that built and cached metadata")
+    public long getMissCount() {
+        return getCache().getMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of requests that waited for another thread building the same metadata")
+    public long getWaitCount() {
+        return getCache().getWaitCount();
+    }
+
+    @ManagedAttribute(description = "Number of nested requests that built metadata without caching it")
+    public long getUncachedLoadCount() {
+        return getCache().getUncachedLoadCount();
+    }
+
+    @ManagedAttribute(description = "Number of entries evicted because the cache was full")
+    public long getEvictionCount() {
+        return getCache().getEvictionCount();
+    }
+
+    @ManagedAttribute(description = "Number of entries removed by invalidation")
+    public long getInvalidatedCount() {
+        return getCache().getInvalidatedCount();
+    }
+
+    @ManagedAttribute(description = "Hit ratio of the cache")
+    public double getHitRatio() {
+        long hits = getHitCount() + getWaitCount();
+        long total = hits + getMissCount() + getUncachedLoadCount();
+        return total == 0L ? 0D : hits / (double) total;
+    }
+
+    @ManagedAttribute(description = "Distribution of the time taken to build entity metadata")
+    public String getLoadTimes() {
+        return getCache().getLoadTimes().toString();
+    }
+
+    @ManagedOperation(description = "Removes the entries involving the given comma separated class names")
+    public int invalidate(String classNames) {
+        return getCache().invalidate(Arrays.asList(StringUtils.split(classNames, ", ")));
+    }
+
+    @ManagedOperation(description = "Removes all entries")
+    public void clear() {
+        getCache().clear();
+    }
+
+    @ManagedOperation(description = "Resets the cache statistics")
+    public void resetStatistics() {
+        getCache().resetStatistics();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.dao;
+
+import org.broadleafcommerce.common.event.BroadleafApplicationEvent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Published when the admin metadata overrides of some entities change at runtime, so that the cached metadata of
+ * just those entities is rebuilt. An empty set of class names means that any entity could be affected.
+ *
+ * @see EntityMetadataCacheManager
+ */
+public class MetadataOverridesChangedEvent extends BroadleafApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final Set<String> classNames;
+
+    /**
+     * @param source the object that changed the overrides
+     * @param classNames the ceiling entity or entity class names whose overrides changed
+     */
+    public MetadataOverridesChangedEvent(Object source, Collection<String> classNames) {
+        super(source);
+        this.classNames = Collections.unmodifiableSet(new HashSet<>(classNames));
+    }
+
+    public Set<String> getClassNames() {
+        return classNames;
+    }
+
+    public boolean isAllClasses() {
+        return classNames.isEmpty();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service;
+
+import org.broadleafcommerce.openadmin.dto.override.MetadataOverride;
+import org.broadleafcommerce.openadmin.server.dao.MetadataOverridesChangedEvent;
+
+import java.util.Map;
+
+/**
+ * Changes the admin metadata overrides (the "blMetadataOverrides" configured through the mo:override namespace) at
+ * runtime. Every change publishes a {@link MetadataOverridesChangedEvent}, so that the cached metadata of the entities
+ * involved is rebuilt with the new overrides.
+ */
+public interface MetadataOverrideService {
+
+    /**
+     * @param key the configuration key or ceiling entity class name the overrides are registered for
+     * @return the overrides for the given key, keyed by property name, or null if there are none
+     */
+    public Map<String, MetadataOverride> readOverrides(String key);
+
+    /**
+     * Replaces the overrides registered for the given configuration key or ceiling entity class name
+     *
+     * @param key the configuration key or ceiling entity class name
+     * @param overrides the overrides keyed by property name
+     */
+    public void saveOverrides(String key, Map<String, MetadataOverride> overrides);
+
+    /**
+     * Removes the overrides registered for the given configuration key or ceiling entity class name
+     *
+     * @param key the configuration key or ceiling entity class name
+     */
+    public void removeOverrides(String key);
+
+}
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.broadleafcommerce.openadmin.dto.override.MetadataOverride;
+import org.broadleafcommerce.openadmin.server.dao.MetadataOverridesChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+/**
+ * Changes the "blMetadataOverrides" map the metadata providers read from. When the key of the changed overrides is a
+ * class name only the metadata involving that class is invalidated, a configuration key invalidates all of it since
+ * any entity can be shown under it. The batch results cached by {@link DynamicEntityRemoteService} are dropped as
+ * well.
+ */
+@Service("blMetadataOverrideService")
+public class MetadataOverrideServiceImpl implements MetadataOverrideService {
+
+    @Resource(name = "blMetadataOverrides")
+    protected Map<String, Map<String, MetadataOverride>> metadataOverrides;
+
+    @Autowired
+    protected ApplicationContext applicationContext;
+
+    @Override
+    public Map<String, MetadataOverride> readOverrides(String key) {
+        Map<String, MetadataOverride> overrides = metadataOverrides.get(key);
+        return overrides == null ? null : Collections.unmodifiableMap(overrides);
+    }
+
+    @Override
+    public void saveOverrides(String key, Map<String, MetadataOverride> overrides) {
+        synchronized (metadataOverrides) {
+            metadataOverrides.put(key, new LinkedHashMap<>(overrides));
+        }
+        publishChange(key);
+    }
+
+    @Override
+    public void removeOverrides(String key) {
+        Map<String, MetadataOverride> removed;
+        synchronized (metadataOverrides) {
+            removed = metadataOverrides.remove(key);
+        }
+        if (removed != null) {
+            publishChange(key);
+        }
+    }
+
+    protected void publishChange(String key) {
+        DynamicEntityRemoteService.METADATA_CACHE.clear();
+        applicationContext.publishEvent(new MetadataOverridesChangedEvent(this, getChangedClassNames(key)));
+    }
+
+    /**
+     * @return the class name the given key stands for, or an empty list for a configuration key
+     */
+    protected List<String> getChangedClassNames(String key) {
+        try {
+            return Collections.singletonList(ClassUtils.getClass(key).getName());
+        } catch (ClassNotFoundException e) {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -0,0 +1,540 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.BroadleafEnumerationType;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.persistence.TargetModeType;
+import org.broadleafcommerce.common.presentation.client.VisibilityEnum;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.openadmin.dto.BasicFieldMetadata;
+import org.broadleafcommerce.openadmin.dto.ClassMetadata;
+import org.broadleafcommerce.openadmin.dto.CriteriaTransferObject;
+import org.broadleafcommerce.openadmin.dto.PersistencePackage;
+import org.broadleafcommerce.openadmin.dto.Property;
+import org.broadleafcommerce.openadmin.dto.SortDirection;
+import org.broadleafcommerce.openadmin.server.dao.DynamicEntityDao;
+import org.broadleafcommerce.openadmin.server.domain.PersistencePackageRequest;
+import org.broadleafcommerce.openadmin.server.factory.PersistencePackageFactory;
+import org.broadleafcommerce.openadmin.server.security.remote.EntityOperationType;
+import org.broadleafcommerce.openadmin.server.security.remote.SecurityVerifier;
+import org.broadleafcommerce.openadmin.server.service.AdminEntityService;
+import org.broadleafcommerce.openadmin.server.service.persistence.ArchiveStatusPersistenceEventHandler;
+import org.broadleafcommerce.openadmin.server.service.persistence.Persistable;
+import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManager;
+import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManagerFactory;
+import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceThreadManager;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.EmptyFilterValues;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldManager;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldNotAvailableException;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.CriteriaTranslator;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FieldPath;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FieldPathBuilder;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FilterMapping;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.Restriction;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.predicate.PredicateProvider;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.servlet.ServletOutputStream;
+
+/**
+ * Exports every record of a ceiling entity as CSV or as JSON lines, streaming them to the response instead of
+ * building the whole export in memory. Records are read in chunks of "admin.export.chunkSize" ordered by id, each chunk
+ * starting after the last id of the previous one, and the persistence context is cleared after every chunk, so the
+ * memory used does not grow with the number of records. Only the exported properties are read from the entities, and
+ * the archived records are left out the same way the admin list grids leave them out.
+ * </p>
+ * Exporters are not registered out of the box. Declare one per admin section to export in the "blAdminExporters" list:
+ * <pre>
+ * {@code
+ *  <bean class="org.broadleafcommerce.openadmin.server.service.export.StreamingEntityAdminExporter">
+ *      <property name="name" value="customerCsvExport"/>
+ *      <property name="friendlyName" value="Customers (CSV)"/>
+ *      <property name="type" value="customer"/>
+ *      <property name="ceilingEntityClassname" value="org.broadleafcommerce.profile.core.domain.Customer"/>
+ *      <property name="format" value="CSV"/>
+ *  </bean>
+ * }
+ * </pre>
+ * When no property names are configured, the properties shown in the admin list grid of the entity are exported.
+ */
+public class StreamingEntityAdminExporter implements AdminExporter {
+
+    private static final Log LOG = LogFactory.getLog(StreamingEntityAdminExporter.class);
+
+    protected static final FastDateFormat DATE_FORMAT = FastDateFormat.getInstance("yyyy-MM-dd'T'HH:mm:ss");
+
+    protected static final String CSV_FORMULA_PREFIXES = "=+-@\t\r";
+
+    protected static final VisibilityEnum[] GRID_HIDDEN_VISIBILITIES = new VisibilityEnum[] {
+            VisibilityEnum.HIDDEN_ALL, VisibilityEnum.GRID_HIDDEN
+    };
+
+    public enum Format {
+        CSV, JSONL
+    }
+
+    @Resource(name = "blAdminEntityService")
+    protected AdminEntityService adminEntityService;
+
+    @Resource(name = "blPersistencePackageFactory")
+    protected PersistencePackageFactory persistencePackageFactory;
+
+    @Resource(name = "blPersistenceThreadManager")
+    protected PersistenceThreadManager persistenceThreadManager;
+
+    @Resource(name = "blAdminSecurityRemoteService")
+    protected SecurityVerifier adminRemoteSecurityService;
+
+    @Resource(name = "blCriteriaTranslator")
+    protected CriteriaTranslator criteriaTranslator;
+
+    @Resource(name = "blArchiveStatusPersistenceEventHandler")
+    protected ArchiveStatusPersistenceEventHandler archiveStatusPersistenceEventHandler;
+
+    @Value("${admin.export.chunkSize:500}")
+    protected int chunkSize = 500;
+
+    protected String name;
+    protected String friendlyName;
+    protected String type;
+    protected String fileName;
+    protected String ceilingEntityClassname;
+    protected Format format = Format.CSV;
+    protected List<String> propertyNames;
+
+    @Override
+    public List<Property> getCriteriaFields() {
+        return null;
+    }
+
+    @Override
+    public String getFileName() {
+        if (fileName != null) {
+            return fileName;
+        }
+        return name + (Format.JSONL == format ? ".jsonl" : ".csv");
+    }
+
+    @Override
+    @Transactional(value = TransactionUtils.DEFAULT_TRANSACTION_MANAGER, readOnly = true)
+    public void writeExport(final ServletOutputStream out, Map<String, String> params) throws IOException {
+        final List<ExportColumn> columns;
+        final PersistencePackage persistencePackage;
+        try {
+            columns = getColumns();
+            persistencePackage = persistencePackageFactory.create(PersistencePackageRequest.standard()
+                    .withCeilingEntityClassname(ceilingEntityClassname));
+            persistenceThreadManager.operation(TargetModeType.SANDBOX, persistencePackage, new Persistable<Void, Exception>() {
+                @Override
+                public Void execute() throws Exception {
+                    adminRemoteSecurityService.securityCheck(persistencePackage, EntityOperationType.FETCH);
+                    export(out, persistencePackage, columns);
+                    return null;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Unable to export " + ceilingEntityClassname, e);
+        }
+    }
+
+    protected void export(ServletOutputStream out, PersistencePackage persistencePackage, List<ExportColumn> columns)
+            throws ServiceException, IOException {
+        PersistenceManager persistenceManager = PersistenceManagerFactory.getPersistenceManager();
+        DynamicEntityDao dynamicEntityDao = persistenceManager.getDynamicEntityDao();
+        EntityManager entityManager = dynamicEntityDao.getStandardEntityManager();
+        PersistenceUnitUtil persistenceUnitUtil = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        FieldManager fieldManager = dynamicEntityDao.getFieldManager();
+        String idProperty = getIdProperty(persistenceManager);
+
+        CriteriaTransferObject cto = new CriteriaTransferObject();
+        archiveStatusPersistenceEventHandler.preFetch(persistenceManager, persistencePackage, cto);
+        List<FilterMapping> filterMappings = new ArrayList<FilterMapping>(cto.getAdditionalFilterMappings());
+        KeysetBoundary boundary = new KeysetBoundary();
+        filterMappings.add(buildKeysetFilterMapping(idProperty, boundary));
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16384);
+        JsonGenerator generator = null;
+        if (Format.JSONL == format) {
+            JsonFactory jsonFactory = new JsonFactory();
+            jsonFactory.setRootValueSeparator(null);
+            jsonFactory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator = jsonFactory.createGenerator(writer);
+        } else {
+            writeCsvHeader(writer, columns);
+        }
+
+        long start = System.currentTimeMillis();
+        long exported = 0L;
+        Object[] values = new Object[columns.size()];
+        while (true) {
+            List<Serializable> chunk = criteriaTranslator.translateQuery(dynamicEntityDao, ceilingEntityClassname,
+                    filterMappings, 0, chunkSize).getResultList();
+            for (Serializable entity : chunk) {
+                for (int i = 0; i < columns.size(); i++) {
+                    values[i] = toExportValue(readValue(fieldManager, entity, columns.get(i).getName()), persistenceUnitUtil);
+                }
+                if (generator != null) {
+                    writeJsonRecord(generator, columns, values);
+                } else {
+                    writeCsvRecord(writer, values);
+                }
+            }
+            exported += chunk.size();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            boundary.lastId = (Long) readValue(fieldManager, chunk.get(chunk.size() - 1), idProperty);
+            if (generator != null) {
+                generator.flush();
+            }
+            writer.flush();
+            entityManager.clear();
+        }
+        if (generator != null) {
+            generator.flush();
+        }
+        writer.flush();
+        entityManager.clear();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Exported " + exported + " " + ceilingEntityClassname + " records in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * @return the columns for the configured property names, or for the properties shown in the admin list grid of
+     * the ceiling entity, in grid order, if none are configured
+     */
+    protected List<ExportColumn> getColumns() throws ServiceException {
+        ClassMetadata classMetadata = adminEntityService.getClassMetadata(PersistencePackageRequest.standard()
+                .withCeilingEntityClassname(ceilingEntityClassname)).getDynamicResultSet().getClassMetaData();
+        List<ExportColumn> columns = new ArrayList<ExportColumn>();
+        if (propertyNames != null && !propertyNames.isEmpty()) {
+            for (String propertyName : propertyNames) {
+                Property property = classMetadata.getPMap().get(propertyName);
+                columns.add(new ExportColumn(propertyName,
+                        getHeader(propertyName, property == null ? null : property.getMetadata().getFriendlyName())));
+            }
+            return columns;
+        }
+        List<BasicFieldMetadata> gridFields = new ArrayList<BasicFieldMetadata>();
+        for (Property property : classMetadata.getProperties()) {
+            if (property.getMetadata() instanceof BasicFieldMetadata) {
+                BasicFieldMetadata metadata = (BasicFieldMetadata) property.getMetadata();
+                if (Boolean.TRUE.equals(metadata.isProminent()) && !Boolean.TRUE.equals(metadata.getExcluded())
+                        && !ArrayUtils.contains(GRID_HIDDEN_VISIBILITIES, metadata.getVisibility())) {
+                    gridFields.add(metadata);
+                }
+            }
+        }
+        Collections.sort(gridFields, new Comparator<BasicFieldMetadata>() {
+            @Override
+            public int compare(BasicFieldMetadata o1, BasicFieldMetadata o2) {
+                return Integer.compare(o1.getGridOrder() == null ? Integer.MAX_VALUE : o1.getGridOrder(),
+                        o2.getGridOrder() == null ? Integer.MAX_VALUE : o2.getGridOrder());
+            }
+        });
+        for (BasicFieldMetadata metadata : gridFields) {
+            columns.add(new ExportColumn(metadata.getName(), getHeader(metadata.getName(), metadata.getFriendlyName())));
+        }
+        return columns;
+    }
+
+    /**
+     * Friendly names are message keys, so the header is the friendly name translated with the message source of the
+     * current request, the untranslated friendly name if it has no message or there is no message source, or the
+     * property name if the property has no friendly name.
+     */
+    protected String getHeader(String propertyName, String friendlyName) {
+        if (StringUtils.isBlank(friendlyName)) {
+            return propertyName;
+        }
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context != null && context.getMessageSource() != null) {
+            return context.getMessageSource().getMessage(friendlyName, null, friendlyName, context.getJavaLocale());
+        }
+        return friendlyName;
+    }
+
+    protected String getIdProperty(PersistenceManager persistenceManager) {
+        Class<?>[] entities;
+        try {
+            entities = persistenceManager.getUpDownInheritance(ceilingEntityClassname);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Unable to find the ceiling entity " + ceilingEntityClassname, e);
+        }
+        Map<String, Object> idMetadata = ArrayUtils.isEmpty(entities) ? null
+                : persistenceManager.getDynamicEntityDao().getIdMetadata(entities[0]);
+        if (idMetadata == null || !(idMetadata.get("type") instanceof Type)
+                || !Long.class.equals(((Type) idMetadata.get("type")).getReturnedClass())) {
+            throw new IllegalArgumentException("Only entities with a numeric id can be exported, which "
+                    + ceilingEntityClassname + " does not have");
+        }
+        return (String) idMetadata.get("name");
+    }
+
+    /**
+     * Orders the records by id and restricts them to the ids after {@link KeysetBoundary#lastId}, which is moved
+     * forward after every chunk
+     */
+    protected FilterMapping buildKeysetFilterMapping(String idProperty, final KeysetBoundary boundary) {
+        return new FilterMapping()
+                .withFieldPath(new FieldPath().withTargetProperty(idProperty))
+                .withDirectFilterValues(new EmptyFilterValues())
+                .withSortDirection(SortDirection.ASCENDING)
+                .withRestriction(new Restriction()
+                        .withPredicateProvider(new PredicateProvider<Long, Long>() {
+                            @Override
+                            public Predicate buildPredicate(CriteriaBuilder builder, FieldPathBuilder fieldPathBuilder,
+                                                            From root, String ceilingEntity, String fullPropertyName,
+                                                            Path<Long> explicitPath, List<Long> directValues) {
+                                if (boundary.lastId == null) {
+                                    return null;
+                                }
+                                return builder.greaterThan(explicitPath, boundary.lastId);
+                            }
+                        })
+                );
+    }
+
+    protected Object readValue(FieldManager fieldManager, Object entity, String propertyName) {
+        try {
+            return fieldManager.getFieldValue(entity, propertyName);
+        } catch (FieldNotAvailableException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to read " + propertyName + " of " + ceilingEntityClassname, e);
+        }
+    }
+
+    /**
+     * @return the value to export: a {@link String}, a {@link Number}, a {@link Boolean} or null. Related entities are
+     * exported as their id, and collections are not exported.
+     */
+    protected Object toExportValue(Object value, PersistenceUnitUtil persistenceUnitUtil) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Money) {
+            return ((Money) value).getAmount();
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+        if (value instanceof Date) {
+            return DATE_FORMAT.format((Date) value);
+        }
+        if (value instanceof BroadleafEnumerationType) {
+            return ((BroadleafEnumerationType) value).getType();
+        }
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        if (value instanceof Collection || value instanceof Map) {
+            return null;
+        }
+        try {
+            Object id = persistenceUnitUtil.getIdentifier(value);
+            if (id != null) {
+                return id;
+            }
+        } catch (IllegalArgumentException e) {
+            // not an entity
+        }
+        return String.valueOf(value);
+    }
+
+    protected void writeCsvHeader(Writer writer, List<ExportColumn> columns) throws IOException {
+        Object[] headers = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            headers[i] = columns.get(i).getHeader();
+        }
+        writeCsvRecord(writer, headers);
+    }
+
+    protected void writeCsvRecord(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] instanceof BigDecimal) {
+                writer.write(((BigDecimal) values[i]).toPlainString());
+            } else if (values[i] instanceof Number) {
+                writer.write(values[i].toString());
+            } else if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Quotes the value if it contains a separator, a quote or a line break. A value starting with a character that
+     * spreadsheets read as the start of a formula is prefixed with a single quote first, so that text entered in the
+     * admin, or by customers, is never evaluated when the export is opened. Numbers are written without escaping.
+     */
+    protected String escapeCsv(String value) {
+        if (!value.isEmpty() && CSV_FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    protected void writeJsonRecord(JsonGenerator generator, List<ExportColumn> columns, Object[] values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            generator.writeFieldName(columns.get(i).getName());
+            generator.writeObject(values[i]);
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getFriendlyName() {
+        return friendlyName;
+    }
+
+    public void setFriendlyName(String friendlyName) {
+        this.friendlyName = friendlyName;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getCeilingEntityClassname() {
+        return ceilingEntityClassname;
+    }
+
+    public void setCeilingEntityClassname(String ceilingEntityClassname) {
+        this.ceilingEntityClassname = ceilingEntityClassname;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public List<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+    public void setPropertyNames(List<String> propertyNames) {
+        this.propertyNames = propertyNames;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    protected static class ExportColumn {
+
+        protected final String name;
+        protected final String header;
+
+        public ExportColumn(String name, String header) {
+            this.name = name;
+            this.header = header;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHeader() {
+            return header;
+        }
+    }
+
+    protected static class KeysetBoundary {
+
+        protected Long lastId;
+
+    }
+}
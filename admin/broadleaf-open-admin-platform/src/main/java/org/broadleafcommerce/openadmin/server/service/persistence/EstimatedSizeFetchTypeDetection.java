@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.persistence;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.openadmin.dto.CriteriaTransferObject;
+import org.broadleafcommerce.openadmin.dto.PersistencePackage;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.CriteriaTranslator;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FilterMapping;
+import org.broadleafcommerce.openadmin.server.service.type.FetchType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * Detects the list grids that page with {@link FetchType#LARGERESULTSET}, which lets the basic persistence module
+ * fetch their unfiltered, unsorted pages by id without counting the whole table. An entity is large when it is named
+ * in "admin.fetch.largeResultSet.entities", or when "admin.fetch.largeResultSet.threshold" is positive and the
+ * estimated number of its records reaches it. The estimate is a single unfiltered count per ceiling entity that is
+ * cached for "admin.fetch.largeResultSet.estimate.ttl" milliseconds, so listing a large entity costs at most one
+ * count per time to live instead of one count per page.
+ * <p>
+ * The detection is only registered when "admin.fetch.largeResultSet.enabled" is true. Leave it disabled when declaring
+ * a custom {@link FetchTypeDetection}, which the persistence manager and the basic persistence module autowire by type.
+ */
+@Component("blFetchTypeDetection")
+@ConditionalOnProperty("admin.fetch.largeResultSet.enabled")
+@ManagedResource(objectName = "org.broadleafcommerce:name=AdminFetchTypeDetection", description = "Admin List Grid Fetch Type Detection",
+        currencyTimeLimit = 15)
+public class EstimatedSizeFetchTypeDetection implements FetchTypeDetection {
+
+    private static final Log LOG = LogFactory.getLog(EstimatedSizeFetchTypeDetection.class);
+
+    protected static final long UNKNOWN = -1L;
+
+    @Resource(name = "blCriteriaTranslator")
+    protected CriteriaTranslator criteriaTranslator;
+
+    @Value("${admin.fetch.largeResultSet.entities:}")
+    protected String largeEntities = "";
+
+    @Value("${admin.fetch.largeResultSet.threshold:-1}")
+    protected long threshold = -1L;
+
+    @Value("${admin.fetch.largeResultSet.estimate.ttl:600000}")
+    protected long estimateTtl = 600000L;
+
+    protected Set<String> largeEntityNames = Collections.emptySet();
+
+    protected final ConcurrentMap<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        largeEntityNames = new HashSet<>(Arrays.asList(StringUtils.split(StringUtils.defaultString(largeEntities), ", ")));
+    }
+
+    @Override
+    public FetchType getFetchType(PersistencePackage persistencePackage, CriteriaTransferObject cto) {
+        String ceilingEntity = persistencePackage.getCeilingEntityFullyQualifiedClassname();
+        if (ceilingEntity == null) {
+            return FetchType.DEFAULT;
+        }
+        if (largeEntityNames.contains(ceilingEntity)) {
+            return FetchType.LARGERESULTSET;
+        }
+        if (threshold > 0L && getEstimatedRecordCount(ceilingEntity) >= threshold) {
+            return FetchType.LARGERESULTSET;
+        }
+        return FetchType.DEFAULT;
+    }
+
+    @Override
+    public boolean shouldPromptForSearch(PersistencePackage persistencePackage, CriteriaTransferObject cto) {
+        return false;
+    }
+
+    /**
+     * @return the cached number of records of the given ceiling entity, counting them again once the cached value is
+     * older than the time to live, or {@link #UNKNOWN} if they could not be counted
+     */
+    public long getEstimatedRecordCount(String ceilingEntity) {
+        long now = System.currentTimeMillis();
+        Estimate estimate = estimates.get(ceilingEntity);
+        if (estimate != null && (estimateTtl < 0L || now - estimate.createdAt <= estimateTtl)) {
+            return estimate.count;
+        }
+        long count = countRecords(ceilingEntity);
+        estimates.put(ceilingEntity, new Estimate(count, now));
+        return count;
+    }
+
+    protected long countRecords(String ceilingEntity) {
+        try {
+            Number count = (Number) criteriaTranslator.translateCountQuery(
+                    PersistenceManagerFactory.getPersistenceManager().getDynamicEntityDao(), ceilingEntity,
+                    new ArrayList<FilterMapping>()).getSingleResult();
+            return count.longValue();
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to estimate the number of records of " + ceilingEntity + ": " + e.getMessage());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Record count estimate failure", e);
+            }
+            return UNKNOWN;
+        }
+    }
+
+    @ManagedAttribute(description = "Number of cached record count estimates")
+    public int getEstimateCount() {
+        return estimates.size();
+    }
+
+    @ManagedOperation(description = "Removes the cached record count estimates")
+    public void clearEstimates() {
+        estimates.clear();
+    }
+
+    protected static class Estimate {
+
+        protected final long count;
+        protected final long createdAt;
+
+        public Estimate(long count, long createdAt) {
+            this.count = count;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -48,6 +48,7 @@ import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.openadmin.dto.*;
 import org.broadleafcommerce.openadmin.server.dao.provider.metadata.AdvancedCollectionFieldMetadataProvider;
 import org.broadleafcommerce.openadmin.server.service.ValidationException;
+import org.broadleafcommerce.openadmin.server.service.persistence.FetchTypeDetection;
 import org.broadleafcommerce.openadmin.server.service.persistence.ParentEntityPersistenceException;
 import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceException;
 import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManager;
@@ -65,10 +66,13 @@ import org.broadleafcommerce.openadmin.server.service.persistence.module.provide
 import org.broadleafcommerce.openadmin.server.service.persistence.validation.EntityValidatorService;
 import org.broadleafcommerce.openadmin.server.service.persistence.validation.PopulateValueRequestValidator;
 import org.broadleafcommerce.openadmin.server.service.persistence.validation.PropertyValidationResult;
+import org.broadleafcommerce.openadmin.server.service.type.FetchType;
 import org.broadleafcommerce.openadmin.server.service.type.MetadataProviderResponse;
 import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.type.Type;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.Primary;
@@ -78,6 +82,10 @@ import org.springframework.util.Assert;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -131,6 +139,9 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
     @Resource(name = "blFetchWrapper")
     protected FetchWrapper fetchWrapper;
 
+    @Autowired(required = false)
+    protected FetchTypeDetection fetchTypeDetection = null;
+
     @PostConstruct
     public void init() {
         Collections.sort(fieldPersistenceProviders, new Comparator<FieldPersistenceProvider>() {
@@ -1147,6 +1158,7 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
     public DynamicResultSet fetch(PersistencePackage persistencePackage, CriteriaTransferObject cto) throws ServiceException {
         Entity[] payload;
         int totalRecords;
+        Boolean hasMoreRecords = null;
         PersistencePerspective persistencePerspective = persistencePackage.getPersistencePerspective();
         String ceilingEntityFullyQualifiedClassname = persistencePackage.getCeilingEntityFullyQualifiedClassname();
         ForeignKey foreignKey = (ForeignKey) persistencePerspective.getPersistencePerspectiveItems().get(PersistencePerspectiveItemType.FOREIGNKEY);
@@ -1169,17 +1181,34 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
                 standardFilterMappings.addAll(cto.getNonCountAdditionalFilterMappings());
             }
 
-            FetchRequest fetchRequest = new FetchRequest(persistencePackage, cto,
-                    persistencePackage.getFetchTypeFullyQualifiedClassname(), standardFilterMappings);
-            List<Serializable> records = getPersistentRecords(fetchRequest);
+            List<Serializable> records;
+            String keysetIdProperty = getKeysetIdProperty(persistencePackage, cto, filterMappings, standardFilterMappings);
+            if (keysetIdProperty != null) {
+                records = getKeysetPersistentRecords(persistencePackage, cto, standardFilterMappings, keysetIdProperty);
+                int pageSize = cto.getMaxResults();
+                if (cto.getFirstId() != null) {
+                    // paging back from a page that was shown, so there is at least that page after this one
+                    hasMoreRecords = true;
+                } else {
+                    hasMoreRecords = records.size() > pageSize;
+                    if (hasMoreRecords) {
+                        records = records.subList(0, pageSize);
+                    }
+                }
+                totalRecords = records.size();
+            } else {
+                FetchRequest fetchRequest = new FetchRequest(persistencePackage, cto,
+                        persistencePackage.getFetchTypeFullyQualifiedClassname(), standardFilterMappings);
+                records = getPersistentRecords(fetchRequest);
 
-            List<FilterMapping> countFilterMappings = new ArrayList<FilterMapping>(filterMappings);
-            if (CollectionUtils.isNotEmpty(cto.getAdditionalFilterMappings())) {
-                countFilterMappings.addAll(cto.getAdditionalFilterMappings());
+                List<FilterMapping> countFilterMappings = new ArrayList<FilterMapping>(filterMappings);
+                if (CollectionUtils.isNotEmpty(cto.getAdditionalFilterMappings())) {
+                    countFilterMappings.addAll(cto.getAdditionalFilterMappings());
+                }
+                FetchRequest countFetchRequest = new FetchRequest(persistencePackage, cto,
+                        persistencePackage.getFetchTypeFullyQualifiedClassname(), countFilterMappings);
+                totalRecords = getTotalRecords(countFetchRequest);
             }
-            FetchRequest countFetchRequest = new FetchRequest(persistencePackage, cto,
-                    persistencePackage.getFetchTypeFullyQualifiedClassname(), countFilterMappings);
-            totalRecords = getTotalRecords(countFetchRequest);
 
             FetchExtractionRequest fetchExtractionRequest = new FetchExtractionRequest(persistencePackage, cto,
                     persistencePackage.getFetchTypeFullyQualifiedClassname(), mergedProperties, records);
@@ -1188,7 +1217,99 @@ public class BasicPersistenceModule implements PersistenceModule, RecordHelper,
             throw new ServiceException("Unable to fetch results for " + ceilingEntityFullyQualifiedClassname, e);
         }
 
-        return new DynamicResultSet(null, payload, totalRecords);
+        DynamicResultSet dynamicResultSet = new DynamicResultSet(null, payload, totalRecords);
+        dynamicResultSet.setHasMoreRecords(hasMoreRecords);
+        return dynamicResultSet;
+    }
+
+    /**
+     * Determines whether a page can be fetched by id instead of by offset, without counting the records. That is the
+     * case for entities the {@link FetchTypeDetection} considers {@link FetchType#LARGERESULTSET} as long as the user
+     * neither filters nor sorts the list grid, which is also when the admin shows next and previous page links
+     * instead of the record count. Filtered and sorted fetches keep counting the records, since the user is
+     * searching and the list grid shows how many records were found.
+     *
+     * @return the name of the numeric id property to page by, or null if the records should be counted
+     */
+    protected String getKeysetIdProperty(PersistencePackage persistencePackage, CriteriaTransferObject cto,
+            List<FilterMapping> filterMappings, List<FilterMapping> standardFilterMappings) {
+        if (fetchTypeDetection == null || cto.getMaxResults() == null || cto.getMaxResults() <= 0) {
+            return null;
+        }
+        for (FilterMapping filterMapping : filterMappings) {
+            if (CollectionUtils.isNotEmpty(filterMapping.getFilterValues())) {
+                return null;
+            }
+        }
+        for (FilterMapping filterMapping : standardFilterMappings) {
+            if (filterMapping.getSortDirection() != null) {
+                return null;
+            }
+        }
+        if (FetchType.LARGERESULTSET != fetchTypeDetection.getFetchType(persistencePackage, cto)) {
+            return null;
+        }
+        try {
+            Class<?>[] entities = persistenceManager.getUpDownInheritance(persistencePackage.getCeilingEntityFullyQualifiedClassname());
+            if (ArrayUtils.isEmpty(entities)) {
+                return null;
+            }
+            Map<String, Object> idMetadata = persistenceManager.getDynamicEntityDao().getIdMetadata(entities[0]);
+            if (idMetadata == null || !(idMetadata.get("name") instanceof String) || !(idMetadata.get("type") instanceof Type)
+                    || !Long.class.equals(((Type) idMetadata.get("type")).getReturnedClass())) {
+                return null;
+            }
+            return (String) idMetadata.get("name");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the page after {@link CriteriaTransferObject#getLastId()}, or the page before
+     * {@link CriteriaTransferObject#getFirstId()}, by id. Paging forward reads one record more than the page size, so
+     * the caller can tell whether there is a next page without counting the records.
+     */
+    protected List<Serializable> getKeysetPersistentRecords(PersistencePackage persistencePackage, CriteriaTransferObject cto,
+            List<FilterMapping> standardFilterMappings, String idProperty) {
+        final boolean backward = cto.getFirstId() != null;
+        final Long boundaryId = backward ? cto.getFirstId() : cto.getLastId();
+        List<FilterMapping> keysetFilterMappings = new ArrayList<FilterMapping>(standardFilterMappings);
+        keysetFilterMappings.add(new FilterMapping()
+                .withFieldPath(new FieldPath().withTargetProperty(idProperty))
+                .withDirectFilterValues(new EmptyFilterValues())
+                .withSortDirection(backward ? SortDirection.DESCENDING : SortDirection.ASCENDING)
+                .withRestriction(new Restriction()
+                        .withPredicateProvider(new PredicateProvider<Long, Long>() {
+                            @Override
+                            public Predicate buildPredicate(CriteriaBuilder builder, FieldPathBuilder fieldPathBuilder,
+                                                            From root, String ceilingEntity, String fullPropertyName,
+                                                            Path<Long> explicitPath, List<Long> directValues) {
+                                if (boundaryId == null) {
+                                    return null;
+                                }
+                                return backward ? builder.lessThan(explicitPath, boundaryId) : builder.greaterThan(explicitPath, boundaryId);
+                            }
+                        })
+                ));
+
+        Integer firstResult = cto.getFirstResult();
+        Integer maxResults = cto.getMaxResults();
+        List<Serializable> records;
+        try {
+            cto.setFirstResult(0);
+            cto.setMaxResults(backward ? maxResults : maxResults + 1);
+            records = getPersistentRecords(new FetchRequest(persistencePackage, cto,
+                    persistencePackage.getFetchTypeFullyQualifiedClassname(), keysetFilterMappings));
+        } finally {
+            cto.setFirstResult(firstResult);
+            cto.setMaxResults(maxResults);
+        }
+        if (backward) {
+            records = new ArrayList<Serializable>(records);
+            Collections.reverse(records);
+        }
+        return records;
     }
 
     @Override
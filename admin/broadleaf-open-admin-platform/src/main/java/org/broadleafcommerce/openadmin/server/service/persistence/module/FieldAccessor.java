@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+import org.broadleafcommerce.common.util.BLCFieldUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reads and writes one field, through method handles resolved once per class and field name instead of looking the
+ * field up and making it accessible on every access. {@link FieldManager} walks property paths with these, resolving
+ * each segment against the runtime class of the value it reached, so subclasses and polymorphic associations each get
+ * accessors of their own.
+ * </p>
+ * The accessors are kept per class in a {@link ClassValue}, so they go away with the class loader of the entities.
+ * Static and final fields are accessed through the {@link Field} itself.
+ */
+public class FieldAccessor {
+
+    protected static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    protected static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    protected static final Object MISSING = new Object();
+
+    protected static final ClassValue<ConcurrentMap<String, Object>> ACCESSORS = new ClassValue<ConcurrentMap<String, Object>>() {
+        @Override
+        protected ConcurrentMap<String, Object> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    protected final Field field;
+    protected final MethodHandle getter;
+    protected final MethodHandle setter;
+
+    protected FieldAccessor(Field field) {
+        field.setAccessible(true);
+        this.field = field;
+        MethodHandle getter = null;
+        MethodHandle setter = null;
+        if (!Modifier.isStatic(field.getModifiers())) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                if (!Modifier.isFinal(field.getModifiers())) {
+                    setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                }
+            } catch (IllegalAccessException e) {
+                // fall back on the field itself
+            }
+        }
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * @return the accessor for the field of the given name declared by the class or one of its superclasses, or null
+     * if there is no such field
+     */
+    public static FieldAccessor forField(Class<?> clazz, String fieldName) {
+        ConcurrentMap<String, Object> accessors = ACCESSORS.get(clazz);
+        Object accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            Field field = BLCFieldUtils.getSingleField(clazz, fieldName);
+            accessor = field == null ? MISSING : new FieldAccessor(field);
+            Object existing = accessors.putIfAbsent(fieldName, accessor);
+            if (existing != null) {
+                accessor = existing;
+            }
+        }
+        return accessor == MISSING ? null : (FieldAccessor) accessor;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    /**
+     * @see Field#get(Object)
+     */
+    public Object get(Object target) throws IllegalAccessException {
+        if (getter == null) {
+            return field.get(target);
+        }
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Can not get " + field + " from " + target.getClass().getName(), e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * @see Field#set(Object, Object)
+     */
+    public void set(Object target, Object value) throws IllegalAccessException {
+        if (setter == null || (value == null && field.getType().isPrimitive())) {
+            field.set(target, value);
+            return;
+        }
+        try {
+            setter.invokeExact(target, value);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Can not set " + field + " of " + target.getClass().getName() + " to "
+                    + (value == null ? null : value.getClass().getName()), e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+}
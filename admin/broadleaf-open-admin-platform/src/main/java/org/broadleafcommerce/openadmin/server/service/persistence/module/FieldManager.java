@@ -41,11 +41,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.persistence.EntityManager;
 import javax.persistence.metamodel.EntityType;
 
 /**
+ * Reads and writes the values of dotted property paths on entities. Property paths are parsed once and each segment
+ * is accessed through a {@link FieldAccessor} resolved for the runtime class of the value it is read from.
  *
  * @author jfischer
  *
@@ -56,6 +60,10 @@ public class FieldManager {
 
     public static final String MAPFIELDSEPARATOR = "---";
 
+    protected static final int MAX_PARSED_PATHS = 10000;
+
+    protected static final ConcurrentMap<String, PathSegment[]> PARSED_PATHS = new ConcurrentHashMap<>();
+
     protected EntityConfiguration entityConfiguration;
     protected EntityManager entityManager;
     protected List<SortableValue> middleFields = new ArrayList<SortableValue>(5);
@@ -76,24 +84,38 @@ public class FieldManager {
         return fieldUtils.getField(clazz, fieldName);
     }
 
+    /**
+     * @return the segments of the given property path, parsed once per path
+     */
+    protected static PathSegment[] parsePath(String fieldName) {
+        PathSegment[] segments = PARSED_PATHS.get(fieldName);
+        if (segments == null) {
+            StringTokenizer tokens = new StringTokenizer(fieldName, ".");
+            segments = new PathSegment[tokens.countTokens()];
+            for (int j = 0; j < segments.length; j++) {
+                segments[j] = new PathSegment(tokens.nextToken());
+            }
+            if (PARSED_PATHS.size() >= MAX_PARSED_PATHS) {
+                PARSED_PATHS.clear();
+            }
+            PARSED_PATHS.put(fieldName, segments);
+        }
+        return segments;
+    }
+
     public Object getFieldValue(Object bean, String fieldName) throws IllegalAccessException, FieldNotAvailableException {
-        StringTokenizer tokens = new StringTokenizer(fieldName, ".");
         Class<?> componentClass = bean.getClass();
         Field field = null;
         Object value = HibernateUtils.deproxy(bean);
 
-        while (tokens.hasMoreTokens()) {
-            String fieldNamePart = tokens.nextToken();
-            String mapKey = null;
-            if (fieldNamePart.contains(FieldManager.MAPFIELDSEPARATOR)) {
-                mapKey = fieldNamePart.substring(fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR) + FieldManager.MAPFIELDSEPARATOR.length(), fieldNamePart.length());
-                fieldNamePart = fieldNamePart.substring(0, fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR));
-            }
-            field = getSingleField(componentClass, fieldNamePart);
+        for (PathSegment segment : parsePath(fieldName)) {
+            String fieldNamePart = segment.fieldName;
+            String mapKey = segment.mapKey;
+            FieldAccessor accessor = FieldAccessor.forField(componentClass, fieldNamePart);
 
-            if (field != null) {
-                field.setAccessible(true);
-                value = field.get(value);
+            if (accessor != null) {
+                field = accessor.getField();
+                value = accessor.get(value);
 
                 if (mapKey != null) {
                     value = handleMapFieldExtraction(bean, fieldName, componentClass, value, fieldNamePart, mapKey);
@@ -118,26 +140,22 @@ public class FieldManager {
     }
 
     public Object setFieldValue(Object bean, String fieldName, Object newValue) throws IllegalAccessException, InstantiationException {
-        StringTokenizer tokens = new StringTokenizer(fieldName, ".");
+        PathSegment[] segments = parsePath(fieldName);
         Class<?> componentClass = bean.getClass();
         Field field;
         bean = HibernateUtils.deproxy(bean);
         Object value = bean;
 
-        int count = tokens.countTokens();
+        int count = segments.length;
         int j=0;
         StringBuilder sb = new StringBuilder();
-        while (tokens.hasMoreTokens()) {
-            String fieldNamePart = tokens.nextToken();
-            sb.append(fieldNamePart);
-            String mapKey = null;
-            if (fieldNamePart.contains(FieldManager.MAPFIELDSEPARATOR)) {
-                mapKey = fieldNamePart.substring(fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR) + FieldManager.MAPFIELDSEPARATOR.length(), fieldNamePart.length());
-                fieldNamePart = fieldNamePart.substring(0, fieldNamePart.indexOf(FieldManager.MAPFIELDSEPARATOR));
-            }
+        for (PathSegment segment : segments) {
+            sb.append(segment.token);
+            String fieldNamePart = segment.fieldName;
+            String mapKey = segment.mapKey;
 
-            field = getSingleField(componentClass, fieldNamePart);
-            field.setAccessible(true);
+            FieldAccessor accessor = FieldAccessor.forField(componentClass, fieldNamePart);
+            field = accessor.getField();
             if (j == count - 1) {
                 if (mapKey != null) {
                     handleMapFieldPopulation(bean, fieldName, newValue, componentClass, field, value, fieldNamePart, mapKey);
@@ -146,10 +164,10 @@ public class FieldManager {
                     if (modifierManager != null) {
                         newValue = modifierManager.getModifiedWriteValue(field, value, newValue, entityManager);
                     }
-                    field.set(value, newValue);
+                    accessor.set(value, newValue);
                 }
             } else {
-                Object myValue = field.get(value);
+                Object myValue = accessor.get(value);
                 if (myValue != null) {
                     componentClass = myValue.getClass();
                     value = myValue;
@@ -160,7 +178,7 @@ public class FieldManager {
                         Object newEntity = entityConfiguration.createEntityInstance(field.getType().getName());
                         SortableValue val = new SortableValue(bean, (Serializable) newEntity, j, sb.toString());
                         middleFields.add(val);
-                        field.set(value, newEntity);
+                        accessor.set(value, newEntity);
                         componentClass = newEntity.getClass();
                         value = newEntity;
                     } catch (Exception e) {
@@ -171,7 +189,7 @@ public class FieldManager {
                             Object newEntity = entities[entities.length-1].newInstance();
                             SortableValue val = new SortableValue(bean, (Serializable) newEntity, j, sb.toString());
                             middleFields.add(val);
-                            field.set(value, newEntity);
+                            accessor.set(value, newEntity);
                             componentClass = newEntity.getClass();
                             value = newEntity;
                             LOG.info("Unable to find a reference to ("+field.getType().getName()+") in the EntityConfigurationManager. " +
@@ -179,7 +197,7 @@ public class FieldManager {
                         } else {
                             //Just use the field type
                             Object newEntity = field.getType().newInstance();
-                            field.set(value, newEntity);
+                            accessor.set(value, newEntity);
                             componentClass = newEntity.getClass();
                             value = newEntity;
                             LOG.debug("Unable to find a reference to ("+field.getType().getName()+") in the EntityConfigurationManager. " +
@@ -364,6 +382,28 @@ public class FieldManager {
         middleFields.clear();
     }
 
+    /**
+     * One segment of a property path, with the map key split off the field name if there is one
+     */
+    protected static class PathSegment {
+
+        protected final String token;
+        protected final String fieldName;
+        protected final String mapKey;
+
+        protected PathSegment(String token) {
+            this.token = token;
+            int separator = token.indexOf(MAPFIELDSEPARATOR);
+            if (separator >= 0) {
+                fieldName = token.substring(0, separator);
+                mapKey = token.substring(separator + MAPFIELDSEPARATOR.length());
+            } else {
+                fieldName = token;
+                mapKey = null;
+            }
+        }
+    }
+
     private class SortableValue implements Comparable<SortableValue> {
 
         private Integer pos;
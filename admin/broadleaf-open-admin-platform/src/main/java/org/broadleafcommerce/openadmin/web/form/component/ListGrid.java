@@ -80,6 +80,7 @@ public class ListGrid {
     protected int lowerCount;
     protected boolean totalCountLessThanPageSize;
     protected boolean promptSearch;
+    protected Boolean hasMoreRecords;
 
     protected AddMethodType addMethodType;
     protected String listGridType;
@@ -765,6 +766,14 @@ public class ListGrid {
         this.promptSearch = promptSearch;
     }
 
+    public Boolean getHasMoreRecords() {
+        return hasMoreRecords;
+    }
+
+    public void setHasMoreRecords(Boolean hasMoreRecords) {
+        this.hasMoreRecords = hasMoreRecords;
+    }
+
     public String getHelpText() { return helpText; }
 
     public void setHelpText(String helpText) { this.helpText = helpText; }
@@ -905,6 +905,7 @@ public class FormBuilderServiceImpl implements FormBuilderService {
         if (drs.getPromptSearch() != null) {
             listGrid.setPromptSearch(drs.getPromptSearch());
         }
+        listGrid.setHasMoreRecords(drs.getHasMoreRecords());
 
         return listGrid;
     }
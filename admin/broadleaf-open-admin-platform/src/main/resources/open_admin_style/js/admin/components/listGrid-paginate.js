@@ -95,6 +95,10 @@
         getTotalCountLessThanPageSize : function($tbody) {
             return $tbody.data('lessthanpagesize');
         },
+
+        getHasMore : function($tbody) {
+            return $tbody.data('hasmore');
+        },
         
         getRange : function(rangeDescription) {
             var seperator = rangeDescription.indexOf('-');
@@ -626,7 +630,9 @@
             } else {
                 $footer.find('.previous-page').css('display', 'none');
             }
-            if (totalRecords >= pageSize || (!totalCountLessThanPageSize && totalRecords - upperCount === 0)) {
+            var hasMore = this.getHasMore($tbody);
+            if (hasMore !== undefined ? hasMore === true
+                    : (totalRecords >= pageSize || (!totalCountLessThanPageSize && totalRecords - upperCount === 0))) {
                 $footer.find('.next-page').css('display', 'inline');
             } else {
                 $footer.find('.next-page').css('display', 'none');
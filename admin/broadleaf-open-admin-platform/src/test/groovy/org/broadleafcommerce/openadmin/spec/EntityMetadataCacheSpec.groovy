@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.spec
+
+import org.broadleafcommerce.openadmin.dto.BasicFieldMetadata
+import org.broadleafcommerce.openadmin.dto.FieldMetadata
+import org.broadleafcommerce.openadmin.server.dao.EntityMetadataCache
+
+import net.sf.ehcache.Cache
+import net.sf.ehcache.CacheManager
+import net.sf.ehcache.config.CacheConfiguration
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import spock.lang.Specification
+
+class EntityMetadataCacheSpec extends Specification {
+
+    EntityMetadataCache cache
+
+    Cache region
+
+    def setup() {
+        region = new Cache(new CacheConfiguration("entityMetadataCacheSpec", 1000))
+        CacheManager.getInstance().addCache(region)
+        cache = new EntityMetadataCache()
+        cache.cache = region
+    }
+
+    def cleanup() {
+        CacheManager.getInstance().removeCache(region.name)
+    }
+
+    def "concurrent requests for the same key build the metadata once"() {
+        setup:
+        AtomicInteger loads = new AtomicInteger()
+        CountDownLatch start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(8)
+        def loader = { ->
+            loads.incrementAndGet()
+            Thread.sleep(50)
+            return metadata("org.example.Product")
+        } as EntityMetadataCache.MetadataLoader
+
+        when:
+        def futures = (1..32).collect {
+            executor.submit({ ->
+                start.await()
+                cache.get("product", "org.example.Product", ArrayList, loader)
+            } as Callable)
+        }
+        start.countDown()
+        def results = futures.collect { it.get(10, TimeUnit.SECONDS) }
+        executor.shutdown()
+
+        then:
+        loads.get() == 1
+        results.every { it.is(results[0]) }
+        cache.missCount == 1
+        cache.hitCount + cache.waitCount == 31
+    }
+
+    def "a nested request for a key being built does not wait for itself"() {
+        when:
+        def result = cache.get("product", "org.example.Product", ArrayList, { ->
+            cache.get("product", "org.example.Product", ArrayList, { -> metadata("org.example.Sku") } as EntityMetadataCache.MetadataLoader)
+            return metadata("org.example.Product")
+        } as EntityMetadataCache.MetadataLoader)
+
+        then:
+        result.containsKey("org.example.Product")
+        cache.uncachedLoadCount == 1
+        cache.size() == 1
+    }
+
+    def "invalidation only removes the entries involving the given classes"() {
+        setup:
+        cache.get("product", "org.example.Product", ArrayList, { -> metadata("org.example.Sku") } as EntityMetadataCache.MetadataLoader)
+        cache.get("category", "org.example.Category", HashMap, { -> metadata("org.example.Category") } as EntityMetadataCache.MetadataLoader)
+
+        expect:
+        cache.invalidate(["org.example.Sku"]) == 1
+        cache.size() == 1
+        cache.invalidate(["java.util.AbstractMap"]) == 1
+        cache.size() == 0
+    }
+
+    def "the least recently used entries are evicted past the size of the region"() {
+        setup:
+        region.cacheConfiguration.maxEntriesLocalHeap = 10
+
+        when:
+        (1..30).each { i ->
+            cache.get("key" + i, "org.example.Product", ArrayList, { -> metadata("org.example.Product") } as EntityMetadataCache.MetadataLoader)
+            Thread.sleep(1)
+        }
+
+        then:
+        cache.size() <= 10
+        cache.evictionCount >= 20
+        cache.get("key30", "org.example.Product", ArrayList, { -> throw new IllegalStateException() } as EntityMetadataCache.MetadataLoader) != null
+    }
+
+    def "entries expire individually"() {
+        setup:
+        cache.timeToLiveMillis = 1000
+        AtomicInteger loads = new AtomicInteger()
+        def loader = { ->
+            loads.incrementAndGet()
+            return metadata("org.example.Product")
+        } as EntityMetadataCache.MetadataLoader
+
+        when:
+        cache.get("product", "org.example.Product", ArrayList, loader)
+        cache.get("product", "org.example.Product", ArrayList, loader)
+        Thread.sleep(1100)
+        cache.get("product", "org.example.Product", ArrayList, loader)
+
+        then:
+        loads.get() == 2
+    }
+
+    protected Map<String, FieldMetadata> metadata(String owningClass) {
+        BasicFieldMetadata md = new BasicFieldMetadata()
+        md.inheritedFromType = owningClass
+        md.owningClass = owningClass
+        return [(owningClass): md]
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.spec
+
+import org.broadleafcommerce.openadmin.dto.CriteriaTransferObject
+import org.broadleafcommerce.openadmin.dto.PersistencePackage
+import org.broadleafcommerce.openadmin.server.service.persistence.EstimatedSizeFetchTypeDetection
+import org.broadleafcommerce.openadmin.server.service.type.FetchType
+
+import spock.lang.Specification
+
+class FetchTypeDetectionSpec extends Specification {
+
+    Map<String, Long> counts = [:]
+    int countQueries = 0
+    EstimatedSizeFetchTypeDetection detection
+
+    def setup() {
+        detection = new EstimatedSizeFetchTypeDetection() {
+            @Override
+            protected long countRecords(String ceilingEntity) {
+                countQueries++
+                return counts.containsKey(ceilingEntity) ? counts[ceilingEntity] : -1L
+            }
+        }
+    }
+
+    def "configured entities are large without being counted"() {
+        setup:
+        detection.largeEntities = "org.example.Order, org.example.Customer"
+        detection.init()
+
+        expect:
+        detection.getFetchType(fetch("org.example.Order"), new CriteriaTransferObject()) == FetchType.LARGERESULTSET
+        detection.getFetchType(fetch("org.example.Customer"), new CriteriaTransferObject()) == FetchType.LARGERESULTSET
+        detection.getFetchType(fetch("org.example.Product"), new CriteriaTransferObject()) == FetchType.DEFAULT
+        countQueries == 0
+    }
+
+    def "entities reaching the threshold are large and their estimate is counted once"() {
+        setup:
+        detection.threshold = 1000
+        detection.init()
+        counts["org.example.Order"] = 5000L
+        counts["org.example.Product"] = 20L
+
+        when:
+        def results = (1..10).collect {
+            [detection.getFetchType(fetch("org.example.Order"), new CriteriaTransferObject()),
+             detection.getFetchType(fetch("org.example.Product"), new CriteriaTransferObject())]
+        }
+
+        then:
+        results.every { it == [FetchType.LARGERESULTSET, FetchType.DEFAULT] }
+        countQueries == 2
+    }
+
+    def "expired estimates are counted again"() {
+        setup:
+        detection.threshold = 1000
+        detection.estimateTtl = 20
+        detection.init()
+        counts["org.example.Order"] = 10L
+
+        when:
+        def before = detection.getFetchType(fetch("org.example.Order"), new CriteriaTransferObject())
+        counts["org.example.Order"] = 5000L
+        Thread.sleep(40)
+        def after = detection.getFetchType(fetch("org.example.Order"), new CriteriaTransferObject())
+
+        then:
+        before == FetchType.DEFAULT
+        after == FetchType.LARGERESULTSET
+        countQueries == 2
+    }
+
+    def "nothing is counted while the threshold is disabled"() {
+        setup:
+        detection.init()
+
+        expect:
+        detection.getFetchType(fetch("org.example.Order"), new CriteriaTransferObject()) == FetchType.DEFAULT
+        !detection.shouldPromptForSearch(fetch("org.example.Order"), new CriteriaTransferObject())
+        countQueries == 0
+    }
+
+    protected PersistencePackage fetch(String ceilingEntity) {
+        PersistencePackage persistencePackage = new PersistencePackage()
+        persistencePackage.ceilingEntityFullyQualifiedClassname = ceilingEntity
+        return persistencePackage
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.spec
+
+import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldAccessor
+import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldManager
+import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldNotAvailableException
+
+import spock.lang.Specification
+
+class FieldManagerSpec extends Specification {
+
+    FieldManager fieldManager = new FieldManager(null, null)
+
+    def "each segment is resolved against the runtime class of its value"() {
+        setup:
+        def first = new Holder(child: new FirstChild(label: "first"))
+        def second = new Holder(child: new SecondChild(label: "second"))
+
+        expect:
+        fieldManager.getFieldValue(first, "child.label") == "first"
+        fieldManager.getFieldValue(second, "child.label") == "second"
+        fieldManager.getFieldValue(new Holder(), "child.label") == null
+    }
+
+    def "map keys are read and written"() {
+        setup:
+        def holder = new Holder(attributes: [color: "red"])
+
+        when:
+        fieldManager.setFieldValue(holder, "attributes---size", "large")
+
+        then:
+        fieldManager.getFieldValue(holder, "attributes---color") == "red"
+        fieldManager.getFieldValue(holder, "attributes---size") == "large"
+    }
+
+    def "nested and primitive values are written"() {
+        setup:
+        def holder = new Holder(child: new SecondChild())
+
+        when:
+        fieldManager.setFieldValue(holder, "child.label", "changed")
+        fieldManager.setFieldValue(holder, "count", 5)
+
+        then:
+        holder.child.label == "changed"
+        holder.count == 5
+    }
+
+    def "a missing field is reported"() {
+        when:
+        fieldManager.getFieldValue(new Holder(), "unknown")
+
+        then:
+        thrown(FieldNotAvailableException)
+    }
+
+    def "accessors are shared per class and field"() {
+        expect:
+        FieldAccessor.forField(FirstChild, "label").is(FieldAccessor.forField(FirstChild, "label"))
+        !FieldAccessor.forField(FirstChild, "label").is(FieldAccessor.forField(SecondChild, "label"))
+        FieldAccessor.forField(FirstChild, "unknown") == null
+    }
+
+    static class Holder {
+        Object child
+        Map<String, String> attributes = [:]
+        int count
+    }
+
+    static class Base {
+        String label
+    }
+
+    static class FirstChild extends Base {
+    }
+
+    static class SecondChild {
+        String label
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.spec
+
+import org.broadleafcommerce.openadmin.dto.override.FieldMetadataOverride
+import org.broadleafcommerce.openadmin.dto.override.MetadataOverride
+import org.broadleafcommerce.openadmin.server.dao.EntityMetadataCacheManager
+import org.broadleafcommerce.openadmin.server.dao.MetadataOverridesChangedEvent
+import org.broadleafcommerce.openadmin.server.service.MetadataOverrideServiceImpl
+import org.springframework.context.ApplicationContext
+import org.springframework.context.event.ContextRefreshedEvent
+
+import spock.lang.Specification
+
+class MetadataOverrideServiceSpec extends Specification {
+
+    MetadataOverrideServiceImpl service
+    ApplicationContext applicationContext = Mock()
+
+    def setup() {
+        service = new MetadataOverrideServiceImpl()
+        service.metadataOverrides = new LinkedHashMap<String, Map<String, MetadataOverride>>()
+        service.applicationContext = applicationContext
+    }
+
+    def "saving the overrides of a ceiling entity invalidates that entity"() {
+        when:
+        service.saveOverrides(ArrayList.name, [name: new FieldMetadataOverride()])
+
+        then:
+        1 * applicationContext.publishEvent({ MetadataOverridesChangedEvent e -> e.classNames == [ArrayList.name] as Set })
+        service.readOverrides(ArrayList.name).containsKey("name")
+    }
+
+    def "saving the overrides of a configuration key invalidates every entity"() {
+        when:
+        service.saveOverrides("productDirectEdit", [name: new FieldMetadataOverride()])
+
+        then:
+        1 * applicationContext.publishEvent({ MetadataOverridesChangedEvent e -> e.allClasses })
+    }
+
+    def "removing overrides that do not exist publishes nothing"() {
+        when:
+        service.removeOverrides("productDirectEdit")
+
+        then:
+        0 * applicationContext.publishEvent(_)
+    }
+
+    def "the metadata warm up only starts with the root context"() {
+        setup:
+        EntityMetadataCacheManager manager = new EntityMetadataCacheManager()
+        manager.warmupSectionCount = 1
+        manager.cacheEntityMetaDataTtl = -1
+        ApplicationContext childContext = Mock()
+        childContext.getParent() >> applicationContext
+
+        when:
+        manager.onContextRefreshed(new ContextRefreshedEvent(childContext))
+
+        then:
+        0 * childContext.containsBean(_)
+    }
+
+}
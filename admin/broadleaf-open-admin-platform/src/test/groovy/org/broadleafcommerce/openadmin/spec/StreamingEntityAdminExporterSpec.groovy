@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.spec
+
+import org.broadleafcommerce.common.money.Money
+import org.broadleafcommerce.common.presentation.client.SupportedFieldType
+import org.broadleafcommerce.common.web.BroadleafRequestContext
+import org.broadleafcommerce.openadmin.server.service.export.StreamingEntityAdminExporter
+
+import com.fasterxml.jackson.core.JsonFactory
+import org.springframework.context.support.StaticMessageSource
+
+import com.fasterxml.jackson.core.JsonGenerator
+
+import spock.lang.Specification
+
+class StreamingEntityAdminExporterSpec extends Specification {
+
+    StreamingEntityAdminExporter exporter = new StreamingEntityAdminExporter()
+
+    def "csv values are quoted only when they need to be"() {
+        setup:
+        StringWriter writer = new StringWriter()
+
+        when:
+        exporter.writeCsvRecord(writer, ["plain", "a,b", "say \"hi\"", "two\nlines", null, new BigDecimal("1E+3")] as Object[])
+
+        then:
+        writer.toString() == "plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",,1000\r\n"
+    }
+
+    def "csv text that a spreadsheet would read as a formula is escaped"() {
+        setup:
+        StringWriter writer = new StringWriter()
+
+        when:
+        exporter.writeCsvRecord(writer, ["=1+2", "+cmd", "-2+3", "@SUM(A1)", "\tx", "=HYPERLINK(\"x\",\"y\")", "a=b",
+                                         -5L, new BigDecimal("-1.5")] as Object[])
+
+        then:
+        writer.toString() == "'=1+2,'+cmd,'-2+3,'@SUM(A1),'\tx,\"'=HYPERLINK(\"\"x\"\",\"\"y\"\")\",a=b,-5,-1.5\r\n"
+    }
+
+    def "json records are written one per line with typed values"() {
+        setup:
+        StringWriter writer = new StringWriter()
+        JsonFactory jsonFactory = new JsonFactory()
+        jsonFactory.setRootValueSeparator(null)
+        JsonGenerator generator = jsonFactory.createGenerator(writer)
+        def columns = [new StreamingEntityAdminExporter.ExportColumn("id", "Id"),
+                       new StreamingEntityAdminExporter.ExportColumn("name", "Name"),
+                       new StreamingEntityAdminExporter.ExportColumn("active", "Active")]
+
+        when:
+        exporter.writeJsonRecord(generator, columns, [1L, "first", true] as Object[])
+        exporter.writeJsonRecord(generator, columns, [2L, null, false] as Object[])
+        generator.flush()
+
+        then:
+        writer.toString() == '{"id":1,"name":"first","active":true}\n{"id":2,"name":null,"active":false}\n'
+    }
+
+    def "values are converted to strings, numbers and booleans"() {
+        expect:
+        exporter.toExportValue(new Money(new BigDecimal("12.50"), "USD"), null) == new BigDecimal("12.50")
+        exporter.toExportValue('Y' as Character, null) == "Y"
+        exporter.toExportValue(SupportedFieldType.STRING, null) == "STRING"
+        exporter.toExportValue([1, 2], null) == null
+        exporter.toExportValue(7, null) == 7
+    }
+
+    def "the file name follows the format"() {
+        setup:
+        exporter.name = "customers"
+
+        expect:
+        exporter.fileName == "customers.csv"
+
+        when:
+        exporter.format = StreamingEntityAdminExporter.Format.JSONL
+
+        then:
+        exporter.fileName == "customers.jsonl"
+    }
+
+    def "headers are the translated friendly names"() {
+        setup:
+        StaticMessageSource messageSource = new StaticMessageSource()
+        messageSource.addMessage("CustomerImpl_First_Name", Locale.getDefault(), "First Name")
+        BroadleafRequestContext context = new BroadleafRequestContext()
+        context.setMessageSource(messageSource)
+        BroadleafRequestContext.setBroadleafRequestContext(context)
+
+        expect:
+        exporter.getHeader("firstName", "CustomerImpl_First_Name") == "First Name"
+        exporter.getHeader("lastName", "CustomerImpl_Last_Name") == "CustomerImpl_Last_Name"
+        exporter.getHeader("id", null) == "id"
+
+        cleanup:
+        BroadleafRequestContext.setBroadleafRequestContext(null)
+    }
+}
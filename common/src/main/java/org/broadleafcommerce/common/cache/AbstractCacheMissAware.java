@@ -190,7 +190,11 @@ public abstract class AbstractCacheMissAware {
             response = getObjectFromCache(key, cacheName);
         }
         if (response == null) {
+            long start = System.nanoTime();
             response = retrieval.retrievePersistentObject();
+            if (allowL2Cache) {
+                statisticsService.addCacheLoadTime(statisticsName, System.nanoTime() - start);
+            }
             if (response == null) {
                 response = nullResponse;
             }
@@ -19,40 +19,104 @@ package org.broadleafcommerce.common.cache;
 
 import java.math.BigDecimal;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.util.LatencyHistogram;
 
 /**
+ * Counters of a single cache statistic. They are striped {@link LongAdder}s, so any number of threads can record
+ * requests against the same statistic without contending on it.
+ *
  * @author Jeff Fischer
  */
 public class CacheStat {
 
-    protected AtomicLong requestCount = new AtomicLong(0L);
-    protected AtomicLong cacheHitCount = new AtomicLong(0L);
-    protected Long lastLogTime = SystemTime.asMillis(true);
+    protected LongAdder requestCount = new LongAdder();
+    protected LongAdder cacheHitCount = new LongAdder();
+    protected LatencyHistogram loadTimes = new LatencyHistogram();
+    protected AtomicLong lastLogTime = new AtomicLong(SystemTime.asMillis(true));
 
     public Long getCacheHitCount() {
-        return cacheHitCount.longValue();
+        return cacheHitCount.sum();
     }
 
     public Long getLastLogTime() {
-        return lastLogTime;
+        return lastLogTime.get();
     }
 
-    public synchronized void setLastLogTime(Long lastLogTime) {
-        this.lastLogTime = lastLogTime;
+    public void setLastLogTime(Long lastLogTime) {
+        this.lastLogTime.set(lastLogTime);
+    }
+
+    /**
+     * Moves the last log time to {@code now} if it is more than {@code logResolution} milliseconds ago
+     *
+     * @return whether this caller moved it, and so should log the statistic
+     */
+    public boolean claimLog(long now, long logResolution) {
+        long last = lastLogTime.get();
+        return last + logResolution < now && lastLogTime.compareAndSet(last, now);
     }
 
     public Long getRequestCount() {
-        return requestCount.longValue();
+        return requestCount.sum();
     }
 
     public void incrementRequest() {
-        requestCount.incrementAndGet();
+        requestCount.increment();
     }
 
     public void incrementHit() {
-        cacheHitCount.incrementAndGet();
+        cacheHitCount.increment();
+    }
+
+    public void incrementLoad(long loadTimeNanos) {
+        loadTimes.record(loadTimeNanos);
+    }
+
+    public Long getLoadCount() {
+        return loadTimes.getCount();
+    }
+
+    public Long getTotalLoadTimeNanos() {
+        return loadTimes.getTotalNanos();
+    }
+
+    /**
+     * @return the distribution of the load times
+     */
+    public LatencyHistogram getLoadTimes() {
+        return loadTimes;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return an upper bound of the given load time percentile in milliseconds, or -1 if nothing has been loaded yet
+     */
+    public BigDecimal getLoadTimePercentileMillis(double percentile) {
+        if (getLoadCount() == 0) {
+            return new BigDecimal(-1);
+        }
+        return new BigDecimal(loadTimes.getPercentileMicros(percentile)).divide(new BigDecimal(1000), 3,
+                BigDecimal.ROUND_HALF_UP);
+    }
+
+    public void reset() {
+        requestCount.reset();
+        cacheHitCount.reset();
+        loadTimes.reset();
+    }
+
+    /**
+     * @return the average load time in milliseconds, or -1 if nothing has been loaded yet
+     */
+    public BigDecimal getAverageLoadTimeMillis() {
+        if (getLoadCount() == 0) {
+            return new BigDecimal(-1);
+        }
+        return new BigDecimal(getTotalLoadTimeNanos()).divide(new BigDecimal(getLoadCount() * 1000000L), 3,
+                BigDecimal.ROUND_HALF_UP);
     }
 
     public BigDecimal getHitRate() {
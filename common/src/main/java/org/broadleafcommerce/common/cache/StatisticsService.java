@@ -17,12 +17,38 @@
  */
 package org.broadleafcommerce.common.cache;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * @author Jeff Fischer
  */
 public interface StatisticsService {
     void addCacheStat(String key, boolean isHit);
 
+    /**
+     * Records the time taken to load (e.g. compile or read from the database) a value that was not found in the cache
+     * tracked under the given key. Load times are not tracked by default.
+     *
+     * @param key the cache statistic key
+     * @param loadTimeNanos the elapsed load time in nanoseconds
+     */
+    default void addCacheLoadTime(String key, long loadTimeNanos) {
+    }
+
+    /**
+     * @return the statistics recorded so far, by key, or an empty map for implementations that do not expose them
+     */
+    default Map<String, CacheStat> getCacheStats() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Resets the counters of every statistic. Does nothing by default.
+     */
+    default void resetStatistics() {
+    }
+
     Long getLogResolution();
 
     void setLogResolution(Long logResolution);
@@ -25,13 +25,14 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jmx.export.naming.SelfNaming;
 import org.springframework.jmx.support.ObjectNameManager;
 import org.springframework.stereotype.Service;
-import java.math.BigDecimal;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
@@ -53,6 +54,11 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
 
     private static final Log LOG = LogFactory.getLog(StatisticsServiceImpl.class);
 
+    protected static final String AVERAGE_LOAD_TIME_SUFFIX = ".AVERAGE_LOAD_MILLIS";
+    protected static final String P50_LOAD_TIME_SUFFIX = ".P50_LOAD_MILLIS";
+    protected static final String P99_LOAD_TIME_SUFFIX = ".P99_LOAD_MILLIS";
+    protected static final String REQUEST_COUNT_SUFFIX = ".REQUEST_COUNT";
+
     @Value("${cache.stat.log.resolution}")
     protected Long logResolution = 30000L;
 
@@ -60,8 +66,12 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
 
     protected StatisticsServiceLogAdapter adapter;
 
-    protected Map<String, CacheStat> cacheStats = Collections.synchronizedMap(new HashMap<String, CacheStat>());
+    protected ConcurrentMap<String, CacheStat> cacheStats = new ConcurrentHashMap<String, CacheStat>();
 
+    /**
+     * Recording a statistic takes no lock: the statistic is looked up in a concurrent map and its striped counters are
+     * incremented. The clock is only read, and the hit rate only logged, when info logging is enabled.
+     */
     @Override
     public void addCacheStat(String key, boolean isHit) {
         CacheStat myStat = getCacheStat(key);
@@ -69,21 +79,45 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
             myStat.incrementHit();
         }
         myStat.incrementRequest();
-        if (myStat.getLastLogTime() + logResolution < SystemTime.asMillis()) {
-            myStat.setLastLogTime(SystemTime.asMillis());
-            BigDecimal percentage = myStat.getHitRate();
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Cache hit percentage for " + key + " is: " + percentage.toString() + "%");
+        if (LOG.isInfoEnabled() && myStat.claimLog(SystemTime.asMillis(), logResolution)) {
+            String message = "Cache hit percentage for " + key + " is: " + myStat.getHitRate().toString() + "%";
+            if (myStat.getLoadCount() > 0) {
+                message += " (load time average " + myStat.getAverageLoadTimeMillis().toString() + "ms, p50 <"
+                        + myStat.getLoadTimePercentileMillis(50D).toString() + "ms, p99 <"
+                        + myStat.getLoadTimePercentileMillis(99D).toString() + "ms over " + myStat.getLoadCount()
+                        + " loads)";
             }
+            LOG.info(message);
         }
     }
 
+    @Override
+    public void addCacheLoadTime(String key, long loadTimeNanos) {
+        getCacheStat(key).incrementLoad(loadTimeNanos);
+    }
+
     protected CacheStat getCacheStat(String key) {
-        if (!cacheStats.containsKey(key)) {
-            CacheStat stat = new CacheStat();
-            cacheStats.put(key, stat);
+        CacheStat stat = cacheStats.get(key);
+        if (stat == null) {
+            CacheStat created = new CacheStat();
+            stat = cacheStats.putIfAbsent(key, created);
+            if (stat == null) {
+                stat = created;
+            }
+        }
+        return stat;
+    }
+
+    @Override
+    public Map<String, CacheStat> getCacheStats() {
+        return Collections.unmodifiableMap(new TreeMap<String, CacheStat>(cacheStats));
+    }
+
+    @Override
+    public void resetStatistics() {
+        for (CacheStat stat : cacheStats.values()) {
+            stat.reset();
         }
-        return cacheStats.get(key);
     }
 
     @Override
@@ -123,6 +157,22 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         if (attribute.equals("LOG_RESOLUTION")) {
             return getLogResolution();
         }
+        if (attribute.endsWith(AVERAGE_LOAD_TIME_SUFFIX)) {
+            String key = attribute.substring(0, attribute.length() - AVERAGE_LOAD_TIME_SUFFIX.length());
+            return getCacheStat(key).getAverageLoadTimeMillis().doubleValue();
+        }
+        if (attribute.endsWith(P50_LOAD_TIME_SUFFIX)) {
+            String key = attribute.substring(0, attribute.length() - P50_LOAD_TIME_SUFFIX.length());
+            return getCacheStat(key).getLoadTimePercentileMillis(50D).doubleValue();
+        }
+        if (attribute.endsWith(P99_LOAD_TIME_SUFFIX)) {
+            String key = attribute.substring(0, attribute.length() - P99_LOAD_TIME_SUFFIX.length());
+            return getCacheStat(key).getLoadTimePercentileMillis(99D).doubleValue();
+        }
+        if (attribute.endsWith(REQUEST_COUNT_SUFFIX)) {
+            String key = attribute.substring(0, attribute.length() - REQUEST_COUNT_SUFFIX.length());
+            return getCacheStat(key).getRequestCount();
+        }
         return getCacheStat(attribute).getHitRate().doubleValue();
     }
 
@@ -139,6 +189,15 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         AttributeList list = new AttributeList();
         for (Map.Entry<String, CacheStat> stats : cacheStats.entrySet()) {
             list.add(new Attribute(stats.getKey(), stats.getValue().getHitRate().doubleValue()));
+            list.add(new Attribute(stats.getKey() + REQUEST_COUNT_SUFFIX, stats.getValue().getRequestCount()));
+            if (stats.getValue().getLoadCount() > 0) {
+                list.add(new Attribute(stats.getKey() + AVERAGE_LOAD_TIME_SUFFIX,
+                        stats.getValue().getAverageLoadTimeMillis().doubleValue()));
+                list.add(new Attribute(stats.getKey() + P50_LOAD_TIME_SUFFIX,
+                        stats.getValue().getLoadTimePercentileMillis(50D).doubleValue()));
+                list.add(new Attribute(stats.getKey() + P99_LOAD_TIME_SUFFIX,
+                        stats.getValue().getLoadTimePercentileMillis(99D).doubleValue()));
+            }
         }
         return list;
     }
@@ -164,6 +223,9 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         } else if (actionName.equals("disable")) {
             disableLogging();
             return null;
+        } else if (actionName.equals("reset")) {
+            resetStatistics();
+            return null;
         }
         throw new MBeanException(new RuntimeException("Not Supported"));
     }
@@ -178,6 +240,12 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         SortedSet<String> names = new TreeSet<String>();
         for (Map.Entry<String, CacheStat> stats : cacheStats.entrySet()) {
             names.add(stats.getKey());
+            names.add(stats.getKey() + REQUEST_COUNT_SUFFIX);
+            if (stats.getValue().getLoadCount() > 0) {
+                names.add(stats.getKey() + AVERAGE_LOAD_TIME_SUFFIX);
+                names.add(stats.getKey() + P50_LOAD_TIME_SUFFIX);
+                names.add(stats.getKey() + P99_LOAD_TIME_SUFFIX);
+            }
         }
         MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[names.size()];
         Iterator<String> it = names.iterator();
@@ -185,7 +253,7 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
             String name = it.next();
             attrs[i] = new MBeanAttributeInfo(
                     name,
-                    "java.lang.Double",
+                    name.endsWith(REQUEST_COUNT_SUFFIX) ? "java.lang.Long" : "java.lang.Double",
                     name,
                     true,   // isReadable
                     false,   // isWritable
@@ -211,6 +279,12 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
                     "Disable statistic logging",
                     null,   // no parameters
                     "void",
+                    MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo(
+                    "reset",
+                    "Reset the statistics",
+                    null,   // no parameters
+                    "void",
                     MBeanOperationInfo.ACTION)
         };
         return new MBeanInfo(
@@ -0,0 +1,356 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extensibility;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content addressed, on-disk cache of the artifacts that are rebuilt on every start although their inputs rarely
+ * change: the bytecode woven by {@link org.broadleafcommerce.common.extensibility.jpa.copy.DirectCopyClassTransformer}
+ * and the application context xml merged by {@link org.broadleafcommerce.common.extensibility.context.merge.MergeManager}.
+ * Callers key entries by a hash of everything the artifact is built from, so an entry is never stale, it simply stops
+ * being used once an input changes.
+ * </p>
+ * Both run before the Spring properties are available, so the cache is configured through the
+ * {@link #CACHE_DIRECTORY_SYSTEM_PROPERTY} system property and is disabled when that is not set. Every entry carries
+ * a checksum of its content, and entries that fail the check (a partial write, for example) are deleted and treated
+ * as misses. Entries are written to a temporary file first and then moved in place, so several JVMs can share the
+ * directory. Results that are "nothing to do" are kept as markers in a single append-only file per namespace rather
+ * than as one file each.
+ * </p>
+ * Apart from commons-logging, which the class transformers log through as well, only JDK classes are used here, so that
+ * using the cache from inside a transformer does not load classes that may themselves be waiting to be transformed.
+ */
+public class StartupArtifactCache {
+
+    /**
+     * The directory to keep the cache in. The cache is disabled when this is not set.
+     */
+    public static final String CACHE_DIRECTORY_SYSTEM_PROPERTY = "org.broadleafcommerce.startup.cache.dir";
+
+    /**
+     * Any value that should invalidate every entry when changed, a build number for example
+     */
+    public static final String CACHE_SALT_SYSTEM_PROPERTY = "org.broadleafcommerce.startup.cache.salt";
+
+    private static final Log LOG = LogFactory.getLog(StartupArtifactCache.class);
+
+    protected static final int ENTRY_MAGIC = 0x424c5343;
+    protected static final String MARKER_FILE = "markers.idx";
+    protected static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static volatile StartupArtifactCache instance;
+
+    protected final File directory;
+    protected final String salt;
+    protected final ConcurrentMap<String, Set<String>> markers = new ConcurrentHashMap<>();
+
+    protected final AtomicLong hitCount = new AtomicLong();
+    protected final AtomicLong missCount = new AtomicLong();
+    protected final AtomicLong writeCount = new AtomicLong();
+    protected final AtomicLong invalidCount = new AtomicLong();
+
+    public StartupArtifactCache(File directory, String salt) {
+        this.directory = directory;
+        this.salt = salt == null ? "" : salt;
+    }
+
+    /**
+     * @return the cache configured through the system properties, disabled if no directory was given
+     */
+    public static StartupArtifactCache getInstance() {
+        StartupArtifactCache cache = instance;
+        if (cache == null) {
+            synchronized (StartupArtifactCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    String path = System.getProperty(CACHE_DIRECTORY_SYSTEM_PROPERTY);
+                    File dir = path == null || path.trim().isEmpty() ? null : new File(path.trim());
+                    if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                        LOG.warn("Unable to create the startup cache directory " + dir + ", the startup cache is disabled");
+                        dir = null;
+                    }
+                    cache = new StartupArtifactCache(dir, System.getProperty(CACHE_SALT_SYSTEM_PROPERTY));
+                    if (dir != null) {
+                        LOG.info("Using the startup cache in " + dir);
+                    }
+                    instance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * @return a digest already seeded with the cache salt and the Broadleaf version, to be completed with the inputs
+     * of an entry
+     */
+    public MessageDigest newKeyDigest() {
+        MessageDigest digest = newDigest();
+        update(digest, salt);
+        update(digest, StartupArtifactCache.class.getPackage() == null ? null
+                : StartupArtifactCache.class.getPackage().getImplementationVersion());
+        return digest;
+    }
+
+    /**
+     * @return the cached bytes, or null if there is no valid entry for the key
+     */
+    public byte[] get(String namespace, String key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        File file = getEntryFile(namespace, key);
+        if (!file.isFile()) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != ENTRY_MAGIC) {
+                throw new IOException("Unknown entry format");
+            }
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            byte[] checksum = new byte[20];
+            in.readFully(checksum);
+            if (!Arrays.equals(checksum, newDigest().digest(value))) {
+                throw new IOException("Checksum mismatch");
+            }
+            hitCount.incrementAndGet();
+            return value;
+        } catch (IOException | RuntimeException e) {
+            invalidCount.incrementAndGet();
+            missCount.incrementAndGet();
+            LOG.warn("Discarding the invalid startup cache entry " + file + ": " + e.getMessage());
+            if (!file.delete() && LOG.isDebugEnabled()) {
+                LOG.debug("Unable to delete " + file);
+            }
+            return null;
+        }
+    }
+
+    public void put(String namespace, String key, byte[] value) {
+        if (!isEnabled()) {
+            return;
+        }
+        File file = getEntryFile(namespace, key);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(value.length + 28);
+        try {
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(ENTRY_MAGIC);
+            out.writeInt(value.length);
+            out.write(value);
+            out.write(newDigest().digest(value));
+            out.flush();
+            writeAtomically(file, buffer.toByteArray());
+            writeCount.incrementAndGet();
+        } catch (IOException e) {
+            LOG.warn("Unable to write the startup cache entry " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return whether {@link #addMarker(String, String)} was called for the key, in this or an earlier run
+     */
+    public boolean hasMarker(String namespace, String key) {
+        if (!isEnabled()) {
+            return false;
+        }
+        boolean found = getMarkers(namespace).contains(key);
+        if (found) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return found;
+    }
+
+    public void addMarker(String namespace, String key) {
+        if (!isEnabled()) {
+            return;
+        }
+        Set<String> keys = getMarkers(namespace);
+        synchronized (keys) {
+            if (!keys.add(key)) {
+                return;
+            }
+            File file = new File(new File(directory, namespace), MARKER_FILE);
+            file.getParentFile().mkdirs();
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.US_ASCII)) {
+                writer.write(key + "\n");
+                writeCount.incrementAndGet();
+            } catch (IOException e) {
+                LOG.warn("Unable to write to the startup cache marker file " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    protected Set<String> getMarkers(String namespace) {
+        Set<String> keys = markers.get(namespace);
+        if (keys == null) {
+            keys = readMarkers(new File(new File(directory, namespace), MARKER_FILE));
+            Set<String> existing = markers.putIfAbsent(namespace, keys);
+            if (existing != null) {
+                keys = existing;
+            }
+        }
+        return keys;
+    }
+
+    protected Set<String> readMarkers(File file) {
+        Set<String> keys = new HashSet<>();
+        if (file.isFile()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.US_ASCII))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // a line cut short by a crash does not have the length of a key and is ignored
+                    if (line.length() == 40) {
+                        keys.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                LOG.warn("Unable to read the startup cache marker file " + file + ": " + e.getMessage());
+            }
+        }
+        return Collections.synchronizedSet(keys);
+    }
+
+    protected File getEntryFile(String namespace, String key) {
+        return new File(new File(new File(directory, namespace), key.substring(0, 2)), key + ".bin");
+    }
+
+    protected void writeAtomically(File file, byte[] content) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create " + dir);
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                out.write(content);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (temp.exists()) {
+                temp.delete();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public long getInvalidCount() {
+        return invalidCount.get();
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return the SHA-1 of everything the stream returns, as hex, or null if it could not be read
+     */
+    public static String hash(InputStream in) {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return toHex(digest.digest());
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // do nothing
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.broadleafcommerce.common.extensibility.context.merge;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.extensibility.StartupArtifactCache;
 import org.broadleafcommerce.common.extensibility.context.merge.exceptions.MergeException;
 import org.broadleafcommerce.common.extensibility.context.merge.exceptions.MergeManagerSetupException;
 import org.broadleafcommerce.common.extensibility.context.merge.handlers.MergeHandler;
@@ -36,6 +37,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -44,6 +46,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeSet;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -58,6 +61,9 @@ import javax.xml.transform.stream.StreamResult;
  * This class manages all xml merge interactions with callers. It is responsible for
  * not only loading the handler configurations, but also for cycling through the handlers
  * in a prioritized fashion and exporting the final merged document.
+ * </p>
+ * When the {@link StartupArtifactCache} is enabled, merged documents are kept on disk keyed by a hash of the two
+ * source documents and the merge handler configuration, so later starts skip parsing and merging unchanged sources.
  *
  * @author jfischer
  *
@@ -77,6 +83,8 @@ public class MergeManager {
 
     private static final Log LOG = LogFactory.getLog(MergeManager.class);
 
+    protected static final String CACHE_NAMESPACE = "merged-xml";
+
     private static DocumentBuilder builder;
 
     static {
@@ -93,11 +101,17 @@ public class MergeManager {
 
     private MergeHandler[] handlers;
 
+    /**
+     * Hash of the merge handler configuration, part of the key of cached merge results
+     */
+    private byte[] configurationFingerprint;
+
     public MergeManager() throws MergeManagerSetupException {
         try {
             Properties props = loadProperties();
             removeSkippedMergeComponents(props);
             setHandlers(props);
+            setConfigurationFingerprint(props);
         } catch (IOException e) {
             throw new MergeManagerSetupException(e);
         } catch (ClassNotFoundException e) {
@@ -234,6 +248,40 @@ public class MergeManager {
      * @throws org.broadleafcommerce.common.extensibility.context.merge.exceptions.MergeException
      */
     public ResourceInputStream merge(ResourceInputStream stream1, ResourceInputStream stream2) throws MergeException {
+        StartupArtifactCache cache = StartupArtifactCache.getInstance();
+        byte[] itemArray;
+        if (cache.isEnabled()) {
+            byte[] source1;
+            byte[] source2;
+            try {
+                source1 = IOUtils.toByteArray(stream1);
+                source2 = IOUtils.toByteArray(stream2);
+            } catch (IOException e) {
+                throw new MergeException(e);
+            }
+            MessageDigest digest = cache.newKeyDigest();
+            digest.update(configurationFingerprint);
+            StartupArtifactCache.update(digest, String.valueOf(source1.length));
+            digest.update(source1);
+            digest.update(source2);
+            String key = StartupArtifactCache.toHex(digest.digest());
+            itemArray = cache.get(CACHE_NAMESPACE, key);
+            if (itemArray == null) {
+                itemArray = mergeDocuments(new ByteArrayInputStream(source1), new ByteArrayInputStream(source2));
+                cache.put(CACHE_NAMESPACE, key, itemArray);
+            } else if (LOG.isDebugEnabled()) {
+                LOG.debug("Reused the cached merge of " + stream1 + " and " + stream2);
+            }
+        } else {
+            itemArray = mergeDocuments(stream1, stream2);
+        }
+        return new ResourceInputStream(new ByteArrayInputStream(itemArray), stream2.getName(), stream1.getNames());
+    }
+
+    /**
+     * @return the bytes of the document resulting from merging the second document into the first
+     */
+    protected byte[] mergeDocuments(InputStream stream1, InputStream stream2) throws MergeException {
         try {
             Document doc1 = builder.parse(stream1);
             Document doc2 = builder.parse(stream2);
@@ -272,9 +320,7 @@ public class MergeManager {
                 }
             }
 
-            byte[] itemArray = baos.toByteArray();
-
-            return new ResourceInputStream(new ByteArrayInputStream(itemArray), stream2.getName(), stream1.getNames());
+            return baos.toByteArray();
         } catch (Exception e) {
             throw new MergeException(e);
         }
@@ -335,6 +381,15 @@ public class MergeManager {
         Arrays.sort(this.handlers);
     }
 
+    private void setConfigurationFingerprint(Properties props) {
+        MessageDigest digest = StartupArtifactCache.newDigest();
+        for (String key : new TreeSet<>(props.stringPropertyNames())) {
+            StartupArtifactCache.update(digest, key);
+            StartupArtifactCache.update(digest, props.getProperty(key));
+        }
+        this.configurationFingerprint = digest.digest();
+    }
+
     private Properties loadProperties() throws IOException {
         Properties defaultProperties = new Properties();
         defaultProperties.load(MergeManager.class.getResourceAsStream("default.properties"));
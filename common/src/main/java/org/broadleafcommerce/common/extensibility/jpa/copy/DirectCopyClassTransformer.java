@@ -20,13 +20,20 @@ package org.broadleafcommerce.common.extensibility.jpa.copy;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.extensibility.StartupArtifactCache;
 import org.broadleafcommerce.common.extensibility.jpa.convert.BroadleafClassTransformer;
 import org.broadleafcommerce.common.logging.LifeCycleEvent;
 import org.broadleafcommerce.common.weave.ConditionalDirectCopyTransformMemberDto;
 import org.broadleafcommerce.common.weave.ConditionalDirectCopyTransformersManager;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.instrument.IllegalClassFormatException;
+import java.security.MessageDigest;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -39,6 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityListeners;
@@ -65,6 +73,11 @@ import javassist.bytecode.annotation.StringMemberValue;
 /**
  * This class transformer will copy fields, methods, and interface definitions from a source class to a target class,
  * based on the xformTemplates map. It will fail if it encounters any duplicate definitions.
+ * </p>
+ * When the {@link StartupArtifactCache} is enabled, the result for a class is kept on disk keyed by a hash of the
+ * class bytes and of the configuration of this transformer, and is reused on later starts as long as the bytes of the
+ * templates that were copied into the class are unchanged. Classes that turned out to need no transformation are
+ * remembered as well, so they are not parsed again either.
  *
  * @author Andre Azzolini (apazzolini)
  * @author Jeff Fischer
@@ -76,6 +89,9 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
 
     private static final Log logger = LogFactory.getLog(DirectCopyClassTransformer.class);
 
+    protected static final String CACHE_NAMESPACE = "woven-classes";
+    protected static final int CACHE_FORMAT_VERSION = 1;
+
     protected String moduleName;
     protected Map<String, String> xformTemplates = new HashMap<>();
     protected Boolean renameMethodOverlaps = false;
@@ -89,6 +105,8 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
     @Resource(name="blConditionalDirectCopyTransformersManager")
     protected ConditionalDirectCopyTransformersManager conditionalDirectCopyTransformersManager;
 
+    protected volatile byte[] configurationFingerprint;
+
     public DirectCopyClassTransformer(String moduleName) {
         this.moduleName = moduleName;
     }
@@ -107,6 +125,46 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
             return null;
         }
 
+        StartupArtifactCache cache = StartupArtifactCache.getInstance();
+        if (!cache.isEnabled()) {
+            return weave(className, classfileBuffer, new WeaveRecord());
+        }
+        String convertedClassName = className.replace('/', '.');
+        String cacheKey = getCacheKey(convertedClassName, classfileBuffer);
+        if (cache.hasMarker(CACHE_NAMESPACE, cacheKey)) {
+            return null;
+        }
+        byte[] cached = cache.get(CACHE_NAMESPACE, cacheKey);
+        if (cached != null) {
+            WeaveRecord record = WeaveRecord.read(cached);
+            if (record != null && record.isCurrent(this)) {
+                replay(convertedClassName, record);
+                return record.bytecode;
+            }
+        }
+
+        WeaveRecord record = new WeaveRecord();
+        byte[] result = weave(className, classfileBuffer, record);
+        if (record.parsed) {
+            if (result == null) {
+                cache.addMarker(CACHE_NAMESPACE, cacheKey);
+            } else {
+                record.bytecode = result;
+                byte[] serialized = record.write(this);
+                if (serialized != null) {
+                    cache.put(CACHE_NAMESPACE, cacheKey, serialized);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Performs the transformation, noting in the given record what it was based on
+     *
+     * @return the transformed bytecode, or null if the class is not transformed by this transformer
+     */
+    protected byte[] weave(String className, byte[] classfileBuffer, WeaveRecord record) {
         //Be careful with Apache library usage in this class (e.g. ArrayUtils). Usage will likely cause a ClassCircularityError
         //under JRebel. Favor not including outside libraries and unnecessary classes.
         CtClass clazz = null;
@@ -124,6 +182,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
                     buildXFormVals.addAll(Arrays.asList(xformTemplates.get(xformKey).split(",")));
                     classPool = ClassPool.getDefault();
                     clazz = classPool.makeClass(new ByteArrayInputStream(classfileBuffer), false);
+                    record.parsed = true;
                 }
             } else {
                 if (annotationTransformedClasses.contains(convertedClassName)) {
@@ -153,6 +212,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
                 if (isValidPattern) {
                     classPool = ClassPool.getDefault();
                     clazz = classPool.makeClass(new ByteArrayInputStream(classfileBuffer), false);
+                    record.parsed = true;
                     XFormParams params = reviewDirectCopyTransformAnnotations(clazz, mySkipOverlaps, myRenameMethodOverlaps, matchedPatterns);
                     XFormParams conditionalParams = reviewConditionalDirectCopyTransforms(convertedClassName, matchedPatterns);
                     if (conditionalParams != null && !conditionalParams.isEmpty()) {
@@ -176,6 +236,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
                 for (String xformVal : xformVals) {
                     // Load the source class
                     String trimmed = xformVal.trim();
+                    record.templates.add(trimmed);
                     classPool.appendClassPath(new LoaderClassPath(Class.forName(trimmed).getClassLoader()));
                     CtClass template = classPool.get(trimmed);
 
@@ -283,6 +344,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
                                 } else {
                                     logger.debug(String.format("Marking as replaced [%s]", methodDescription(originalMethod)));
                                     transformedMethods.add(methodDescription(originalMethod));
+                                    record.replacedMethods.add(methodDescription(originalMethod));
                                 }
 
                                 logger.debug(String.format("Removing method [%s]", method.getName()));
@@ -328,6 +390,80 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
         return null;
     }
 
+    /**
+     * @return the key of the cached result for the given class bytes, which covers the configuration of this
+     * transformer and the conditional transforms enabled for the class
+     */
+    protected String getCacheKey(String convertedClassName, byte[] classfileBuffer) {
+        MessageDigest digest = StartupArtifactCache.getInstance().newKeyDigest();
+        digest.update(getConfigurationFingerprint());
+        StartupArtifactCache.update(digest, convertedClassName);
+        if (conditionalDirectCopyTransformersManager != null
+                && conditionalDirectCopyTransformersManager.isEntityEnabled(convertedClassName)) {
+            ConditionalDirectCopyTransformMemberDto dto = conditionalDirectCopyTransformersManager.getTransformMember(convertedClassName);
+            StartupArtifactCache.update(digest, Arrays.toString(dto.getTemplateTokens()) + "|" + dto.isSkipOverlaps() + "|"
+                    + dto.isRenameMethodOverlaps());
+        }
+        digest.update(classfileBuffer);
+        return StartupArtifactCache.toHex(digest.digest());
+    }
+
+    protected byte[] getConfigurationFingerprint() {
+        byte[] fingerprint = configurationFingerprint;
+        if (fingerprint == null) {
+            MessageDigest digest = StartupArtifactCache.newDigest();
+            StartupArtifactCache.update(digest, String.valueOf(CACHE_FORMAT_VERSION));
+            StartupArtifactCache.update(digest, getClass().getName());
+            StartupArtifactCache.update(digest, moduleName);
+            StartupArtifactCache.update(digest, String.valueOf(new TreeMap<>(xformTemplates)));
+            StartupArtifactCache.update(digest, renameMethodOverlaps + "|" + renameMethodPrefix + "|" + skipOverlaps);
+            StartupArtifactCache.update(digest, String.valueOf(new TreeMap<>(templateTokens)));
+            for (DirectCopyIgnorePattern pattern : ignorePatterns) {
+                StartupArtifactCache.update(digest, Arrays.toString(pattern.getPatterns()) + "|"
+                        + Arrays.toString(pattern.getTemplateTokenPatterns()));
+            }
+            fingerprint = digest.digest();
+            configurationFingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Applies the bookkeeping a transformation does, for a class whose transformation was read from the cache
+     */
+    protected void replay(String convertedClassName, WeaveRecord record) {
+        for (String replacedMethod : record.replacedMethods) {
+            if (transformedMethods.contains(replacedMethod)) {
+                throw new RuntimeException("Unable to transform class",
+                        new RuntimeException("Method already replaced " + replacedMethod));
+            }
+            transformedMethods.add(replacedMethod);
+        }
+        if (xformTemplates.isEmpty()) {
+            annotationTransformedClasses.add(convertedClassName);
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Transform - Reused the cached transformation of [%s] from [%s]", convertedClassName,
+                    StringUtils.join(record.templates, ",")));
+        }
+    }
+
+    /**
+     * @return the hash of the bytes of the given template class, or null if they cannot be read
+     */
+    protected String hashTemplate(String templateClassName) {
+        try {
+            ClassLoader classLoader = Class.forName(templateClassName).getClassLoader();
+            if (classLoader == null) {
+                classLoader = ClassLoader.getSystemClassLoader();
+            }
+            InputStream in = classLoader.getResourceAsStream(templateClassName.replace('.', '/') + ".class");
+            return in == null ? null : StartupArtifactCache.hash(in);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
 
     /**
      * Combines two {@link org.broadleafcommerce.common.extensibility.jpa.copy.DirectCopyClassTransformer.XFormParams} together with
@@ -708,11 +844,13 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
      */
     public DirectCopyClassTransformer addXformTemplate(String classToTransform, String contributingClass) {
         xformTemplates.put(classToTransform, contributingClass);
+        configurationFingerprint = null;
         return this;
     }
     
     public void setXformTemplates(Map<String, String> xformTemplates) {
         this.xformTemplates = xformTemplates;
+        configurationFingerprint = null;
     }
 
     public Boolean getRenameMethodOverlaps() {
@@ -721,6 +859,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
 
     public void setRenameMethodOverlaps(Boolean renameMethodOverlaps) {
         this.renameMethodOverlaps = renameMethodOverlaps;
+        configurationFingerprint = null;
     }
 
     public String getRenameMethodPrefix() {
@@ -729,6 +868,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
 
     public void setRenameMethodPrefix(String renameMethodPrefix) {
         this.renameMethodPrefix = renameMethodPrefix;
+        configurationFingerprint = null;
     }
 
     public Boolean getSkipOverlaps() {
@@ -737,6 +877,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
 
     public void setSkipOverlaps(Boolean skipOverlaps) {
         this.skipOverlaps = skipOverlaps;
+        configurationFingerprint = null;
     }
 
     public Map<String, String> getTemplateTokens() {
@@ -745,6 +886,7 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
 
     public void setTemplateTokens(Map<String, String> templateTokens) {
         this.templateTokens = templateTokens;
+        configurationFingerprint = null;
     }
 
     public List<DirectCopyIgnorePattern> getIgnorePatterns() {
@@ -753,6 +895,90 @@ public class DirectCopyClassTransformer extends AbstractClassTransformer impleme
 
     public void setIgnorePatterns(List<DirectCopyIgnorePattern> ignorePatterns) {
         this.ignorePatterns = ignorePatterns;
+        configurationFingerprint = null;
+    }
+
+    /**
+     * What a transformation was based on besides the class bytes and the transformer configuration, along with its
+     * result, as kept in the {@link StartupArtifactCache}
+     */
+    protected static class WeaveRecord {
+
+        protected boolean parsed;
+        protected List<String> templates = new ArrayList<>();
+        protected List<String> templateHashes = new ArrayList<>();
+        protected List<String> replacedMethods = new ArrayList<>();
+        protected byte[] bytecode;
+
+        /**
+         * @return whether the templates still have the bytes they had when the class was transformed
+         */
+        protected boolean isCurrent(DirectCopyClassTransformer transformer) {
+            for (int i = 0; i < templates.size(); i++) {
+                if (!templateHashes.get(i).equals(transformer.hashTemplate(templates.get(i)))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the serialized record, or null if the bytes of one of the templates cannot be read
+         */
+        protected byte[] write(DirectCopyClassTransformer transformer) {
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytecode.length + 512);
+                DataOutputStream out = new DataOutputStream(buffer);
+                out.writeInt(CACHE_FORMAT_VERSION);
+                out.writeInt(templates.size());
+                for (String template : templates) {
+                    String hash = transformer.hashTemplate(template);
+                    if (hash == null) {
+                        return null;
+                    }
+                    out.writeUTF(template);
+                    out.writeUTF(hash);
+                }
+                out.writeInt(replacedMethods.size());
+                for (String replacedMethod : replacedMethods) {
+                    out.writeUTF(replacedMethod);
+                }
+                out.writeInt(bytecode.length);
+                out.write(bytecode);
+                out.flush();
+                return buffer.toByteArray();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return the deserialized record, or null if it has another format
+         */
+        protected static WeaveRecord read(byte[] serialized) {
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(serialized));
+                if (in.readInt() != CACHE_FORMAT_VERSION) {
+                    return null;
+                }
+                WeaveRecord record = new WeaveRecord();
+                int templateCount = in.readInt();
+                for (int i = 0; i < templateCount; i++) {
+                    record.templates.add(in.readUTF());
+                    record.templateHashes.add(in.readUTF());
+                }
+                int methodCount = in.readInt();
+                for (int i = 0; i < methodCount; i++) {
+                    record.replacedMethods.add(in.readUTF());
+                }
+                record.bytecode = new byte[in.readInt()];
+                in.readFully(record.bytecode);
+                record.parsed = true;
+                return record;
+            } catch (IOException e) {
+                return null;
+            }
+        }
     }
 
     private class XFormParams {
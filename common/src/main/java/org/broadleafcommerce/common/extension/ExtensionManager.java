@@ -45,6 +45,8 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
 
     protected boolean handlersSorted = false;
     protected static String LOCK_OBJECT = new String("EM_LOCK");
+    protected static final boolean USE_GENERATED_DISPATCH = Boolean.parseBoolean(
+            System.getProperty("blc.extension.manager.generatedDispatch", "true"));
     
     protected T extensionHandler;
     protected List<T> handlers = new ArrayList<T>();
@@ -55,11 +57,24 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
      */
     @SuppressWarnings("unchecked")
     public ExtensionManager(Class<T> _clazz) {
-        extensionHandler = (T) Proxy.newProxyInstance(_clazz.getClassLoader(),
-                new Class[] { _clazz },
-                this);
+        if (USE_GENERATED_DISPATCH) {
+            extensionHandler = ExtensionManagerDispatchGenerator.generate(_clazz, this);
+        }
+        if (extensionHandler == null) {
+            extensionHandler = (T) Proxy.newProxyInstance(_clazz.getClassLoader(),
+                    new Class[] { _clazz },
+                    this);
+        }
     }
     
+    /**
+     * Returns the implementation of <T> that dispatches to the registered handlers. Unless disabled with the
+     * <code>blc.extension.manager.generatedDispatch</code> system property, this is a class generated by
+     * {@link ExtensionManagerDispatchGenerator} that calls the handlers directly and returns NOT_HANDLED right away
+     * when no handlers are registered. Otherwise, it is a JDK proxy that uses {@link #invoke(Object, Method, Object[])}.
+     *
+     * @return
+     */
     public T getProxy() {
         return extensionHandler;
     }
@@ -0,0 +1,252 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extension;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtConstructor;
+import javassist.CtField;
+import javassist.CtMethod;
+import javassist.LoaderClassPath;
+
+/**
+ * Generates, at {@link ExtensionManager} construction time, an implementation of an {@link ExtensionHandler} interface
+ * that dispatches directly to the registered handlers instead of going through a JDK dynamic proxy and
+ * {@link Method#invoke(Object, Object...)}.
+ *
+ * For every interface method returning {@link ExtensionResultStatusType}, the generated method:
+ * <ul>
+ *     <li>returns NOT_HANDLED immediately, without allocating an argument array, when no handlers are registered</li>
+ *     <li>otherwise calls each enabled handler directly (invokeinterface) in priority order, honoring
+ *     {@link ExtensionManager#shouldContinue(ExtensionResultStatusType, ExtensionHandler, Method, Object[])}</li>
+ * </ul>
+ * The semantics are identical to {@link ExtensionManager#invoke(Object, Method, Object[])}. Any other interface method is
+ * delegated to {@link ExtensionManager#invoke(Object, Method, Object[])} as before.
+ *
+ * Generation is skipped (and the caller should fall back to a JDK proxy) when the extension manager overrides
+ * {@link ExtensionManager#invoke(Object, Method, Object[])}, when the interface or one of its method signatures is not
+ * public, or when generation fails for any reason.
+ */
+public class ExtensionManagerDispatchGenerator {
+
+    private static final Log LOG = LogFactory.getLog(ExtensionManagerDispatchGenerator.class);
+
+    protected static final String STATUS_TYPE = ExtensionResultStatusType.class.getName();
+    protected static final String GENERATED_PACKAGE = ExtensionManagerDispatchGenerator.class.getPackage().getName() + ".dispatch.";
+
+    protected static final Map<Class<?>, GeneratedDispatch> DISPATCH_CACHE = new ConcurrentHashMap<Class<?>, GeneratedDispatch>();
+    protected static final AtomicInteger COUNTER = new AtomicInteger(0);
+
+    /**
+     * @return an instance of a generated direct-dispatch implementation of <b>handlerInterface</b> bound to
+     * <b>manager</b>, or null if one could not be generated
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends ExtensionHandler> T generate(Class<T> handlerInterface, ExtensionManager<T> manager) {
+        if (overridesInvoke(manager.getClass()) || !isPublic(handlerInterface)) {
+            return null;
+        }
+        try {
+            GeneratedDispatch dispatch = DISPATCH_CACHE.get(handlerInterface);
+            if (dispatch == null) {
+                dispatch = buildDispatch(handlerInterface);
+                DISPATCH_CACHE.put(handlerInterface, dispatch);
+            }
+            if (dispatch.dispatchClass == null) {
+                return null;
+            }
+            return (T) dispatch.dispatchClass.getConstructor(ExtensionManager.class, Method[].class)
+                    .newInstance(manager, dispatch.methods);
+        } catch (Throwable e) {
+            LOG.warn("Unable to generate a direct dispatch extension proxy for " + handlerInterface.getName()
+                    + ". Falling back to a reflective proxy.", e);
+            DISPATCH_CACHE.put(handlerInterface, new GeneratedDispatch(null, null));
+            return null;
+        }
+    }
+
+    protected static boolean overridesInvoke(Class<?> managerClass) {
+        Class<?> clazz = managerClass;
+        while (clazz != null && !ExtensionManager.class.equals(clazz)) {
+            try {
+                clazz.getDeclaredMethod("invoke", Object.class, Method.class, Object[].class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                clazz = clazz.getSuperclass();
+            }
+        }
+        return false;
+    }
+
+    protected static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getDeclaringClass()) {
+            if (!Modifier.isPublic(clazz.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static GeneratedDispatch buildDispatch(Class<?> handlerInterface) throws Exception {
+        List<Method> methods = new ArrayList<Method>();
+        Set<String> signatures = new HashSet<String>();
+        for (Method method : handlerInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (!isPublic(method.getReturnType())) {
+                return new GeneratedDispatch(null, null);
+            }
+            StringBuilder signature = new StringBuilder(method.getName()).append('(');
+            for (Class<?> paramType : method.getParameterTypes()) {
+                if (!isPublic(paramType)) {
+                    return new GeneratedDispatch(null, null);
+                }
+                signature.append(paramType.getName()).append(',');
+            }
+            if (signatures.add(signature.toString())) {
+                methods.add(method);
+            }
+        }
+
+        ClassPool pool = new ClassPool(true);
+        pool.appendClassPath(new LoaderClassPath(handlerInterface.getClassLoader()));
+        pool.appendClassPath(new LoaderClassPath(ExtensionManager.class.getClassLoader()));
+
+        String className = GENERATED_PACKAGE + handlerInterface.getSimpleName() + "$Dispatch" + COUNTER.incrementAndGet();
+        CtClass ctClass = pool.makeClass(className);
+        ctClass.addInterface(pool.get(handlerInterface.getName()));
+        ctClass.addField(CtField.make("private " + ExtensionManager.class.getName() + " manager;", ctClass));
+        ctClass.addField(CtField.make("private java.lang.reflect.Method[] methods;", ctClass));
+
+        CtConstructor constructor = new CtConstructor(new CtClass[] { pool.get(ExtensionManager.class.getName()),
+                pool.get("java.lang.reflect.Method[]") }, ctClass);
+        constructor.setBody("{ super(); this.manager = $1; this.methods = $2; }");
+        constructor.setModifiers(Modifier.PUBLIC);
+        ctClass.addConstructor(constructor);
+
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            Class<?>[] paramTypes = method.getParameterTypes();
+            CtClass[] ctParams = new CtClass[paramTypes.length];
+            for (int j = 0; j < paramTypes.length; j++) {
+                ctParams[j] = pool.get(getTypeName(paramTypes[j]));
+            }
+            CtMethod ctMethod = new CtMethod(pool.get(getTypeName(method.getReturnType())), method.getName(), ctParams, ctClass);
+            if (ExtensionResultStatusType.class.equals(method.getReturnType())) {
+                ctMethod.setBody(buildDirectDispatchBody(handlerInterface, method, i));
+            } else {
+                ctMethod.setBody(buildReflectiveDispatchBody(method, i));
+            }
+            ctMethod.setModifiers(Modifier.PUBLIC);
+            ctClass.addMethod(ctMethod);
+        }
+
+        byte[] bytes = ctClass.toBytecode();
+        ctClass.detach();
+        DispatchClassLoader loader = new DispatchClassLoader(handlerInterface.getClassLoader());
+        Class<?> dispatchClass = loader.define(className, bytes);
+        return new GeneratedDispatch(dispatchClass, methods.toArray(new Method[methods.size()]));
+    }
+
+    protected static String buildDirectDispatchBody(Class<?> handlerInterface, Method method, int methodIndex) {
+        String handlerType = handlerInterface.getName();
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("    java.util.List hs = this.manager.getHandlers();\n");
+        sb.append("    int size = hs.size();\n");
+        sb.append("    if (size == 0) {\n");
+        sb.append("        return ").append(STATUS_TYPE).append(".NOT_HANDLED;\n");
+        sb.append("    }\n");
+        sb.append("    boolean notHandled = true;\n");
+        sb.append("    for (int i = 0; i < size; i++) {\n");
+        sb.append("        ").append(handlerType).append(" h = (").append(handlerType).append(") hs.get(i);\n");
+        sb.append("        if (h.isEnabled()) {\n");
+        sb.append("            ").append(STATUS_TYPE).append(" result = h.").append(method.getName()).append("($$);\n");
+        sb.append("            if (!").append(STATUS_TYPE).append(".NOT_HANDLED.equals(result)) {\n");
+        sb.append("                notHandled = false;\n");
+        sb.append("            }\n");
+        sb.append("            if (!this.manager.shouldContinue(result, h, this.methods[").append(methodIndex).append("], $args)) {\n");
+        sb.append("                break;\n");
+        sb.append("            }\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        sb.append("    if (notHandled) {\n");
+        sb.append("        return ").append(STATUS_TYPE).append(".NOT_HANDLED;\n");
+        sb.append("    }\n");
+        sb.append("    return ").append(STATUS_TYPE).append(".HANDLED;\n");
+        sb.append("}");
+        return sb.toString();
+    }
+
+    protected static String buildReflectiveDispatchBody(Method method, int methodIndex) {
+        String invocation = "this.manager.invoke(this, this.methods[" + methodIndex + "], $args)";
+        if (void.class.equals(method.getReturnType())) {
+            return "{ " + invocation + "; }";
+        }
+        return "{ return ($r) " + invocation + "; }";
+    }
+
+    protected static String getTypeName(Class<?> type) {
+        if (type.isArray()) {
+            return getTypeName(type.getComponentType()) + "[]";
+        }
+        return type.getName();
+    }
+
+    protected static class GeneratedDispatch {
+
+        protected final Class<?> dispatchClass;
+        protected final Method[] methods;
+
+        public GeneratedDispatch(Class<?> dispatchClass, Method[] methods) {
+            this.dispatchClass = dispatchClass;
+            this.methods = methods;
+        }
+    }
+
+    protected static class DispatchClassLoader extends ClassLoader {
+
+        public DispatchClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
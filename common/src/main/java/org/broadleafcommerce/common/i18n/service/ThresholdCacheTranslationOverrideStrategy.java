@@ -78,6 +78,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
         LocalePair response = new LocalePair();
         if (cacheResult == null) {
             statisticsService.addCacheStat(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), false);
+            long start = System.nanoTime();
             if (dao.countTranslationEntries(entityType, ResultType.STANDARD_CACHE) < translationSupport.getThresholdForFullCache()) {
                 Map<String, Map<String, StandardCacheItem>> propertyTranslationMap = new HashMap<String, Map<String, StandardCacheItem>>();
                 List<StandardCacheItem> convertedList = dao.readConvertedTranslationEntries(entityType, ResultType.STANDARD_CACHE);
@@ -93,12 +94,14 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
                 }
                 Element newElement = new Element(basicCacheKey, propertyTranslationMap);
                 translationSupport.getCache().put(newElement);
+                statisticsService.addCacheLoadTime(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), System.nanoTime() - start);
                 result = newElement;
             } else {
                 //Translation is dual discriminated by site and catalog, which can make it impossible to find results under normal
                 //circumstances because the two discriminators can cancel eachother out. We use the CATALOG_ONLY ResultType
                 //to force the system to only honor the catalog discrimination during this call.
                 Translation translation = dao.readTranslation(entityType, entityId, property, localeCode, localeCountryCode, ResultType.CATALOG_ONLY);
+                statisticsService.addCacheLoadTime(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), System.nanoTime() - start);
                 buildSingleItemResponse(response, translation);
                 return response;
             }
@@ -124,6 +127,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
         LocalePair response = new LocalePair();
         if (cacheResult == null) {
             statisticsService.addCacheStat(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), false);
+            long start = System.nanoTime();
             if (dao.countTranslationEntries(entityType, ResultType.TEMPLATE_CACHE) < translationSupport.getTemplateThresholdForFullCache()) {
                 Map<String, Map<String, Translation>> propertyTranslationMap = new HashMap<String, Map<String, Translation>>();
                 List<Translation> translationList = dao.readAllTranslationEntries(entityType, ResultType.TEMPLATE_CACHE);
@@ -147,6 +151,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
                     buildSingleItemResponse(response, translation);
                 }
             }
+            statisticsService.addCacheLoadTime(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), System.nanoTime() - start);
         } else {
             statisticsService.addCacheStat(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), true);
             Map<String, Map<String, Translation>> propertyTranslationMap = (Map<String, Map<String, Translation>>) cacheResult.getObjectValue();
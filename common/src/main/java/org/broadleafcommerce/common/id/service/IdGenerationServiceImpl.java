@@ -17,9 +17,19 @@
  */
 package org.broadleafcommerce.common.id.service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.persistence.OptimisticLockException;
 
@@ -27,8 +37,28 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.id.dao.IdGenerationDao;
 import org.broadleafcommerce.common.id.domain.IdGeneration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+/**
+ * Hands out ids from ranges reserved in the {@link IdGeneration} table.
+ * </p>
+ * Every id type has its own {@link IdSegments}. Ids are issued from the current range with a single atomic increment,
+ * so threads never wait on each other while the range lasts. Once the remaining ids of a range drop to
+ * "id.generation.prefetch.watermark" (a fraction of the range), the next ranges are reserved in the background so
+ * that they are usually ready by the time the current one runs out. Only when no reserved range is available does a
+ * thread have to go to the database itself, and then only threads asking for the same id type wait for it.
+ * </p>
+ * The number of ranges reserved per background refill adapts to how fast ids of that type are issued, aiming at one
+ * refill every "id.generation.prefetch.targetRefillIntervalMs" and capped by "id.generation.prefetch.maxRangesPerRefill".
+ * The size of a single range is still the batch size of the {@link IdGeneration} row.
+ * </p>
+ * Prefetching is off unless "id.generation.prefetch.enabled" is set. Without it a range is only reserved once the
+ * current one runs out, as before. Reserved ranges only live in memory: ids that were reserved but not issued when the
+ * application stops are never used, and with prefetching that can be the rest of the current range plus up to
+ * "id.generation.prefetch.maxRangesPerRefill" whole ranges per id type, leaving larger gaps in the ids after a restart.
+ */
 @Service("blIdGenerationService")
 public class IdGenerationServiceImpl implements IdGenerationService {
 
@@ -37,7 +67,21 @@ public class IdGenerationServiceImpl implements IdGenerationService {
     @Resource(name="blIdGenerationDao")
     protected IdGenerationDao idGenerationDao;
 
-    protected Map<String, Id> idTypeIdMap = new HashMap<String, Id>();
+    @Value("${id.generation.prefetch.enabled:false}")
+    protected boolean prefetchEnabled = false;
+
+    @Value("${id.generation.prefetch.watermark:0.25}")
+    protected double prefetchWatermark = 0.25D;
+
+    @Value("${id.generation.prefetch.targetRefillIntervalMs:30000}")
+    protected long targetRefillIntervalMs = 30000L;
+
+    @Value("${id.generation.prefetch.maxRangesPerRefill:16}")
+    protected int maxRangesPerRefill = 16;
+
+    protected final ConcurrentMap<String, IdSegments> idTypeSegments = new ConcurrentHashMap<String, IdSegments>();
+
+    protected final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(createPrefetchThreadFactory());
 
     @Override
     public Long findNextId(String idType) {
@@ -46,40 +90,126 @@ public class IdGenerationServiceImpl implements IdGenerationService {
 
     @Override
     public Long findNextId(String idType, Long batchSize) {
-        Id id;
-        synchronized (idTypeIdMap) {
-            id = idTypeIdMap.get(idType);
-            if (id == null) {
-                // recheck, another thread may have added this.
-                id = idTypeIdMap.get(idType);
-                if (id == null) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Getting the initial id from the database.");
+        IdSegments segments = getSegments(idType);
+        while (true) {
+            IdSegment segment = segments.current;
+            if (segment != null) {
+                long id = segment.nextId.getAndIncrement();
+                if (id < segment.end) {
+                    segments.issuedCount.increment();
+                    if (prefetchEnabled && segment.end - id - 1 == segment.prefetchAt) {
+                        prefetch(idType, batchSize, segments);
                     }
-                    IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                    id = new Id(idGeneration.getBatchStart(), idGeneration.getBatchSize());
+                    return id;
                 }
-                idTypeIdMap.put(idType, id);
             }
+            advance(idType, batchSize, segments, segment);
         }
+    }
 
-        synchronized(id) {
-            if (id.batchSize == 0L) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Updating batch size for idType " + idType);
+    protected IdSegments getSegments(String idType) {
+        IdSegments segments = idTypeSegments.get(idType);
+        if (segments == null) {
+            segments = new IdSegments();
+            IdSegments existing = idTypeSegments.putIfAbsent(idType, segments);
+            if (existing != null) {
+                segments = existing;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Replaces the exhausted segment with the next reserved one, reserving one from the database if none is
+     * available. Nothing happens if another thread already replaced it. Ranges are reserved and queued under
+     * {@link IdSegments#fetchMonitor}, so they are always used in the order they were reserved.
+     */
+    protected void advance(String idType, Long batchSize, IdSegments segments, IdSegment exhausted) {
+        synchronized (segments) {
+            if (segments.current != exhausted) {
+                return;
+            }
+            IdSegment next = segments.reserved.poll();
+            if (next == null) {
+                // waits for a range that is being prefetched right now rather than reserving one past it, which
+                // would issue ids out of order
+                synchronized (segments.fetchMonitor) {
+                    next = segments.reserved.poll();
+                    if (next == null) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Getting the next id range for idType " + idType + " from the database.");
+                        }
+                        next = createSegment(getCurrentIdRange(idType, batchSize));
+                    }
                 }
-                IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                id.nextId = idGeneration.getBatchStart();
-                id.batchSize = idGeneration.getBatchSize();
             }
-            Long retId = id.nextId++;
-            id.batchSize--;
+            segments.current = next;
+        }
+    }
+
+    /**
+     * Reserves more ranges for the given id type in the background, unless that is already in progress
+     */
+    protected void prefetch(final String idType, final Long batchSize, final IdSegments segments) {
+        if (!segments.reserved.isEmpty() || !segments.prefetching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            prefetchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int rangeCount = computeRangeCount(segments);
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Prefetching " + rangeCount + " id range(s) for idType " + idType);
+                        }
+                        for (int i = 0; i < rangeCount; i++) {
+                            synchronized (segments.fetchMonitor) {
+                                segments.reserved.add(createSegment(getCurrentIdRange(idType, batchSize)));
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        LOG.warn("Unable to prefetch the next id range for " + idType + ". It will be retrieved when needed.", e);
+                    } finally {
+                        segments.prefetching.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            segments.prefetching.set(false);
+        }
+    }
+
+    /**
+     * Determines how many ranges to reserve so that, at the rate ids were issued since the last refill, the next
+     * refill happens after about {@link #targetRefillIntervalMs}.
+     */
+    protected int computeRangeCount(IdSegments segments) {
+        long now = System.nanoTime();
+        long issued = segments.issuedCount.sum();
+        long elapsedNanos = now - segments.lastRefillNanos;
+        long issuedSinceRefill = issued - segments.issuedAtLastRefill;
+        segments.lastRefillNanos = now;
+        segments.issuedAtLastRefill = issued;
 
-            return retId;
+        IdSegment current = segments.current;
+        if (current == null || elapsedNanos <= 0L || issuedSinceRefill <= 0L) {
+            return 1;
         }
+        double idsPerMs = issuedSinceRefill / (double) TimeUnit.NANOSECONDS.toMillis(Math.max(elapsedNanos, 1000000L));
+        double wanted = idsPerMs * targetRefillIntervalMs;
+        long rangeSize = Math.max(1L, current.end - current.start);
+        long rangeCount = (long) Math.ceil(wanted / rangeSize);
+        return (int) Math.max(1L, Math.min(rangeCount, maxRangesPerRefill));
     }
-    
-    private IdGeneration getCurrentIdRange(String idType, Long batchSize) {
+
+    protected IdSegment createSegment(IdGeneration idGeneration) {
+        long start = idGeneration.getBatchStart();
+        long size = idGeneration.getBatchSize();
+        return new IdSegment(start, start + size, (long) (size * prefetchWatermark));
+    }
+
+    protected IdGeneration getCurrentIdRange(String idType, Long batchSize) {
         IdGeneration idGeneration = null;
         int retryCount = 0;
         boolean stale = true;
@@ -103,13 +233,48 @@ public class IdGenerationServiceImpl implements IdGenerationService {
         return idGeneration;
     }
 
-    private class Id {
-        public Long nextId;
-        public Long batchSize;
+    protected CustomizableThreadFactory createPrefetchThreadFactory() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("id-generation-prefetch-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * The ranges of one id type: the one ids are currently issued from and the ones reserved for later
+     */
+    protected static class IdSegments {
+
+        protected volatile IdSegment current;
+        protected final Queue<IdSegment> reserved = new ConcurrentLinkedQueue<IdSegment>();
+        protected final Object fetchMonitor = new Object();
+        protected final AtomicBoolean prefetching = new AtomicBoolean(false);
+        protected final LongAdder issuedCount = new LongAdder();
+        protected volatile long lastRefillNanos = System.nanoTime();
+        protected volatile long issuedAtLastRefill;
+
+    }
+
+    /**
+     * A range of ids from start (inclusive) to end (exclusive). Threads claim ids by incrementing nextId; values at or
+     * past the end mean the range is exhausted.
+     */
+    protected static class IdSegment {
+
+        protected final long start;
+        protected final long end;
+        protected final long prefetchAt;
+        protected final AtomicLong nextId;
 
-        public Id(Long nextId, Long batchSize) {
-            this.nextId = nextId;
-            this.batchSize = batchSize;
+        public IdSegment(long start, long end, long prefetchAt) {
+            this.start = start;
+            this.end = end;
+            this.prefetchAt = prefetchAt;
+            this.nextId = new AtomicLong(start);
         }
     }
 }
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.money;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * A mutable running total of {@link Money} amounts, kept as a long number of units at a fixed scale (cents for USD),
+ * so that summing up a list of amounts doesn't create a new {@link Money} and {@link BigDecimal} for every step.
+ * </p>
+ * The results are the same as chaining {@link Money#add(Money)}, {@link Money#subtract(Money)} and
+ * {@link Money#multiply(int)} starting from the initial amount: the scale is the one {@link Money} would keep, and an
+ * operand with more decimal places than that is rounded half even together with the running total, just like
+ * {@link Money} rounds the sum. Whatever can't be represented exactly in units (an amount in another currency, an
+ * overflow) is handed to {@link Money} itself, so currency conversion and its errors behave as before.
+ * </p>
+ * This is not thread-safe and is meant to be used as a local variable, converting to {@link Money} with
+ * {@link #toMoney()} only once the total is needed.
+ */
+public final class MoneyAccumulator {
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+        }
+    }
+
+    private final Currency currency;
+    private final int scale;
+    private long units;
+
+    /**
+     * The total once it could no longer be kept in units, null otherwise
+     */
+    private Money money;
+
+    /**
+     * Starts at zero in the given currency, like {@link Money#zero(Currency)}
+     */
+    public MoneyAccumulator(Currency currency) {
+        this(Money.zero(currency));
+    }
+
+    /**
+     * Starts at the given amount
+     */
+    public MoneyAccumulator(Money initial) {
+        this.currency = initial.getCurrency();
+        BigDecimal amount = initial.getAmount();
+        this.scale = amount.scale() == 0 ? BankersRounding.getScaleForCurrency(currency) : amount.scale();
+        // Money.ZERO adopts the currency of whatever is added to it, so it is left to Money
+        if (initial == Money.ZERO || !setUnits(amount)) {
+            money = initial;
+        }
+    }
+
+    public MoneyAccumulator add(Money other) {
+        if (money == null && isSameCurrency(other) && addUnits(other.getAmount(), false)) {
+            return this;
+        }
+        money = toMoney().add(other);
+        absorb();
+        return this;
+    }
+
+    public MoneyAccumulator subtract(Money other) {
+        if (money == null && isSameCurrency(other) && addUnits(other.getAmount(), true)) {
+            return this;
+        }
+        money = toMoney().subtract(other);
+        absorb();
+        return this;
+    }
+
+    public MoneyAccumulator add(MoneyAccumulator other) {
+        if (money == null && other.money == null && currency.equals(other.currency) && scale == other.scale) {
+            long sum = units + other.units;
+            // overflow only if both operands have the same sign and the sum's sign differs
+            if (((units ^ sum) & (other.units ^ sum)) >= 0) {
+                units = sum;
+                return this;
+            }
+        }
+        return add(other.toMoney());
+    }
+
+    public MoneyAccumulator multiply(int quantity) {
+        if (money == null) {
+            long product = units * quantity;
+            if (quantity == 0 || (product / quantity == units && !(units == Long.MIN_VALUE && quantity == -1))) {
+                units = product;
+                return this;
+            }
+        }
+        money = toMoney().multiply(quantity);
+        absorb();
+        return this;
+    }
+
+    public boolean isZero() {
+        return money == null ? units == 0L : money.isZero();
+    }
+
+    public BigDecimal getAmount() {
+        return money == null ? BigDecimal.valueOf(units, scale) : money.getAmount();
+    }
+
+    public Currency getCurrency() {
+        return money == null ? currency : money.getCurrency();
+    }
+
+    public Money toMoney() {
+        if (money != null) {
+            return money;
+        }
+        return new Money(BigDecimal.valueOf(units, scale), currency, scale);
+    }
+
+    @Override
+    public String toString() {
+        return toMoney().toString();
+    }
+
+    protected boolean isSameCurrency(Money other) {
+        Currency otherCurrency = other.getCurrency();
+        return otherCurrency == currency || otherCurrency.equals(currency);
+    }
+
+    /**
+     * Adds (or subtracts) the amount to the units if that can be done exactly, that is if the amount has no more
+     * decimal places than the scale and nothing overflows.
+     */
+    protected boolean addUnits(BigDecimal amount, boolean negate) {
+        int shift = scale - amount.scale();
+        if (shift < 0 || shift >= POWERS_OF_TEN.length || amount.precision() > 18) {
+            return false;
+        }
+        long value = amount.unscaledValue().longValue();
+        long power = POWERS_OF_TEN[shift];
+        if (Math.abs(value) > Long.MAX_VALUE / power) {
+            return false;
+        }
+        value = value * power;
+        long result = negate ? units - value : units + value;
+        boolean overflow = negate
+                ? ((units ^ value) & (units ^ result)) < 0
+                : ((units ^ result) & (value ^ result)) < 0;
+        if (overflow) {
+            return false;
+        }
+        units = result;
+        return true;
+    }
+
+    protected boolean setUnits(BigDecimal amount) {
+        if (scale < 0 || scale >= POWERS_OF_TEN.length) {
+            return false;
+        }
+        units = 0L;
+        return addUnits(amount, false);
+    }
+
+    /**
+     * Goes back to counting units when the {@link Money} result of a delegated operation allows it again
+     */
+    protected void absorb() {
+        if (money.getCurrency().equals(currency) && money.getAmount().scale() == scale && setUnits(money.getAmount())) {
+            money = null;
+        }
+    }
+}
@@ -32,6 +32,8 @@ public class BundledResourceInfo {
     protected Resource resource;
     protected String versionedBundleName;
     protected List<String> bundledFilePaths;
+    protected boolean minified;
+    protected Resource gzippedResource;
 
     public BundledResourceInfo(Resource resource, String versionedBundleName, List<String> bundledFilePaths) {
         this.resource = resource;
@@ -63,5 +65,25 @@ public class BundledResourceInfo {
         this.bundledFilePaths = bundledFilePaths;
     }
 
-        
+    /**
+     * @return whether the files were already minified when they were bundled
+     */
+    public boolean isMinified() {
+        return minified;
+    }
+
+    public void setMinified(boolean minified) {
+        this.minified = minified;
+    }
+
+    /**
+     * @return the gzip compressed copy of the bundle, or null if there is none
+     */
+    public Resource getGzippedResource() {
+        return gzippedResource;
+    }
+
+    public void setGzippedResource(Resource gzippedResource) {
+        this.gzippedResource = gzippedResource;
+    }
 }
@@ -100,4 +100,24 @@ public interface ResourceBundlingService {
     List<String> findBundlesNameByResourceFileName(String fileName);
 
     boolean removeBundle(String bundleName);
+
+    /**
+     * Returns the gzip compressed copy of the given bundle that was saved along with it, so that it can be served as is
+     * to clients that accept gzip.
+     * @param versionedBundleResourceName the versioned bundle resource name
+     * @return the compressed bundle, or null if there is none, which is always the case by default
+     */
+    default Resource resolveGzippedBundleResource(String versionedBundleResourceName) {
+        return null;
+    }
+
+    /**
+     * Tells if the files of the given bundle were minified when the bundle was created, in which case the bundle does
+     * not need to be minified again when it is served.
+     * @param versionedBundleName the versioned bundle name, with or without its mapping prefix
+     * @return true if the bundle exists and is minified, false by default
+     */
+    default boolean isMinifiedBundle(String versionedBundleName) {
+        return false;
+    }
 }
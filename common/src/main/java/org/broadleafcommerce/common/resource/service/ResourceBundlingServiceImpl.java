@@ -17,7 +17,9 @@
  */
 package org.broadleafcommerce.common.resource.service;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
@@ -31,12 +33,14 @@ import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.common.web.resource.BroadleafDefaultResourceResolverChain;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StreamUtils;
 import org.springframework.util.StringUtils;
@@ -46,6 +50,7 @@ import org.springframework.web.servlet.resource.ResourceResolverChain;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -56,13 +61,23 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 
 import de.jkeylockmanager.manager.KeyLockManager;
 import de.jkeylockmanager.manager.KeyLockManagers;
 import de.jkeylockmanager.manager.LockCallback;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
 
 /**
  * @see ResourceBundlingService
@@ -73,6 +88,10 @@ import de.jkeylockmanager.manager.LockCallback;
 public class ResourceBundlingServiceImpl implements ResourceBundlingService {
     protected static final Log LOG = LogFactory.getLog(ResourceBundlingServiceImpl.class);
 
+    public static final String GZIP_EXTENSION = ".gz";
+
+    protected static final String MINIFIED_FILES_DIRECTORY = "minified/";
+
     // Map of known unversioned bundle names ==> additional files that should be included
     // ex: "global.js" ==> ["classpath:/file1.js", "/js/file2.js"]
     /**
@@ -100,9 +119,28 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
     @Autowired
     protected Environment environment;
 
+    @javax.annotation.Resource(name = "blResourceMinificationService")
+    protected ResourceMinificationService minificationService;
+
+    /**
+     * Number of threads minifying the files of new bundles, the number of processors when not positive
+     */
+    @Value("${bundle.minify.threads:0}")
+    protected int minificationThreads = 0;
+
+    @Value("${bundle.gzip.enabled:true}")
+    protected boolean gzipBundles = true;
+
+    protected volatile ExecutorService minificationExecutor;
+
+    /**
+     * The minified files kept in memory, keyed by their content hash
+     */
+    protected Cache minifiedFileCache;
+
     private KeyLockManager keyLockManager = KeyLockManagers.newLock();
 
-    private ConcurrentHashMap<String, BundledResourceInfo> createdBundles = new ConcurrentHashMap<>();
+    protected ConcurrentHashMap<String, BundledResourceInfo> createdBundles = new ConcurrentHashMap<>();
     
     /**
      * Initalize the blJsResources and blCssResources. The reason that we are doing it this way and not via the normal
@@ -219,6 +257,22 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
         return bundleRegistered;
     }
 
+    @Override
+    public Resource resolveGzippedBundleResource(String versionedBundleResourceName) {
+        BundledResourceInfo bundledResourceInfo = createdBundles.get(lookupBundlePath(versionedBundleResourceName));
+        if (bundledResourceInfo == null || bundledResourceInfo.getGzippedResource() == null
+                || !bundledResourceInfo.getGzippedResource().exists()) {
+            return null;
+        }
+        return bundledResourceInfo.getGzippedResource();
+    }
+
+    @Override
+    public boolean isMinifiedBundle(String versionedBundleName) {
+        BundledResourceInfo bundledResourceInfo = createdBundles.get(lookupBundlePath(versionedBundleName));
+        return bundledResourceInfo != null && bundledResourceInfo.isMinified();
+    }
+
     protected Resource getBundledResource(String versionedBundleName) {
         BundledResourceInfo bundledResourceInfo = createdBundles.get(versionedBundleName);
         return bundledResourceInfo != null ? bundledResourceInfo.getResource() : null;
@@ -251,12 +305,20 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
                 public void doInLock() {
                     Resource bundleResource = getBundledResource(versionedBundleName);
                     if (bundleResource == null || !bundleResource.exists()) {
+                        boolean minified = isMinifyBundleFiles();
                         bundleResource = createBundle(versionedBundleName, filePaths, resolverChain, locations, bundleAppend);
                         if (bundleResource != null) {
                             saveBundle(bundleResource);
                         }
                         Resource savedResource = readBundle(versionedBundleName);
                         BundledResourceInfo bundledResourceInfo = new BundledResourceInfo(savedResource, versionedBundleName, filePaths);
+                        bundledResourceInfo.setMinified(minified);
+                        if (bundleResource != null && isGzipBundle(bundleResource)) {
+                            Resource gzippedResource = readBundle(versionedBundleName + GZIP_EXTENSION);
+                            if (gzippedResource != null && gzippedResource.exists()) {
+                                bundledResourceInfo.setGzippedResource(gzippedResource);
+                            }
+                        }
                         createdBundles.put(versionedBundleName, bundledResourceInfo);
                     }
                 }
@@ -278,6 +340,8 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
         
         // Join all of the resources for this bundle together into a byte[]
         try {
+            List<String> fileNames = new ArrayList<>();
+            List<byte[]> contents = new ArrayList<>();
             for (String fileName : filePaths) {
                 Resource r = resolverChain.resolveResource(req, fileName, locations);
                 InputStream is = null;
@@ -289,22 +353,30 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
                 } else {
                     try {
                         is = r.getInputStream();
-                        StreamUtils.copy(is, outputStream);
+                        fileNames.add(fileName);
+                        contents.add(StreamUtils.copyToByteArray(is));
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     } finally {
                         IOUtils.closeQuietly(is);
                     }
-                    
-                    // If we're creating a JavaScript bundle, we'll put a semicolon between each
-                    // file to ensure it won't fail to compile.
-                    if (versionedBundleName.endsWith(".js")) {
-                        outputStream.write(";".getBytes(getBundleCharSet()));
-                    }
-                    outputStream.write(System.getProperty("line.separator").getBytes(getBundleCharSet()));
                 }
             }
 
+            if (isMinifyBundleFiles()) {
+                contents = minifyFiles(fileNames, contents);
+            }
+
+            for (byte[] content : contents) {
+                outputStream.write(content);
+                // If we're creating a JavaScript bundle, we'll put a semicolon between each
+                // file to ensure it won't fail to compile.
+                if (versionedBundleName.endsWith(".js")) {
+                    outputStream.write(";".getBytes(getBundleCharSet()));
+                }
+                outputStream.write(System.getProperty("line.separator").getBytes(getBundleCharSet()));
+            }
+
             // Append the requested text to the bundle
             if (bundleAppend != null) {
                 if (versionedBundleName.endsWith(".js")) {
@@ -323,6 +395,121 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
         // Create our GenerateResource that holds our combined bundle
         return new GeneratedResource(bytes, versionedBundleName);
     }
+
+    /**
+     * @return whether the files of new bundles are minified one by one as they are bundled, in which case the bundle
+     * is not minified again as a whole when it is served
+     */
+    protected boolean isMinifyBundleFiles() {
+        return minificationService != null && minificationService.getEnabled();
+    }
+
+    /**
+     * Minifies the contents of the given files. Each file is minified once per distinct content: the result is cached
+     * in memory and saved through the file service under its content hash, so a file that did not change is not
+     * minified again when another bundle containing it is built, after a restart or on another node sharing the file
+     * service. Files that do have to be minified are minified in parallel.
+     */
+    protected List<byte[]> minifyFiles(List<String> fileNames, List<byte[]> contents) {
+        List<byte[]> minified = new ArrayList<>(contents);
+        List<Future<byte[]>> pending = new ArrayList<>(contents.size());
+        for (int i = 0; i < contents.size(); i++) {
+            final String fileName = fileNames.get(i);
+            final byte[] content = contents.get(i);
+            if (fileName.endsWith(ResourceMinificationServiceImpl.JS_MIN) || fileName.endsWith(ResourceMinificationServiceImpl.CSS_MIN)) {
+                pending.add(null);
+                continue;
+            }
+            final String hash = DigestUtils.sha1Hex(content) + "." + FilenameUtils.getExtension(fileName);
+            byte[] cached = getMinifiedFile(hash);
+            if (cached != null) {
+                minified.set(i, cached);
+                pending.add(null);
+            } else {
+                pending.add(getMinificationExecutor().submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        byte[] result = minificationService.minify(fileName, content);
+                        if (result != content) {
+                            saveMinifiedFile(hash, result);
+                        }
+                        return result;
+                    }
+                }));
+            }
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            if (pending.get(i) != null) {
+                try {
+                    minified.set(i, pending.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while minifying " + fileNames.get(i), e);
+                } catch (ExecutionException e) {
+                    LOG.warn("Unable to minify " + fileNames.get(i) + ", bundling it unminified", e.getCause());
+                }
+            }
+        }
+        return minified;
+    }
+
+    protected byte[] getMinifiedFile(String hash) {
+        Element element = getMinifiedFileCache().get(hash);
+        byte[] cached = element == null ? null : (byte[]) element.getObjectValue();
+        if (cached == null) {
+            File file = fileService.getResource("/" + getResourcePath(MINIFIED_FILES_DIRECTORY + hash));
+            if (file != null && file.exists()) {
+                try {
+                    cached = FileUtils.readFileToByteArray(file);
+                    cacheMinifiedFile(hash, cached);
+                } catch (IOException e) {
+                    LOG.warn("Unable to read the minified file " + file.getAbsolutePath(), e);
+                }
+            }
+        }
+        return cached;
+    }
+
+    protected void saveMinifiedFile(String hash, byte[] minified) {
+        cacheMinifiedFile(hash, minified);
+        try {
+            saveBundle(new GeneratedResource(minified, MINIFIED_FILES_DIRECTORY + hash));
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to save the minified file " + hash, e);
+        }
+    }
+
+    protected void cacheMinifiedFile(String hash, byte[] minified) {
+        getMinifiedFileCache().put(new Element(hash, minified));
+    }
+
+    protected Cache getMinifiedFileCache() {
+        if (minifiedFileCache == null) {
+            minifiedFileCache = CacheManager.getInstance().getCache("blMinifiedBundleFiles");
+        }
+        return minifiedFileCache;
+    }
+
+    protected ExecutorService getMinificationExecutor() {
+        if (minificationExecutor == null) {
+            synchronized (this) {
+                if (minificationExecutor == null) {
+                    int threads = minificationThreads > 0 ? minificationThreads : Runtime.getRuntime().availableProcessors();
+                    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("bundle-minification-");
+                    threadFactory.setDaemon(true);
+                    minificationExecutor = Executors.newFixedThreadPool(threads, threadFactory);
+                }
+            }
+        }
+        return minificationExecutor;
+    }
+
+    @PreDestroy
+    public void shutdownMinificationExecutor() {
+        if (minificationExecutor != null) {
+            minificationExecutor.shutdownNow();
+        }
+    }
     
     protected void saveBundle(Resource resource) {
         FileWorkArea tempWorkArea = fileService.initializeWorkArea();
@@ -346,8 +533,22 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
             
             ris.close();
             out.close();
+
+            File gzippedFile = null;
+            if (isGzipBundle(resource)) {
+                gzippedFile = new File(tempFilename + GZIP_EXTENSION);
+                ris = new FileInputStream(tempFile);
+                out = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(gzippedFile)));
+                StreamUtils.copy(ris, out);
+
+                ris.close();
+                out.close();
+            }
             
             fileService.addOrUpdateResourceForPath(tempWorkArea, tempFile, true);
+            if (gzippedFile != null) {
+                fileService.addOrUpdateResourceForPath(tempWorkArea, gzippedFile, true);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
@@ -356,6 +557,15 @@ public class ResourceBundlingServiceImpl implements ResourceBundlingService {
             fileService.closeWorkArea(tempWorkArea);
         }
     }
+
+    /**
+     * @return whether a gzip compressed copy of the given bundle is saved next to it, for
+     * {@link org.broadleafcommerce.common.web.resource.BroadleafResourceHttpRequestHandler} to serve to clients that
+     * accept gzip without compressing the bundle on every request
+     */
+    protected boolean isGzipBundle(Resource resource) {
+        return gzipBundles && !resource.getDescription().startsWith(MINIFIED_FILES_DIRECTORY);
+    }
     
     protected String getCacheKey(String unversionedBundleName, List<String> files) {
         return unversionedBundleName;
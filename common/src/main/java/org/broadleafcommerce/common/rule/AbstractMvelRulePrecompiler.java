@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.event.BroadleafApplicationListener;
+import org.broadleafcommerce.common.util.StreamCapableTransactionalOperationAdapter;
+import org.broadleafcommerce.common.util.StreamingTransactionCapableUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+/**
+ * Compiles the MVEL rules of a set of entities into their expression cache when the application context is refreshed,
+ * so that the first request that evaluates one of those rules does not pay the compilation cost. This runs in the
+ * background when a TaskExecutor is configured for the {@link org.broadleafcommerce.common.event.BroadleafApplicationEventMulticaster}.
+ *
+ * Also hooks the expression cache up to the {@link StatisticsService} so that hit, miss and compile time statistics
+ * are reported.
+ *
+ * Can be disabled with the <code>mvel.rule.precompile.enabled</code> property.
+ */
+public abstract class AbstractMvelRulePrecompiler implements BroadleafApplicationListener<ContextRefreshedEvent> {
+
+    protected final Log LOG = LogFactory.getLog(getClass());
+
+    @Resource(name = "blStatisticsService")
+    protected StatisticsService statisticsService;
+
+    @Resource(name = "blStreamingTransactionCapableUtil")
+    protected StreamingTransactionCapableUtil transUtil;
+
+    @Value("${mvel.rule.precompile.enabled:true}")
+    protected boolean precompileEnabled = true;
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        registerStatistics(statisticsService);
+        if (!precompileEnabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        final AtomicInteger count = new AtomicInteger(0);
+        try {
+            transUtil.runTransactionalOperation(new StreamCapableTransactionalOperationAdapter() {
+                @Override
+                public void execute() throws Throwable {
+                    count.set(precompileRules());
+                }
+            }, RuntimeException.class);
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to precompile MVEL rules", e);
+            return;
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Precompiled " + count.get() + " MVEL rules in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
+    /**
+     * Hooks the relevant expression cache(s) up to the given {@link StatisticsService}
+     */
+    protected abstract void registerStatistics(StatisticsService statisticsService);
+
+    /**
+     * Reads the active rules and compiles them into the relevant expression cache(s). Runs inside of a transaction.
+     *
+     * @return the number of rules that were submitted for compilation
+     */
+    protected abstract int precompileRules();
+
+}
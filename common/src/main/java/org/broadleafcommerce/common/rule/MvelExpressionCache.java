@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.broadleafcommerce.common.cache.StatisticsService;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ForwardingConcurrentMap;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded, concurrent cache of compiled MVEL expressions keyed by the original rule text.
+ *
+ * Unlike a synchronized LRU map, reads never block and a given rule is compiled at most once at a time: concurrent
+ * misses for the same rule wait on the single in-flight compilation instead of each compiling (or serializing on a
+ * shared monitor). Misses for different rules compile in parallel.
+ *
+ * This class is still a {@link java.util.Map} so that it can be handed to the existing
+ * {@link MvelHelper#evaluateRule(String, java.util.Map, java.util.Map)} style APIs.
+ *
+ * If a {@link StatisticsService} is set, hits, misses and compile times are reported under {@link #getStatisticsName()}.
+ */
+public class MvelExpressionCache extends ForwardingConcurrentMap<String, Serializable> {
+
+    protected final Cache<String, Serializable> cache;
+    protected final String statisticsName;
+    protected StatisticsService statisticsService;
+
+    protected final AtomicLong hitCount = new AtomicLong(0L);
+    protected final AtomicLong missCount = new AtomicLong(0L);
+    protected final AtomicLong compileCount = new AtomicLong(0L);
+    protected final AtomicLong compileTimeNanos = new AtomicLong(0L);
+
+    public MvelExpressionCache(int maxEntries, String statisticsName) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        this.statisticsName = statisticsName;
+    }
+
+    @Override
+    protected ConcurrentMap<String, Serializable> delegate() {
+        return cache.asMap();
+    }
+
+    /**
+     * Returns the compiled expression for the given rule, invoking the compiler if it is not already cached. Only
+     * one thread will ever run the compiler for a given rule at a time.
+     *
+     * @param rule the original (unmodified) rule text used as the cache key
+     * @param compiler compiles the rule when it is not cached
+     * @return the compiled expression
+     */
+    public Serializable getOrCompile(String rule, Callable<Serializable> compiler) {
+        Serializable exp = cache.getIfPresent(rule);
+        if (exp != null) {
+            recordLookup(true);
+            return exp;
+        }
+        recordLookup(false);
+        return compile(rule, compiler);
+    }
+
+    /**
+     * Compiles and caches the given rule ahead of time if it is not already cached. Unlike
+     * {@link #getOrCompile(String, Callable)}, this does not count as a cache lookup.
+     *
+     * @param rule the original (unmodified) rule text used as the cache key
+     * @param compiler compiles the rule when it is not cached
+     */
+    public void precompile(String rule, Callable<Serializable> compiler) {
+        if (cache.getIfPresent(rule) == null) {
+            compile(rule, compiler);
+        }
+    }
+
+    protected Serializable compile(String rule, final Callable<Serializable> compiler) {
+        try {
+            return cache.get(rule, new Callable<Serializable>() {
+                @Override
+                public Serializable call() throws Exception {
+                    long start = System.nanoTime();
+                    try {
+                        return compiler.call();
+                    } finally {
+                        recordCompile(System.nanoTime() - start);
+                    }
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    protected void recordLookup(boolean isHit) {
+        if (isHit) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        if (statisticsService != null) {
+            statisticsService.addCacheStat(statisticsName, isHit);
+        }
+    }
+
+    protected void recordCompile(long elapsedNanos) {
+        compileCount.incrementAndGet();
+        compileTimeNanos.addAndGet(elapsedNanos);
+        if (statisticsService != null) {
+            statisticsService.addCacheLoadTime(statisticsName, elapsedNanos);
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getCompileCount() {
+        return compileCount.get();
+    }
+
+    public long getCompileTimeNanos() {
+        return compileTimeNanos.get();
+    }
+
+    public String getStatisticsName() {
+        return statisticsName;
+    }
+
+    public StatisticsService getStatisticsService() {
+        return statisticsService;
+    }
+
+    public void setStatisticsService(StatisticsService statisticsService) {
+        this.statisticsService = statisticsService;
+    }
+}
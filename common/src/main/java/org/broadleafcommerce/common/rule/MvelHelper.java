@@ -22,9 +22,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
+import org.broadleafcommerce.common.cache.CacheStatType;
 import org.broadleafcommerce.common.presentation.client.SupportedFieldType;
 import org.broadleafcommerce.common.time.SystemTime;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.util.FormatUtil;
 import org.broadleafcommerce.common.util.StringUtil;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
@@ -36,6 +36,7 @@ import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -52,7 +53,8 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class MvelHelper {
 
-    private static final Map<String, Serializable> DEFAULT_EXPRESSION_CACHE = new EfficientLRUMap<String, Serializable>(5000);
+    private static final MvelExpressionCache DEFAULT_EXPRESSION_CACHE = new MvelExpressionCache(5000,
+            CacheStatType.MVEL_EXPRESSION_CACHE_HIT_RATE.toString());
     private static final Log LOG = LogFactory.getLog(MvelHelper.class);
 
     private static boolean TEST_MODE = false;
@@ -106,7 +108,7 @@ public class MvelHelper {
      * 
      * Calls the {@link #evaluateRule(String, Map, Map)} method passing in the DEFAULT_EXPRESSION_CACHE.
      * For systems that need to cache a large number of rule expressions, an alternate cache can be passed in.   The
-     * default cache is able to cache up to 1,000 rule expressions which should suffice for most systems.
+     * default cache is able to cache up to 5,000 rule expressions which should suffice for most systems.
      * 
      * @param rule
      * @param ruleParameters
@@ -129,6 +131,12 @@ public class MvelHelper {
     }
     
     /**
+     * Evaluates the passed in rule given the passed in parameters.
+     *
+     * The compiled form of the rule is cached in <b>expressionCache</b>. When that cache is a {@link MvelExpressionCache}
+     * lookups are lock-free and a given rule is compiled at most once, even under concurrent misses. The
+     * <b>ruleParameters</b> map is handed to MVEL as-is rather than copied, so rules should not assign variables.
+     *
      * @param rule
      * @param ruleParameters
      * @param expressionCache
@@ -144,35 +152,11 @@ public class MvelHelper {
             return true;
         } else {
             // MVEL expression compiling can be expensive so let's cache the expression
-            Serializable exp = null;
-            if (expressionCache != null) {
-                exp = expressionCache.get(rule);
-            }
-            if (exp == null) {
-                ParserContext context = new ParserContext();
-                context.addImport("MVEL", MVEL.class);
-                context.addImport("MvelHelper", MvelHelper.class);
-                context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
-                if (MapUtils.isNotEmpty(additionalContextImports)) {
-                    for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
-                        context.addImport(entry.getKey(), entry.getValue());
-                    }
-                }
-                
-                String modifiedRule = modifyExpression(rule, ruleParameters, context);
-
-                synchronized (expressionCache) {
-                    exp = MVEL.compileExpression(modifiedRule, context);
-                    expressionCache.put(rule, exp);
-                }
-            }
-
-            Map<String, Object> mvelParameters = new HashMap<String, Object>();
+            Serializable exp = getCompiledExpression(rule, ruleParameters, expressionCache, additionalContextImports);
 
-            if (ruleParameters != null) {
-                for (String parameter : ruleParameters.keySet()) {
-                    mvelParameters.put(parameter, ruleParameters.get(parameter));
-                }
+            Map<String, Object> mvelParameters = ruleParameters;
+            if (mvelParameters == null) {
+                mvelParameters = new HashMap<String, Object>();
             }
 
             try {
@@ -193,6 +177,118 @@ public class MvelHelper {
             }
         }
     }
+
+    /**
+     * Evaluates the passed in expression, compiled the same way as a rule given to
+     * {@link #evaluateRule(String, Map, Map, Map)}, and returns its raw result. Unlike evaluateRule, any exception
+     * raised while executing the expression is thrown to the caller.
+     *
+     * @param expression
+     * @param parameters
+     * @param expressionCache
+     * @param additionalContextImports
+     * @return the result of the expression
+     */
+    public static Object evaluateExpression(String expression, Map<String, Object> parameters,
+            Map<String, Serializable> expressionCache, Map<String, Class<?>> additionalContextImports) {
+        Serializable exp = getCompiledExpression(expression, parameters, expressionCache, additionalContextImports);
+        return MVEL.executeExpression(exp, parameters == null ? new HashMap<String, Object>() : parameters);
+    }
+
+    /**
+     * Compiles the passed in rule into the default expression cache without evaluating it. Used to warm the cache
+     * at startup so that the first request using a rule does not pay the compilation cost.
+     *
+     * @param rule
+     */
+    public static void precompileRule(String rule) {
+        precompileRule(rule, DEFAULT_EXPRESSION_CACHE, null);
+    }
+
+    /**
+     * Compiles the passed in rule into <b>expressionCache</b> without evaluating it. The same
+     * <b>additionalContextImports</b> that will later be used to evaluate the rule must be given here.
+     * 
+     * Rules that fail to compile are logged and skipped.
+     *
+     * @param rule
+     * @param expressionCache
+     * @param additionalContextImports
+     */
+    public static void precompileRule(final String rule, Map<String, Serializable> expressionCache,
+            final Map<String, Class<?>> additionalContextImports) {
+        if (rule == null || "".equals(rule) || expressionCache == null) {
+            return;
+        }
+        try {
+            if (expressionCache instanceof MvelExpressionCache) {
+                ((MvelExpressionCache) expressionCache).precompile(rule, new Callable<Serializable>() {
+                    @Override
+                    public Serializable call() {
+                        return compileExpression(rule, null, additionalContextImports);
+                    }
+                });
+            } else if (!expressionCache.containsKey(rule)) {
+                Serializable exp = compileExpression(rule, null, additionalContextImports);
+                synchronized (expressionCache) {
+                    expressionCache.put(rule, exp);
+                }
+            }
+        } catch (Exception e) {
+            if (!TEST_MODE && LOG.isInfoEnabled()) {
+                LOG.info("Unable to precompile the mvel expression (" + StringUtil.sanitize(rule) + ")", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the default cache used by {@link #evaluateRule(String, Map)}
+     */
+    public static MvelExpressionCache getDefaultExpressionCache() {
+        return DEFAULT_EXPRESSION_CACHE;
+    }
+
+    protected static Serializable getCompiledExpression(final String rule, final Map<String, Object> ruleParameters,
+            Map<String, Serializable> expressionCache, final Map<String, Class<?>> additionalContextImports) {
+        if (expressionCache instanceof MvelExpressionCache) {
+            return ((MvelExpressionCache) expressionCache).getOrCompile(rule, new Callable<Serializable>() {
+                @Override
+                public Serializable call() {
+                    return compileExpression(rule, ruleParameters, additionalContextImports);
+                }
+            });
+        }
+
+        Serializable exp = null;
+        if (expressionCache != null) {
+            exp = expressionCache.get(rule);
+        }
+        if (exp == null) {
+            exp = compileExpression(rule, ruleParameters, additionalContextImports);
+            if (expressionCache != null) {
+                synchronized (expressionCache) {
+                    expressionCache.put(rule, exp);
+                }
+            }
+        }
+        return exp;
+    }
+
+    protected static Serializable compileExpression(String rule, Map<String, Object> ruleParameters,
+            Map<String, Class<?>> additionalContextImports) {
+        ParserContext context = new ParserContext();
+        context.addImport("MVEL", MVEL.class);
+        context.addImport("MvelHelper", MvelHelper.class);
+        context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
+        if (MapUtils.isNotEmpty(additionalContextImports)) {
+            for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
+                context.addImport(entry.getKey(), entry.getValue());
+            }
+        }
+
+        String modifiedRule = modifyExpression(rule, ruleParameters, context);
+        return MVEL.compileExpression(modifiedRule, context);
+    }
     
     /**
      * <p>
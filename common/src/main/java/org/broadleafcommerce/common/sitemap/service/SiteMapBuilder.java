@@ -15,157 +15,222 @@
  * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
  * #L%
  */
-
 package org.broadleafcommerce.common.sitemap.service;
 
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.file.domain.FileWorkArea;
 import org.broadleafcommerce.common.file.service.BroadleafFileUtils;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapIndexWrapper;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLSetWrapper;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapImageWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapWrapper;
 import org.broadleafcommerce.common.util.FormatUtil;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Handles creating the various sitemap files. 
+ * </p>
+ * URLs are streamed to the current sitemap file as they are added, gzipped on the fly when {@code gzipSiteMapFiles}
+ * is set, so only the URL being written is held in memory no matter how large the sitemap gets. Once a file holds
+ * {@link SiteMapConfiguration#getMaximumUrlEntriesPerFile()} URLs it is closed as the next indexed file and a new one
+ * is started. {@link #addUrl(SiteMapURLWrapper)} may be called by several generators concurrently.
  * 
  * @author bpolster
  */
 public class SiteMapBuilder {
 
     protected static final Log LOG = LogFactory.getLog(SiteMapBuilder.class);
+
+    protected static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    protected static final String IMAGE_NAMESPACE = "http://www.google.com/schemas/sitemap-image/1.1";
+    protected static final String IMAGE_PREFIX = "image";
+    protected static final String ENCODING_EXTENSION = ".gz";
+    protected static final String IN_PROGRESS_EXTENSION = ".part";
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
     protected FileWorkArea fileWorkArea;
 
     protected SiteMapConfiguration siteMapConfig;
-    protected SiteMapURLSetWrapper currentURLSetWrapper;
+    protected SiteMapFile currentFile;
+    protected int currentFileUrlCount = 0;
+    protected int fileSequence = 0;
     protected List<String> indexedFileNames = new ArrayList<String>();
     protected String baseUrl;
     protected boolean gzipSiteMapFiles = true;
+    protected boolean isolatedPersistenceContext = false;
 
     public SiteMapBuilder(SiteMapConfiguration siteMapConfig, FileWorkArea fileWorkArea, String baseUrl, boolean gzipSiteMapFiles) {
         this.fileWorkArea = fileWorkArea;
         this.siteMapConfig = siteMapConfig;
-        this.currentURLSetWrapper = new SiteMapURLSetWrapper();
         this.baseUrl = baseUrl;
         this.gzipSiteMapFiles = gzipSiteMapFiles;
     }
 
     /**
-     * Returns the SiteMapURLSetWrapper that a Generator should use to add its next URL element.
+     * Writes the given URL element to the current sitemap file, starting a new file first if the current one is full.
      * 
      */
-    public void addUrl(SiteMapURLWrapper urlWrapper) {
-        if (currentURLSetWrapper.getSiteMapUrlWrappers().size() >= siteMapConfig.getMaximumUrlEntriesPerFile()) {
-            persistIndexedURLSetWrapper(currentURLSetWrapper);
-            currentURLSetWrapper = new SiteMapURLSetWrapper();
+    public synchronized void addUrl(SiteMapURLWrapper urlWrapper) {
+        try {
+            if (currentFile == null) {
+                // the first file is kept uncompressed as well, in case it turns out to be the only one
+                currentFile = openDocument("urlset", true);
+            } else if (currentFileUrlCount >= siteMapConfig.getMaximumUrlEntriesPerFile()) {
+                closeIndexedURLSet();
+                currentFile = openDocument("urlset", false);
+            }
+            writeUrl(currentFile.getWriter(), urlWrapper);
+            currentFileUrlCount++;
+        } catch (IOException | XMLStreamException e) {
+            abort();
+            LOG.error("Exception occurred writing a sitemap URL", e);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", e);
         }
-        currentURLSetWrapper.getSiteMapUrlWrappers().add(urlWrapper);
     }
 
     /**
-     * Method takes in a valid JAXB object (e.g. has a RootElement) and persists it to 
-     * the temporary directory associated with this builder. 
+     * Starts a new sitemap document in the work area under a temporary name. It is only given its final name by
+     * {@link SiteMapFile#close(String, boolean)}.
      * 
-     * @param fileName
+     * @param rootElement the name of the document element
+     * @param keepUncompressedCopy whether to write an uncompressed copy next to the gzipped file
      */
-    protected void persistXMLDocument(String fileName, Object xmlObject) {
-
-        try {
-            JAXBContext context = JAXBContext.newInstance(xmlObject.getClass());
-            Marshaller m = context.createMarshaller();
-            m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            m.setProperty(Marshaller.JAXB_FRAGMENT, true);
-
-            File file = new File(fileWorkArea.getFilePathLocation() + fileName);
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Persisting SiteMap document " + file.getAbsolutePath());
+    protected SiteMapFile openDocument(String rootElement, boolean keepUncompressedCopy) throws IOException, XMLStreamException {
+        String tempFileName = "sitemap-" + (++fileSequence) + IN_PROGRESS_EXTENSION;
+        File plainFile = null;
+        File gzipFile = null;
+        OutputStream out;
+        if (gzipSiteMapFiles) {
+            gzipFile = getWorkAreaFile(tempFileName + ENCODING_EXTENSION);
+            out = new GZIPOutputStream(new FileOutputStream(gzipFile), BUFFER_SIZE);
+            if (keepUncompressedCopy) {
+                plainFile = getWorkAreaFile(tempFileName);
+                out = new TeeOutputStream(out, new BufferedOutputStream(new FileOutputStream(plainFile), BUFFER_SIZE));
             }
+        } else {
+            plainFile = getWorkAreaFile(tempFileName);
+            out = new BufferedOutputStream(new FileOutputStream(plainFile), BUFFER_SIZE);
+        }
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Streaming SiteMap document to " + (plainFile != null ? plainFile : gzipFile).getAbsolutePath());
+        }
 
-            if (!file.exists()) {
-                file.createNewFile();
-            }
-            Writer writer = new BufferedWriter(new FileWriter(file.getAbsoluteFile()));
-            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-            m.marshal(xmlObject, writer);
-            writer.close();
-        } catch (IOException ioe) {
-            LOG.error("IOException occurred persisting XML Document", ioe);
-            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
-        } catch (JAXBException je) {
-            LOG.error("JAXBException occurred persisting XML Document", je);
-            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", je);
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters("\n");
+        writer.setDefaultNamespace(SITEMAP_NAMESPACE);
+        writer.setPrefix(IMAGE_PREFIX, IMAGE_NAMESPACE);
+        writer.writeStartElement(SITEMAP_NAMESPACE, rootElement);
+        writer.writeDefaultNamespace(SITEMAP_NAMESPACE);
+        writer.writeNamespace(IMAGE_PREFIX, IMAGE_NAMESPACE);
+        return new SiteMapFile(writer, out, plainFile, gzipFile);
+    }
+
+    protected void writeUrl(XMLStreamWriter writer, SiteMapURLWrapper urlWrapper) throws XMLStreamException {
+        writer.writeCharacters("\n    ");
+        writer.writeStartElement(SITEMAP_NAMESPACE, "url");
+        writeElement(writer, "\n        ", SITEMAP_NAMESPACE, "loc", urlWrapper.getLoc());
+        writeElement(writer, "\n        ", SITEMAP_NAMESPACE, "lastmod", urlWrapper.getLastmod());
+        writeElement(writer, "\n        ", SITEMAP_NAMESPACE, "changefreq", urlWrapper.getChangefreq());
+        writeElement(writer, "\n        ", SITEMAP_NAMESPACE, "priority", urlWrapper.getPriority());
+        for (SiteMapImageWrapper imageWrapper : urlWrapper.getSiteMapImageWrappers()) {
+            writer.writeCharacters("\n        ");
+            writer.writeStartElement(IMAGE_NAMESPACE, "image");
+            writeElement(writer, "\n            ", IMAGE_NAMESPACE, "loc", imageWrapper.getLoc());
+            writer.writeCharacters("\n        ");
+            writer.writeEndElement();
+        }
+        writer.writeCharacters("\n    ");
+        writer.writeEndElement();
+    }
+
+    protected void writeElement(XMLStreamWriter writer, String indent, String namespace, String name, String value)
+            throws XMLStreamException {
+        if (value == null) {
+            return;
         }
+        writer.writeCharacters(indent);
+        writer.writeStartElement(namespace, name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
     }
 
     /**
-     * Save the passed in URL set to a new indexed file. 
+     * Closes the current URL set as the next indexed file. 
      * 
-     * @return
      */
-    protected void persistIndexedURLSetWrapper(SiteMapURLSetWrapper urlSetWrapper) {
+    protected void closeIndexedURLSet() throws IOException, XMLStreamException {
         String indexedFileName = createNextIndexedFileName();
+        currentFile.close(indexedFileName, !gzipSiteMapFiles);
         indexedFileNames.add(indexedFileName);
-        persistXMLDocument(indexedFileName, urlSetWrapper);
+        currentFile = null;
+        currentFileUrlCount = 0;
     }
 
     /**
-     * Save the passed in URL set to a non-indexed file. 
+     * Save the URL set to a non-indexed file. 
      * 
-     * @return
      */
-    protected void persistNonIndexedSiteMap() {
+    protected void persistNonIndexedSiteMap() throws IOException, XMLStreamException {
+        if (currentFile == null) {
+            currentFile = openDocument("urlset", true);
+        }
+        currentFile.close(siteMapConfig.getSiteMapFileName(), true);
         indexedFileNames.add(siteMapConfig.getSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getSiteMapFileName(), currentURLSetWrapper);
+        currentFile = null;
     }
 
     /**
-     * Save the site map index file. 
+     * Save the leftover URL set and the site map index file. 
      * 
-     * @return
      */
-    protected void persistIndexedSiteMap() {
+    protected void persistIndexedSiteMap() throws IOException, XMLStreamException {
         String now = FormatUtil.formatDateUsingW3C(new Date());
-        
+
         // Save the leftover URL set
-        persistIndexedURLSetWrapper(currentURLSetWrapper);
+        if (currentFile != null) {
+            closeIndexedURLSet();
+        }
 
         // Build the siteMapIndex
-        SiteMapIndexWrapper siteMapIndexWrapper = new SiteMapIndexWrapper();
+        SiteMapFile indexFile = openDocument("sitemapindex", true);
+        XMLStreamWriter writer = indexFile.getWriter();
         for (String fileName : indexedFileNames) {
-            SiteMapWrapper siteMapWrapper = new SiteMapWrapper();
             String fileLoc = null;
             if (gzipSiteMapFiles) {
-                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + ".gz");
+                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + ENCODING_EXTENSION);
             } else {
                 fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName);
             }
-            siteMapWrapper.setLoc(fileLoc)   ;         
-            siteMapWrapper.setLastmod(now);
-            siteMapIndexWrapper.getSiteMapWrappers().add(siteMapWrapper);
+            writer.writeCharacters("\n    ");
+            writer.writeStartElement(SITEMAP_NAMESPACE, "sitemap");
+            writeElement(writer, "\n        ", SITEMAP_NAMESPACE, "loc", fileLoc);
+            writeElement(writer, "\n        ", SITEMAP_NAMESPACE, "lastmod", now);
+            writer.writeCharacters("\n    ");
+            writer.writeEndElement();
         }
 
         if (LOG.isTraceEnabled()) {
             LOG.trace("Persisting sitemap.xml file for indexed site map ");
         }
+        indexFile.close(siteMapConfig.getIndexedSiteMapFileName(), true);
         indexedFileNames.add(siteMapConfig.getIndexedSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getIndexedSiteMapFileName(),
-                siteMapIndexWrapper);
     }
 
     /**
@@ -181,14 +246,35 @@ public class SiteMapBuilder {
         return fileName;
     }
 
-    protected void persistSiteMap() {
-        if (indexedFileNames.size() > 0) {
-            persistIndexedSiteMap();
-        } else {
-            persistNonIndexedSiteMap();
+    protected synchronized void persistSiteMap() {
+        try {
+            if (indexedFileNames.size() > 0) {
+                persistIndexedSiteMap();
+            } else {
+                persistNonIndexedSiteMap();
+            }
+        } catch (IOException | XMLStreamException e) {
+            abort();
+            LOG.error("Exception occurred persisting XML Document", e);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", e);
         }
     }
 
+    /**
+     * Closes and deletes the file currently being written, if any. Used when generating the sitemap failed.
+     */
+    protected synchronized void abort() {
+        if (currentFile != null) {
+            currentFile.delete();
+            currentFile = null;
+            currentFileUrlCount = 0;
+        }
+    }
+
+    protected File getWorkAreaFile(String fileName) {
+        return new File(fileWorkArea.getFilePathLocation() + fileName);
+    }
+
     public List<String> getIndexedFileNames() {
         return indexedFileNames;
     }
@@ -197,4 +283,85 @@ public class SiteMapBuilder {
         return baseUrl;
     }
 
+    /**
+     * @return whether the files written by this builder are already gzipped
+     */
+    public boolean isGzipSiteMapFiles() {
+        return gzipSiteMapFiles;
+    }
+
+    /**
+     * @return true when the generators run with a persistence context of their own, which they may then clear after
+     * each page of entities so that memory stays bounded by one page
+     */
+    public boolean isIsolatedPersistenceContext() {
+        return isolatedPersistenceContext;
+    }
+
+    public void setIsolatedPersistenceContext(boolean isolatedPersistenceContext) {
+        this.isolatedPersistenceContext = isolatedPersistenceContext;
+    }
+
+    /**
+     * A sitemap document being streamed to the work area, as a gzipped file, an uncompressed file or both.
+     */
+    protected class SiteMapFile {
+
+        protected final XMLStreamWriter writer;
+        protected final OutputStream out;
+        protected final File plainFile;
+        protected final File gzipFile;
+
+        public SiteMapFile(XMLStreamWriter writer, OutputStream out, File plainFile, File gzipFile) {
+            this.writer = writer;
+            this.out = out;
+            this.plainFile = plainFile;
+            this.gzipFile = gzipFile;
+        }
+
+        public XMLStreamWriter getWriter() {
+            return writer;
+        }
+
+        /**
+         * Ends the document and moves it to its final name, with {@link #ENCODING_EXTENSION} appended for the gzipped
+         * file.
+         * 
+         * @param fileName the final name of the document
+         * @param keepUncompressedCopy whether the uncompressed copy, if one was written, should be kept
+         */
+        public void close(String fileName, boolean keepUncompressedCopy) throws IOException, XMLStreamException {
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+            out.close();
+            if (gzipFile != null) {
+                Files.move(gzipFile.toPath(), getWorkAreaFile(fileName + ENCODING_EXTENSION).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (plainFile != null) {
+                if (keepUncompressedCopy) {
+                    Files.move(plainFile.toPath(), getWorkAreaFile(fileName).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.delete(plainFile.toPath());
+                }
+            }
+        }
+
+        public void delete() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOG.debug("Unable to close an aborted sitemap file", e);
+            }
+            if (gzipFile != null) {
+                gzipFile.delete();
+            }
+            if (plainFile != null) {
+                plainFile.delete();
+            }
+        }
+    }
 }
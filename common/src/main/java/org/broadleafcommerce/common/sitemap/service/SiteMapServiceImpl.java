@@ -18,7 +18,6 @@
 
 package org.broadleafcommerce.common.sitemap.service;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.config.domain.ModuleConfiguration;
@@ -29,19 +28,32 @@ import org.broadleafcommerce.common.file.service.BroadleafFileService;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
 import org.broadleafcommerce.common.sitemap.exception.SiteMapException;
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
 import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.common.util.EntityManagerAwareRunnable;
 import org.broadleafcommerce.common.web.BaseUrlResolver;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 
 /**
  * Component responsible for generating a sitemap.   Relies on SiteMapGenerators to 
@@ -49,6 +61,12 @@ import javax.annotation.Resource;
  * 
  * Create a sitemap index file and at least one sitemap file with the URL elements.
  * 
+ * When "sitemap.generator.threads" is greater than 1, the generators for the different configurations run concurrently
+ * on that many threads, each with its own EntityManager, and URLs from different generators may be interleaved in the
+ * sitemap files. Otherwise they run one after the other on the calling thread, sharing an EntityManager of their own
+ * unless the caller is in a transaction. Either way the generators may clear their persistence context after each
+ * page of entities, so memory stays bounded by one page rather than growing with the catalog.
+ * 
  * @author bpolster
  *
  */
@@ -61,6 +79,9 @@ public class SiteMapServiceImpl implements SiteMapService {
 
     protected Boolean gzipSiteMapFiles;
 
+    @Value("${sitemap.generator.threads:1}")
+    protected int generatorThreads = 1;
+
     @Resource(name = "blModuleConfigurationService")
     protected ModuleConfigurationService moduleConfigurationService;
 
@@ -92,6 +113,8 @@ public class SiteMapServiceImpl implements SiteMapService {
         if (LOG.isTraceEnabled()) {
             LOG.trace("File work area initalized with path " + fileWorkArea.getFilePathLocation());
         }
+        List<SiteMapGeneratorConfiguration> configurations = new ArrayList<SiteMapGeneratorConfiguration>();
+        List<SiteMapGenerator> generators = new ArrayList<SiteMapGenerator>();
         for (SiteMapGeneratorConfiguration currentConfiguration : smc.getSiteMapGeneratorConfigurations()) {
             if (currentConfiguration.isDisabled()) {
                 if (LOG.isTraceEnabled()) {
@@ -101,21 +124,29 @@ public class SiteMapServiceImpl implements SiteMapService {
             }
             SiteMapGenerator generator = selectSiteMapGenerator(currentConfiguration);
             if (generator != null) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
-                }
-                generator.addSiteMapEntries(currentConfiguration, siteMapBuilder);
+                configurations.add(currentConfiguration);
+                generators.add(generator);
             } else {
                 LOG.warn("No site map generator found to process generator configuration for " + currentConfiguration.getSiteMapGeneratorType());
             }
         }
 
-        siteMapBuilder.persistSiteMap();
+        try {
+            if (generatorThreads > 1) {
+                addSiteMapEntriesConcurrently(configurations, generators, siteMapBuilder);
+            } else {
+                addSiteMapEntriesSequentially(configurations, generators, siteMapBuilder);
+            }
+        } catch (RuntimeException e) {
+            siteMapBuilder.abort();
+            broadleafFileService.closeWorkArea(fileWorkArea);
+            throw e;
+        }
 
+        siteMapBuilder.persistSiteMap();
 
-        // Check for GZip
-        if (getGzipSiteMapFiles()) {
-            gzipAndDeleteFiles(fileWorkArea, siteMapBuilder.getIndexedFileNames(), false);
+        // The builder gzips the files while writing them
+        if (siteMapBuilder.isGzipSiteMapFiles()) {
             List<String> indexFileNames = new ArrayList<String>();
             for (String fileName: siteMapBuilder.getIndexedFileNames()) {
                 indexFileNames.add(fileName + ENCODING_EXTENSION);
@@ -133,6 +164,119 @@ public class SiteMapServiceImpl implements SiteMapService {
         return smgr;
     }
 
+    protected void addSiteMapEntries(SiteMapGeneratorConfiguration configuration, SiteMapGenerator generator,
+            SiteMapBuilder siteMapBuilder) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
+        }
+        generator.addSiteMapEntries(configuration, siteMapBuilder);
+    }
+
+    /**
+     * Runs the generators one after the other on the calling thread. Unless the caller is in a transaction, whose
+     * pending changes clearing would discard, the caller's EntityManager is set aside and the generators share a new
+     * one, which they may clear between pages. The caller's EntityManager is bound again afterwards.
+     */
+    protected void addSiteMapEntriesSequentially(List<SiteMapGeneratorConfiguration> configurations,
+            List<SiteMapGenerator> generators, SiteMapBuilder siteMapBuilder) {
+        EntityManagerFactory emf = getEntityManagerFactory();
+        if (emf == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (int i = 0; i < configurations.size(); i++) {
+                addSiteMapEntries(configurations.get(i), generators.get(i), siteMapBuilder);
+            }
+            return;
+        }
+
+        Object callerResource = TransactionSynchronizationManager.unbindResourceIfPossible(emf);
+        EntityManager em = emf.createEntityManager();
+        TransactionSynchronizationManager.bindResource(emf, new EntityManagerHolder(em));
+        siteMapBuilder.setIsolatedPersistenceContext(true);
+        try {
+            for (int i = 0; i < configurations.size(); i++) {
+                addSiteMapEntries(configurations.get(i), generators.get(i), siteMapBuilder);
+            }
+        } finally {
+            siteMapBuilder.setIsolatedPersistenceContext(false);
+            TransactionSynchronizationManager.unbindResource(emf);
+            EntityManagerFactoryUtils.closeEntityManager(em);
+            if (callerResource != null) {
+                TransactionSynchronizationManager.bindResource(emf, callerResource);
+            }
+        }
+    }
+
+    /**
+     * @return the factory of the EntityManager the generators read through, or null when there is no application
+     * context to find it in
+     */
+    protected EntityManagerFactory getEntityManagerFactory() {
+        ApplicationContext applicationContext = ApplicationContextHolder.getApplicationContext();
+        if (applicationContext == null) {
+            return null;
+        }
+        return EntityManagerFactoryUtils.findEntityManagerFactory(applicationContext,
+                EntityManagerAwareRunnable.DEFAULT_ENTITY_MANAGER_NAME);
+    }
+
+    /**
+     * Runs the generators on a pool of {@link #generatorThreads} threads and waits for all of them to finish. Each
+     * generator gets its own EntityManager and a copy of the caller's {@link BroadleafRequestContext}, so it may clear
+     * its persistence context between pages. The first failure is rethrown once every generator has finished.
+     */
+    protected void addSiteMapEntriesConcurrently(List<SiteMapGeneratorConfiguration> configurations,
+            List<SiteMapGenerator> generators, final SiteMapBuilder siteMapBuilder) {
+        if (configurations.isEmpty()) {
+            return;
+        }
+        BroadleafRequestContext callerContext = BroadleafRequestContext.getBroadleafRequestContext(false);
+        final BroadleafRequestContext context = callerContext == null ? null : callerContext.createLightWeightClone();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        siteMapBuilder.setIsolatedPersistenceContext(true);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("sitemap-generator-");
+        threadFactory.setDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(generatorThreads, configurations.size()), threadFactory);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        try {
+            for (int i = 0; i < configurations.size(); i++) {
+                final SiteMapGeneratorConfiguration configuration = configurations.get(i);
+                final SiteMapGenerator generator = generators.get(i);
+                futures.add(executor.submit(new EntityManagerAwareRunnable() {
+                    @Override
+                    protected void executeInternal() throws Exception {
+                        if (context != null) {
+                            BroadleafRequestContext.setBroadleafRequestContext(context.createLightWeightClone());
+                        }
+                        if (failure.get() == null) {
+                            addSiteMapEntries(configuration, generator, siteMapBuilder);
+                        }
+                    }
+
+                    @Override
+                    protected void registerError(Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SiteMapException("Interrupted while generating the sitemap", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (failure.get() != null) {
+            throw new SiteMapException("Error generating the sitemap", failure.get());
+        }
+    }
+
     @Override
     public File getSiteMapFile(String fileName) throws SiteMapException, IOException {
         if (LOG.isTraceEnabled()) {
@@ -214,51 +358,6 @@ public class SiteMapServiceImpl implements SiteMapService {
         return null;
     }
 
-    /**
-     *
-     * @param fileWorkArea
-     * @param fileNames
-     */
-    protected void gzipAndDeleteFiles(FileWorkArea fileWorkArea, List<String> fileNames,boolean shouldDeleteOriginal){
-        for (String fileName : fileNames) {
-            try {
-                String fileNameWithPath = FilenameUtils.normalize(fileWorkArea.getFilePathLocation() + File.separator + fileName);
-
-                FileInputStream fis = new FileInputStream(fileNameWithPath);
-                FileOutputStream fos = new FileOutputStream(fileNameWithPath + ENCODING_EXTENSION);
-                GZIPOutputStream gzipOS = new GZIPOutputStream(fos);
-                byte[] buffer = new byte[1024];
-                int len;
-                while ((len = fis.read(buffer)) != -1) {
-                    gzipOS.write(buffer, 0, len);
-                }
-                //close resources
-                gzipOS.close();
-                fos.close();
-                fis.close();
-
-                if(shouldDeleteOriginal){
-                    File originalFile = new File(fileNameWithPath);
-                    originalFile.delete();
-                }
-
-
-            } catch (IOException e) {
-                LOG.error("Error writing zip file.", e);
-            }
-        }
-    }
-
-    /**
-     * GZip a file, Then delete it
-     * @param fileWorkArea
-     * @param fileNames
-     */
-    protected void gzipAndDeleteFiles(FileWorkArea fileWorkArea, List<String> fileNames) {
-        gzipAndDeleteFiles(fileWorkArea,fileNames,true);
-    }
-
-
     public List<SiteMapGenerator> getSiteMapGenerators() {
         return siteMapGenerators;
     }
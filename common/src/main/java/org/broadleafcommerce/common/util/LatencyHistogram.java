@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of elapsed times. Samples are counted in power-of-two microsecond buckets (bucket 0 holds
+ * everything under 1 microsecond, bucket n holds [2^(n-1), 2^n) microseconds), so recording a sample is a couple of
+ * uncontended {@link LongAdder} increments and never blocks, no matter how many threads record at once.
+ * </p>
+ * Percentiles are reported as the upper bound of the bucket containing them, which overestimates by at most a
+ * factor of two. That is accurate enough to tell a 1ms lock wait from a 1s one, which is what this is used for.
+ */
+public class LatencyHistogram {
+
+    protected static final int BUCKET_COUNT = 40;
+
+    protected final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder totalNanos = new LongAdder();
+    protected final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long elapsedNanos) {
+        if (elapsedNanos < 0L) {
+            elapsedNanos = 0L;
+        }
+        buckets[bucketFor(elapsedNanos)].increment();
+        count.increment();
+        totalNanos.add(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return the mean elapsed time in microseconds, or 0 if nothing has been recorded
+     */
+    public double getMeanMicros() {
+        long samples = getCount();
+        if (samples == 0L) {
+            return 0D;
+        }
+        return getTotalNanos() / 1000D / samples;
+    }
+
+    /**
+     * @param percentile a value between 0 and 100
+     * @return the upper bound, in microseconds, of the bucket containing the given percentile, or 0 if nothing has
+     * been recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] counts = getBucketCounts();
+        long samples = 0L;
+        for (long bucketCount : counts) {
+            samples += bucketCount;
+        }
+        if (samples == 0L) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(samples * Math.min(100D, Math.max(0D, percentile)) / 100D);
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0L) {
+                return getBucketUpperBoundMicros(i);
+            }
+        }
+        return getBucketUpperBoundMicros(counts.length - 1);
+    }
+
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return the exclusive upper bound of the given bucket in microseconds
+     */
+    public static long getBucketUpperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    protected int bucketFor(long elapsedNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[count: %s, mean: %.1fus, p50: <%sus, p90: <%sus, p99: <%sus, max: %sus]", getCount(),
+                getMeanMicros(), getPercentileMicros(50D), getPercentileMicros(90D), getPercentileMicros(99D),
+                TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
+    }
+}
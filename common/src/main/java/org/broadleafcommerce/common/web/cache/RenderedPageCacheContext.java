@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web.cache;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * Records on the request whether the page being rendered may be kept in the rendered page cache, and which content it
+ * depends on. Handler mappings that resolve content whose page is the same for every visitor, such as products,
+ * categories and CMS pages, mark the request as cacheable. Anything rendering content into the page can add further
+ * dependencies, so that the cached page is dropped when a {@link RenderedPageCacheInvalidationEvent} names one of them.
+ * </p>
+ * A dependency is recorded both as its type and as the type and id, so that an event for all the items of a type
+ * matches as well.
+ */
+public class RenderedPageCacheContext {
+
+    public static final String CACHEABLE_ATTRIBUTE = "blRenderedPageCacheable";
+
+    public static final String DEPENDENCIES_ATTRIBUTE = "blRenderedPageDependencies";
+
+    public static void markCacheable(ServletRequest request, String dependencyType, Long id) {
+        request.setAttribute(CACHEABLE_ATTRIBUTE, Boolean.TRUE);
+        addDependency(request, dependencyType, id);
+    }
+
+    public static void addDependency(ServletRequest request, String dependencyType, Long id) {
+        @SuppressWarnings("unchecked")
+        Set<String> dependencies = (Set<String>) request.getAttribute(DEPENDENCIES_ATTRIBUTE);
+        if (dependencies == null) {
+            dependencies = new HashSet<>();
+            request.setAttribute(DEPENDENCIES_ATTRIBUTE, dependencies);
+        }
+        dependencies.add(dependencyType);
+        if (id != null) {
+            dependencies.add(getDependencyTag(dependencyType, id));
+        }
+    }
+
+    public static boolean isCacheable(ServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(CACHEABLE_ATTRIBUTE));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Set<String> getDependencies(ServletRequest request) {
+        Set<String> dependencies = (Set<String>) request.getAttribute(DEPENDENCIES_ATTRIBUTE);
+        return dependencies == null ? Collections.<String>emptySet() : dependencies;
+    }
+
+    public static String getDependencyTag(String dependencyType, Long id) {
+        return dependencyType + ":" + id;
+    }
+}
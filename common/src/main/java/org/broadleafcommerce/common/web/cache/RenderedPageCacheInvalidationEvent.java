@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web.cache;
+
+import org.broadleafcommerce.common.event.BroadleafApplicationEvent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Published when content that rendered pages depend on changed, so that the cached pages depending on it are rendered
+ * again. The dependency type names the kind of content ({@link #PRODUCT}, {@link #CATEGORY}, {@link #SKU} or
+ * {@link #PAGE}) and the ids the changed items of that type. An empty set of ids means that any item of that type
+ * could have changed, and no dependency type at all means that any rendered page could be affected.
+ *
+ * @see RenderedPageCacheContext
+ */
+public class RenderedPageCacheInvalidationEvent extends BroadleafApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String PRODUCT = "product";
+    public static final String CATEGORY = "category";
+    public static final String SKU = "sku";
+    public static final String PAGE = "page";
+
+    protected final String dependencyType;
+
+    protected final Set<Long> ids;
+
+    /**
+     * @param source the object that changed the content
+     * @param dependencyType the type of the content that changed, or null for any content
+     * @param ids the ids of the items that changed, or an empty collection for all items of the type
+     */
+    public RenderedPageCacheInvalidationEvent(Object source, String dependencyType, Collection<Long> ids) {
+        super(source);
+        this.dependencyType = dependencyType;
+        this.ids = Collections.unmodifiableSet(new HashSet<>(ids));
+    }
+
+    public static RenderedPageCacheInvalidationEvent allPages(Object source) {
+        return new RenderedPageCacheInvalidationEvent(source, null, Collections.<Long>emptySet());
+    }
+
+    public String getDependencyType() {
+        return dependencyType;
+    }
+
+    public Set<Long> getIds() {
+        return ids;
+    }
+
+    public boolean isAllPages() {
+        return dependencyType == null;
+    }
+
+    public boolean isAllOfType() {
+        return ids.isEmpty();
+    }
+}
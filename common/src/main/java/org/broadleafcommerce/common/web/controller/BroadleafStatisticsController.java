@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web.controller;
+
+import org.broadleafcommerce.common.cache.CacheStat;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.web.JsonResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Writes the statistics recorded by the {@link StatisticsService} as JSON, for monitoring systems that pull their
+ * metrics over HTTP rather than through JMX. Like the other framework controllers this one is not mapped; extend it
+ * with a controller mapped to a URL that is only reachable by such systems, for example:
+ *
+ * <pre>
+ * &#64;Controller
+ * public class StatisticsController extends BroadleafStatisticsController {
+ *
+ *     &#64;RequestMapping("/internal/statistics")
+ *     public String statistics(HttpServletRequest request, HttpServletResponse response) {
+ *         return super.statistics(request, response);
+ *     }
+ * }
+ * </pre>
+ */
+public class BroadleafStatisticsController {
+
+    @Resource(name = "blStatisticsService")
+    protected StatisticsService statisticsService;
+
+    public String statistics(HttpServletRequest request, HttpServletResponse response) {
+        JsonResponse json = new JsonResponse(response);
+        for (Map.Entry<String, CacheStat> entry : statisticsService.getCacheStats().entrySet()) {
+            json.with(entry.getKey(), buildStatistic(entry.getValue()));
+        }
+        return json.done();
+    }
+
+    protected Map<String, Object> buildStatistic(CacheStat stat) {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("requestCount", stat.getRequestCount());
+        values.put("hitCount", stat.getCacheHitCount());
+        values.put("hitRate", stat.getHitRate());
+        values.put("loadCount", stat.getLoadCount());
+        if (stat.getLoadCount() > 0) {
+            values.put("loadAverageMillis", stat.getAverageLoadTimeMillis());
+            values.put("loadP50Millis", stat.getLoadTimePercentileMillis(50D));
+            values.put("loadP90Millis", stat.getLoadTimePercentileMillis(90D));
+            values.put("loadP99Millis", stat.getLoadTimePercentileMillis(99D));
+            values.put("loadMaxMillis", TimeUnit.NANOSECONDS.toMillis(stat.getLoadTimes().getMaxNanos()));
+        }
+        return values;
+    }
+}
@@ -109,7 +109,9 @@ public abstract class AbstractGeneratedResourceHandler implements Ordered {
         }
 
         if (shouldGenerate) {
+            long start = System.nanoTime();
             r = getFileContents(path, locations);
+            statisticsService.addCacheLoadTime(CacheStatType.GENERATED_RESOURCE_CACHE_HIT_RATE.toString(), System.nanoTime() - start);
             e = new Element(path,  r);
             getGeneratedResourceCache().put(e);
         }
@@ -17,14 +17,19 @@
  */
 package org.broadleafcommerce.common.web.resource;
 
+import org.broadleafcommerce.common.resource.service.ResourceBundlingService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
 import org.springframework.web.servlet.resource.ResourceResolver;
 import org.springframework.web.servlet.resource.ResourceTransformer;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -38,6 +43,10 @@ import javax.servlet.http.HttpServletResponse;
  * Provides a PostConstruct method that sorts the {@link ResourceResolver}, {@link ResourceTransformer}, 
  * or location ({@link Resource}) collections based on the {@link Ordered} interface.
  * 
+ * <p>
+ * Bundles that were saved with a gzip compressed copy are served from that copy to clients that accept gzip, so
+ * they are not compressed again on every request.
+ * 
  *  
  * @author bpolster
  *
@@ -47,6 +56,9 @@ public class BroadleafResourceHttpRequestHandler extends ResourceHttpRequestHand
     @Resource(name = "blBroadleafContextUtil")
     protected BroadleafContextUtil blcContextUtil;
 
+    @Resource(name = "blResourceBundlingService")
+    protected ResourceBundlingService bundlingService;
+
     @Value("${staticResourceBrowserCacheSeconds}")
     protected long cacheSeconds = 0;
 
@@ -79,10 +91,38 @@ public class BroadleafResourceHttpRequestHandler extends ResourceHttpRequestHand
         }
     }
 
+    /**
+     * Swaps a bundle for its gzip compressed copy when the client accepts gzip. Only bundles that come out of the
+     * transformers unchanged are swapped, and range requests are always served from the uncompressed bundle.
+     */
+    @Override
+    protected org.springframework.core.io.Resource getResource(HttpServletRequest request) throws IOException {
+        org.springframework.core.io.Resource resource = super.getResource(request);
+        if (resource instanceof FileSystemResource && resource.getFilename() != null
+                && request.getHeader(HttpHeaders.RANGE) == null && acceptsGzip(request)) {
+            org.springframework.core.io.Resource gzipped = bundlingService.resolveGzippedBundleResource(resource.getFilename());
+            if (gzipped != null) {
+                return new GzippedResource(resource, gzipped);
+            }
+        }
+        return resource;
+    }
+
+    protected boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
     @Override
     protected void setHeaders(HttpServletResponse response, org.springframework.core.io.Resource resource, MediaType
             mediaType) throws IOException {
         super.setHeaders(response, resource, mediaType);
+        if (resource instanceof GzippedResource) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        } else if (resource.getFilename() != null && bundlingService.resolveGzippedBundleResource(resource.getFilename()) != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
         //Add public to cache control for universal CDN recognition
         if (isUseCacheControlHeader() && cacheSeconds > 0) {
             String header = response.getHeader(HEADER_CACHE_CONTROL);
@@ -132,4 +172,49 @@ public class BroadleafResourceHttpRequestHandler extends ResourceHttpRequestHand
         }
 
     }
+
+    /**
+     * The gzip compressed copy of a bundle. It keeps the name and modification time of the bundle, so the media type
+     * and the conditional request handling are the same as for the bundle itself.
+     */
+    protected static class GzippedResource extends AbstractResource {
+
+        protected final org.springframework.core.io.Resource original;
+        protected final org.springframework.core.io.Resource gzipped;
+
+        public GzippedResource(org.springframework.core.io.Resource original, org.springframework.core.io.Resource gzipped) {
+            this.original = original;
+            this.gzipped = gzipped;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return gzipped.getInputStream();
+        }
+
+        @Override
+        public boolean exists() {
+            return gzipped.exists();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return gzipped.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return original.lastModified();
+        }
+
+        @Override
+        public String getFilename() {
+            return original.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return "gzipped " + original.getDescription();
+        }
+    }
 }
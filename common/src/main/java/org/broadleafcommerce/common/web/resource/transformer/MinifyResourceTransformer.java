@@ -17,6 +17,7 @@
  */
 package org.broadleafcommerce.common.web.resource.transformer;
 
+import org.broadleafcommerce.common.resource.service.ResourceBundlingService;
 import org.broadleafcommerce.common.resource.service.ResourceMinificationService;
 import org.broadleafcommerce.common.web.resource.resolver.BroadleafResourceTransformerOrder;
 import org.springframework.core.Ordered;
@@ -34,7 +35,8 @@ import javax.servlet.http.HttpServletRequest;
  * the resource.    Only works with allowed extensions (".css" and ".js" by default).
  * 
  * {@link org.broadleafcommerce.common.resource.service.ResourceMinificationService} is used to
- * perform the minification. 
+ * perform the minification. Bundles whose files were already minified one by one when the bundle was built
+ * are passed through unchanged.
  *
  * @author Brian Polster
  * @since 4.0
@@ -45,6 +47,9 @@ public class MinifyResourceTransformer implements ResourceTransformer, Ordered {
     @javax.annotation.Resource(name = "blResourceMinificationService")
     protected ResourceMinificationService minifyService;
 
+    @javax.annotation.Resource(name = "blResourceBundlingService")
+    protected ResourceBundlingService bundlingService;
+
     private int order = BroadleafResourceTransformerOrder.BLC_MINIFY_RESOURCE_TRANSFORMER;
 
     @Override
@@ -53,6 +58,10 @@ public class MinifyResourceTransformer implements ResourceTransformer, Ordered {
 
         Resource transformed = transformerChain.transform(request, resource);
 
+        if (transformed.getFilename() != null && bundlingService.isMinifiedBundle(transformed.getFilename())) {
+            return transformed;
+        }
+
         return minifyService.minify(transformed);
     }
 
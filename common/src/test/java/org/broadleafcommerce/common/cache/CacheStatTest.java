@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class CacheStatTest extends TestCase {
+
+    public void testConcurrentRequestsAreAllCounted() throws Exception {
+        final CacheStat stat = new CacheStat();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int j = 0; j < 10000; j++) {
+                            stat.incrementRequest();
+                            if (j % 4 != 0) {
+                                stat.incrementHit();
+                            } else {
+                                stat.incrementLoad(TimeUnit.MILLISECONDS.toNanos(2));
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(80000L, stat.getRequestCount().longValue());
+        assertEquals(60000L, stat.getCacheHitCount().longValue());
+        assertEquals(20000L, stat.getLoadCount().longValue());
+        assertEquals("75.00", stat.getHitRate().toString());
+        assertEquals("2.000", stat.getAverageLoadTimeMillis().toString());
+        // percentiles are reported as the upper bound of the [1024us, 2048us) bucket holding 2ms
+        assertEquals("2.048", stat.getLoadTimePercentileMillis(99D).toString());
+    }
+
+    public void testOnlyOneCallerClaimsEachLogInterval() throws Exception {
+        final CacheStat stat = new CacheStat();
+        stat.setLastLogTime(0L);
+        final AtomicInteger claims = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        if (stat.claimLog(1000L, 100L)) {
+                            claims.incrementAndGet();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, claims.get());
+        assertEquals(1000L, stat.getLastLogTime().longValue());
+        assertFalse(stat.claimLog(1050L, 100L));
+        assertTrue(stat.claimLog(1101L, 100L));
+    }
+
+    public void testEmptyStatistic() {
+        CacheStat stat = new CacheStat();
+
+        assertEquals(-1, stat.getHitRate().intValue());
+        assertEquals(-1, stat.getAverageLoadTimeMillis().intValue());
+        assertEquals(-1, stat.getLoadTimePercentileMillis(50D).intValue());
+    }
+
+    public void testReset() {
+        CacheStat stat = new CacheStat();
+        stat.incrementRequest();
+        stat.incrementHit();
+        stat.incrementLoad(1000L);
+        stat.reset();
+
+        assertEquals(0L, stat.getRequestCount().longValue());
+        assertEquals(0L, stat.getCacheHitCount().longValue());
+        assertEquals(0L, stat.getLoadCount().longValue());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extensibility;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class StartupArtifactCacheTest extends TestCase {
+
+    protected File directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("startup-cache").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(directory);
+    }
+
+    public void testEntriesSurviveANewInstance() {
+        String key = key("first");
+        new StartupArtifactCache(directory, null).put("classes", key, bytes("woven"));
+
+        StartupArtifactCache cache = new StartupArtifactCache(directory, null);
+        assertTrue(Arrays.equals(bytes("woven"), cache.get("classes", key)));
+        assertNull(cache.get("classes", key("second")));
+        assertNull(cache.get("xml", key));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    public void testCorruptEntriesAreDiscarded() throws Exception {
+        String key = key("first");
+        StartupArtifactCache cache = new StartupArtifactCache(directory, null);
+        cache.put("classes", key, bytes("woven"));
+        File file = cache.getEntryFile("classes", key);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(9);
+            raf.write('X');
+        }
+
+        assertNull(cache.get("classes", key));
+        assertEquals(1, cache.getInvalidCount());
+        assertFalse(file.exists());
+    }
+
+    public void testMarkersSurviveANewInstance() {
+        String key = key("first");
+        StartupArtifactCache cache = new StartupArtifactCache(directory, null);
+        assertFalse(cache.hasMarker("classes", key));
+        cache.addMarker("classes", key);
+        cache.addMarker("classes", key);
+        assertTrue(cache.hasMarker("classes", key));
+
+        StartupArtifactCache reopened = new StartupArtifactCache(directory, null);
+        assertTrue(reopened.hasMarker("classes", key));
+        assertFalse(reopened.hasMarker("classes", key("second")));
+    }
+
+    public void testSaltChangesTheKeys() {
+        MessageDigest first = new StartupArtifactCache(directory, "1").newKeyDigest();
+        MessageDigest second = new StartupArtifactCache(directory, "2").newKeyDigest();
+        assertFalse(Arrays.equals(first.digest(bytes("input")), second.digest(bytes("input"))));
+    }
+
+    public void testDisabledWithoutDirectory() {
+        StartupArtifactCache cache = new StartupArtifactCache(null, null);
+        assertFalse(cache.isEnabled());
+        cache.put("classes", key("first"), bytes("woven"));
+        assertNull(cache.get("classes", key("first")));
+        assertFalse(cache.hasMarker("classes", key("first")));
+    }
+
+    protected String key(String value) {
+        return StartupArtifactCache.toHex(StartupArtifactCache.newDigest().digest(bytes(value)));
+    }
+
+    protected byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+
+package org.broadleafcommerce.common.extension;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ExtensionManagerTest extends TestCase {
+
+    public interface TestExtensionHandler extends ExtensionHandler {
+
+        ExtensionResultStatusType record(List<String> calls, int value);
+    }
+
+    public static class TestExtensionManager extends ExtensionManager<TestExtensionHandler> {
+
+        public TestExtensionManager() {
+            super(TestExtensionHandler.class);
+        }
+    }
+
+    public static class TestHandler extends AbstractExtensionHandler implements TestExtensionHandler {
+
+        protected String name;
+        protected ExtensionResultStatusType result;
+
+        public TestHandler(String name, int priority, ExtensionResultStatusType result) {
+            this.name = name;
+            this.priority = priority;
+            this.result = result;
+        }
+
+        @Override
+        public ExtensionResultStatusType record(List<String> calls, int value) {
+            calls.add(name + value);
+            return result;
+        }
+    }
+
+    public void testGeneratedProxy() {
+        TestExtensionManager manager = new TestExtensionManager();
+        assertFalse("The proxy should be generated rather than a JDK proxy",
+                Proxy.isProxyClass(manager.getProxy().getClass()));
+    }
+
+    public void testNoHandlers() {
+        TestExtensionManager manager = new TestExtensionManager();
+        List<String> calls = new ArrayList<>();
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, manager.getProxy().record(calls, 1));
+        assertTrue(calls.isEmpty());
+    }
+
+    public void testPriorityOrderAndDisabledHandlers() {
+        TestExtensionManager manager = new TestExtensionManager();
+        TestHandler disabled = new TestHandler("disabled", 0, ExtensionResultStatusType.HANDLED);
+        disabled.setEnabled(false);
+        List<TestExtensionHandler> handlers = new ArrayList<>();
+        handlers.add(new TestHandler("second", 20, ExtensionResultStatusType.HANDLED_CONTINUE));
+        handlers.add(new TestHandler("first", 10, ExtensionResultStatusType.NOT_HANDLED));
+        handlers.add(disabled);
+        manager.setHandlers(handlers);
+
+        List<String> calls = new ArrayList<>();
+        assertEquals(ExtensionResultStatusType.HANDLED, manager.getProxy().record(calls, 7));
+        assertEquals(2, calls.size());
+        assertEquals("first7", calls.get(0));
+        assertEquals("second7", calls.get(1));
+    }
+
+    public void testHandledStopsProcessing() {
+        TestExtensionManager manager = new TestExtensionManager();
+        List<TestExtensionHandler> handlers = new ArrayList<>();
+        handlers.add(new TestHandler("first", 10, ExtensionResultStatusType.HANDLED));
+        handlers.add(new TestHandler("second", 20, ExtensionResultStatusType.HANDLED));
+        manager.setHandlers(handlers);
+
+        List<String> calls = new ArrayList<>();
+        assertEquals(ExtensionResultStatusType.HANDLED, manager.getProxy().record(calls, 1));
+        assertEquals(1, calls.size());
+        assertEquals("first1", calls.get(0));
+    }
+}
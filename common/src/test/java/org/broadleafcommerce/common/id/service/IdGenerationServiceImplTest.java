@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.id.service;
+
+import org.broadleafcommerce.common.id.dao.IdGenerationDao;
+import org.broadleafcommerce.common.id.domain.IdGeneration;
+import org.broadleafcommerce.common.id.domain.IdGenerationImpl;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class IdGenerationServiceImplTest extends TestCase {
+
+    protected static final int THREAD_COUNT = 8;
+    protected static final int IDS_PER_THREAD = 500;
+
+    /**
+     * Hands out consecutive ranges like the IdGeneration table would, taking a little time per call like a
+     * database round trip
+     */
+    public static class TestIdGenerationDao implements IdGenerationDao {
+
+        protected final long batchSize;
+        protected final long latencyMs;
+        protected final AtomicInteger calls = new AtomicInteger();
+        protected long batchStart = 1L;
+
+        public TestIdGenerationDao(long batchSize, long latencyMs) {
+            this.batchSize = batchSize;
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public IdGeneration findNextId(String idType) throws Exception {
+            return findNextId(idType, null);
+        }
+
+        @Override
+        public synchronized IdGeneration findNextId(String idType, Long batchSize) throws Exception {
+            calls.incrementAndGet();
+            if (latencyMs > 0L) {
+                Thread.sleep(latencyMs);
+            }
+            IdGeneration idGeneration = new IdGenerationImpl();
+            idGeneration.setType(idType);
+            idGeneration.setBatchStart(batchStart);
+            idGeneration.setBatchSize(this.batchSize);
+            batchStart += this.batchSize;
+            return idGeneration;
+        }
+    }
+
+    public void testIdsAreUniqueAndIncreasingUnderContention() throws Exception {
+        TestIdGenerationDao dao = new TestIdGenerationDao(100L, 1L);
+        Set<Long> ids = issueIdsConcurrently(dao, false);
+
+        assertEquals(THREAD_COUNT * IDS_PER_THREAD, ids.size());
+        // without prefetching every reserved range is used up before the next one is reserved
+        assertEquals(THREAD_COUNT * IDS_PER_THREAD / 100, dao.calls.get());
+        assertEquals(Long.valueOf(1L), Collections.min(ids));
+        assertEquals(Long.valueOf(THREAD_COUNT * IDS_PER_THREAD), Collections.max(ids));
+    }
+
+    public void testIdsAreUniqueAndIncreasingUnderContentionWithPrefetch() throws Exception {
+        TestIdGenerationDao dao = new TestIdGenerationDao(100L, 1L);
+        Set<Long> ids = issueIdsConcurrently(dao, true);
+
+        assertEquals(THREAD_COUNT * IDS_PER_THREAD, ids.size());
+        assertEquals(Long.valueOf(1L), Collections.min(ids));
+        assertTrue(Collections.max(ids) < dao.batchStart);
+    }
+
+    protected Set<Long> issueIdsConcurrently(TestIdGenerationDao dao, boolean prefetchEnabled) throws Exception {
+        final IdGenerationServiceImpl service = new IdGenerationServiceImpl();
+        service.idGenerationDao = dao;
+        service.prefetchEnabled = prefetchEnabled;
+
+        final Set<Long> ids = ConcurrentHashMap.newKeySet();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        long last = 0L;
+                        for (int j = 0; j < IDS_PER_THREAD; j++) {
+                            long id = service.findNextId("TEST");
+                            if (id <= last) {
+                                failure.compareAndSet(null, "Id " + id + " was issued after " + last);
+                            }
+                            if (!ids.add(id)) {
+                                failure.compareAndSet(null, "Id " + id + " was issued twice");
+                            }
+                            last = id;
+                        }
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e.toString());
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        service.shutdown();
+
+        assertNull(failure.get(), failure.get());
+        return ids;
+    }
+
+    public void testRangesArePrefetchedBeforeExhaustion() throws Exception {
+        TestIdGenerationDao dao = new TestIdGenerationDao(10L, 0L);
+        IdGenerationServiceImpl service = new IdGenerationServiceImpl();
+        service.idGenerationDao = dao;
+        service.prefetchEnabled = true;
+
+        for (long expected = 1L; expected <= 8L; expected++) {
+            assertEquals(Long.valueOf(expected), service.findNextId("TEST"));
+        }
+        IdGenerationServiceImpl.IdSegments segments = service.getSegments("TEST");
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (segments.reserved.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertFalse("The next range should be reserved in the background", segments.reserved.isEmpty());
+        assertEquals(Long.valueOf(9L), service.findNextId("TEST"));
+        assertEquals(Long.valueOf(10L), service.findNextId("TEST"));
+        assertEquals(Long.valueOf(11L), service.findNextId("TEST"));
+        service.shutdown();
+    }
+
+    public void testRangesAreNotPrefetchedUnlessEnabled() throws Exception {
+        TestIdGenerationDao dao = new TestIdGenerationDao(10L, 0L);
+        IdGenerationServiceImpl service = new IdGenerationServiceImpl();
+        service.idGenerationDao = dao;
+
+        for (long expected = 1L; expected <= 10L; expected++) {
+            assertEquals(Long.valueOf(expected), service.findNextId("TEST"));
+        }
+        assertTrue(service.getSegments("TEST").reserved.isEmpty());
+        assertEquals(1, dao.calls.get());
+        assertEquals(Long.valueOf(11L), service.findNextId("TEST"));
+        assertEquals(2, dao.calls.get());
+        service.shutdown();
+    }
+
+    public void testRangeCountAdaptsToIssueRate() {
+        IdGenerationServiceImpl service = new IdGenerationServiceImpl();
+        service.targetRefillIntervalMs = 1000L;
+        service.maxRangesPerRefill = 8;
+        IdGenerationServiceImpl.IdSegments segments = new IdGenerationServiceImpl.IdSegments();
+        segments.current = new IdGenerationServiceImpl.IdSegment(1L, 101L, 25L);
+
+        // 1000 ids per ms needs far more than 8 ranges of 100 ids per second
+        segments.lastRefillNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10L);
+        segments.issuedCount.add(10000L);
+        assertEquals(8, service.computeRangeCount(segments));
+
+        // no ids issued since the last refill
+        segments.lastRefillNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(10L);
+        assertEquals(1, service.computeRangeCount(segments));
+
+        // 300 ids per second needs 3 ranges of 100
+        segments.lastRefillNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(10L);
+        segments.issuedCount.add(3000L);
+        assertEquals(3, service.computeRangeCount(segments));
+        service.shutdown();
+    }
+}
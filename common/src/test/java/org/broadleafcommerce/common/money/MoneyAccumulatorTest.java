@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.money;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that {@link MoneyAccumulator} gives exactly the same results as chaining the {@link Money} operations, for
+ * randomly generated sequences of operations in currencies with 0, 2 and 3 decimal places.
+ */
+public class MoneyAccumulatorTest extends TestCase {
+
+    protected static final String[] CURRENCY_CODES = { "USD", "EUR", "JPY", "BHD" };
+
+    public void testRandomOperationsMatchMoney() {
+        Random random = new Random(20161018L);
+        for (int run = 0; run < 5000; run++) {
+            Currency currency = Currency.getInstance(CURRENCY_CODES[random.nextInt(CURRENCY_CODES.length)]);
+            Money expected = random.nextBoolean() ? Money.zero(currency) : randomMoney(random, currency);
+            MoneyAccumulator accumulator = new MoneyAccumulator(expected);
+            StringBuilder operations = new StringBuilder(expected.toString());
+
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                int operation = random.nextInt(10);
+                if (operation < 4) {
+                    Money other = randomMoney(random, currency);
+                    operations.append(" + ").append(other.getAmount());
+                    expected = expected.add(other);
+                    accumulator.add(other);
+                } else if (operation < 8) {
+                    Money other = randomMoney(random, currency);
+                    operations.append(" - ").append(other.getAmount());
+                    expected = expected.subtract(other);
+                    accumulator.subtract(other);
+                } else if (operation < 9) {
+                    int quantity = random.nextInt(20) - 5;
+                    operations.append(" * ").append(quantity);
+                    expected = expected.multiply(quantity);
+                    accumulator.multiply(quantity);
+                } else {
+                    MoneyAccumulator other = new MoneyAccumulator(randomMoney(random, currency));
+                    operations.append(" + acc ").append(other.getAmount());
+                    expected = expected.add(other.toMoney());
+                    accumulator.add(other);
+                }
+                assertEquals(operations.toString(), expected, accumulator.toMoney());
+                assertEquals(operations.toString(), expected.getAmount().scale(), accumulator.getAmount().scale());
+                assertEquals(operations.toString(), expected.isZero(), accumulator.isZero());
+            }
+        }
+    }
+
+    public void testHigherScaleAmountsRoundWithTheRunningTotal() {
+        Currency usd = Currency.getInstance("USD");
+        // 0.01 + 0.005 rounds half even to 0.02, while 0.005 on its own would round to 0.00
+        Money amount = new Money(new BigDecimal("0.005"), usd, 3);
+        Money start = new Money(new BigDecimal("0.01"), usd);
+
+        assertEquals(start.add(amount), new MoneyAccumulator(start).add(amount).toMoney());
+        assertEquals(new BigDecimal("0.02"), new MoneyAccumulator(start).add(amount).getAmount());
+    }
+
+    public void testOverflowFallsBackToMoney() {
+        Currency usd = Currency.getInstance("USD");
+        Money large = new Money(new BigDecimal("90000000000000000.00"), usd);
+
+        Money expected = large.add(large).add(large).subtract(large).multiply(3);
+        MoneyAccumulator accumulator = new MoneyAccumulator(large).add(large).add(large).subtract(large).multiply(3);
+
+        assertEquals(expected, accumulator.toMoney());
+        assertEquals(large, accumulator.subtract(expected).add(large).toMoney());
+    }
+
+    public void testDifferentCurrenciesAreLeftToMoney() {
+        MoneyAccumulator accumulator = new MoneyAccumulator(Currency.getInstance("USD"));
+        accumulator.add(new Money(new BigDecimal("1.00"), Currency.getInstance("USD")));
+        try {
+            accumulator.add(new Money(new BigDecimal("1.00"), Currency.getInstance("EUR")));
+            fail("Adding a different currency without a conversion service should fail like Money does");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Mostly amounts at the scale of the currency, some with more decimal places and some close to the long range
+     */
+    protected Money randomMoney(Random random, Currency currency) {
+        int currencyScale = currency.getDefaultFractionDigits();
+        int kind = random.nextInt(10);
+        if (kind < 7) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(2000000) - 500000, currencyScale);
+            return new Money(amount, currency);
+        } else if (kind < 9) {
+            int scale = currencyScale + 1 + random.nextInt(3);
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(20000000) - 5000000, scale);
+            return new Money(amount, currency, scale);
+        }
+        BigDecimal amount = BigDecimal.valueOf(Long.MAX_VALUE / (2 + random.nextInt(4)), currencyScale);
+        return new Money(random.nextBoolean() ? amount : amount.negate(), currency);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.resource.service;
+
+import org.broadleafcommerce.common.resource.BundledResourceInfo;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+public class ResourceBundlingServiceImplTest extends TestCase {
+
+    protected ResourceBundlingServiceImpl service;
+
+    protected File gzippedFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        service = new ResourceBundlingServiceImpl();
+        gzippedFile = File.createTempFile("global-123", ".js.gz");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        gzippedFile.delete();
+    }
+
+    public void testGzippedBundleIsResolvedWithOrWithoutItsMappingPrefix() {
+        BundledResourceInfo info = registerBundle("/js/global-123.js", false);
+        info.setGzippedResource(new FileSystemResource(gzippedFile));
+
+        Resource resolved = service.resolveGzippedBundleResource("global-123.js");
+        assertNotNull(resolved);
+        assertEquals(gzippedFile, ((FileSystemResource) resolved).getFile());
+        assertNotNull(service.resolveGzippedBundleResource("/js/global-123.js"));
+    }
+
+    public void testGzippedBundleIsNotResolvedWhenMissing() {
+        registerBundle("/js/global-123.js", false);
+        BundledResourceInfo deleted = registerBundle("/css/global-456.css", false);
+        deleted.setGzippedResource(new FileSystemResource(new File(gzippedFile.getParentFile(), "missing-" + gzippedFile.getName())));
+
+        assertNull(service.resolveGzippedBundleResource("global-123.js"));
+        assertNull(service.resolveGzippedBundleResource("global-456.css"));
+        assertNull(service.resolveGzippedBundleResource("unknown-789.js"));
+    }
+
+    public void testMinifiedBundlesAreDetected() {
+        registerBundle("/js/global-123.js", true);
+        registerBundle("/css/global-456.css", false);
+
+        assertTrue(service.isMinifiedBundle("global-123.js"));
+        assertTrue(service.isMinifiedBundle("/js/global-123.js"));
+        assertFalse(service.isMinifiedBundle("global-456.css"));
+        assertFalse(service.isMinifiedBundle("unknown-789.js"));
+    }
+
+    public void testMinifiedFilesAreKeptInTheCacheRegion() {
+        Cache region = new Cache(new CacheConfiguration("resourceBundlingServiceImplTest", 2));
+        CacheManager.getInstance().addCache(region);
+        try {
+            service.minifiedFileCache = region;
+            service.cacheMinifiedFile("abc.js", "var a=1;".getBytes());
+            service.cacheMinifiedFile("def.js", "var b=2;".getBytes());
+            service.cacheMinifiedFile("ghi.js", "var c=3;".getBytes());
+
+            assertEquals(2, region.getSize());
+            assertNotNull(service.getMinifiedFileCache().get("ghi.js"));
+        } finally {
+            CacheManager.getInstance().removeCache(region.getName());
+        }
+    }
+
+    protected BundledResourceInfo registerBundle(String versionedBundleName, boolean minified) {
+        BundledResourceInfo info = new BundledResourceInfo(null, versionedBundleName, Collections.<String>emptyList());
+        info.setMinified(minified);
+        service.createdBundles.put(versionedBundleName, info);
+        return info;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+
+package org.broadleafcommerce.common.sitemap.service;
+
+import org.broadleafcommerce.common.config.domain.ModuleConfiguration;
+import org.broadleafcommerce.common.config.service.ModuleConfigurationService;
+import org.broadleafcommerce.common.config.service.type.ModuleConfigurationType;
+import org.broadleafcommerce.common.sitemap.domain.CustomUrlSiteMapGeneratorConfigurationImpl;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapConfigurationImpl;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
+import org.broadleafcommerce.common.sitemap.exception.SiteMapException;
+import org.broadleafcommerce.common.sitemap.service.type.SiteMapGeneratorType;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Tests how {@link SiteMapServiceImpl} streams the generated URLs to the sitemap files, gzips them and runs the
+ * generators sequentially or concurrently
+ */
+public class SiteMapServiceImplTest extends SiteMapGeneratorTest {
+
+    protected StaticApplicationContext applicationContext;
+    protected EntityManagerFactory entityManagerFactory;
+
+    @After
+    public void tearDown() {
+        fileService.removeResource("/sitemap_index.xml.gz");
+        fileService.removeResource("/sitemap1.xml.gz");
+        fileService.removeResource("/sitemap2.xml.gz");
+        fileService.removeResource("/sitemap3.xml.gz");
+        fileService.removeResource("/sitemap.xml.gz");
+        if (applicationContext != null) {
+            new ApplicationContextHolder().setApplicationContext(null);
+            applicationContext.close();
+        }
+    }
+
+    @Test
+    public void testUrlsAreStreamedToFilesAsTheyAreAdded() throws SiteMapException, IOException {
+        final List<Integer> closedFilesWhileGenerating = new ArrayList<Integer>();
+        SiteMapGeneratorConfiguration smgc = createGeneratorConfiguration();
+        TestSiteMapGenerator generator = new TestSiteMapGenerator(smgc, "product", 25) {
+
+            @Override
+            protected void urlAdded(SiteMapBuilder siteMapBuilder, int count) {
+                if (count == 11) {
+                    closedFilesWhileGenerating.add(siteMapBuilder.getIndexedFileNames().size());
+                    Assert.assertTrue(siteMapBuilder.getWorkAreaFile("sitemap1.xml").exists());
+                }
+            }
+        };
+
+        SiteMapGenerationResponse smgr = generate(false, 10, generator);
+
+        Assert.assertFalse(smgr.isHasError());
+        Assert.assertEquals(Collections.singletonList(1), closedFilesWhileGenerating);
+        Assert.assertEquals(10, countUrls(fileService.getResource("/sitemap1.xml"), false));
+        Assert.assertEquals(10, countUrls(fileService.getResource("/sitemap2.xml"), false));
+        Assert.assertEquals(5, countUrls(fileService.getResource("/sitemap3.xml"), false));
+        Assert.assertTrue(smgr.getSiteMapFilePaths().contains("sitemap_index.xml"));
+    }
+
+    @Test
+    public void testGzippedFiles() throws SiteMapException, IOException {
+        SiteMapGeneratorConfiguration smgc = createGeneratorConfiguration();
+
+        SiteMapGenerationResponse smgr = generate(true, 10, new TestSiteMapGenerator(smgc, "product", 15));
+
+        Assert.assertFalse(smgr.isHasError());
+        Assert.assertEquals(10, countUrls(fileService.getResource("/sitemap1.xml.gz"), true));
+        Assert.assertEquals(5, countUrls(fileService.getResource("/sitemap2.xml.gz"), true));
+        Assert.assertFalse(fileService.getResource("/sitemap2.xml").exists());
+        Assert.assertTrue(smgr.getSiteMapFilePaths().contains("sitemap_index.xml.gz"));
+        Assert.assertTrue(convertFileToString(fileService.getResource("/sitemap_index.xml"))
+                .contains("http://www.heatclinic.com/sitemap2.xml.gz"));
+    }
+
+    @Test
+    public void testSequentialGeneratorsShareAnIsolatedEntityManager() throws SiteMapException, IOException {
+        registerEntityManagerFactory();
+        EntityManager callerEntityManager = EasyMock.createNiceMock(EntityManager.class);
+        EasyMock.replay(callerEntityManager);
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(callerEntityManager));
+        try {
+            TestSiteMapGenerator products = new TestSiteMapGenerator(createGeneratorConfiguration(), "product", 3);
+            TestSiteMapGenerator categories = new TestSiteMapGenerator(createGeneratorConfiguration(), "category", 3);
+
+            SiteMapGenerationResponse smgr = generate(false, 10, products, categories);
+
+            Assert.assertFalse(smgr.isHasError());
+            Assert.assertTrue(products.isolatedPersistenceContext);
+            Assert.assertTrue(categories.isolatedPersistenceContext);
+            Assert.assertNotNull(products.entityManager);
+            Assert.assertNotSame(callerEntityManager, products.entityManager);
+            Assert.assertSame(products.entityManager, categories.entityManager);
+            Assert.assertEquals(Thread.currentThread().getName(), products.threadName);
+            Assert.assertSame(callerEntityManager,
+                    ((EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory)).getEntityManager());
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+        }
+    }
+
+    @Test
+    public void testConcurrentGenerators() throws SiteMapException, IOException {
+        registerEntityManagerFactory();
+        siteMapService.generatorThreads = 3;
+        TestSiteMapGenerator products = new TestSiteMapGenerator(createGeneratorConfiguration(), "product", 12);
+        TestSiteMapGenerator categories = new TestSiteMapGenerator(createGeneratorConfiguration(), "category", 12);
+        TestSiteMapGenerator pages = new TestSiteMapGenerator(createGeneratorConfiguration(), "page", 12);
+
+        SiteMapGenerationResponse smgr = generate(false, 10, products, categories, pages);
+
+        Assert.assertFalse(smgr.isHasError());
+        for (TestSiteMapGenerator generator : new TestSiteMapGenerator[] { products, categories, pages }) {
+            Assert.assertTrue(generator.isolatedPersistenceContext);
+            Assert.assertNotNull(generator.entityManager);
+            Assert.assertTrue(generator.threadName.startsWith("sitemap-generator-"));
+        }
+        Set<String> locs = new HashSet<String>();
+        for (int i = 1; i <= 4; i++) {
+            String content = convertFileToString(fileService.getResource("/sitemap" + i + ".xml"));
+            for (String url : content.split("<url>")) {
+                if (url.contains("<loc>")) {
+                    Assert.assertTrue(locs.add(url.substring(url.indexOf("<loc>") + 5, url.indexOf("</loc>"))));
+                }
+            }
+        }
+        Assert.assertEquals(36, locs.size());
+    }
+
+    @Test
+    public void testConcurrentGeneratorFailure() throws IOException {
+        registerEntityManagerFactory();
+        siteMapService.generatorThreads = 2;
+        TestSiteMapGenerator products = new TestSiteMapGenerator(createGeneratorConfiguration(), "product", 5);
+        TestSiteMapGenerator broken = new TestSiteMapGenerator(createGeneratorConfiguration(), "broken", 5) {
+
+            @Override
+            protected void urlAdded(SiteMapBuilder siteMapBuilder, int count) {
+                if (count == 3) {
+                    throw new IllegalStateException("broken generator");
+                }
+            }
+        };
+
+        try {
+            generate(false, 2, products, broken);
+            Assert.fail("A failing generator should fail the sitemap");
+        } catch (SiteMapException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertFalse(fileService.getResource("/sitemap_index.xml").exists());
+    }
+
+    protected SiteMapGenerationResponse generate(boolean gzip, int maxEntriesPerFile, TestSiteMapGenerator... generators)
+            throws SiteMapException, IOException {
+        SiteMapConfiguration smc = new SiteMapConfigurationImpl();
+        smc.setMaximumUrlEntriesPerFile(maxEntriesPerFile);
+        smc.setIndexedSiteMapFileName("sitemap_index.xml");
+        List<SiteMapGeneratorConfiguration> smgcList = new ArrayList<SiteMapGeneratorConfiguration>();
+        List<SiteMapGenerator> smgList = new ArrayList<SiteMapGenerator>();
+        for (TestSiteMapGenerator generator : generators) {
+            generator.configuration.setSiteMapConfiguration(smc);
+            smgcList.add(generator.configuration);
+            smgList.add(generator);
+        }
+        smc.setSiteMapGeneratorConfigurations(smgcList);
+
+        List<ModuleConfiguration> mcList = new ArrayList<ModuleConfiguration>();
+        mcList.add(smc);
+        ModuleConfigurationService mcs = EasyMock.createMock(ModuleConfigurationService.class);
+        EasyMock.expect(mcs.findActiveConfigurationsByType(ModuleConfigurationType.SITE_MAP)).andReturn(mcList);
+        EasyMock.replay(mcs);
+
+        siteMapService.setGzipSiteMapFiles(gzip);
+        siteMapService.setModuleConfigurationService(mcs);
+        siteMapService.setSiteMapGenerators(smgList);
+        return siteMapService.generateSiteMap();
+    }
+
+    protected void registerEntityManagerFactory() {
+        entityManagerFactory = EasyMock.createNiceMock(EntityManagerFactory.class);
+        EasyMock.expect(entityManagerFactory.createEntityManager()).andAnswer(new IAnswer<EntityManager>() {
+
+            @Override
+            public EntityManager answer() throws Throwable {
+                EntityManager em = EasyMock.createNiceMock(EntityManager.class);
+                EasyMock.replay(em);
+                return em;
+            }
+        }).anyTimes();
+        EasyMock.replay(entityManagerFactory);
+
+        applicationContext = new StaticApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("blPU", entityManagerFactory);
+        applicationContext.refresh();
+        new ApplicationContextHolder().setApplicationContext(applicationContext);
+    }
+
+    protected SiteMapGeneratorConfiguration createGeneratorConfiguration() {
+        SiteMapGeneratorConfiguration smgc = new CustomUrlSiteMapGeneratorConfigurationImpl();
+        smgc.setDisabled(false);
+        smgc.setSiteMapGeneratorType(SiteMapGeneratorType.CUSTOM);
+        return smgc;
+    }
+
+    protected int countUrls(File file, boolean gzipped) throws IOException {
+        Assert.assertTrue(file.exists());
+        InputStream in = new FileInputStream(file);
+        if (gzipped) {
+            in = new GZIPInputStream(in);
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().startsWith("<url>")) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Adds the given number of URLs for its own configuration and records the persistence context it ran with
+     */
+    protected static class TestSiteMapGenerator implements SiteMapGenerator {
+
+        protected final SiteMapGeneratorConfiguration configuration;
+        protected final String prefix;
+        protected final int urlCount;
+        protected volatile boolean isolatedPersistenceContext;
+        protected volatile EntityManager entityManager;
+        protected volatile String threadName;
+
+        public TestSiteMapGenerator(SiteMapGeneratorConfiguration configuration, String prefix, int urlCount) {
+            this.configuration = configuration;
+            this.prefix = prefix;
+            this.urlCount = urlCount;
+        }
+
+        @Override
+        public boolean canHandleSiteMapConfiguration(SiteMapGeneratorConfiguration siteMapGeneratorConfiguration) {
+            return siteMapGeneratorConfiguration == configuration;
+        }
+
+        @Override
+        public void addSiteMapEntries(SiteMapGeneratorConfiguration siteMapGeneratorConfiguration, SiteMapBuilder siteMapBuilder) {
+            isolatedPersistenceContext = siteMapBuilder.isIsolatedPersistenceContext();
+            threadName = Thread.currentThread().getName();
+            for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+                if (resource instanceof EntityManagerHolder) {
+                    entityManager = ((EntityManagerHolder) resource).getEntityManager();
+                }
+            }
+            for (int i = 1; i <= urlCount; i++) {
+                SiteMapURLWrapper url = new SiteMapURLWrapper();
+                url.setLoc(siteMapBuilder.getBaseUrl() + "/" + prefix + "/" + i);
+                siteMapBuilder.addUrl(url);
+                urlAdded(siteMapBuilder, i);
+            }
+        }
+
+        protected void urlAdded(SiteMapBuilder siteMapBuilder, int count) {
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.RequestDTOImpl;
 import org.broadleafcommerce.common.locale.domain.Locale;
 import org.broadleafcommerce.common.locale.domain.LocaleImpl;
+import org.broadleafcommerce.common.rule.MvelExpressionCache;
 import org.broadleafcommerce.common.rule.MvelHelper;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 
@@ -113,6 +114,47 @@ public class MvelHelperTest extends TestCase {
         boolean result = MvelHelper.evaluateRule("request.properties['blcSearchTerm'] == 'hot'", parameters);
         assertTrue(result);
     }
+
+    /**
+     * Tests that a rule is compiled once into a {@link MvelExpressionCache} and served from the cache afterwards
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testExpressionCacheCompilesOnce() {
+        MvelExpressionCache cache = new MvelExpressionCache(10, "TEST");
+        Locale testLocale = new LocaleImpl();
+        testLocale.setLocaleCode("US");
+
+        Map parameters = new HashMap();
+        parameters.put("locale", testLocale);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(MvelHelper.evaluateRule("locale.localeCode == 'US'", parameters, cache));
+        }
+        assertEquals(1, cache.getCompileCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(4, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Tests that a precompiled rule is not compiled again on first evaluation
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testPrecompiledRule() {
+        MvelExpressionCache cache = new MvelExpressionCache(10, "TEST");
+        MvelHelper.precompileRule("locale.localeCode == 'US'", cache, null);
+        assertEquals(1, cache.getCompileCount());
+        assertEquals(0, cache.getMissCount());
+
+        Locale testLocale = new LocaleImpl();
+        testLocale.setLocaleCode("US");
+        Map parameters = new HashMap();
+        parameters.put("locale", testLocale);
+
+        assertTrue(MvelHelper.evaluateRule("locale.localeCode == 'US'", parameters, cache));
+        assertEquals(1, cache.getCompileCount());
+        assertEquals(1, cache.getHitCount());
+    }
     /**
      * Confirms repeated success for method overload workaround in SelectizeCollectionUtils
      * </p>
@@ -0,0 +1,86 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A page kept in the {@link RenderedPageCache}. The page is held as the text around its uncacheable data
+ * placeholders, so that the data of the placeholders can be rendered for every request that is served the page.
+ */
+public class RenderedPage {
+
+    protected final List<String> segments;
+
+    protected final List<UncacheableDataPlaceholder> placeholders;
+
+    protected final String contentType;
+
+    protected final String characterEncoding;
+
+    protected final Set<String> dependencies;
+
+    /**
+     * @param segments the text before, between and after the placeholders
+     * @param placeholders the placeholders in the order they appear on the page
+     * @param dependencies the dependencies recorded through {@link org.broadleafcommerce.common.web.cache.RenderedPageCacheContext}
+     */
+    public RenderedPage(List<String> segments, List<UncacheableDataPlaceholder> placeholders, String contentType,
+            String characterEncoding, Set<String> dependencies) {
+        if (segments.size() != placeholders.size() + 1) {
+            throw new IllegalArgumentException("Expected " + (placeholders.size() + 1) + " segments for "
+                    + placeholders.size() + " placeholders but got " + segments.size());
+        }
+        this.segments = Collections.unmodifiableList(segments);
+        this.placeholders = Collections.unmodifiableList(placeholders);
+        this.contentType = contentType;
+        this.characterEncoding = characterEncoding;
+        this.dependencies = Collections.unmodifiableSet(dependencies);
+    }
+
+    public List<String> getSegments() {
+        return segments;
+    }
+
+    public List<UncacheableDataPlaceholder> getPlaceholders() {
+        return placeholders;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    public boolean dependsOnAny(Set<String> dependencyTags) {
+        for (String tag : dependencyTags) {
+            if (dependencies.contains(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+/**
+ * Cache of {@link RenderedPage}s by request key, kept in the "blRenderedPages" cache region which bounds the number of
+ * pages and how long they live.
+ * </p>
+ * {@link #invalidate(String, Collection)} drops only the pages that depend on the given content. Invalidation only
+ * reaches the cache of this server, so the time to live of the region is what bounds how long a page changed from
+ * another server, such as the admin, keeps being served. A page that was being rendered while content was invalidated
+ * is not cached, since it may have been rendered from the old content.
+ *
+ * @see RenderedPageCacheManager
+ */
+public class RenderedPageCache {
+
+    private static final Log LOG = LogFactory.getLog(RenderedPageCache.class);
+
+    public static final String CACHE_NAME = "blRenderedPages";
+
+    protected Cache cache;
+
+    protected final AtomicLong invalidationVersion = new AtomicLong();
+
+    protected final LongAdder hitCount = new LongAdder();
+    protected final LongAdder missCount = new LongAdder();
+    protected final LongAdder uncacheableCount = new LongAdder();
+    protected final LongAdder invalidatedCount = new LongAdder();
+
+    public RenderedPage get(String key) {
+        Element element = getCache().get(key);
+        if (element != null) {
+            hitCount.increment();
+            return (RenderedPage) element.getObjectValue();
+        }
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * @return the version to pass to {@link #put(String, RenderedPage, long)} for a page about to be rendered
+     */
+    public long getInvalidationVersion() {
+        return invalidationVersion.get();
+    }
+
+    /**
+     * Caches the page unless content was invalidated since {@link #getInvalidationVersion()} returned the given
+     * version.
+     */
+    public boolean put(String key, RenderedPage page, long version) {
+        if (version != invalidationVersion.get()) {
+            return false;
+        }
+        Element element = new Element(key, page);
+        getCache().put(element);
+        if (version != invalidationVersion.get()) {
+            getCache().removeElement(element);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records a page that was rendered on a miss but could not be cached
+     */
+    public void recordUncacheable() {
+        uncacheableCount.increment();
+    }
+
+    /**
+     * Removes every page that depends on one of the given items of the given type, or on any item of the type if no
+     * ids are given.
+     */
+    public int invalidate(String dependencyType, Collection<Long> ids) {
+        Set<String> tags = new HashSet<>();
+        if (ids == null || ids.isEmpty()) {
+            tags.add(dependencyType);
+        } else {
+            for (Long id : ids) {
+                tags.add(RenderedPageCacheContext.getDependencyTag(dependencyType, id));
+            }
+        }
+        invalidationVersion.incrementAndGet();
+        int removed = 0;
+        for (Object key : getCache().getKeys()) {
+            Element element = getCache().getQuiet(key);
+            if (element != null && ((RenderedPage) element.getObjectValue()).dependsOnAny(tags)
+                    && getCache().removeElement(element)) {
+                removed++;
+            }
+        }
+        invalidatedCount.add(removed);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Invalidated " + removed + " rendered pages depending on " + tags);
+        }
+        return removed;
+    }
+
+    public void clear() {
+        invalidationVersion.incrementAndGet();
+        invalidatedCount.add(getCache().getSize());
+        getCache().removeAll();
+    }
+
+    public Cache getCache() {
+        if (cache == null) {
+            cache = CacheManager.getInstance().getCache(CACHE_NAME);
+        }
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public int size() {
+        return getCache().getSize();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return how many pages rendered on a miss could not be cached, for example because they were not a product,
+     * category or CMS page, or the response was not a successful html response
+     */
+    public long getUncacheableCount() {
+        return uncacheableCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return getCache().getStatistics().cacheEvictedCount();
+    }
+
+    public long getInvalidatedCount() {
+        return invalidatedCount.sum();
+    }
+
+    public void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        uncacheableCount.reset();
+        invalidatedCount.reset();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.broadleafcommerce.common.admin.condition.ConditionalOnNotAdmin;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.filter.AbstractIgnorableOncePerRequestFilter;
+import org.broadleafcommerce.common.web.filter.FilterOrdered;
+import org.broadleafcommerce.core.web.processor.UncacheableDataProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves product, category and CMS pages from a cache of rendered pages. The 'page.cache.enabled' property must be set
+ * to true to enable this filter.
+ * </p>
+ * Pages are cached by site, locale, currency, sandbox, theme, scheme and URL (including the query string), plus the
+ * request headers named by 'page.cache.vary.headers', the cookies named by 'page.cache.vary.cookies' and the values of
+ * any {@link RenderedPageCacheVaryProvider} beans. Only GET requests that a handler mapping marked as cacheable through
+ * {@link RenderedPageCacheContext} have their response captured (see {@link RenderedPageCacheResponseWrapper}), and
+ * of those only successful html responses that do not set cookies are cached. Every other response is written
+ * straight through.
+ * </p>
+ * The per visitor parts of a page are punched out of the cached page: while a page is rendered for the cache, the
+ * {@link UncacheableDataProcessor} tags emit a placeholder instead of their script, and the script is rendered again
+ * for every request that is served the page, with the cart, customer, inventory and CSRF token of that request. Pages
+ * that render anything else specific to a visitor outside of these tags must not be cached. Cached pages are dropped
+ * when one of the products, categories, skus or CMS pages they depend on changes in this server, see
+ * {@link RenderedPageCacheManager}, and otherwise expire with the "blRenderedPages" cache region.
+ */
+@Component("blRenderedPageCacheFilter")
+@ConditionalOnProperty("page.cache.enabled")
+@ConditionalOnNotAdmin
+public class RenderedPageCacheFilter extends AbstractIgnorableOncePerRequestFilter {
+
+    /**
+     * Comma delimited names of request headers whose values the rendered pages vary by, for example 'User-Agent' if
+     * the templates render differently per browser. Empty by default.
+     */
+    @Value("${page.cache.vary.headers:}")
+    protected String varyHeaders = "";
+
+    /**
+     * Comma delimited names of cookies whose values the rendered pages vary by. Empty by default.
+     */
+    @Value("${page.cache.vary.cookies:}")
+    protected String varyCookies = "";
+
+    @Resource(name = "blRenderedPageCacheManager")
+    protected RenderedPageCacheManager cacheManager;
+
+    @Autowired(required = false)
+    @Qualifier("blUncacheableDataProcessor")
+    protected UncacheableDataProcessor uncacheableDataProcessor;
+
+    @Autowired(required = false)
+    protected List<RenderedPageCacheVaryProvider> varyProviders = new ArrayList<>();
+
+    protected String[] varyHeaderNames = new String[0];
+
+    protected String[] varyCookieNames = new String[0];
+
+    @Override
+    protected void initFilterBean() throws ServletException {
+        varyHeaderNames = StringUtils.split(StringUtils.defaultString(varyHeaders), ", ");
+        varyCookieNames = StringUtils.split(StringUtils.defaultString(varyCookies), ", ");
+    }
+
+    @Override
+    protected void doFilterInternalUnlessIgnored(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (!isCandidate(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        RenderedPageCache cache = cacheManager.getCache();
+        String key = buildKey(request);
+        RenderedPage page = cache.get(key);
+        if (page != null) {
+            byte[] content = render(page);
+            response.setContentType(page.getContentType());
+            response.setCharacterEncoding(page.getCharacterEncoding());
+            response.setContentLength(content.length);
+            response.getOutputStream().write(content);
+            return;
+        }
+
+        long version = cache.getInvalidationVersion();
+        UncacheableDataPlaceholders placeholders = new UncacheableDataPlaceholders();
+        request.setAttribute(UncacheableDataPlaceholders.REQUEST_ATTRIBUTE, placeholders);
+        RenderedPageCacheResponseWrapper responseWrapper = new RenderedPageCacheResponseWrapper(request, response);
+        try {
+            chain.doFilter(request, responseWrapper);
+        } finally {
+            request.removeAttribute(UncacheableDataPlaceholders.REQUEST_ATTRIBUTE);
+        }
+
+        ContentCachingResponseWrapper wrapper = responseWrapper.getCapturedResponse();
+        if (wrapper == null) {
+            // not a product, category or CMS page, the body already went to the response
+            cache.recordUncacheable();
+            return;
+        }
+        boolean cacheable = isCacheable(request, wrapper);
+        if (!cacheable) {
+            cache.recordUncacheable();
+            if (placeholders.isEmpty()) {
+                wrapper.copyBodyToResponse();
+                return;
+            }
+        }
+
+        String encoding = wrapper.getCharacterEncoding();
+        List<String> segments = new ArrayList<>();
+        List<UncacheableDataPlaceholder> found = new ArrayList<>();
+        placeholders.split(new String(wrapper.getContentAsByteArray(), encoding), segments, found);
+        page = new RenderedPage(segments, found, wrapper.getContentType(), encoding,
+                new HashSet<>(RenderedPageCacheContext.getDependencies(request)));
+        if (cacheable) {
+            cache.put(key, page, version);
+        }
+
+        byte[] content = render(page);
+        wrapper.resetBuffer();
+        wrapper.getOutputStream().write(content);
+        wrapper.copyBodyToResponse();
+    }
+
+    protected boolean isCandidate(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && !"XMLHttpRequest".equals(request.getHeader("X-Requested-With"))
+                && BroadleafRequestContext.getBroadleafRequestContext() != null;
+    }
+
+    protected boolean isCacheable(HttpServletRequest request, HttpServletResponse response) {
+        return response.getStatus() == HttpServletResponse.SC_OK
+                && StringUtils.startsWithIgnoreCase(response.getContentType(), "text/html")
+                && !response.containsHeader("Set-Cookie");
+    }
+
+    protected String buildKey(HttpServletRequest request) {
+        BroadleafRequestContext brc = BroadleafRequestContext.getBroadleafRequestContext();
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(brc.getNonPersistentSite() == null ? null : brc.getNonPersistentSite().getId());
+        sb.append('|').append(brc.getLocale() == null ? null : brc.getLocale().getLocaleCode());
+        sb.append('|').append(brc.getBroadleafCurrency() == null ? null : brc.getBroadleafCurrency().getCurrencyCode());
+        sb.append('|').append(brc.getSandBoxId());
+        sb.append('|').append(brc.getTheme() == null ? null : brc.getTheme().getId());
+        sb.append('|').append(request.isSecure());
+        sb.append('|').append(request.getRequestURI());
+        if (request.getQueryString() != null) {
+            sb.append('?').append(request.getQueryString());
+        }
+        for (String header : varyHeaderNames) {
+            sb.append('|').append(header).append('=').append(request.getHeader(header));
+        }
+        for (String cookieName : varyCookieNames) {
+            Cookie cookie = WebUtils.getCookie(request, cookieName);
+            sb.append('|').append(cookieName).append('=').append(cookie == null ? null : cookie.getValue());
+        }
+        if (varyProviders != null) {
+            for (RenderedPageCacheVaryProvider provider : varyProviders) {
+                sb.append('|').append(provider.getVaryValue(request));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the page with the uncacheable data of its placeholders rendered for the current request
+     */
+    protected byte[] render(RenderedPage page) throws IOException {
+        List<String> segments = page.getSegments();
+        if (segments.size() == 1) {
+            return segments.get(0).getBytes(page.getCharacterEncoding());
+        }
+        int length = 0;
+        for (String segment : segments) {
+            length += segment.length();
+        }
+        StringBuilder sb = new StringBuilder(length + 1024 * page.getPlaceholders().size());
+        for (int i = 0; i < segments.size(); i++) {
+            sb.append(segments.get(i));
+            if (i < page.getPlaceholders().size() && uncacheableDataProcessor != null) {
+                sb.append(uncacheableDataProcessor.buildUncacheableDataScript(page.getPlaceholders().get(i)));
+            }
+        }
+        return sb.toString().getBytes(page.getCharacterEncoding());
+    }
+
+    @Override
+    public int getOrder() {
+        // after the cart and customer state are established, since the uncacheable data is rendered from them
+        return FilterOrdered.POST_SECURITY_LOW + 500;
+    }
+}
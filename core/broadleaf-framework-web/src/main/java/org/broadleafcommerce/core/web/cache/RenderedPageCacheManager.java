@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricesChangedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the {@link RenderedPageCache} used by {@link RenderedPageCacheFilter}, drops the pages depending on the
+ * content named by a {@link RenderedPageCacheInvalidationEvent} or a {@link SkuPricesChangedEvent}, and reports the
+ * cache statistics through JMX.
+ * </p>
+ * The events are only published in the server where the content changed. Changes made in another server, typically
+ * the admin, are picked up once the pages expire with the "blRenderedPages" cache region, whose time to live should
+ * be kept as short as the site can afford to serve outdated pages.
+ */
+@Component("blRenderedPageCacheManager")
+@ConditionalOnProperty("page.cache.enabled")
+@ManagedResource(objectName = "org.broadleafcommerce:name=RenderedPageCache", description = "Rendered Page Cache",
+        currencyTimeLimit = 15)
+public class RenderedPageCacheManager {
+
+    private static final Log LOG = LogFactory.getLog(RenderedPageCacheManager.class);
+
+    protected final RenderedPageCache cache = new RenderedPageCache();
+
+    public RenderedPageCache getCache() {
+        return cache;
+    }
+
+    @EventListener
+    public void onRenderedPageCacheInvalidation(RenderedPageCacheInvalidationEvent event) {
+        if (event.isAllPages()) {
+            cache.clear();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Cleared the rendered page cache");
+            }
+        } else {
+            cache.invalidate(event.getDependencyType(), event.getIds());
+        }
+    }
+
+    @EventListener
+    public void onSkuPricesChanged(SkuPricesChangedEvent event) {
+        cache.invalidate(RenderedPageCacheInvalidationEvent.SKU, event.getSkuIds());
+    }
+
+    @ManagedAttribute(description = "Number of cached pages")
+    public int getSize() {
+        return cache.size();
+    }
+
+    @ManagedAttribute(description = "Number of requests served from the cache")
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of requests that had to render the page")
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of pages rendered on a miss that could not be cached")
+    public long getUncacheableCount() {
+        return cache.getUncacheableCount();
+    }
+
+    @ManagedAttribute(description = "Number of pages evicted because the cache was full")
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    @ManagedAttribute(description = "Number of pages removed by invalidation")
+    public long getInvalidatedCount() {
+        return cache.getInvalidatedCount();
+    }
+
+    @ManagedAttribute(description = "Hit ratio of the cache")
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0L ? 0D : hits / (double) total;
+    }
+
+    @ManagedOperation(description = "Removes the pages depending on the given comma separated ids of a dependency type "
+            + "(product, category, sku or page), or on any item of the type if no ids are given")
+    public int invalidate(String dependencyType, String ids) {
+        List<Long> parsed = new ArrayList<>();
+        for (String id : StringUtils.split(StringUtils.defaultString(ids), ", ")) {
+            parsed.add(Long.valueOf(id));
+        }
+        return cache.invalidate(dependencyType, parsed);
+    }
+
+    @ManagedOperation(description = "Removes all pages")
+    public void clear() {
+        cache.clear();
+    }
+
+    @ManagedOperation(description = "Resets the cache statistics")
+    public void resetStatistics() {
+        cache.resetStatistics();
+    }
+}
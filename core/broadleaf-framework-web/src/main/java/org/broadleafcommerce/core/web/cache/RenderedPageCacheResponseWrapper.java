@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response of a request that {@link RenderedPageCacheFilter} may cache. Whether the page qualifies is decided when the
+ * body is first accessed, after the handler mapping had the chance to mark the request through
+ * {@link RenderedPageCacheContext}: only then is the body captured by a {@link ContentCachingResponseWrapper}, and
+ * otherwise it is written straight to the response.
+ */
+public class RenderedPageCacheResponseWrapper extends HttpServletResponseWrapper {
+
+    protected final HttpServletRequest request;
+
+    protected ContentCachingResponseWrapper capturedResponse;
+
+    protected boolean decided = false;
+
+    public RenderedPageCacheResponseWrapper(HttpServletRequest request, HttpServletResponse response) {
+        super(response);
+        this.request = request;
+    }
+
+    /**
+     * @return the response the body goes to, capturing it if the request was marked as cacheable
+     */
+    protected HttpServletResponse getBodyResponse() {
+        if (!decided) {
+            decided = true;
+            if (RenderedPageCacheContext.isCacheable(request)) {
+                capturedResponse = new ContentCachingResponseWrapper((HttpServletResponse) getResponse());
+            }
+        }
+        return capturedResponse == null ? (HttpServletResponse) getResponse() : capturedResponse;
+    }
+
+    /**
+     * @return the wrapper holding the captured body, or null if the body was written to the response
+     */
+    public ContentCachingResponseWrapper getCapturedResponse() {
+        return capturedResponse;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        return getBodyResponse().getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        return getBodyResponse().getWriter();
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        getBodyResponse().setContentLength(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        getBodyResponse().setContentLengthLong(len);
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        getBodyResponse().setBufferSize(size);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        getBodyResponse().flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        getBodyResponse().resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        getBodyResponse().reset();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        getBodyResponse().sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        getBodyResponse().sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        getBodyResponse().sendRedirect(location);
+    }
+}
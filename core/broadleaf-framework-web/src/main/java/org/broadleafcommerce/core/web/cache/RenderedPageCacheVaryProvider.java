@@ -0,0 +1,34 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Contributes to the key of pages in the {@link RenderedPageCache}, for anything besides the site, locale, currency,
+ * sandbox, theme and URL that the rendered page depends on, such as a device type or a customer segment. Every bean
+ * implementing this interface is consulted by the {@link RenderedPageCacheFilter}.
+ */
+public interface RenderedPageCacheVaryProvider {
+
+    /**
+     * @return the value distinguishing the page rendered for this request, or null if it does not vary
+     */
+    String getVaryValue(HttpServletRequest request);
+
+}
@@ -0,0 +1,58 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The data a {@link org.broadleafcommerce.core.web.processor.UncacheableDataProcessor} tag needs to render its
+ * script again for another request: the ids of the products and skus displayed on the page, whose availability is
+ * checked for every request, and the javascript to call with the data.
+ */
+public class UncacheableDataPlaceholder implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final List<Long> productIds;
+
+    protected final List<Long> skuIds;
+
+    protected final String callback;
+
+    public UncacheableDataPlaceholder(Collection<Long> productIds, Collection<Long> skuIds, String callback) {
+        this.productIds = Collections.unmodifiableList(new ArrayList<>(productIds));
+        this.skuIds = Collections.unmodifiableList(new ArrayList<>(skuIds));
+        this.callback = callback;
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+
+    public List<Long> getSkuIds() {
+        return skuIds;
+    }
+
+    public String getCallback() {
+        return callback;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * The {@link UncacheableDataPlaceholder}s emitted while rendering a page that may go into the rendered page cache.
+ * {@link RenderedPageCacheFilter} puts an instance on the request before rendering a page that may be cached, and the
+ * uncacheable data tags then emit a placeholder instead of their script if a handler mapping marked the request as
+ * cacheable. The placeholders are marked with a token unique to the
+ * request, so that a placeholder that ended up in a fragment cached by other means is never mistaken for one of the
+ * placeholders of a later request.
+ */
+public class UncacheableDataPlaceholders {
+
+    public static final String REQUEST_ATTRIBUTE = "blUncacheableDataPlaceholders";
+
+    protected static final String MARKER_PREFIX = "<!--blc-uncacheable-data:";
+
+    protected static final String MARKER_SUFFIX = "-->";
+
+    protected final String token = UUID.randomUUID().toString();
+
+    protected final List<UncacheableDataPlaceholder> placeholders = Collections.synchronizedList(new ArrayList<UncacheableDataPlaceholder>());
+
+    /**
+     * @return the placeholders of the page being rendered for this request, or null if the uncacheable data should be
+     * rendered in place
+     */
+    public static UncacheableDataPlaceholders getPlaceholders(ServletRequest request) {
+        if (request == null || !RenderedPageCacheContext.isCacheable(request)) {
+            return null;
+        }
+        return (UncacheableDataPlaceholders) request.getAttribute(REQUEST_ATTRIBUTE);
+    }
+
+    /**
+     * @return the marker to emit in place of the script
+     */
+    public String add(UncacheableDataPlaceholder placeholder) {
+        synchronized (placeholders) {
+            placeholders.add(placeholder);
+            return MARKER_PREFIX + token + ":" + (placeholders.size() - 1) + MARKER_SUFFIX;
+        }
+    }
+
+    public boolean isEmpty() {
+        return placeholders.isEmpty();
+    }
+
+    /**
+     * Splits the rendered page at the markers of this request.
+     *
+     * @param segments receives the text before, between and after the markers, one more than the placeholders found
+     * @param found receives the placeholders of the markers in the order they appear on the page
+     */
+    public void split(String content, List<String> segments, List<UncacheableDataPlaceholder> found) {
+        String prefix = MARKER_PREFIX + token + ":";
+        int segmentStart = 0;
+        int from = 0;
+        int start;
+        while ((start = content.indexOf(prefix, from)) >= 0) {
+            from = start + prefix.length();
+            int end = content.indexOf(MARKER_SUFFIX, from);
+            if (end < 0) {
+                break;
+            }
+            int index;
+            try {
+                index = Integer.parseInt(content.substring(from, end));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (index < 0 || index >= placeholders.size()) {
+                continue;
+            }
+            segments.add(content.substring(segmentStart, start));
+            found.add(placeholders.get(index));
+            segmentStart = from = end + MARKER_SUFFIX.length();
+        }
+        segments.add(content.substring(segmentStart));
+    }
+}
@@ -22,6 +22,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.util.BLCRequestUtils;
 import org.broadleafcommerce.common.web.BLCAbstractHandlerMapping;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
 import org.springframework.beans.factory.annotation.Value;
@@ -75,6 +77,7 @@ public class CategoryHandlerMapping extends BLCAbstractHandlerMapping {
 
         if (category != null) {
             request.setAttribute(CURRENT_CATEGORY_ATTRIBUTE_NAME, category);
+            RenderedPageCacheContext.markCacheable(request, RenderedPageCacheInvalidationEvent.CATEGORY, category.getId());
             return controllerName;
         }
             
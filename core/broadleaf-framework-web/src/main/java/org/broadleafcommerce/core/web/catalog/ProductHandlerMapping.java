@@ -22,6 +22,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.util.BLCRequestUtils;
 import org.broadleafcommerce.common.web.BLCAbstractHandlerMapping;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
 import org.springframework.beans.factory.annotation.Value;
@@ -79,6 +81,10 @@ public class ProductHandlerMapping extends BLCAbstractHandlerMapping {
 
         if (product != null) {
             request.setAttribute(CURRENT_PRODUCT_ATTRIBUTE_NAME, product);
+            RenderedPageCacheContext.markCacheable(request, RenderedPageCacheInvalidationEvent.PRODUCT, product.getId());
+            if (product.getDefaultSku() != null) {
+                RenderedPageCacheContext.addDependency(request, RenderedPageCacheInvalidationEvent.SKU, product.getDefaultSku().getId());
+            }
             return controllerName;
         }
 
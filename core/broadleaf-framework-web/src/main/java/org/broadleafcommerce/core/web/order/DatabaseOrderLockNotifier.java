@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderLock;
+import org.broadleafcommerce.core.order.service.OrderService;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+/**
+ * Default {@link OrderLockNotifier} that uses the {@link OrderLock} table, just like the
+ * {@link DatabaseOrderLockManager}. The database offers no way to be told that another node released a lock, so
+ * {@link #awaitRelease(Order, long, TimeUnit)} simply waits out the timeout it is given and the
+ * {@link InMemoryOrderLockManager} backs off between attempts. Installations with a message bus between nodes can
+ * replace this bean with a notifier that wakes waiters as soon as the lock is released.
+ */
+public class DatabaseOrderLockNotifier implements OrderLockNotifier {
+
+    protected static final Log LOG = LogFactory.getLog(DatabaseOrderLockNotifier.class);
+
+    @Resource(name = "blOrderService")
+    protected OrderService orderService;
+
+    @Override
+    public boolean tryAcquire(Order order) {
+        try {
+            return orderService.acquireLock(order);
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Couldn't acquire lock - that's ok, we'll retry shortly", e);
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void release(Order order) {
+        orderService.releaseLock(order);
+    }
+
+    @Override
+    public void refresh(Order order) {
+        orderService.refreshLock(order);
+    }
+
+    @Override
+    public void awaitRelease(Order order, long timeout, TimeUnit unit) throws InterruptedException {
+        unit.sleep(timeout);
+    }
+
+}
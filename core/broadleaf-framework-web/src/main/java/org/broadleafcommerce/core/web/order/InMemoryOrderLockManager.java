@@ -0,0 +1,420 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.common.util.LatencyHistogram;
+import org.broadleafcommerce.core.order.domain.NullOrderImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.service.OrderLockManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+/**
+ * An {@link OrderLockManager} that serializes lock requests of the same node in memory and only involves other
+ * nodes, through the configured {@link OrderLockNotifier}, when the lock has to change nodes.
+ * </p>
+ * Threads of this node queue on a fair {@link ReentrantLock} of the order, so they are granted the lock in FIFO order
+ * and are woken up directly by the previous holder instead of polling. The lock of an order only exists while a thread
+ * of this node holds or waits for it, so requests for different orders never wait for each other. Cross-node
+ * ownership is taken by the first local thread that wants the order and is handed from one local thread to the next
+ * for as long as there are local waiters; it is only given back (with {@link OrderLockNotifier#release(Order)}) once no
+ * thread of this node wants the order anymore, and always by a thread holding the lock of the order. With the default
+ * {@link DatabaseOrderLockNotifier}, a burst of requests for the same cart on one node therefore touches the
+ * BLC_ORDER_LOCK table once on the way in and once on the way out.
+ * </p>
+ * While this node owns orders, their cross-node locks are refreshed every "order.lock.inmemory.refreshIntervalMs"
+ * milliseconds through {@link OrderLockNotifier#refresh(Order)}, so that a long hand-off between local threads is not
+ * mistaken for an abandoned lock by other nodes once "order.lock.database.time.to.live" elapses. The interval must be
+ * well below that time to live, and a value of 0 disables the refresh.
+ * </p>
+ * The time spent waiting for and holding locks is tracked in {@link LatencyHistogram}s, which are available through
+ * {@link #getWaitTimeHistogram()} and {@link #getHoldTimeHistogram()} and as JMX attributes when this bean is exported.
+ * </p>
+ * To use this implementation, override the "blOrderLockManager" bean:
+ * <pre>
+ * {@code
+ * <bean id="blOrderLockManager" class="org.broadleafcommerce.core.web.order.InMemoryOrderLockManager"/>
+ * }
+ * </pre>
+ *
+ * @see OrderLockNotifier
+ */
+@ManagedResource(objectName = "org.broadleafcommerce:name=OrderLockManager", description = "In Memory Order Lock Manager",
+        currencyTimeLimit = 15)
+public class InMemoryOrderLockManager implements OrderLockManager {
+
+    protected static final Log LOG = LogFactory.getLog(InMemoryOrderLockManager.class);
+
+    @Resource(name = "blOrderLockNotifier")
+    protected OrderLockNotifier orderLockNotifier;
+
+    @Value("${order.lock.inmemory.refreshIntervalMs:30000}")
+    protected long refreshIntervalMs = 30000L;
+
+    protected final ConcurrentMap<Long, OrderLockState> lockStates = new ConcurrentHashMap<>();
+
+    protected ScheduledExecutorService refreshExecutor;
+
+    protected final LatencyHistogram waitTimeHistogram = new LatencyHistogram();
+    protected final LatencyHistogram holdTimeHistogram = new LatencyHistogram();
+    protected final LongAdder crossNodeAcquireCount = new LongAdder();
+    protected final LongAdder crossNodeReleaseCount = new LongAdder();
+    protected final LongAdder localHandoffCount = new LongAdder();
+    protected final LongAdder timeoutCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (refreshIntervalMs > 0L) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("order-lock-refresh-");
+            threadFactory.setDaemon(true);
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            refreshExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refreshOwnedLocks();
+                }
+            }, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public Object acquireLock(Order order) {
+        if (isLockNotRequired(order)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Thread[" + Thread.currentThread().getId() + "] Attempted to grab a lock for a NullOrderImpl. ");
+            }
+            return order;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(getMaxWaitMs());
+        OrderLockState state = register(order.getId());
+        boolean locked = false;
+        try {
+            locked = state.lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (locked && acquireCrossNode(order, state, deadline)) {
+                waitTimeHistogram.record(System.nanoTime() - start);
+                return new OrderLockHandle(order, state, System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(order, state, locked);
+            throw new RuntimeException(e);
+        }
+
+        abandon(order, state, locked);
+        timeoutCount.increment();
+        waitTimeHistogram.record(System.nanoTime() - start);
+        LOG.warn(String.format("Exceeded max wait time to attempt to acquire a lock on current Order (%s)", order.getId()));
+        throw new RuntimeException("Exceeded max wait time to attempt to acquire a lock on current Order");
+    }
+
+    @Override
+    public Object acquireLockIfAvailable(Order order) {
+        if (isLockNotRequired(order)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Attempted to grab a lock - order was null or it was a NullOrderImpl. Not blocking");
+            }
+            return order;
+        }
+
+        long start = System.nanoTime();
+        OrderLockState state = register(order.getId());
+        boolean locked = state.lock.tryLock();
+        try {
+            if (locked && acquireCrossNode(order, state, null)) {
+                waitTimeHistogram.record(System.nanoTime() - start);
+                return new OrderLockHandle(order, state, System.nanoTime());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        abandon(order, state, locked);
+        return null;
+    }
+
+    @Override
+    public void releaseLock(Object lockObject) {
+        if (!(lockObject instanceof OrderLockHandle)) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Thread[" + Thread.currentThread().getId() + "] Attempted to release a lock for a NullOrderImpl");
+            }
+            return;
+        }
+
+        OrderLockHandle handle = (OrderLockHandle) lockObject;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Thread[" + Thread.currentThread().getId() + "] releasing lock for order[" + handle.order.getId() + "]");
+        }
+        holdTimeHistogram.record(System.nanoTime() - handle.acquiredNanos);
+        abandon(handle.order, handle.state, true);
+    }
+
+    @Override
+    public boolean isActive() {
+        return true;
+    }
+
+    protected boolean isLockNotRequired(Order order) {
+        return order == null || order instanceof NullOrderImpl || order.getId() == null;
+    }
+
+    /**
+     * Takes cross-node ownership of the order if this node does not already have it. Must be called while holding the
+     * order's lock, which guarantees that only one thread of this node talks to the notifier for a given order.
+     *
+     * @param deadline the {@link System#nanoTime()} until which to wait for another node, or null to not wait at all
+     * @return whether this node owns the lock for the order
+     */
+    protected boolean acquireCrossNode(Order order, OrderLockState state, Long deadline) throws InterruptedException {
+        synchronized (state) {
+            if (state.owned) {
+                localHandoffCount.increment();
+                return true;
+            }
+        }
+
+        long backoff = getInitialBackoffMs();
+        while (!orderLockNotifier.tryAcquire(order)) {
+            long remaining = deadline == null ? 0L : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0L) {
+                return false;
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Thread[" + Thread.currentThread().getId() + "] Order[" + order.getId() + "] is locked by "
+                        + "another node - waiting up to " + Math.min(backoff, remaining) + " ms for it to be released");
+            }
+            orderLockNotifier.awaitRelease(order, Math.min(backoff, remaining), TimeUnit.MILLISECONDS);
+            backoff = Math.min(backoff * 2, getMaxBackoffMs());
+        }
+
+        crossNodeAcquireCount.increment();
+        synchronized (state) {
+            state.owned = true;
+            state.order = order;
+        }
+        return true;
+    }
+
+    /**
+     * Withdraws the calling thread's interest in the order. If no other thread of this node wants the order, its
+     * cross-node ownership is given back before the order's lock is unlocked, so that the notifier is only ever called
+     * by the thread holding the lock.
+     * </p>
+     * A thread that gave up waiting can be the last one interested in an order that a previous holder left owned. It
+     * then takes the lock before giving the ownership back: nobody else can want that lock anymore, so at most it
+     * waits for the previous holder to finish unlocking.
+     */
+    protected void abandon(Order order, OrderLockState state, boolean locked) {
+        boolean releaseCrossNode = unregister(order.getId(), state);
+        if (releaseCrossNode && !locked) {
+            state.lock.lock();
+            locked = true;
+        }
+        try {
+            if (releaseCrossNode) {
+                crossNodeReleaseCount.increment();
+                orderLockNotifier.release(order);
+            }
+        } finally {
+            if (locked) {
+                state.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Refreshes the cross-node locks of the orders this node owns, so that other nodes do not take them as abandoned
+     * while they are handed from one local thread to the next
+     */
+    protected void refreshOwnedLocks() {
+        for (OrderLockState state : lockStates.values()) {
+            Order order;
+            synchronized (state) {
+                order = state.owned ? state.order : null;
+            }
+            if (order != null) {
+                try {
+                    orderLockNotifier.refresh(order);
+                } catch (RuntimeException e) {
+                    LOG.warn(String.format("Could not refresh the lock on Order (%s)", order.getId()), e);
+                }
+            }
+        }
+    }
+
+    protected OrderLockState register(Long orderId) {
+        while (true) {
+            OrderLockState state = lockStates.get(orderId);
+            if (state == null) {
+                state = new OrderLockState();
+                OrderLockState existing = lockStates.putIfAbsent(orderId, state);
+                if (existing != null) {
+                    state = existing;
+                }
+            }
+            synchronized (state) {
+                if (!state.removed) {
+                    state.interest++;
+                    return state;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the caller has to release the cross-node ownership of the order
+     */
+    protected boolean unregister(Long orderId, OrderLockState state) {
+        boolean releaseCrossNode = false;
+        synchronized (state) {
+            state.interest--;
+            if (state.interest == 0) {
+                releaseCrossNode = state.owned;
+                state.owned = false;
+                state.order = null;
+                state.removed = true;
+                lockStates.remove(orderId, state);
+            }
+        }
+        return releaseCrossNode;
+    }
+
+    protected long getMaxWaitMs() {
+        return BLCSystemProperty.resolveLongSystemProperty("order.lock.inmemory.maxWaitMs", 5000L);
+    }
+
+    protected long getInitialBackoffMs() {
+        return BLCSystemProperty.resolveLongSystemProperty("order.lock.inmemory.initialBackoffMs", 10L);
+    }
+
+    protected long getMaxBackoffMs() {
+        return BLCSystemProperty.resolveLongSystemProperty("order.lock.databaseLockPollingIntervalMs", 1000L);
+    }
+
+    public LatencyHistogram getWaitTimeHistogram() {
+        return waitTimeHistogram;
+    }
+
+    public LatencyHistogram getHoldTimeHistogram() {
+        return holdTimeHistogram;
+    }
+
+    @ManagedAttribute(description = "Lock wait time distribution", currencyTimeLimit = 15)
+    public String getWaitTimeStatistics() {
+        return waitTimeHistogram.toString();
+    }
+
+    @ManagedAttribute(description = "Lock hold time distribution", currencyTimeLimit = 15)
+    public String getHoldTimeStatistics() {
+        return holdTimeHistogram.toString();
+    }
+
+    @ManagedAttribute(description = "Number of times the lock was taken from another node", currencyTimeLimit = 15)
+    public long getCrossNodeAcquireCount() {
+        return crossNodeAcquireCount.sum();
+    }
+
+    @ManagedAttribute(description = "Number of times the lock was given back to other nodes", currencyTimeLimit = 15)
+    public long getCrossNodeReleaseCount() {
+        return crossNodeReleaseCount.sum();
+    }
+
+    @ManagedAttribute(description = "Number of times the lock was handed to another thread of this node", currencyTimeLimit = 15)
+    public long getLocalHandoffCount() {
+        return localHandoffCount.sum();
+    }
+
+    @ManagedAttribute(description = "Number of lock requests that timed out", currencyTimeLimit = 15)
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    @ManagedOperation(description = "Resets the lock statistics")
+    public void resetStatistics() {
+        waitTimeHistogram.reset();
+        holdTimeHistogram.reset();
+        crossNodeAcquireCount.reset();
+        crossNodeReleaseCount.reset();
+        localHandoffCount.reset();
+        timeoutCount.reset();
+    }
+
+    public OrderLockNotifier getOrderLockNotifier() {
+        return orderLockNotifier;
+    }
+
+    public void setOrderLockNotifier(OrderLockNotifier orderLockNotifier) {
+        this.orderLockNotifier = orderLockNotifier;
+    }
+
+    /**
+     * The lock of an order on this node, the number of threads of this node that hold or wait for it, and whether this
+     * node owns the lock across nodes. Everything but the lock is guarded by the state's own monitor.
+     */
+    protected static class OrderLockState {
+
+        protected final ReentrantLock lock = new ReentrantLock(true);
+        protected int interest;
+        protected boolean owned;
+        protected Order order;
+        protected boolean removed;
+
+    }
+
+    /**
+     * The lock object returned to callers and handed back in {@link InMemoryOrderLockManager#releaseLock(Object)}
+     */
+    protected static class OrderLockHandle {
+
+        protected final Order order;
+        protected final OrderLockState state;
+        protected final long acquiredNanos;
+
+        protected OrderLockHandle(Order order, OrderLockState state, long acquiredNanos) {
+            this.order = order;
+            this.state = state;
+            this.acquiredNanos = acquiredNanos;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.broadleafcommerce.core.order.domain.Order;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates ownership of an {@link Order} lock between nodes for the {@link InMemoryOrderLockManager}. The lock
+ * manager serializes threads of the same node itself and only calls the notifier when the lock has to move between
+ * this node and another one: {@link #tryAcquire(Order)} when the first local thread wants the order and
+ * {@link #release(Order)} when no local thread wants it anymore.
+ *
+ * Implementations backed by a messaging system should publish a message in {@link #release(Order)} and wake up
+ * {@link #awaitRelease(Order, long, TimeUnit)} when such a message is received from another node, so that waiting
+ * for a remote lock holder costs no polling at all.
+ *
+ * @see DatabaseOrderLockNotifier
+ */
+public interface OrderLockNotifier {
+
+    /**
+     * Attempts to take cross-node ownership of the lock for the given order without blocking.
+     *
+     * @param order
+     * @return whether this node now owns the lock
+     */
+    public boolean tryAcquire(Order order);
+
+    /**
+     * Gives up cross-node ownership of the lock for the given order and lets other nodes know that it is available.
+     *
+     * @param order
+     */
+    public void release(Order order);
+
+    /**
+     * Tells other nodes that this node still owns the lock for the given order, so that a lock held for long is not
+     * taken for an abandoned one. Called periodically by the {@link InMemoryOrderLockManager} for every order it owns.
+     *
+     * @param order
+     */
+    public void refresh(Order order);
+
+    /**
+     * Blocks until the lock for the given order may have been released by another node, or until the timeout elapses.
+     * Callers retry {@link #tryAcquire(Order)} afterwards, so spurious returns are allowed.
+     *
+     * @param order
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @throws InterruptedException
+     */
+    public void awaitRelease(Order order, long timeout, TimeUnit unit) throws InterruptedException;
+
+}
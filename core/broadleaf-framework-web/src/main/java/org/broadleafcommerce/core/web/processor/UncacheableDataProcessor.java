@@ -23,15 +23,21 @@ import org.broadleafcommerce.common.exception.ServiceException;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.security.service.ExploitProtectionService;
 import org.broadleafcommerce.common.util.StringUtil;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.domain.ProductOptionXref;
 import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.service.CatalogService;
 import org.broadleafcommerce.core.inventory.service.InventoryService;
 import org.broadleafcommerce.core.inventory.service.InventoryServiceExtensionHandler;
 import org.broadleafcommerce.core.inventory.service.InventoryServiceExtensionManager;
 import org.broadleafcommerce.core.order.domain.Order;
 import org.broadleafcommerce.core.order.domain.OrderItem;
 import org.broadleafcommerce.core.order.domain.SkuAccessor;
+import org.broadleafcommerce.core.web.cache.RenderedPageCacheFilter;
+import org.broadleafcommerce.core.web.cache.UncacheableDataPlaceholder;
+import org.broadleafcommerce.core.web.cache.UncacheableDataPlaceholders;
 import org.broadleafcommerce.core.web.order.CartState;
 import org.broadleafcommerce.core.web.processor.extension.UncacheableDataProcessorExtensionManager;
 import org.broadleafcommerce.presentation.condition.ConditionalOnTemplating;
@@ -63,6 +69,10 @@ import javax.annotation.Resource;
  * together to update the "In Cart", "Out of Stock", "Welcome {name}", and "Cart Qty" messages.   By doing this, the 
  * category and product pages in HeatClinic can be aggressively cached using the {@link BroadleafCacheProcessor}. 
  * 
+ * When the page is rendered for the {@link RenderedPageCacheFilter}, the processor emits a placeholder instead of the
+ * SCRIPT tag, and the filter renders the script through {@link #buildUncacheableDataScript(UncacheableDataPlaceholder)}
+ * for every request that is served the cached page.
+ * 
  * Example usage on cached pages with dynamic data.   This would generally go after the footer for the page.
  * <pre>
  *  {@code
@@ -87,6 +97,9 @@ public class UncacheableDataProcessor extends AbstractBroadleafTagReplacementPro
     @Resource(name = "blInventoryServiceExtensionManager"   )
     protected InventoryServiceExtensionManager inventoryServiceExtensionManager;
 
+    @Resource(name = "blCatalogService")
+    protected CatalogService catalogService;
+
     private String defaultCallbackFunction = "updateUncacheableData(params);\n";
 
     @Override
@@ -101,41 +114,103 @@ public class UncacheableDataProcessor extends AbstractBroadleafTagReplacementPro
     
     @Override
     public BroadleafTemplateModel getReplacementModel(String tagName, Map<String, String> tagAttributes, BroadleafTemplateContext context) {
-        StringBuffer sb = new StringBuffer();
-        sb.append("<SCRIPT>\n");
-        sb.append("  var params = \n  ");
-        sb.append(buildContentMap(context)).append(";\n  ");
-        sb.append(getUncacheableDataFunction(context, tagAttributes));
-        sb.append("</SCRIPT>");
-                
+        UncacheableDataPlaceholders placeholders = UncacheableDataPlaceholders.getPlaceholders(context.getRequest());
+        String content;
+        if (placeholders != null) {
+            content = placeholders.add(buildPlaceholder(tagAttributes, context));
+        } else {
+            content = buildScript(buildContentMap(context), getUncacheableDataFunction(context, tagAttributes));
+        }
+
         // Add contentNode to the document
         BroadleafTemplateModel model = context.createModel();
-        BroadleafTemplateElement script = context.createTextElement(sb.toString());
+        BroadleafTemplateElement script = context.createTextElement(content);
         model.addElement(script);
         return model;
     }
-    
+
+    /**
+     * Renders the script of a placeholder emitted while the page was rendered for the rendered page cache, with the
+     * data of the current request
+     */
+    public String buildUncacheableDataScript(UncacheableDataPlaceholder placeholder) {
+        Set<Product> products = new HashSet<>();
+        for (Long productId : placeholder.getProductIds()) {
+            Product product = catalogService.findProductById(productId);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        Set<Sku> skus = new HashSet<>();
+        if (!placeholder.getSkuIds().isEmpty()) {
+            skus.addAll(catalogService.findSkusByIds(placeholder.getSkuIds()));
+        }
+        return buildScript(buildContentMap(products, skus), placeholder.getCallback());
+    }
+
+    protected String buildScript(String contentMap, String callback) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<SCRIPT>\n");
+        sb.append("  var params = \n  ");
+        sb.append(contentMap).append(";\n  ");
+        sb.append(callback);
+        sb.append("</SCRIPT>");
+        return sb.toString();
+    }
+
+    /**
+     * Records the products and skus to check the inventory of and the callback, and adds the displayed products and
+     * skus as dependencies of the cached page
+     */
+    protected UncacheableDataPlaceholder buildPlaceholder(Map<String, String> tagAttributes, BroadleafTemplateContext context) {
+        Set<Product> allProducts = new HashSet<>();
+        Set<Sku> allSkus = new HashSet<>();
+        addDisplayedProductsAndSkus(context, allProducts, allSkus);
+
+        List<Long> productIds = new ArrayList<>();
+        for (Product product : allProducts) {
+            productIds.add(product.getId());
+            RenderedPageCacheContext.addDependency(context.getRequest(), RenderedPageCacheInvalidationEvent.PRODUCT, product.getId());
+            if (product.getDefaultSku() != null) {
+                RenderedPageCacheContext.addDependency(context.getRequest(), RenderedPageCacheInvalidationEvent.SKU, product.getDefaultSku().getId());
+            }
+        }
+        List<Long> skuIds = new ArrayList<>();
+        for (Sku sku : allSkus) {
+            skuIds.add(sku.getId());
+            RenderedPageCacheContext.addDependency(context.getRequest(), RenderedPageCacheInvalidationEvent.SKU, sku.getId());
+        }
+        return new UncacheableDataPlaceholder(productIds, skuIds, getUncacheableDataFunction(context, tagAttributes));
+    }
+
     protected String buildContentMap(BroadleafTemplateContext context) {
         Map<String, Object> attrMap = new HashMap<>();
         addCartData(attrMap);
         addCustomerData(attrMap);
         addProductInventoryData(attrMap, context);
+        addCsrfData(attrMap);
+        return StringUtil.getMapAsJson(attrMap);
+    }
 
+    protected String buildContentMap(Set<Product> allProducts, Set<Sku> allSkus) {
+        Map<String, Object> attrMap = new HashMap<>();
+        addCartData(attrMap);
+        addCustomerData(attrMap);
+        addProductInventoryData(attrMap, allProducts, allSkus);
+        addCsrfData(attrMap);
+        return StringUtil.getMapAsJson(attrMap);
+    }
+
+    protected void addCsrfData(Map<String, Object> attrMap) {
         try {
             attrMap.put("csrfToken", eps.getCSRFToken());
             attrMap.put("csrfTokenParameter", eps.getCsrfTokenParameter());
         } catch (ServiceException e) {
             throw new RuntimeException("Could not get a CSRF token for this session", e);
         }
-        return StringUtil.getMapAsJson(attrMap);
     }
 
-    protected void addProductInventoryData(Map<String, Object> attrMap, BroadleafTemplateContext context) {
-        List<Long> outOfStockProducts = new ArrayList<>();
-        List<Long> outOfStockSkus = new ArrayList<>();
-
-        Set<Product> allProducts = new HashSet<>();
-        Set<Sku> allSkus = new HashSet<>();
+    protected void addDisplayedProductsAndSkus(BroadleafTemplateContext context, Set<Product> allProducts, Set<Sku> allSkus) {
         Set<Product> products = (Set<Product>) context.getVariable("blcAllDisplayedProducts");
         Set<Sku> skus = (Set<Sku>) context.getVariable("blcAllDisplayedSkus");
         if (!CollectionUtils.isEmpty(products)) {
@@ -146,6 +221,18 @@ public class UncacheableDataProcessor extends AbstractBroadleafTagReplacementPro
         }
 
         extensionManager.getProxy().modifyProductListForInventoryCheck(context, allProducts, allSkus);
+    }
+
+    protected void addProductInventoryData(Map<String, Object> attrMap, BroadleafTemplateContext context) {
+        Set<Product> allProducts = new HashSet<>();
+        Set<Sku> allSkus = new HashSet<>();
+        addDisplayedProductsAndSkus(context, allProducts, allSkus);
+        addProductInventoryData(attrMap, allProducts, allSkus);
+    }
+
+    protected void addProductInventoryData(Map<String, Object> attrMap, Set<Product> allProducts, Set<Sku> allSkus) {
+        List<Long> outOfStockProducts = new ArrayList<>();
+        List<Long> outOfStockSkus = new ArrayList<>();
 
         if (!allProducts.isEmpty()) {
             for (Product product : allProducts) {
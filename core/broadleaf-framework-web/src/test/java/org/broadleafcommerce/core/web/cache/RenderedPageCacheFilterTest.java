@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
+import org.broadleafcommerce.core.web.processor.UncacheableDataProcessor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+public class RenderedPageCacheFilterTest extends TestCase {
+
+    protected RenderedPageCacheFilter filter;
+
+    protected Cache region;
+
+    protected AtomicInteger scriptsRendered = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws Exception {
+        region = new Cache(new CacheConfiguration("renderedPageCacheFilterTest", 1000));
+        CacheManager.getInstance().addCache(region);
+        filter = new RenderedPageCacheFilter();
+        filter.cacheManager = new RenderedPageCacheManager();
+        filter.cacheManager.getCache().setCache(region);
+        filter.uncacheableDataProcessor = new UncacheableDataProcessor() {
+            @Override
+            public String buildUncacheableDataScript(UncacheableDataPlaceholder placeholder) {
+                return "<script>" + placeholder.getCallback() + scriptsRendered.incrementAndGet() + "</script>";
+            }
+        };
+        BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+        CacheManager.getInstance().removeCache(region.getName());
+    }
+
+    public void testCacheablePageIsServedFromTheCacheWithItsUncacheableDataRenderedPerRequest() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        filter.doFilterInternalUnlessIgnored(buildRequest("/shirt"), first, new PageChain(true, false));
+        assertEquals("<html><script>cb1</script></html>", first.getContentAsString());
+        assertEquals(1, filter.cacheManager.getSize());
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        filter.doFilterInternalUnlessIgnored(buildRequest("/shirt"), second, new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                fail("A cached page should not be rendered");
+            }
+        });
+        assertEquals("<html><script>cb2</script></html>", second.getContentAsString());
+        assertTrue(second.getContentType().startsWith("text/html"));
+        assertEquals(1, filter.cacheManager.getHitCount());
+    }
+
+    public void testPagesNotMarkedAsCacheableAreWrittenStraightThrough() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        PageChain chain = new PageChain(false, false);
+        filter.doFilterInternalUnlessIgnored(buildRequest("/cart"), response, chain);
+
+        assertNull(chain.capturedResponse);
+        assertFalse(chain.placeholdersUsed);
+        assertEquals("<html>inline</html>", response.getContentAsString());
+        assertEquals(0, filter.cacheManager.getSize());
+        assertEquals(1, filter.cacheManager.getUncacheableCount());
+        assertEquals(0, scriptsRendered.get());
+    }
+
+    public void testCacheablePagesSettingCookiesAreRenderedButNotCached() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilterInternalUnlessIgnored(buildRequest("/shirt"), response, new PageChain(true, true));
+
+        assertEquals("<html><script>cb1</script></html>", response.getContentAsString());
+        assertEquals(0, filter.cacheManager.getSize());
+        assertEquals(1, filter.cacheManager.getUncacheableCount());
+    }
+
+    public void testPostRequestsAreNotWrapped() throws Exception {
+        MockHttpServletRequest request = buildRequest("/shirt");
+        request.setMethod("POST");
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilterInternalUnlessIgnored(request, response, new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse servletResponse) {
+                assertSame(response, servletResponse);
+            }
+        });
+        assertEquals(0, filter.cacheManager.getMissCount());
+    }
+
+    protected MockHttpServletRequest buildRequest(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    /**
+     * Renders a page the way the dispatcher would: the handler mapping marks the request, then the view writes the
+     * page with an uncacheable data tag.
+     */
+    protected static class PageChain implements FilterChain {
+
+        protected final boolean cacheable;
+
+        protected final boolean setsCookie;
+
+        protected Object capturedResponse;
+
+        protected boolean placeholdersUsed;
+
+        public PageChain(boolean cacheable, boolean setsCookie) {
+            this.cacheable = cacheable;
+            this.setsCookie = setsCookie;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse servletResponse) throws IOException, ServletException {
+            if (cacheable) {
+                RenderedPageCacheContext.markCacheable(request, RenderedPageCacheInvalidationEvent.PRODUCT, 1L);
+            }
+            HttpServletResponse response = (HttpServletResponse) servletResponse;
+            if (setsCookie) {
+                response.addHeader("Set-Cookie", "visitor=1");
+            }
+            response.setContentType("text/html;charset=UTF-8");
+            response.getWriter().print("<html>");
+            UncacheableDataPlaceholders placeholders = UncacheableDataPlaceholders.getPlaceholders(request);
+            if (placeholders != null) {
+                placeholdersUsed = true;
+                response.getWriter().print(placeholders.add(new UncacheableDataPlaceholder(
+                        Collections.singletonList(1L), Collections.<Long>emptyList(), "cb")));
+            } else {
+                response.getWriter().print("inline");
+            }
+            response.getWriter().print("</html>");
+            capturedResponse = ((RenderedPageCacheResponseWrapper) response).getCapturedResponse();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+public class RenderedPageCacheTest extends TestCase {
+
+    protected RenderedPageCache cache;
+
+    protected Cache region;
+
+    @Override
+    protected void setUp() throws Exception {
+        region = new Cache(new CacheConfiguration("renderedPageCacheTest", 1000));
+        CacheManager.getInstance().addCache(region);
+        cache = new RenderedPageCache();
+        cache.setCache(region);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        CacheManager.getInstance().removeCache(region.getName());
+    }
+
+    public void testPagesAreCachedByKey() {
+        RenderedPage page = buildPage(RenderedPageCacheContext.getDependencyTag(RenderedPageCacheInvalidationEvent.PRODUCT, 1L));
+        assertTrue(cache.put("/shirt", page, cache.getInvalidationVersion()));
+
+        assertSame(page, cache.get("/shirt"));
+        assertNull(cache.get("/pants"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testInvalidationOnlyRemovesDependentPages() {
+        cache.put("/shirt", buildPage(RenderedPageCacheInvalidationEvent.PRODUCT,
+                RenderedPageCacheContext.getDependencyTag(RenderedPageCacheInvalidationEvent.PRODUCT, 1L)), cache.getInvalidationVersion());
+        cache.put("/pants", buildPage(RenderedPageCacheInvalidationEvent.PRODUCT,
+                RenderedPageCacheContext.getDependencyTag(RenderedPageCacheInvalidationEvent.PRODUCT, 2L)), cache.getInvalidationVersion());
+        cache.put("/about", buildPage(RenderedPageCacheInvalidationEvent.PAGE,
+                RenderedPageCacheContext.getDependencyTag(RenderedPageCacheInvalidationEvent.PAGE, 3L)), cache.getInvalidationVersion());
+
+        assertEquals(1, cache.invalidate(RenderedPageCacheInvalidationEvent.PRODUCT, Arrays.asList(1L, 4L)));
+        assertNull(cache.get("/shirt"));
+        assertNotNull(cache.get("/pants"));
+
+        assertEquals(1, cache.invalidate(RenderedPageCacheInvalidationEvent.PRODUCT, Collections.<Long>emptyList()));
+        assertNull(cache.get("/pants"));
+        assertNotNull(cache.get("/about"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getInvalidatedCount());
+    }
+
+    public void testPagesRenderedDuringAnInvalidationAreNotCached() {
+        long version = cache.getInvalidationVersion();
+        cache.invalidate(RenderedPageCacheInvalidationEvent.CATEGORY, Arrays.asList(1L));
+
+        assertFalse(cache.put("/shirts", buildPage(RenderedPageCacheInvalidationEvent.CATEGORY), version));
+        assertEquals(0, cache.size());
+    }
+
+    public void testPagesExpireWithTheRegion() throws Exception {
+        region.getCacheConfiguration().setTimeToLiveSeconds(1);
+        cache.put("/shirt", buildPage(RenderedPageCacheInvalidationEvent.PRODUCT), cache.getInvalidationVersion());
+        assertNotNull(cache.get("/shirt"));
+
+        Thread.sleep(1100);
+        assertNull(cache.get("/shirt"));
+    }
+
+    protected RenderedPage buildPage(String... dependencies) {
+        return new RenderedPage(Arrays.asList("<html></html>"), Collections.<UncacheableDataPlaceholder>emptyList(),
+                "text/html", "UTF-8", new HashSet<>(Arrays.asList(dependencies)));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.cache;
+
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheContext;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class UncacheableDataPlaceholdersTest extends TestCase {
+
+    public void testPlaceholdersAreOnlyUsedForCacheableRequests() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(UncacheableDataPlaceholders.REQUEST_ATTRIBUTE, new UncacheableDataPlaceholders());
+        assertNull(UncacheableDataPlaceholders.getPlaceholders(request));
+
+        RenderedPageCacheContext.markCacheable(request, RenderedPageCacheInvalidationEvent.PRODUCT, 1L);
+        assertNotNull(UncacheableDataPlaceholders.getPlaceholders(request));
+        assertNull(UncacheableDataPlaceholders.getPlaceholders(null));
+    }
+
+    public void testContentIsSplitAtTheMarkers() {
+        UncacheableDataPlaceholders placeholders = new UncacheableDataPlaceholders();
+        UncacheableDataPlaceholder first = buildPlaceholder("first");
+        UncacheableDataPlaceholder second = buildPlaceholder("second");
+        String content = "<head>" + placeholders.add(first) + "</head><body>" + placeholders.add(second) + "</body>";
+
+        List<String> segments = new ArrayList<>();
+        List<UncacheableDataPlaceholder> found = new ArrayList<>();
+        placeholders.split(content, segments, found);
+
+        assertEquals(Arrays.asList("<head>", "</head><body>", "</body>"), segments);
+        assertEquals(Arrays.asList(first, second), found);
+    }
+
+    public void testMarkersOfAnotherRequestAreKept() {
+        UncacheableDataPlaceholders other = new UncacheableDataPlaceholders();
+        String content = "<body>" + other.add(buildPlaceholder("other")) + "</body>";
+
+        UncacheableDataPlaceholders placeholders = new UncacheableDataPlaceholders();
+        placeholders.add(buildPlaceholder("mine"));
+        List<String> segments = new ArrayList<>();
+        List<UncacheableDataPlaceholder> found = new ArrayList<>();
+        placeholders.split(content, segments, found);
+
+        assertEquals(Collections.singletonList(content), segments);
+        assertTrue(found.isEmpty());
+    }
+
+    protected UncacheableDataPlaceholder buildPlaceholder(String callback) {
+        return new UncacheableDataPlaceholder(Arrays.asList(1L), Arrays.asList(2L), callback);
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class InMemoryOrderLockManagerTest extends TestCase {
+
+    protected static final int THREAD_COUNT = 4;
+
+    protected InMemoryOrderLockManager manager;
+
+    protected RecordingNotifier notifier;
+
+    protected final ThreadLocal<InMemoryOrderLockManager.OrderLockState> releasingState = new ThreadLocal<>();
+
+    protected volatile long maxWaitMs = 5000L;
+
+    protected ExecutorService executor;
+
+    @Override
+    protected void setUp() throws Exception {
+        notifier = new RecordingNotifier();
+        manager = new InMemoryOrderLockManager() {
+            @Override
+            protected boolean unregister(Long orderId, OrderLockState state) {
+                boolean releaseCrossNode = super.unregister(orderId, state);
+                releasingState.set(releaseCrossNode ? state : null);
+                return releaseCrossNode;
+            }
+
+            @Override
+            protected long getMaxWaitMs() {
+                return maxWaitMs;
+            }
+
+            @Override
+            protected long getInitialBackoffMs() {
+                return 1L;
+            }
+
+            @Override
+            protected long getMaxBackoffMs() {
+                return 10L;
+            }
+        };
+        manager.setOrderLockNotifier(notifier);
+        manager.refreshIntervalMs = 0L;
+        executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        manager.shutdown();
+    }
+
+    public void testOrdersDoNotWaitForEachOther() throws Exception {
+        Object lock = manager.acquireLock(buildOrder(1L));
+        try {
+            assertNull(tryLockInAnotherThread(buildOrder(1L)));
+            // 1025 shared a stripe with 1 when the stripes were held for the whole request
+            assertNotNull(tryLockInAnotherThread(buildOrder(1025L)));
+            assertNotNull(tryLockInAnotherThread(buildOrder(2L)));
+        } finally {
+            manager.releaseLock(lock);
+        }
+        assertTrue(manager.lockStates.isEmpty());
+    }
+
+    public void testThreadsOfTheNodeTakeTurnsAndShareTheCrossNodeLock() throws Exception {
+        final Order order = buildOrder(1L);
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        final int[] counter = new int[1];
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int j = 0; j < 200; j++) {
+                        Object lock = j % 4 == 0 ? manager.acquireLockIfAvailable(order) : manager.acquireLock(order);
+                        if (lock == null) {
+                            continue;
+                        }
+                        try {
+                            if (holders.incrementAndGet() > 1) {
+                                overlaps.incrementAndGet();
+                            }
+                            counter[0]++;
+                            holders.decrementAndGet();
+                        } finally {
+                            manager.releaseLock(lock);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(0, overlaps.get());
+        assertTrue(counter[0] > 0);
+        assertTrue(notifier.acquireCount.get() <= counter[0]);
+        assertEquals(notifier.acquireCount.get(), notifier.releaseCount.get());
+        assertEquals(0, notifier.releasesWithoutLock.get());
+        assertTrue(notifier.ownedOrders.isEmpty());
+        assertTrue(manager.lockStates.isEmpty());
+    }
+
+    public void testWaiterThatGivesUpDoesNotReleaseTheHoldersLock() throws Exception {
+        maxWaitMs = 50L;
+        final Order order = buildOrder(1L);
+        Object lock = manager.acquireLock(order);
+        Future<Object> waiter = executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return manager.acquireLock(order);
+            }
+        });
+        try {
+            waiter.get(5, TimeUnit.SECONDS);
+            fail("The waiter should have timed out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RuntimeException);
+        }
+
+        assertEquals(0, notifier.releaseCount.get());
+        assertTrue(notifier.ownedOrders.contains(1L));
+        assertEquals(1, manager.getTimeoutCount());
+
+        manager.releaseLock(lock);
+        assertEquals(1, notifier.releaseCount.get());
+        assertEquals(0, notifier.releasesWithoutLock.get());
+        assertTrue(manager.lockStates.isEmpty());
+    }
+
+    public void testOwnedLocksAreRefreshed() throws Exception {
+        manager.refreshIntervalMs = 10L;
+        manager.init();
+        Object lock = manager.acquireLock(buildOrder(1L));
+        Thread.sleep(100L);
+        manager.releaseLock(lock);
+        assertTrue(notifier.refreshCount.get() > 0);
+
+        Thread.sleep(20L);
+        int refreshed = notifier.refreshCount.get();
+        Thread.sleep(50L);
+        assertEquals(refreshed, notifier.refreshCount.get());
+    }
+
+    protected Object tryLockInAnotherThread(final Order order) throws Exception {
+        return executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                Object lock = manager.acquireLockIfAvailable(order);
+                if (lock != null) {
+                    manager.releaseLock(lock);
+                }
+                return lock;
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    protected Order buildOrder(Long id) {
+        Order order = new OrderImpl();
+        order.setId(id);
+        return order;
+    }
+
+    /**
+     * Owns the orders it was asked to, and records whether they were released by a thread holding the order's lock
+     */
+    protected class RecordingNotifier implements OrderLockNotifier {
+
+        protected final Set<Long> ownedOrders = ConcurrentHashMap.newKeySet();
+        protected final AtomicInteger acquireCount = new AtomicInteger();
+        protected final AtomicInteger releaseCount = new AtomicInteger();
+        protected final AtomicInteger releasesWithoutLock = new AtomicInteger();
+        protected final AtomicInteger refreshCount = new AtomicInteger();
+
+        @Override
+        public boolean tryAcquire(Order order) {
+            if (ownedOrders.add(order.getId())) {
+                acquireCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void release(Order order) {
+            InMemoryOrderLockManager.OrderLockState state = releasingState.get();
+            if (state == null || !state.lock.isHeldByCurrentThread()) {
+                releasesWithoutLock.incrementAndGet();
+            }
+            releaseCount.incrementAndGet();
+            ownedOrders.remove(order.getId());
+        }
+
+        @Override
+        public void refresh(Order order) {
+            refreshCount.incrementAndGet();
+        }
+
+        @Override
+        public void awaitRelease(Order order, long timeout, TimeUnit unit) throws InterruptedException {
+            unit.sleep(timeout);
+        }
+    }
+}
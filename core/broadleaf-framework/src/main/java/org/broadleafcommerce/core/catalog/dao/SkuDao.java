@@ -21,6 +21,7 @@ import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * {@code SkuDao} provides persistence access to {@code Sku} instances
@@ -183,4 +184,37 @@ public interface SkuDao {
      * 
      */
     List<Sku> findSkuByURI(String uri);
+
+    /**
+     * Atomically decrements the quantity available of each of the given skus. Each sku is updated with a single
+     * conditional statement that only applies if at least the requested quantity is still available, so concurrent
+     * callers never need to read, compute and write back the quantity. Skus are updated in id order so that concurrent
+     * callers lock rows in the same order, and processing stops at the first sku that does not have enough inventory.
+     * Skus whose quantity available is null are not tracked and are left as they are, without failing.
+     * </p>
+     * This does not modify the in-memory state of the given skus, and the caller is expected to roll back the
+     * transaction when a sku could not be decremented.
+     *
+     * @param skuQuantities the quantity to remove for each sku id
+     * @return the id of the first sku that did not have enough inventory, or null if every sku was decremented
+     */
+    Long decrementQuantitiesAvailable(Map<Long, Integer> skuQuantities);
+
+    /**
+     * Atomically increments the quantity available of each of the given skus with a single statement per sku, in id
+     * order. Skus whose quantity available is null are not updated, and processing stops at the first such sku.
+     *
+     * @param skuQuantities the quantity to add for each sku id
+     * @return the id of the first sku that could not be incremented, or null if every sku was incremented
+     */
+    Long incrementQuantitiesAvailable(Map<Long, Integer> skuQuantities);
+
+    /**
+     * Reads the quantity available of the given sku from the database, regardless of the sku instances in the
+     * persistence context or the second level cache
+     *
+     * @param skuId the id of the sku
+     * @return the quantity available, or null if it is not tracked or the sku does not exist
+     */
+    Integer readQuantityAvailable(Long skuId);
 }
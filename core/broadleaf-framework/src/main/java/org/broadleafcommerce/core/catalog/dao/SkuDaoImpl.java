@@ -26,16 +26,26 @@ import org.broadleafcommerce.common.persistence.EntityConfiguration;
 import org.broadleafcommerce.common.sandbox.SandBoxHelper;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.util.DateUtil;
+import org.broadleafcommerce.common.util.UpdateExecutor;
 import org.broadleafcommerce.common.util.dao.TypedQueryBuilder;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jdbc.ReturningWork;
 import org.hibernate.jpa.QueryHints;
+import org.hibernate.persister.entity.EntityPersister;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
@@ -315,4 +325,101 @@ public class SkuDaoImpl implements SkuDao {
         criteria.orderBy(builder.asc(sku.get("id")));
         return criteria;
     }
+
+    @Override
+    public Long decrementQuantitiesAvailable(Map<Long, Integer> skuQuantities) {
+        return updateQuantitiesAvailable(getDecrementQuantityAvailableSql(), skuQuantities, true);
+    }
+
+    @Override
+    public Long incrementQuantitiesAvailable(Map<Long, Integer> skuQuantities) {
+        return updateQuantitiesAvailable(getIncrementQuantityAvailableSql(), skuQuantities, false);
+    }
+
+    /**
+     * The statement parameters are the quantity, the sku id and the quantity again. A sku whose quantity available is
+     * null matches, so it counts as decremented, but its quantity stays null.
+     */
+    protected String getDecrementQuantityAvailableSql() {
+        return "UPDATE BLC_SKU SET QUANTITY_AVAILABLE = QUANTITY_AVAILABLE - ? WHERE SKU_ID = ? "
+                + "AND (QUANTITY_AVAILABLE IS NULL OR QUANTITY_AVAILABLE >= ?)";
+    }
+
+    /**
+     * The statement parameters are the quantity and the sku id
+     */
+    protected String getIncrementQuantityAvailableSql() {
+        return "UPDATE BLC_SKU SET QUANTITY_AVAILABLE = QUANTITY_AVAILABLE + ? WHERE SKU_ID = ? AND QUANTITY_AVAILABLE IS NOT NULL";
+    }
+
+    @Override
+    public Integer readQuantityAvailable(Long skuId) {
+        TypedQuery<Integer> query = em.createQuery("SELECT sku.quantityAvailable FROM " + SkuImpl.class.getName()
+                + " sku WHERE sku.id = :skuId", Integer.class);
+        query.setParameter("skuId", skuId);
+        List<Integer> result = query.getResultList();
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Runs the given statement for every sku through a single prepared statement on the current connection. This is
+     * done in native sql rather than an HQL update since Hibernate would otherwise invalidate the entire sku cache region
+     * on every call. Instead, only the updated skus are evicted.
+     * </p>
+     * Pending changes are flushed first so the statement sees them, and skus of the persistence context that were
+     * updated are refreshed afterwards. Otherwise a later flush of such a sku would write its old quantity back.
+     *
+     * @param sql the update statement, see {@link #getDecrementQuantityAvailableSql()}
+     * @param skuQuantities the quantity for each sku id
+     * @param bindQuantityTwice whether the quantity is bound again as the third statement parameter
+     * @return the id of the first sku that was not updated, or null if every sku was updated
+     */
+    protected Long updateQuantitiesAvailable(final String sql, Map<Long, Integer> skuQuantities, final boolean bindQuantityTwice) {
+        if (skuQuantities.isEmpty()) {
+            return null;
+        }
+        final TreeMap<Long, Integer> ordered = new TreeMap<>(skuQuantities);
+        final List<Long> updated = new ArrayList<>(ordered.size());
+        em.flush();
+        Long failedId = em.unwrap(Session.class).doReturningWork(new ReturningWork<Long>() {
+
+            @Override
+            public Long execute(Connection connection) throws SQLException {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    for (Map.Entry<Long, Integer> entry : ordered.entrySet()) {
+                        statement.setInt(1, entry.getValue());
+                        statement.setLong(2, entry.getKey());
+                        if (bindQuantityTwice) {
+                            statement.setInt(3, entry.getValue());
+                        }
+                        if (statement.executeUpdate() != 1) {
+                            return entry.getKey();
+                        }
+                        updated.add(entry.getKey());
+                    }
+                }
+                return null;
+            }
+        });
+        if (!updated.isEmpty()) {
+            UpdateExecutor.executeTargetedCacheInvalidation(em, SkuImpl.class, updated);
+            refreshManagedSkus(updated);
+        }
+        return failedId;
+    }
+
+    /**
+     * Refreshes the skus with the given ids that are loaded in the current persistence context, without loading the
+     * others
+     */
+    protected void refreshManagedSkus(List<Long> skuIds) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(SkuImpl.class);
+        for (Long skuId : skuIds) {
+            Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(skuId, persister));
+            if (managed != null) {
+                em.refresh(managed);
+            }
+        }
+    }
 }
@@ -41,6 +41,7 @@ import java.util.Objects;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
@@ -48,10 +49,12 @@ import javax.persistence.InheritanceType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 
 @Entity
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_PRODUCT_OPTION_VALUE")
+@EntityListeners(value = { SkuPricesPersistedEntityListener.class })
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "blProducts")
 @DirectCopyTransform({
         @DirectCopyTransformMember(templateTokens = DirectCopyTransformTypes.SANDBOX, skipOverlaps=true),
@@ -93,6 +96,12 @@ public class ProductOptionValueImpl implements ProductOptionValue, ProductOption
             group = GroupName.General)
     protected BigDecimal priceAdjustment;
 
+    /**
+     * The price adjustment as it was loaded, see {@link SkuPricesPersistedEntityListener}
+     */
+    @Transient
+    protected Object[] loadedPricingState;
+
     @ManyToOne(targetEntity = ProductOptionImpl.class, cascade = CascadeType.REFRESH)
     @JoinColumn(name = "PRODUCT_OPTION_ID")
     protected ProductOption productOption;
@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.broadleafcommerce.common.web.cache.RenderedPageCacheInvalidationEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Publishes a {@link RenderedPageCacheInvalidationEvent} once a transaction that updated or removed a {@link Product}
+ * or a {@link Category} completes, so that the cached rendered pages showing it are rendered again.
+ *
+ * @see org.broadleafcommerce.common.web.cache.RenderedPageCacheContext
+ */
+public class RenderedPageCachePersistedEntityListener {
+
+    @PostUpdate
+    @PostRemove
+    public void catalogItemUpdated(final Object entity) {
+        final String dependencyType;
+        final Long id;
+        if (entity instanceof Product) {
+            dependencyType = RenderedPageCacheInvalidationEvent.PRODUCT;
+            id = ((Product) entity).getId();
+        } else if (entity instanceof Category) {
+            dependencyType = RenderedPageCacheInvalidationEvent.CATEGORY;
+            id = ((Category) entity).getId();
+        } else {
+            return;
+        }
+        if (id == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    // also on rollback, pages rendered from the uncommitted changes may have been cached meanwhile
+                    publish(entity, dependencyType, id);
+                }
+            });
+        } else {
+            publish(entity, dependencyType, id);
+        }
+    }
+
+    protected void publish(Object entity, String dependencyType, Long id) {
+        ApplicationContext applicationContext = ApplicationContextHolder.getApplicationContext();
+        if (applicationContext != null) {
+            applicationContext.publishEvent(new RenderedPageCacheInvalidationEvent(entity, dependencyType, Collections.singletonList(id)));
+        }
+    }
+
+}
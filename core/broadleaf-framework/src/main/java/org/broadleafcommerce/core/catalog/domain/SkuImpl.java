@@ -94,6 +94,7 @@ import java.util.stream.Collectors;
 @Entity
 @Inheritance(strategy = InheritanceType.JOINED)
 @Table(name = "BLC_SKU")
+@EntityListeners(value = { SkuPricesPersistedEntityListener.class })
 //multi-column indexes don't appear to get exported correctly when declared at the field level, so declaring here as a workaround
 @org.hibernate.annotations.Table(appliesTo = "BLC_SKU", indexes = {
     @Index(name = "SKU_URL_KEY_INDEX",
@@ -321,6 +322,12 @@ public class SkuImpl implements Sku, SkuAdminPresentation {
     @Transient
     protected Set<ProductOptionValue> legacyProductOptionValues = new HashSet<ProductOptionValue>();
 
+    /**
+     * The price fields as they were loaded, see {@link SkuPricesPersistedEntityListener}
+     */
+    @Transient
+    protected Object[] loadedPricingState;
+
     @ManyToMany(fetch = FetchType.LAZY, targetEntity = SkuFeeImpl.class)
     @JoinTable(name = "BLC_SKU_FEE_XREF",
             joinColumns = @JoinColumn(name = "SKU_ID", referencedColumnName = "SKU_ID", nullable = true),
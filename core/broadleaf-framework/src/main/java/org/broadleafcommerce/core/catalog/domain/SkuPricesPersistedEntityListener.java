@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain;
+
+import org.broadleafcommerce.common.util.ApplicationContextHolder;
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricesChangedEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Publishes a {@link SkuPricesChangedEvent} once a transaction that changed the prices of a {@link Sku}, the price
+ * adjustment of a {@link ProductOptionValue} or the option values of a sku ({@link SkuProductOptionValueXref})
+ * completes, so that the dynamic prices cached for that sku (or, since option value price adjustments apply to any
+ * number of skus, for all skus) are recomputed.
+ * </p>
+ * The price fields of skus and option values are recorded when they are loaded, so updates that leave them alone,
+ * such as inventory changes, do not invalidate anything.
+ *
+ * @see org.broadleafcommerce.core.catalog.service.dynamic.DynamicSkuPricesCacheManager
+ */
+public class SkuPricesPersistedEntityListener {
+
+    @PostLoad
+    public void pricesLoaded(Object entity) {
+        recordPricingState(entity);
+    }
+
+    @PostPersist
+    public void pricesPersisted(Object entity) {
+        if (entity instanceof SkuProductOptionValueXref) {
+            pricesChanged(entity);
+        } else {
+            recordPricingState(entity);
+        }
+    }
+
+    @PostUpdate
+    public void pricesUpdated(Object entity) {
+        if (!(entity instanceof SkuProductOptionValueXref)) {
+            Object[] state = getPricingState(entity);
+            if (state == null || Arrays.equals(state, getLoadedPricingState(entity))) {
+                return;
+            }
+            recordPricingState(entity);
+        }
+        pricesChanged(entity);
+    }
+
+    @PostRemove
+    public void pricesRemoved(Object entity) {
+        pricesChanged(entity);
+    }
+
+    protected void pricesChanged(final Object entity) {
+        final List<Long> skuIds;
+        if (entity instanceof Sku || entity instanceof SkuProductOptionValueXref) {
+            Sku sku = entity instanceof Sku ? (Sku) entity : ((SkuProductOptionValueXref) entity).getSku();
+            if (sku == null || sku.getId() == null) {
+                return;
+            }
+            skuIds = Collections.singletonList(sku.getId());
+        } else {
+            skuIds = Collections.emptyList();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    // also on rollback, prices computed from the uncommitted changes may have been cached meanwhile
+                    publish(entity, skuIds);
+                }
+            });
+        } else {
+            publish(entity, skuIds);
+        }
+    }
+
+    /**
+     * @return the fields the dynamic prices of a sku are computed from, or null for entities whose fields are not
+     * tracked
+     */
+    protected Object[] getPricingState(Object entity) {
+        if (entity instanceof SkuImpl) {
+            SkuImpl sku = (SkuImpl) entity;
+            return new Object[] { sku.retailPrice, sku.salePrice, sku.currency };
+        }
+        if (entity instanceof ProductOptionValueImpl) {
+            return new Object[] { ((ProductOptionValueImpl) entity).priceAdjustment };
+        }
+        return null;
+    }
+
+    protected Object[] getLoadedPricingState(Object entity) {
+        if (entity instanceof SkuImpl) {
+            return ((SkuImpl) entity).loadedPricingState;
+        }
+        if (entity instanceof ProductOptionValueImpl) {
+            return ((ProductOptionValueImpl) entity).loadedPricingState;
+        }
+        return null;
+    }
+
+    protected void recordPricingState(Object entity) {
+        if (entity instanceof SkuImpl) {
+            ((SkuImpl) entity).loadedPricingState = getPricingState(entity);
+        } else if (entity instanceof ProductOptionValueImpl) {
+            ((ProductOptionValueImpl) entity).loadedPricingState = getPricingState(entity);
+        }
+    }
+
+    protected void publish(Object entity, List<Long> skuIds) {
+        ApplicationContext applicationContext = ApplicationContextHolder.getApplicationContext();
+        if (applicationContext != null) {
+            applicationContext.publishEvent(new SkuPricesChangedEvent(entity, skuIds));
+        }
+    }
+
+}
@@ -18,6 +18,7 @@
 package org.broadleafcommerce.core.catalog.service;
 
 import org.apache.commons.lang3.StringUtils;
+import org.broadleafcommerce.common.dao.GenericEntityDao;
 import org.broadleafcommerce.common.file.service.BroadleafFileUtils;
 import org.broadleafcommerce.common.media.domain.Media;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
@@ -48,6 +49,9 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
     @Resource(name = "blProductDao")
     protected ProductDao productDao;
 
+    @Resource(name = "blGenericEntityDao")
+    protected GenericEntityDao genericEntityDao;
+
     @Value("${product.site.map.generator.row.limit}")
     protected int pageSize;
 
@@ -59,11 +63,11 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
     @Override
     public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
 
-        int pageNum = 0;
+        Long lastId = null;
         List<Product> products;
 
         do {
-            products = productDao.readAllActiveProducts(pageNum++, pageSize);
+            products = productDao.readAllActiveProducts(pageSize, lastId);
             for (Product product : products) {
                 if (StringUtils.isEmpty(product.getUrl())) {
                     continue;
@@ -87,6 +91,13 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
 
                 siteMapBuilder.addUrl(siteMapUrl);
             }
+            if (!products.isEmpty()) {
+                lastId = products.get(products.size() - 1).getId();
+            }
+            if (siteMapBuilder.isIsolatedPersistenceContext()) {
+                // nothing from this page is needed anymore, so keep memory bounded to one page
+                genericEntityDao.clear();
+            }
         } while (products.size() == pageSize);
     }
 
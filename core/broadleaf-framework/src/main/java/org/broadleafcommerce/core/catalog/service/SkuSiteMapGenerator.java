@@ -19,6 +19,7 @@ package org.broadleafcommerce.core.catalog.service;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.broadleafcommerce.common.dao.GenericEntityDao;
 import org.broadleafcommerce.common.file.service.BroadleafFileUtils;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
 import org.broadleafcommerce.common.sitemap.service.SiteMapBuilder;
@@ -51,6 +52,9 @@ public class SkuSiteMapGenerator implements SiteMapGenerator {
     @Resource(name = "blSkuDao")
     protected SkuDao skuDao;
 
+    @Resource(name = "blGenericEntityDao")
+    protected GenericEntityDao genericEntityDao;
+
     @Value("${sku.site.map.generator.row.limit}")
     protected int pageSize;
 
@@ -62,11 +66,11 @@ public class SkuSiteMapGenerator implements SiteMapGenerator {
     @Override
     public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
 
-        int pageNum = 0;
+        Long lastId = null;
         List<Sku> skus;
 
         do {
-            skus = skuDao.readAllActiveSkus(pageNum++, pageSize);
+            skus = skuDao.readAllActiveSkus(pageSize, lastId);
             for (Sku sku : skus) {
                 Product defaultProduct = sku.getDefaultProduct();
                 if (defaultProduct != null && CollectionUtils.isNotEmpty(defaultProduct.getAdditionalSkus())) {
@@ -97,6 +101,13 @@ public class SkuSiteMapGenerator implements SiteMapGenerator {
 
                 siteMapBuilder.addUrl(siteMapUrl);
             }
+            if (!skus.isEmpty()) {
+                lastId = skus.get(skus.size() - 1).getId();
+            }
+            if (siteMapBuilder.isIsolatedPersistenceContext()) {
+                // nothing from this page is needed anymore, so keep memory bounded to one page
+                genericEntityDao.clear();
+            }
         } while (skus.size() == pageSize);
     }
 
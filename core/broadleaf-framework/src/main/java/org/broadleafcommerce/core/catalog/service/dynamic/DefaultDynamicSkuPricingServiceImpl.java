@@ -28,13 +28,25 @@ import java.util.HashMap;
 
 /**
  * Default implementation of the {@link DynamicSkuPricingService} which simply ignores the considerations hashmap in all
- * method implementations
+ * method implementations, so every request falls in the same pricing segment
  * 
  * @author jfischer
  * 
  */
 @Service("blDynamicSkuPricingService")
-public class DefaultDynamicSkuPricingServiceImpl implements DynamicSkuPricingService {
+public class DefaultDynamicSkuPricingServiceImpl implements SegmentedDynamicSkuPricingService {
+
+    public static final String DEFAULT_PRICING_SEGMENT = "default";
+
+    /**
+     * Subclasses usually price by some of the considerations, so their prices are only shared across requests once
+     * they override this to say which ones.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public String getPricingSegment(HashMap skuPricingConsiderations) {
+        return getClass() == DefaultDynamicSkuPricingServiceImpl.class ? DEFAULT_PRICING_SEGMENT : null;
+    }
 
     @Override
     @Deprecated
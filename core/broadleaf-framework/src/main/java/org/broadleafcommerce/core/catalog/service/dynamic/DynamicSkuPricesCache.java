@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service.dynamic;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+
+/**
+ * Cache of the {@link DynamicSkuPrices} computed by a {@link DynamicSkuPricingService}, shared by all requests and
+ * keyed by the sku id and the pricing segment the prices were computed for (see
+ * {@link SegmentedDynamicSkuPricingService}).
+ * </p>
+ * The prices of a sku in every segment are kept in a single element of the "blDynamicSkuPrices" region, which bounds
+ * the number of skus and how long their prices live, so that {@link #invalidate(Long)} only has to drop that element
+ * when a sku changes. Prices that were being computed while any sku was invalidated are not cached, since they may
+ * have been computed from the old sku.
+ * </p>
+ * Cached {@link DynamicSkuPrices} are shared between threads and must not be modified.
+ *
+ * @see SkuPricingConsiderationContext
+ * @see DynamicSkuPricesCacheManager
+ */
+public class DynamicSkuPricesCache {
+
+    public static final String CACHE_NAME = "blDynamicSkuPrices";
+
+    protected Cache cache;
+
+    /**
+     * Incremented on every invalidation
+     */
+    protected final AtomicLong invalidationVersion = new AtomicLong();
+
+    protected final LongAdder hitCount = new LongAdder();
+    protected final LongAdder missCount = new LongAdder();
+    protected final LongAdder invalidatedCount = new LongAdder();
+
+    protected volatile boolean enabled = false;
+
+    /**
+     * @return the cached prices, or null if there are none (in which case the miss is counted)
+     */
+    public DynamicSkuPrices get(Long skuId, String segment) {
+        Map<String, DynamicSkuPrices> segments = getSegments(getCache().get(skuId));
+        DynamicSkuPrices prices = segments == null ? null : segments.get(segment);
+        if (prices != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+        return prices;
+    }
+
+    /**
+     * @return the value to pass to {@link #put(Long, String, DynamicSkuPrices, long)} once the prices are computed
+     */
+    public long getInvalidationVersion() {
+        return invalidationVersion.get();
+    }
+
+    /**
+     * Caches the given prices unless the cache was invalidated since {@code version} was read
+     */
+    public void put(Long skuId, String segment, DynamicSkuPrices prices, long version) {
+        if (version != invalidationVersion.get()) {
+            return;
+        }
+        ConcurrentMap<String, DynamicSkuPrices> segments = getSegments(getCache().get(skuId));
+        if (segments == null) {
+            ConcurrentMap<String, DynamicSkuPrices> created = new ConcurrentHashMap<>(4);
+            segments = getSegments(getCache().putIfAbsent(new Element(skuId, created)));
+            if (segments == null) {
+                segments = created;
+            }
+        }
+        segments.put(segment, prices);
+        if (version != invalidationVersion.get()) {
+            // the sku was possibly invalidated while these prices were being added
+            getCache().remove(skuId);
+        }
+    }
+
+    /**
+     * Removes the cached prices of the given sku in every segment
+     */
+    public int invalidate(Long skuId) {
+        invalidationVersion.incrementAndGet();
+        if (getCache() == null) {
+            return 0;
+        }
+        Map<String, DynamicSkuPrices> removed = getSegments(getCache().removeAndReturnElement(skuId));
+        int count = removed == null ? 0 : removed.size();
+        invalidatedCount.add(count);
+        return count;
+    }
+
+    public int invalidate(Collection<Long> skuIds) {
+        int count = 0;
+        for (Long skuId : skuIds) {
+            count += invalidate(skuId);
+        }
+        return count;
+    }
+
+    public void clear() {
+        invalidationVersion.incrementAndGet();
+        if (getCache() == null) {
+            return;
+        }
+        invalidatedCount.add(getCache().getSize());
+        getCache().removeAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected ConcurrentMap<String, DynamicSkuPrices> getSegments(Element element) {
+        return element == null ? null : (ConcurrentMap<String, DynamicSkuPrices>) element.getObjectValue();
+    }
+
+    public Cache getCache() {
+        if (cache == null) {
+            cache = CacheManager.getInstance().getCache(CACHE_NAME);
+        }
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return the number of skus with cached prices
+     */
+    public int size() {
+        return getCache().getSize();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return getCache().getStatistics().cacheEvictedCount();
+    }
+
+    public long getInvalidatedCount() {
+        return invalidatedCount.sum();
+    }
+
+    public void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+        invalidatedCount.reset();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service.dynamic;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Configures the shared {@link DynamicSkuPricesCache} of {@link SkuPricingConsiderationContext}, invalidates the
+ * prices of the skus named by a {@link SkuPricesChangedEvent} and reports the cache statistics through JMX.
+ */
+@Component("blDynamicSkuPricesCacheManager")
+@ManagedResource(objectName = "org.broadleafcommerce:name=DynamicSkuPricesCache", description = "Dynamic Sku Prices Cache",
+        currencyTimeLimit = 15)
+public class DynamicSkuPricesCacheManager {
+
+    private static final Log LOG = LogFactory.getLog(DynamicSkuPricesCacheManager.class);
+
+    @Value("${cache.dynamic.sku.prices.enabled:false}")
+    protected boolean enabled = false;
+
+    @PostConstruct
+    public void init() {
+        getCache().setEnabled(enabled);
+    }
+
+    public DynamicSkuPricesCache getCache() {
+        return SkuPricingConsiderationContext.SHARED_CACHE;
+    }
+
+    @EventListener
+    public void onSkuPricesChanged(SkuPricesChangedEvent event) {
+        if (event.isAllSkus()) {
+            getCache().clear();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Sku prices changed, cleared the dynamic sku prices cache");
+            }
+        } else {
+            int removed = getCache().invalidate(event.getSkuIds());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Prices of skus " + event.getSkuIds() + " changed, removed " + removed
+                        + " dynamic sku prices cache entries");
+            }
+        }
+    }
+
+    @ManagedAttribute(description = "Whether dynamic sku prices are shared across requests")
+    public boolean isEnabled() {
+        return getCache().isEnabled();
+    }
+
+    @ManagedAttribute(description = "Whether dynamic sku prices are shared across requests")
+    public void setEnabled(boolean enabled) {
+        getCache().setEnabled(enabled);
+    }
+
+    @ManagedAttribute(description = "Number of skus with cached dynamic prices")
+    public int getSize() {
+        return getCache().size();
+    }
+
+    @ManagedAttribute(description = "Number of lookups served from the cache")
+    public long getHitCount() {
+        return getCache().getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that computed the prices")
+    public long getMissCount() {
+        return getCache().getMissCount();
+    }
+
+    @ManagedAttribute(description = "Number of entries evicted because the cache was full")
+    public long getEvictionCount() {
+        return getCache().getEvictionCount();
+    }
+
+    @ManagedAttribute(description = "Number of entries removed by invalidation")
+    public long getInvalidatedCount() {
+        return getCache().getInvalidatedCount();
+    }
+
+    @ManagedAttribute(description = "Hit ratio of the cache")
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return total == 0L ? 0D : hits / (double) total;
+    }
+
+    @ManagedOperation(description = "Removes the cached prices of the given comma separated sku ids")
+    public int invalidate(String skuIds) {
+        List<Long> ids = new ArrayList<>();
+        for (String skuId : StringUtils.split(skuIds, ", ")) {
+            ids.add(Long.valueOf(skuId));
+        }
+        return getCache().invalidate(ids);
+    }
+
+    @ManagedOperation(description = "Removes all entries")
+    public void clear() {
+        getCache().clear();
+    }
+
+    @ManagedOperation(description = "Resets the cache statistics")
+    public void resetStatistics() {
+        getCache().resetStatistics();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service.dynamic;
+
+import java.util.HashMap;
+
+/**
+ * A {@link DynamicSkuPricingService} whose prices only depend on the sku and on the segment its pricing considerations
+ * fall in, rather than on the individual request. The prices it computes are shared across requests of the same
+ * segment through the {@link DynamicSkuPricesCache}.
+ * </p>
+ * Services that do not implement this interface keep having their prices cached for the current request only.
+ *
+ * @see SkuPricingConsiderationContext#getDynamicSkuPrices(org.broadleafcommerce.core.catalog.domain.Sku)
+ */
+public interface SegmentedDynamicSkuPricingService extends DynamicSkuPricingService {
+
+    /**
+     * Returns a key that is equal for any two sets of considerations that yield the same prices for the same sku, for
+     * example a customer group or price list key rather than the customer itself. The current site and currency do not
+     * need to be part of it.
+     *
+     * @param skuPricingConsiderations the considerations of the current request
+     * @return the segment key, or null if the prices of these considerations should not be shared
+     */
+    @SuppressWarnings("rawtypes")
+    public String getPricingSegment(HashMap skuPricingConsiderations);
+
+}
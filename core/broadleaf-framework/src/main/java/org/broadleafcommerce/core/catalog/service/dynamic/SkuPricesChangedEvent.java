@@ -0,0 +1,57 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service.dynamic;
+
+import org.broadleafcommerce.common.event.BroadleafApplicationEvent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Published when the prices of some skus may have changed, for example because the skus were saved or a price list
+ * was changed, so that their cached {@link DynamicSkuPrices} are recomputed. An empty set of sku ids means that the
+ * prices of any sku could be affected.
+ *
+ * @see DynamicSkuPricesCacheManager
+ * @see org.broadleafcommerce.core.catalog.domain.SkuPricesPersistedEntityListener
+ */
+public class SkuPricesChangedEvent extends BroadleafApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final Set<Long> skuIds;
+
+    /**
+     * @param source the object that changed the prices
+     * @param skuIds the ids of the skus whose prices changed, or an empty collection for all skus
+     */
+    public SkuPricesChangedEvent(Object source, Collection<Long> skuIds) {
+        super(source);
+        this.skuIds = Collections.unmodifiableSet(new HashSet<>(skuIds));
+    }
+
+    public Set<Long> getSkuIds() {
+        return skuIds;
+    }
+
+    public boolean isAllSkus() {
+        return skuIds.isEmpty();
+    }
+}
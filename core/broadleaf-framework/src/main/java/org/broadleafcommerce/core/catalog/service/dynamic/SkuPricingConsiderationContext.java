@@ -20,20 +20,27 @@ package org.broadleafcommerce.core.catalog.service.dynamic;
 import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
 import org.broadleafcommerce.common.exception.ExceptionHelper;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuImpl;
 import org.broadleafcommerce.core.catalog.domain.pricing.SkuPriceWrapper;
 import org.springframework.util.ReflectionUtils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Convenient place to store the pricing considerations context and the pricing service on thread local. This class is
  * usually filled out by a DynamicSkuPricingFilter. The default implementation of this is DefaultDynamicSkuPricingFilter.
+ * </p>
+ * The prices of each sku are cached for the rest of the request, and when the pricing service is a
+ * {@link SegmentedDynamicSkuPricingService} also in the {@link #SHARED_CACHE} for the other requests of the same segment.
  * 
  * @author jfischer
  * @see {@link SkuImpl#getRetailPrice}
@@ -41,7 +48,22 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class SkuPricingConsiderationContext {
 
-    protected static final ConcurrentHashMap<String, Field> FIELD_CACHE = new ConcurrentHashMap<>();
+    /**
+     * Getters for the raw retailPrice and salePrice fields of each sku class, read while the pricing service itself
+     * asks the sku for its prices
+     */
+    protected static final ClassValue<MethodHandle[]> PRICE_FIELD_ACCESSORS = new ClassValue<MethodHandle[]>() {
+        @Override
+        protected MethodHandle[] computeValue(Class<?> type) {
+            return new MethodHandle[] { createPriceFieldAccessor(type, "retailPrice"), createPriceFieldAccessor(type, "salePrice") };
+        }
+    };
+
+    /**
+     * Prices computed by a {@link SegmentedDynamicSkuPricingService}, shared across requests
+     */
+    public static final DynamicSkuPricesCache SHARED_CACHE = new DynamicSkuPricesCache();
+
     private static final ThreadLocal<SkuPricingConsiderationContext> skuPricingConsiderationContext = ThreadLocalManager.createThreadLocal(SkuPricingConsiderationContext.class);
 
     public static HashMap getSkuPricingConsiderationContext() {
@@ -92,33 +114,47 @@ public class SkuPricingConsiderationContext {
         SkuPricingConsiderationContext.skuPricingConsiderationContext.get().pricesBySku.remove(skuId);
     }
 
+    /**
+     * Removes the prices of the given sku from the cache shared across requests
+     *
+     * @see DynamicSkuPricesCacheManager
+     */
+    public static void removeFromSharedCache(Long skuId) {
+        SHARED_CACHE.invalidate(skuId);
+    }
+
     public static DynamicSkuPrices getDynamicSkuPrices(Sku sku) {
         DynamicSkuPrices prices = null;
         if (SkuPricingConsiderationContext.hasDynamicPricing()) {
             if (!getThreadCache().containsKey(sku.getId())) {
                 // We have dynamic pricing, so we will pull the retail price from there
                 if (!SkuPricingConsiderationContext.isPricingConsiderationActive()) {
-                    SkuPriceWrapper wrapper = new SkuPriceWrapper(sku);
-                    SkuPricingConsiderationContext.startPricingConsideration();
-                    try {
-                        prices = SkuPricingConsiderationContext.getSkuPricingService().getSkuPrices(wrapper, SkuPricingConsiderationContext.getSkuPricingConsiderationContext());
-                    } finally {
-                        SkuPricingConsiderationContext.endPricingConsideration();
+                    String segment = getSharedCacheSegment(sku);
+                    if (segment != null) {
+                        prices = SHARED_CACHE.get(sku.getId(), segment);
                     }
-                } else {
-                    try {
-                        prices = new DynamicSkuPrices();
-                        Field retail = getSingleField(sku.getClass(), "retailPrice");
-                        Object retailVal = retail.get(sku);
-                        Money retailPrice = retailVal == null ? null : new Money((BigDecimal) retailVal);
-                        Field sale = getSingleField(sku.getClass(), "salePrice");
-                        Object saleVal = sale.get(sku);
-                        Money salePrice = saleVal == null ? null : new Money((BigDecimal) saleVal);
-                        prices.setRetailPrice(retailPrice);
-                        prices.setSalePrice(salePrice);
-                    } catch (IllegalAccessException e) {
-                        throw ExceptionHelper.refineException(e);
+                    if (prices == null) {
+                        long version = SHARED_CACHE.getInvalidationVersion();
+                        SkuPriceWrapper wrapper = new SkuPriceWrapper(sku);
+                        SkuPricingConsiderationContext.startPricingConsideration();
+                        try {
+                            prices = SkuPricingConsiderationContext.getSkuPricingService().getSkuPrices(wrapper, SkuPricingConsiderationContext.getSkuPricingConsiderationContext());
+                        } finally {
+                            SkuPricingConsiderationContext.endPricingConsideration();
+                        }
+                        if (segment != null) {
+                            SHARED_CACHE.put(sku.getId(), segment, prices, version);
+                        }
                     }
+                } else {
+                    prices = new DynamicSkuPrices();
+                    MethodHandle[] accessors = PRICE_FIELD_ACCESSORS.get(sku.getClass());
+                    BigDecimal retailVal = readPrice(accessors[0], sku);
+                    Money retailPrice = retailVal == null ? null : new Money(retailVal);
+                    BigDecimal saleVal = readPrice(accessors[1], sku);
+                    Money salePrice = saleVal == null ? null : new Money(saleVal);
+                    prices.setRetailPrice(retailPrice);
+                    prices.setSalePrice(salePrice);
                 }
                 getThreadCache().put(sku.getId(), prices);
             } else {
@@ -128,20 +164,53 @@ public class SkuPricingConsiderationContext {
         return prices;
     }
 
-    protected static synchronized Field getSingleField(Class<?> clazz, String fieldName) throws IllegalStateException {
-        String cacheKey = clazz.getName() + fieldName;
-        if (FIELD_CACHE.containsKey(cacheKey)) {
-            return FIELD_CACHE.get(cacheKey);
+    /**
+     * Prices are only shared across requests when the pricing service says which segment the current considerations
+     * fall in, and never while previewing a sandbox, whose changes are not visible to other requests. The segment is
+     * qualified by the site and the currency the prices are created in.
+     *
+     * @return the key of the shared cache segment the prices of this sku belong in, or null if they should not be
+     * shared
+     */
+    protected static String getSharedCacheSegment(Sku sku) {
+        DynamicSkuPricingService pricingService = getSkuPricingService();
+        if (!SHARED_CACHE.isEnabled() || sku.getId() == null || !(pricingService instanceof SegmentedDynamicSkuPricingService)) {
+            return null;
         }
-
-        Field field = ReflectionUtils.findField(clazz, fieldName);
-        if (field != null) {
-            field.setAccessible(true);
+        BroadleafRequestContext brc = BroadleafRequestContext.getBroadleafRequestContext();
+        if (brc != null && brc.getSandBox() != null) {
+            return null;
         }
+        String pricingSegment = ((SegmentedDynamicSkuPricingService) pricingService).getPricingSegment(getSkuPricingConsiderationContext());
+        if (pricingSegment == null) {
+            return null;
+        }
+        Site site = brc == null ? null : brc.getNonPersistentSite();
+        return (site == null ? "" : site.getId()) + "|" + Money.defaultCurrency().getCurrencyCode() + "|" + pricingSegment;
+    }
 
-        FIELD_CACHE.put(cacheKey, field);
+    protected static BigDecimal readPrice(MethodHandle accessor, Sku sku) {
+        if (accessor == null) {
+            return null;
+        }
+        try {
+            return (BigDecimal) (Object) accessor.invokeExact((Object) sku);
+        } catch (Throwable e) {
+            throw ExceptionHelper.refineException(e);
+        }
+    }
 
-        return field;
+    protected static MethodHandle createPriceFieldAccessor(Class<?> type, String fieldName) {
+        Field field = ReflectionUtils.findField(type, fieldName);
+        if (field == null) {
+            return null;
+        }
+        field.setAccessible(true);
+        try {
+            return MethodHandles.lookup().unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw ExceptionHelper.refineException(e);
+        }
     }
 
     protected DynamicSkuPricingService pricingService;
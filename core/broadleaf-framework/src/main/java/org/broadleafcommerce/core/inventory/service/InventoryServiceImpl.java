@@ -28,6 +28,7 @@ import org.broadleafcommerce.common.event.BroadleafSystemEventDetail;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.core.catalog.dao.SkuDao;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
 import org.broadleafcommerce.core.inventory.service.type.InventoryType;
@@ -59,6 +60,9 @@ public class InventoryServiceImpl implements ContextualInventoryService {
     
     @Resource(name = "blCatalogService")
     protected CatalogService catalogService;
+
+    @Resource(name = "blSkuDao")
+    protected SkuDao skuDao;
     
     @Resource(name = "blInventoryServiceExtensionManager")
     protected InventoryServiceExtensionManager extensionManager;
@@ -192,7 +196,16 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         }
     }
 
+    /**
+     * Decrements the inventory of every {@link InventoryType#CHECK_QUANTITY} sku in the map. Rather than reading the
+     * quantity available and saving the sku back, each sku is decremented by a single conditional update that only
+     * applies if enough inventory remains, so concurrent checkouts of the same sku never conflict with each other.
+     * Whether a row was updated decides if there was enough inventory. As before, a sku whose quantity available is null
+     * is not decremented.
+     */
     protected void decrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) throws InventoryUnavailableException {
+        Map<Long, Sku> skus = new HashMap<>();
+        Map<Long, Integer> quantities = new HashMap<>();
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
             Integer quantity = entry.getValue();
@@ -202,18 +215,7 @@ public class InventoryServiceImpl implements ContextualInventoryService {
 
             if (checkBasicAvailablility(sku)) {
                 if (InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
-                    Integer inventoryAvailable = retrieveQuantityAvailable(sku, context);
-                    if (inventoryAvailable == null) {
-                        return;
-                    }
-                    if (inventoryAvailable < quantity) {
-                        throw new InventoryUnavailableException(
-                                "There was not enough inventory to fulfill this request.", sku.getId(), quantity, inventoryAvailable);
-                    }
-                    int newInventory = inventoryAvailable - quantity;
-                    sku.setQuantityAvailable(newInventory);
-                    catalogService.saveSku(sku);
-                    invalidateSkuInventory(sku);
+                    addSkuQuantity(sku, quantity, skus, quantities);
                 } else {
                     LOG.info("Not decrementing inventory as the Sku has been marked as always available");
                 }
@@ -221,6 +223,16 @@ public class InventoryServiceImpl implements ContextualInventoryService {
                 throw new InventoryUnavailableException("The Sku has been marked as unavailable", sku.getId(), quantity, 0);
             }
         }
+
+        if (!quantities.isEmpty()) {
+            Long unavailableSkuId = skuDao.decrementQuantitiesAvailable(quantities);
+            if (unavailableSkuId != null) {
+                Integer quantityAvailable = skuDao.readQuantityAvailable(unavailableSkuId);
+                throw new InventoryUnavailableException("There was not enough inventory to fulfill this request.",
+                        unavailableSkuId, quantities.get(unavailableSkuId), quantityAvailable == null ? 0 : quantityAvailable);
+            }
+            invalidateSkuInventory(skus.values());
+        }
     }
 
     @Override
@@ -240,7 +252,13 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         }
     }
 
+    /**
+     * Increments the inventory of every {@link InventoryType#CHECK_QUANTITY} sku in the map with a single atomic update
+     * per sku
+     */
     protected void incrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) {
+        Map<Long, Sku> skus = new HashMap<>();
+        Map<Long, Integer> quantities = new HashMap<>();
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
             Integer quantity = entry.getValue();
@@ -248,21 +266,33 @@ public class InventoryServiceImpl implements ContextualInventoryService {
                 throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
             }
             if (InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
-                Integer currentInventoryAvailable = retrieveQuantityAvailable(sku, context);
-                if (currentInventoryAvailable == null) {
-                    throw new IllegalArgumentException("The current inventory for this Sku is null");
-                }
-                int newInventory = currentInventoryAvailable + quantity;
-                sku.setQuantityAvailable(newInventory);
-                catalogService.saveSku(sku);
-                invalidateSkuInventory(sku);
+                addSkuQuantity(sku, quantity, skus, quantities);
             } else {
                 LOG.info("Not incrementing inventory as the Sku has been marked as always available");
             }
         }
+
+        if (!quantities.isEmpty()) {
+            Long skuId = skuDao.incrementQuantitiesAvailable(quantities);
+            if (skuId != null) {
+                throw new IllegalArgumentException("The current inventory for Sku " + skuId + " is null");
+            }
+            invalidateSkuInventory(skus.values());
+        }
+    }
+
+    /**
+     * Adds the quantity for the given sku to the per-id maps passed to the {@link SkuDao}, combining quantities for
+     * different instances of the same sku
+     */
+    protected void addSkuQuantity(Sku sku, Integer quantity, Map<Long, Sku> skus, Map<Long, Integer> quantities) {
+        Integer existing = quantities.get(sku.getId());
+        quantities.put(sku.getId(), existing == null ? quantity : existing + quantity);
+        skus.put(sku.getId(), sku);
     }
 
     @Override
+    @Transactional(value = TransactionUtils.DEFAULT_TRANSACTION_MANAGER, rollbackFor = { InventoryUnavailableException.class })
     public void reconcileChangeOrderInventory(Map<Sku, Integer> decrementSkuQuantities, Map<Sku, Integer> incrementSkuQuantities, Map<String, Object> context) throws InventoryUnavailableException {
         ExtensionResultStatusType res = extensionManager.getProxy().reconcileChangeOrderInventory(decrementSkuQuantities, incrementSkuQuantities, context);
         if (ExtensionResultStatusType.NOT_HANDLED.equals(res)) {
@@ -319,6 +349,17 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         return skuInventoryMap;
     }
 
+    /**
+     * Invalidates the cache for each of the given skus
+     *
+     * @param skus The Skus to be invalidated from cache
+     */
+    protected void invalidateSkuInventory(Collection<Sku> skus) {
+        for (Sku sku : skus) {
+            invalidateSkuInventory(sku);
+        }
+    }
+
     /**
      * Invalidates the cache for a given sku
      * 
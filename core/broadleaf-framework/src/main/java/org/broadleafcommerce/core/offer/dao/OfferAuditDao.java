@@ -42,6 +42,11 @@ public interface OfferAuditDao {
      * Persists an audit record to the database
      */
     OfferAudit save(OfferAudit offerAudit);
+
+    /**
+     * Persists the given new audit records in one batch, assigning their ids
+     */
+    void saveAll(List<OfferAudit> offerAudits);
     
     void delete(OfferAudit offerAudit);
 
@@ -26,6 +26,7 @@ import org.broadleafcommerce.core.offer.domain.OfferAuditImpl;
 import org.broadleafcommerce.core.order.domain.Order;
 import org.broadleafcommerce.core.order.domain.OrderImpl;
 import org.broadleafcommerce.core.order.service.type.OrderStatus;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
@@ -72,6 +73,15 @@ public class OfferAuditDaoImpl implements OfferAuditDao {
         return em.merge(offerAudit);
     }
 
+    @Override
+    public void saveAll(List<OfferAudit> offerAudits) {
+        em.unwrap(Session.class).setJdbcBatchSize(offerAudits.size());
+        for (OfferAudit offerAudit : offerAudits) {
+            em.persist(offerAudit);
+        }
+        em.flush();
+    }
+
     @Override
     public OfferAudit readAuditById(final Long offerAuditId) {
         return em.find(OfferAuditImpl.class, offerAuditId);
@@ -42,6 +42,16 @@ public interface OfferAuditService {
     
     void delete(OfferAudit offerAudit);
 
+    /**
+     * Records the usages described by the given new audits. The usages are counted right away, while the audits
+     * themselves may be written to the database in batches in the background, in which case they are only given an id
+     * once they are written. Audits that are still waiting to be written can be passed to {@link #delete(OfferAudit)}.
+     *
+     * @param offerAudits new audits
+     * @return the recorded audits
+     */
+    List<OfferAudit> recordUsages(List<OfferAudit> offerAudits);
+
     /**
      * Creates a new offer audit
      */
@@ -60,6 +70,20 @@ public interface OfferAuditService {
      */
     Long countUsesByCustomer(Order order, Long customerId, Long offerId);
 
+    /**
+     * Same as {@link #countUsesByCustomer(Order, Long, Long)}, but always counted from the offer audits rather than
+     * from counts kept in memory, which may not include the usages recorded by other nodes. Used to enforce the
+     * limit at checkout.
+     *
+     * @param order
+     * @param customerId
+     * @param offerId
+     * @return number of times and offer has been used by a customer
+     */
+    default Long countAuditedUsesByCustomer(Order order, Long customerId, Long offerId) {
+        return countUsesByCustomer(order, customerId, offerId);
+    }
+
     /**
      * Counts how many times the an offer has been used by a customer
      *
@@ -82,6 +106,19 @@ public interface OfferAuditService {
      */
     Long countOfferCodeUses(Order order, Long offerCodeId);
 
+    /**
+     * Same as {@link #countOfferCodeUses(Order, Long)}, but always counted from the offer audits rather than from
+     * counts kept in memory, which may not include the usages recorded by other nodes. Used to enforce the limit at
+     * checkout.
+     *
+     * @param order
+     * @param offerCodeId
+     * @return number of times the offer code has been used
+     */
+    default Long countAuditedOfferCodeUses(Order order, Long offerCodeId) {
+        return countOfferCodeUses(order, offerCodeId);
+    }
+
     /**
      * Counts how many times the given offer code has been used in the system
      *
@@ -17,26 +17,143 @@
  */
 package org.broadleafcommerce.core.offer.service;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.util.TransactionUtils;
 import org.broadleafcommerce.core.offer.dao.OfferAuditDao;
 import org.broadleafcommerce.core.offer.domain.OfferAudit;
+import org.broadleafcommerce.core.offer.service.OfferUsageCounters.CountLoader;
 import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.service.type.OrderStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 
 /**
+ * Answers the max uses checks of carts from the {@link OfferUsageCounters} and, when
+ * "offer.audit.writeBehind.enabled" is true, writes the audits recorded at checkout to the database in batches from a
+ * background thread instead of one by one in the checkout workflow.
+ * </p>
+ * Audits are only queued once the transaction that recorded them commits, and are counted along with the ones in the
+ * database from then on. They are written every "offer.audit.writeBehind.flushIntervalMillis", or as soon as a batch
+ * is full, and when the application shuts down; audits still waiting when the JVM dies are lost. When
+ * "offer.audit.writeBehind.maxQueueSize" audits are already waiting, new ones are written right away instead, and a
+ * batch that cannot be written is given up after "offer.audit.writeBehind.maxRetries" attempts.
  *
  * @author Phillip Verheyden (phillipuniverse)
  */
 @Service("blOfferAuditService")
 public class OfferAuditServiceImpl implements OfferAuditService {
+
+    private static final Log LOG = LogFactory.getLog(OfferAuditServiceImpl.class);
     
     @Resource(name = "blOfferAuditDao")
     protected OfferAuditDao offerAuditDao;
+
+    @Resource(name = "blOfferUsageCounters")
+    protected OfferUsageCounters usageCounters;
+
+    @Resource(name = "blTransactionManager")
+    protected PlatformTransactionManager transactionManager;
+
+    @Value("${offer.audit.writeBehind.enabled:false}")
+    protected boolean writeBehindEnabled = false;
+
+    @Value("${offer.audit.writeBehind.batchSize:100}")
+    protected int writeBehindBatchSize = 100;
+
+    @Value("${offer.audit.writeBehind.flushIntervalMillis:1000}")
+    protected long writeBehindFlushIntervalMillis = 1000L;
+
+    @Value("${offer.audit.writeBehind.maxQueueSize:10000}")
+    protected int writeBehindMaxQueueSize = 10000;
+
+    @Value("${offer.audit.writeBehind.maxRetries:3}")
+    protected int writeBehindMaxRetries = 3;
+
+    /**
+     * Audits that were recorded but not written to the database yet, oldest first. Guarded by
+     * {@link #pendingAuditsLock}.
+     */
+    protected List<PendingAudit> pendingAudits = new ArrayList<>();
+
+    /**
+     * Audits taken from {@link #pendingAudits} that are being written by {@link #flushPendingAudits()}. Guarded by
+     * {@link #pendingAuditsLock}.
+     */
+    protected List<PendingAudit> writingAudits = Collections.emptyList();
+
+    /**
+     * Audits that were deleted while being written, to be removed again once the write completes. Guarded by
+     * {@link #pendingAuditsLock}.
+     */
+    protected final Set<OfferAudit> cancelledAudits = Collections.newSetFromMap(new IdentityHashMap<OfferAudit, Boolean>());
+
+    /**
+     * Held for reading while usages are counted and for writing while pending audits are added, taken or removed. The
+     * database writes themselves happen outside of it, so a count running while a batch commits may include that
+     * batch twice; such a count is not kept by the {@link OfferUsageCounters}, since the usages changed meanwhile.
+     */
+    protected final ReadWriteLock pendingAuditsLock = new ReentrantReadWriteLock();
+
+    /**
+     * Makes sure only one thread writes pending audits at a time
+     */
+    protected final Object flushMonitor = new Object();
+
+    protected ScheduledExecutorService writeBehindExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (writeBehindEnabled) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("offer-audit-write-behind-");
+            threadFactory.setDaemon(true);
+            writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            writeBehindExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushPendingAudits();
+                }
+            }, writeBehindFlushIntervalMillis, writeBehindFlushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writeBehindExecutor != null) {
+            writeBehindExecutor.shutdown();
+            try {
+                writeBehindExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flushPendingAudits();
+        }
+    }
     
     @Override
     public OfferAudit readAuditById(Long offerAuditId) {
@@ -46,13 +163,231 @@ public class OfferAuditServiceImpl implements OfferAuditService {
     @Override
     @Transactional(TransactionUtils.DEFAULT_TRANSACTION_MANAGER)
     public OfferAudit save(OfferAudit offerAudit) {
-        return offerAuditDao.save(offerAudit);
+        OfferAudit saved = offerAuditDao.save(offerAudit);
+        invalidateUsageCounts(saved);
+        return saved;
     }
     
     @Override
     @Transactional(TransactionUtils.DEFAULT_TRANSACTION_MANAGER)
     public void delete(OfferAudit offerAudit) {
+        pendingAuditsLock.writeLock().lock();
+        try {
+            if (removePendingAudit(offerAudit)) {
+                countUsage(offerAudit, -1);
+                return;
+            }
+            if (containsAudit(writingAudits, offerAudit)) {
+                if (cancelledAudits.add(offerAudit)) {
+                    countUsage(offerAudit, -1);
+                }
+                return;
+            }
+        } finally {
+            pendingAuditsLock.writeLock().unlock();
+        }
         offerAuditDao.delete(offerAudit);
+        invalidateUsageCounts(offerAudit);
+    }
+
+    @Override
+    @Transactional(TransactionUtils.DEFAULT_TRANSACTION_MANAGER)
+    public List<OfferAudit> recordUsages(final List<OfferAudit> offerAudits) {
+        if (!isWriteBehindActive()) {
+            List<OfferAudit> saved = new ArrayList<>(offerAudits.size());
+            for (OfferAudit offerAudit : offerAudits) {
+                saved.add(save(offerAudit));
+            }
+            return saved;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    enqueueAudits(offerAudits);
+                }
+            });
+        } else {
+            enqueueAudits(offerAudits);
+        }
+        return offerAudits;
+    }
+
+    /**
+     * Writes the pending audits to the database, {@link #writeBehindBatchSize} of them per transaction. The pending
+     * audits are taken under {@link #pendingAuditsLock} and written outside of it. A batch that cannot be written is
+     * queued again and retried on the next run, up to {@link #writeBehindMaxRetries} times.
+     *
+     * @return the number of audits written
+     */
+    public int flushPendingAudits() {
+        synchronized (flushMonitor) {
+            List<PendingAudit> audits;
+            pendingAuditsLock.writeLock().lock();
+            try {
+                if (pendingAudits.isEmpty()) {
+                    return 0;
+                }
+                audits = pendingAudits;
+                pendingAudits = new ArrayList<>();
+                writingAudits = audits;
+            } finally {
+                pendingAuditsLock.writeLock().unlock();
+            }
+
+            int written = 0;
+            List<PendingAudit> failed = new ArrayList<>();
+            for (int start = 0; start < audits.size(); start += writeBehindBatchSize) {
+                List<PendingAudit> batch = audits.subList(start, Math.min(start + writeBehindBatchSize, audits.size()));
+                if (writeBatch(batch)) {
+                    written += batch.size();
+                } else {
+                    failed.addAll(batch);
+                }
+            }
+
+            List<OfferAudit> cancelled = new ArrayList<>();
+            List<OfferAudit> givenUp = new ArrayList<>();
+            pendingAuditsLock.writeLock().lock();
+            try {
+                List<PendingAudit> retried = new ArrayList<>(failed.size() + pendingAudits.size());
+                for (PendingAudit pendingAudit : failed) {
+                    if (cancelledAudits.remove(pendingAudit.offerAudit)) {
+                        continue;
+                    }
+                    if (++pendingAudit.attempts >= writeBehindMaxRetries) {
+                        givenUp.add(pendingAudit.offerAudit);
+                    } else {
+                        retried.add(pendingAudit);
+                    }
+                }
+                retried.addAll(pendingAudits);
+                pendingAudits = retried;
+                writingAudits = Collections.emptyList();
+                // whatever is still cancelled was written
+                cancelled.addAll(cancelledAudits);
+                cancelledAudits.clear();
+            } finally {
+                pendingAuditsLock.writeLock().unlock();
+            }
+
+            for (OfferAudit offerAudit : givenUp) {
+                LOG.error("Giving up writing the offer audit of offer " + offerAudit.getOfferId() + " and order "
+                        + offerAudit.getOrderId() + " after " + writeBehindMaxRetries + " attempts");
+                doInvalidateUsageCounts(offerAudit);
+            }
+            if (!cancelled.isEmpty()) {
+                deleteWrittenAudits(cancelled);
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Queues the given audits to be written in the background, or writes them right away if the queue is full
+     */
+    protected void enqueueAudits(List<OfferAudit> offerAudits) {
+        boolean queued = false;
+        boolean batchFull = false;
+        pendingAuditsLock.writeLock().lock();
+        try {
+            if (pendingAudits.size() + offerAudits.size() <= writeBehindMaxQueueSize) {
+                for (OfferAudit offerAudit : offerAudits) {
+                    pendingAudits.add(new PendingAudit(offerAudit));
+                    countUsage(offerAudit, 1);
+                }
+                queued = true;
+                batchFull = pendingAudits.size() >= writeBehindBatchSize;
+            }
+        } finally {
+            pendingAuditsLock.writeLock().unlock();
+        }
+        if (!queued) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("The offer audit queue is full, writing " + offerAudits.size() + " offer audits right away");
+            }
+            writeAudits(offerAudits);
+        } else if (batchFull && isWriteBehindActive()) {
+            writeBehindExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushPendingAudits();
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the given audits in a new transaction, since this may run after the transaction that recorded them
+     * committed
+     */
+    protected void writeAudits(List<OfferAudit> offerAudits) {
+        TransactionStatus status = TransactionUtils.createTransaction("saveOfferAudits",
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager, false);
+        try {
+            offerAuditDao.saveAll(offerAudits);
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            }
+            throw e;
+        }
+        for (OfferAudit offerAudit : offerAudits) {
+            doInvalidateUsageCounts(offerAudit);
+        }
+    }
+
+    /**
+     * @return whether the batch was written
+     */
+    protected boolean writeBatch(List<PendingAudit> batch) {
+        List<OfferAudit> offerAudits = new ArrayList<>(batch.size());
+        for (PendingAudit pendingAudit : batch) {
+            offerAudits.add(pendingAudit.offerAudit);
+        }
+        TransactionStatus status = TransactionUtils.createTransaction("saveOfferAudits",
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager, false);
+        try {
+            offerAuditDao.saveAll(offerAudits);
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return true;
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            }
+            for (OfferAudit offerAudit : offerAudits) {
+                offerAudit.setId(null);
+            }
+            LOG.error("Unable to write " + offerAudits.size() + " offer audits, they will be retried", e);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the audits that were deleted while they were being written
+     */
+    protected void deleteWrittenAudits(List<OfferAudit> offerAudits) {
+        TransactionStatus status = TransactionUtils.createTransaction("deleteOfferAudits",
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager, false);
+        try {
+            for (OfferAudit offerAudit : offerAudits) {
+                offerAuditDao.delete(offerAudit);
+            }
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            }
+            LOG.error("Unable to delete " + offerAudits.size() + " cancelled offer audits", e);
+        }
+        for (OfferAudit offerAudit : offerAudits) {
+            doInvalidateUsageCounts(offerAudit);
+        }
+    }
+
+    protected boolean isWriteBehindActive() {
+        return writeBehindExecutor != null && !writeBehindExecutor.isShutdown();
     }
 
     @Override
@@ -61,8 +396,27 @@ public class OfferAuditServiceImpl implements OfferAuditService {
     }
 
     @Override
-    public Long countUsesByCustomer(Order order, Long customerId, Long offerId) {
-        return offerAuditDao.countUsesByCustomer(order, customerId, offerId);
+    public Long countUsesByCustomer(final Order order, final Long customerId, final Long offerId) {
+        if (isCountedInMemory(order)) {
+            return usageCounters.get(OfferUsageCounters.getCustomerOfferKey(customerId, offerId), new CountLoader() {
+                @Override
+                public Long load() {
+                    return countAuditedUsesByCustomer(order, customerId, offerId);
+                }
+            });
+        }
+        return countAuditedUsesByCustomer(order, customerId, offerId);
+    }
+
+    @Override
+    public Long countAuditedUsesByCustomer(Order order, Long customerId, Long offerId) {
+        pendingAuditsLock.readLock().lock();
+        try {
+            Long count = offerAuditDao.countUsesByCustomer(order, customerId, offerId);
+            return count == null ? null : count + countPendingUses(order, customerId, offerId, null);
+        } finally {
+            pendingAuditsLock.readLock().unlock();
+        }
     }
     
     
@@ -73,8 +427,27 @@ public class OfferAuditServiceImpl implements OfferAuditService {
     }
 
     @Override
-    public Long countOfferCodeUses(Order order, Long offerCodeId) {
-        return offerAuditDao.countOfferCodeUses(order, offerCodeId);
+    public Long countOfferCodeUses(final Order order, final Long offerCodeId) {
+        if (isCountedInMemory(order)) {
+            return usageCounters.get(OfferUsageCounters.getOfferCodeKey(offerCodeId), new CountLoader() {
+                @Override
+                public Long load() {
+                    return countAuditedOfferCodeUses(order, offerCodeId);
+                }
+            });
+        }
+        return countAuditedOfferCodeUses(order, offerCodeId);
+    }
+
+    @Override
+    public Long countAuditedOfferCodeUses(Order order, Long offerCodeId) {
+        pendingAuditsLock.readLock().lock();
+        try {
+            Long count = offerAuditDao.countOfferCodeUses(order, offerCodeId);
+            return count == null ? null : count + countPendingUses(order, null, null, offerCodeId);
+        } finally {
+            pendingAuditsLock.readLock().unlock();
+        }
     }
     
     @Deprecated
@@ -85,8 +458,128 @@ public class OfferAuditServiceImpl implements OfferAuditService {
 
     @Override
     public List<OfferAudit> readOfferAuditsByOrderId(Long orderId) {
-        return offerAuditDao.readOfferAuditsByOrderId(orderId);
+        pendingAuditsLock.readLock().lock();
+        try {
+            List<OfferAudit> audits = new ArrayList<>(offerAuditDao.readOfferAuditsByOrderId(orderId));
+            for (OfferAudit offerAudit : getUnwrittenAudits()) {
+                if (Objects.equals(orderId, offerAudit.getOrderId()) && !containsAudit(audits, offerAudit)) {
+                    audits.add(offerAudit);
+                }
+            }
+            return audits;
+        } finally {
+            pendingAuditsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The counts are shared by every order, so they can only be used for orders that cannot have audits of their own,
+     * which the counting queries leave out. That is the case of carts: audits are only recorded for submitted orders.
+     * Checkout does not go through the counts, see {@link #countAuditedUsesByCustomer(Order, Long, Long)}.
+     */
+    protected boolean isCountedInMemory(Order order) {
+        return usageCounters.isEnabled() && order != null && OrderStatus.IN_PROCESS.equals(order.getStatus());
+    }
+
+    /**
+     * Counts the pending audits matching the given customer and offer, or offer code, that do not belong to the given
+     * order. Must be called while holding {@link #pendingAuditsLock}.
+     */
+    protected long countPendingUses(Order order, Long customerId, Long offerId, Long offerCodeId) {
+        long count = 0L;
+        Long orderId = order == null ? null : order.getId();
+        for (OfferAudit offerAudit : getUnwrittenAudits()) {
+            if (orderId != null && orderId.equals(offerAudit.getOrderId())) {
+                continue;
+            }
+            if (offerCodeId != null ? offerCodeId.equals(offerAudit.getOfferCodeId())
+                    : Objects.equals(customerId, offerAudit.getCustomerId()) && Objects.equals(offerId, offerAudit.getOfferId())) {
+                count++;
+            }
+        }
+        return count;
     }
 
+    /**
+     * The pending audits and the ones being written, leaving out the ones deleted meanwhile. Must be called while
+     * holding {@link #pendingAuditsLock}.
+     */
+    protected List<OfferAudit> getUnwrittenAudits() {
+        List<OfferAudit> offerAudits = new ArrayList<>(pendingAudits.size() + writingAudits.size());
+        for (PendingAudit pendingAudit : writingAudits) {
+            if (!cancelledAudits.contains(pendingAudit.offerAudit)) {
+                offerAudits.add(pendingAudit.offerAudit);
+            }
+        }
+        for (PendingAudit pendingAudit : pendingAudits) {
+            offerAudits.add(pendingAudit.offerAudit);
+        }
+        return offerAudits;
+    }
+
+    protected boolean removePendingAudit(OfferAudit offerAudit) {
+        for (Iterator<PendingAudit> iterator = pendingAudits.iterator(); iterator.hasNext();) {
+            if (iterator.next().offerAudit == offerAudit) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected boolean containsAudit(List<?> offerAudits, OfferAudit offerAudit) {
+        for (Object candidate : offerAudits) {
+            if (candidate == offerAudit || candidate instanceof PendingAudit && ((PendingAudit) candidate).offerAudit == offerAudit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void countUsage(OfferAudit offerAudit, long delta) {
+        if (offerAudit.getOfferId() != null) {
+            usageCounters.add(OfferUsageCounters.getCustomerOfferKey(offerAudit.getCustomerId(), offerAudit.getOfferId()), delta);
+        }
+        if (offerAudit.getOfferCodeId() != null) {
+            usageCounters.add(OfferUsageCounters.getOfferCodeKey(offerAudit.getOfferCodeId()), delta);
+        }
+    }
+
+    /**
+     * Drops the counts involving the given audit once the current transaction completes, so they are reloaded with
+     * the outcome of that transaction
+     */
+    protected void invalidateUsageCounts(final OfferAudit offerAudit) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    doInvalidateUsageCounts(offerAudit);
+                }
+            });
+        } else {
+            doInvalidateUsageCounts(offerAudit);
+        }
+    }
+
+    protected void doInvalidateUsageCounts(OfferAudit offerAudit) {
+        usageCounters.invalidate(OfferUsageCounters.getCustomerOfferKey(offerAudit.getCustomerId(), offerAudit.getOfferId()));
+        if (offerAudit.getOfferCodeId() != null) {
+            usageCounters.invalidate(OfferUsageCounters.getOfferCodeKey(offerAudit.getOfferCodeId()));
+        }
+    }
+
+    /**
+     * An audit waiting to be written, with the number of times writing it failed
+     */
+    protected static class PendingAudit {
+
+        protected final OfferAudit offerAudit;
+        protected int attempts;
+
+        public PendingAudit(OfferAudit offerAudit) {
+            this.offerAudit = offerAudit;
+        }
+    }
 
 }
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.rule.AbstractMvelRulePrecompiler;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferOfferRuleXref;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.service.processor.AbstractBaseProcessor;
+import org.broadleafcommerce.core.offer.service.processor.OrderOfferProcessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Resource;
+
+/**
+ * Compiles the match rules and item criteria of every offer that has not expired into the offer expression cache
+ * at startup.
+ *
+ * @see AbstractMvelRulePrecompiler
+ */
+@Component("blOfferRulePrecompiler")
+public class OfferRulePrecompiler extends AbstractMvelRulePrecompiler {
+
+    @Resource(name = "blOfferDao")
+    protected OfferDao offerDao;
+
+    @Resource(name = "blOrderOfferProcessor")
+    protected OrderOfferProcessor orderOfferProcessor;
+
+    @Override
+    protected void registerStatistics(StatisticsService statisticsService) {
+        AbstractBaseProcessor.getExpressionCache().setStatisticsService(statisticsService);
+    }
+
+    @Override
+    protected int precompileRules() {
+        int count = 0;
+        Date now = SystemTime.asDate();
+        List<Offer> offers = offerDao.readAllOffers();
+        for (Offer offer : offers) {
+            if (offer.getEndDate() != null && offer.getEndDate().before(now)) {
+                continue;
+            }
+            for (OfferOfferRuleXref ruleXref : offer.getOfferMatchRulesXref().values()) {
+                if (ruleXref.getOfferRule() != null) {
+                    count += precompile(ruleXref.getOfferRule().getMatchRule());
+                }
+            }
+            for (OfferQualifyingCriteriaXref criteriaXref : offer.getQualifyingItemCriteriaXref()) {
+                count += precompile(criteriaXref.getOfferItemCriteria());
+            }
+            for (OfferTargetCriteriaXref criteriaXref : offer.getTargetItemCriteriaXref()) {
+                count += precompile(criteriaXref.getOfferItemCriteria());
+            }
+        }
+        return count;
+    }
+
+    protected int precompile(OfferItemCriteria criteria) {
+        if (criteria == null) {
+            return 0;
+        }
+        return precompile(criteria.getMatchRule());
+    }
+
+    protected int precompile(String rule) {
+        if (rule == null || rule.trim().length() == 0) {
+            return 0;
+        }
+        orderOfferProcessor.precompileExpression(rule);
+        return 1;
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory usage counts of offers per customer and of offer codes, used by {@link OfferAuditServiceImpl} to answer
+ * max uses checks without counting the {@link org.broadleafcommerce.core.offer.domain.OfferAudit} rows every time.
+ * </p>
+ * A count is loaded from the database the first time it is asked for and then kept up to date with the audits this
+ * node records. It is reloaded {@link #getTimeToLiveMillis()} after it was loaded, which reconciles it with the audits
+ * written by other nodes and with orders that were cancelled since. A count loaded while the usages of any offer
+ * changed is returned but not kept, since the change may or may not be part of it.
+ * </p>
+ * Since the counts of other nodes can be stale for up to the time to live, they are only used for the checks made while
+ * pricing carts. Checkout verifies the limits against the audits themselves. The counts are disabled by default.
+ */
+@Component("blOfferUsageCounters")
+@ManagedResource(objectName = "org.broadleafcommerce:name=OfferUsageCounters", description = "Offer Usage Counters",
+        currencyTimeLimit = 15)
+public class OfferUsageCounters {
+
+    /**
+     * Counts the usages of a key that is not loaded
+     */
+    public interface CountLoader {
+
+        /**
+         * @return the count, or null if it could not be determined
+         */
+        Long load();
+
+    }
+
+    protected final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every change of a usage count
+     */
+    protected final AtomicLong version = new AtomicLong();
+
+    protected final LongAdder hitCount = new LongAdder();
+    protected final LongAdder missCount = new LongAdder();
+
+    @Value("${offer.usage.counters.enabled:false}")
+    protected volatile boolean enabled = false;
+
+    @Value("${offer.usage.counters.maxSize:100000}")
+    protected volatile int maximumSize = 100000;
+
+    @Value("${offer.usage.counters.ttl:60000}")
+    protected volatile long timeToLiveMillis = 60000L;
+
+    public static String getCustomerOfferKey(Long customerId, Long offerId) {
+        return "offer:" + offerId + ":customer:" + customerId;
+    }
+
+    public static String getOfferCodeKey(Long offerCodeId) {
+        return "code:" + offerCodeId;
+    }
+
+    public Long get(String key, CountLoader loader) {
+        long now = System.currentTimeMillis();
+        Counter counter = counters.get(key);
+        if (counter != null && !counter.isExpired(now, timeToLiveMillis)) {
+            hitCount.increment();
+            return counter.count.get();
+        }
+        missCount.increment();
+        long loadVersion = version.get();
+        Long count = loader.load();
+        if (count != null && loadVersion == version.get()) {
+            makeRoom(now);
+            Counter created = new Counter(count, now);
+            counters.put(key, created);
+            if (loadVersion != version.get()) {
+                counters.remove(key, created);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds the given delta to the count of the key if it is loaded
+     */
+    public void add(String key, long delta) {
+        version.incrementAndGet();
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Drops the count of the given key so that it is reloaded the next time it is asked for
+     */
+    public void invalidate(String key) {
+        version.incrementAndGet();
+        counters.remove(key);
+    }
+
+    @ManagedOperation(description = "Drops all the counts so that they are reloaded from the offer audits")
+    public void clear() {
+        version.incrementAndGet();
+        counters.clear();
+    }
+
+    /**
+     * Removes the expired counts once the maximum size is reached, and all of them if none had expired
+     */
+    protected void makeRoom(long now) {
+        int max = maximumSize;
+        if (max <= 0 || counters.size() < max) {
+            return;
+        }
+        for (Iterator<Map.Entry<String, Counter>> iterator = counters.entrySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().getValue().isExpired(now, timeToLiveMillis)) {
+                iterator.remove();
+            }
+        }
+        if (counters.size() >= max) {
+            counters.clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of loaded counts")
+    public int getSize() {
+        return counters.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    @ManagedAttribute(description = "Number of milliseconds after which a count is reloaded from the offer audits")
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    @ManagedAttribute(description = "Number of milliseconds after which a count is reloaded from the offer audits")
+    public void setTimeToLiveMillis(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    @ManagedAttribute(description = "Number of counts answered from memory")
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    @ManagedAttribute(description = "Number of counts loaded from the offer audits")
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    @ManagedOperation(description = "Resets the statistics")
+    public void resetStatistics() {
+        hitCount.reset();
+        missCount.reset();
+    }
+
+    protected static class Counter {
+
+        protected final AtomicLong count;
+        protected final long loadedAt;
+
+        public Counter(long count, long loadedAt) {
+            this.count = new AtomicLong(count);
+            this.loadedAt = loadedAt;
+        }
+
+        public boolean isExpired(long now, long timeToLiveMillis) {
+            return timeToLiveMillis > 0L && now - loadedAt > timeToLiveMillis;
+        }
+    }
+}
@@ -18,12 +18,13 @@
 package org.broadleafcommerce.core.offer.service.processor;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
+import org.broadleafcommerce.common.cache.CacheStatType;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.rule.MvelExpressionCache;
 import org.broadleafcommerce.common.rule.MvelHelper;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.util.TypedPredicate;
@@ -44,6 +45,7 @@ import org.broadleafcommerce.core.order.service.type.FulfillmentType;
 import org.broadleafcommerce.profile.core.domain.Customer;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDateTime;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -68,7 +70,8 @@ import javax.annotation.Resource;
 public abstract class AbstractBaseProcessor implements BaseProcessor {
 
     private static final Log LOG = LogFactory.getLog(AbstractBaseProcessor.class);
-    private static final Map EXPRESSION_CACHE = new LRUMap(1000);
+    private static final MvelExpressionCache EXPRESSION_CACHE = new MvelExpressionCache(5000,
+            CacheStatType.OFFER_MVEL_EXPRESSION_CACHE_HIT_RATE.toString());
 
     @Resource(name = "blOfferTimeZoneProcessor")
     protected OfferTimeZoneProcessor offerTimeZoneProcessor;
@@ -76,6 +79,22 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
     @Resource(name = "blOfferServiceExtensionManager")
     protected OfferServiceExtensionManager extensionManager;
 
+    @Value("${offer.qualification.index.enabled:true}")
+    protected boolean useQualificationIndex = true;
+
+    protected final OfferQualificationIndex.ItemRuleEvaluator itemRuleEvaluator = new OfferQualificationIndex.ItemRuleEvaluator() {
+
+        @Override
+        public Map<String, Object> buildRuleVariables(PromotableOrderItem item) {
+            return buildItemRuleVariables(item);
+        }
+
+        @Override
+        public Object evaluate(String expression, Map<String, Object> vars) {
+            return executeItemExpression(expression, vars);
+        }
+    };
+
     protected CandidatePromotionItems couldOfferApplyToOrderItems(Offer offer, List<PromotableOrderItem> promotableOrderItems) {
         CandidatePromotionItems candidates = new CandidatePromotionItems();
         if (offer.getQualifyingItemCriteriaXref() == null || offer.getQualifyingItemCriteriaXref().size() == 0) {
@@ -238,13 +257,13 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
         boolean appliesToItem = false;
 
         if (criteria.getMatchRule() != null && criteria.getMatchRule().trim().length() != 0) {
-            HashMap<String, Object> vars = new HashMap<String, Object>();
-            orderItem.updateRuleVariables(vars);
-
-            if (extensionManager != null) {
-                extensionManager.applyAdditionalRuleVariablesForItemOfferEvaluation(orderItem, vars);
+            OfferQualificationIndex qualificationIndex = OfferQualificationIndex.getQualificationIndex();
+            if (qualificationIndex != null && !qualificationIndex.couldMatch(criteria, orderItem, itemRuleEvaluator)) {
+                return false;
             }
 
+            HashMap<String, Object> vars = buildItemRuleVariables(orderItem);
+
             Boolean expressionOutcome = executeExpression(criteria.getMatchRule(), vars);
             if (expressionOutcome != null && expressionOutcome) {
                 appliesToItem = true;
@@ -256,6 +275,34 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
         return appliesToItem;
     }
     
+    protected HashMap<String, Object> buildItemRuleVariables(PromotableOrderItem orderItem) {
+        HashMap<String, Object> vars = new HashMap<String, Object>();
+        orderItem.updateRuleVariables(vars);
+
+        if (extensionManager != null) {
+            extensionManager.applyAdditionalRuleVariablesForItemOfferEvaluation(orderItem, vars);
+        }
+        return vars;
+    }
+
+    /**
+     * Builds an {@link OfferQualificationIndex} for the item criteria of the given offers and makes it available to
+     * {@link #couldOrderItemMeetOfferRequirement(OfferItemCriteria, PromotableOrderItem)} on the current thread until
+     * {@link OfferQualificationIndex#setQualificationIndex(OfferQualificationIndex)} is called with the returned
+     * previous index.
+     *
+     * @param offers the offers of the current pricing pass
+     * @return the index that was active before, to be restored once the pass is done
+     */
+    protected OfferQualificationIndex activateQualificationIndex(List<Offer> offers) {
+        OfferQualificationIndex previous = OfferQualificationIndex.getQualificationIndex();
+        if (useQualificationIndex) {
+            OfferQualificationIndex qualificationIndex = new OfferQualificationIndex(offers);
+            OfferQualificationIndex.setQualificationIndex(qualificationIndex.isEmpty() ? null : qualificationIndex);
+        }
+        return previous;
+    }
+
     /**
      * Private method used by couldOfferApplyToOrder to execute the MVEL expression in the
      * appliesToOrderRules to determine if this offer can be applied.
@@ -265,13 +312,39 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
      * @return a Boolean object containing the result of executing the MVEL expression
      */
     public Boolean executeExpression(String expression, Map<String, Object> vars) {
-        Map<String, Class<?>> contextImports = new HashMap<>();
+        expression = usePriceBeforeAdjustments(expression);
+        return MvelHelper.evaluateRule(expression, vars, EXPRESSION_CACHE, buildContextImports());
 
+    }
+
+    /**
+     * Evaluates an expression that is part of an item match rule, such as the property side of an equality, without
+     * converting the result to a Boolean. Exceptions are thrown to the caller.
+     */
+    public Object executeItemExpression(String expression, Map<String, Object> vars) {
         expression = usePriceBeforeAdjustments(expression);
+        return MvelHelper.evaluateExpression(expression, vars, EXPRESSION_CACHE, buildContextImports());
+    }
+
+    @Override
+    public void precompileExpression(String expression) {
+        if (expression != null) {
+            MvelHelper.precompileRule(usePriceBeforeAdjustments(expression), EXPRESSION_CACHE, buildContextImports());
+        }
+    }
+
+    protected Map<String, Class<?>> buildContextImports() {
+        Map<String, Class<?>> contextImports = new HashMap<>();
         contextImports.put("OfferType", OfferType.class);
         contextImports.put("FulfillmentType", FulfillmentType.class);
-        return MvelHelper.evaluateRule(expression, vars, EXPRESSION_CACHE, contextImports);
+        return contextImports;
+    }
 
+    /**
+     * @return the cache of compiled offer rule expressions shared by all of the offer processors
+     */
+    public static MvelExpressionCache getExpressionCache() {
+        return EXPRESSION_CACHE;
     }
 
     protected String usePriceBeforeAdjustments(String expression) {
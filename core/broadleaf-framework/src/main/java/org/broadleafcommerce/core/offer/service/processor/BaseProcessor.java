@@ -30,5 +30,14 @@ import java.util.List;
 public interface BaseProcessor {
     
     public List<Offer> filterOffers(List<Offer> offers, Customer customer);
-    
+
+    /**
+     * Compiles the given offer rule expression into the offer expression cache without evaluating it. Does nothing by
+     * default, for processors that do not cache compiled expressions.
+     *
+     * @param expression
+     */
+    default void precompileExpression(String expression) {
+    }
+
 }
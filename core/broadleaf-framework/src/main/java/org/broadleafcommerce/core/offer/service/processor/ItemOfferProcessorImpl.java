@@ -379,12 +379,17 @@ public class ItemOfferProcessorImpl extends OrderOfferProcessorImpl implements I
         // set order subTotal price to total item price without adjustments
         order.setOrderSubTotalToPriceWithoutAdjustments();
 
-        for (Offer offer : filteredOffers) {            
-            if(offer.getType().equals(OfferType.ORDER)){
-                filterOrderLevelOffer(order, qualifiedOrderOffers, offer);
-            } else if(offer.getType().equals(OfferType.ORDER_ITEM)){
-                filterItemLevelOffer(order, qualifiedItemOffers, offer);
+        OfferQualificationIndex previousIndex = activateQualificationIndex(filteredOffers);
+        try {
+            for (Offer offer : filteredOffers) {
+                if(offer.getType().equals(OfferType.ORDER)){
+                    filterOrderLevelOffer(order, qualifiedOrderOffers, offer);
+                } else if(offer.getType().equals(OfferType.ORDER_ITEM)){
+                    filterItemLevelOffer(order, qualifiedItemOffers, offer);
+                }
             }
+        } finally {
+            OfferQualificationIndex.setQualificationIndex(previousIndex);
         }
     }
     
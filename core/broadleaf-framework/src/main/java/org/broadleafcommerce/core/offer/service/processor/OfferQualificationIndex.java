@@ -0,0 +1,371 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrderItem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Narrows down which {@link OfferItemCriteria} could possibly match a given {@link PromotableOrderItem} before their
+ * MVEL match rules are executed.
+ * </p>
+ * Match rules produced by the admin rule builder are usually conjunctions that contain at least one equality between
+ * an order item property and a constant, such as <code>discreteOrderItem.?sku.?id==100</code> or
+ * <code>MvelHelper.toUpperCase(discreteOrderItem.?category.?name)==MvelHelper.toUpperCase("merchandise")</code>.
+ * Such a rule can only be true for items where that property has that value. The index groups the criteria of all
+ * offers in a pricing pass by property expression and constant, evaluates each distinct property expression once per
+ * item and looks up the criteria whose constant matches. Only those, plus the criteria without an extractable
+ * equality, have their full match rule executed for the item.
+ * </p>
+ * The index never changes the outcome of a rule. A criteria is only ruled out when its property evaluated to a String
+ * or integral number that differs from a constant of the same kind, in which case the whole conjunction is false. Null
+ * values, other types and failed evaluations leave every criteria of that expression in play.
+ * </p>
+ * Parsing a match rule is cached by rule text, so the predicates are only extracted again when an offer's rule changes.
+ *
+ * @see AbstractBaseProcessor#couldOrderItemMeetOfferRequirement(OfferItemCriteria, PromotableOrderItem)
+ */
+public class OfferQualificationIndex {
+
+    private static final ThreadLocal<OfferQualificationIndex> QUALIFICATION_INDEX =
+            ThreadLocalManager.createThreadLocal(OfferQualificationIndex.class, false);
+
+    protected static final Cache<String, ItemEqualityPredicate> PREDICATE_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(5000)
+            .build();
+
+    protected static final ItemEqualityPredicate NO_PREDICATE = new ItemEqualityPredicate(null, null);
+
+    protected static final String ITEM_PATH = "(?:orderItem|discreteOrderItem|bundleOrderItem)"
+            + "(?:\\.\\??[A-Za-z_]\\w*(?:\\(\\))?(?:\\[(?:\"[^\"\\\\]*\"|'[^'\\\\]*')\\])?)+";
+    protected static final String UPPER_CASE_START = "(?:MvelHelper\\.toUpperCase\\(|MVEL\\.eval\\(\"toUpperCase\\(\\)\",\\s*)";
+    protected static final String STRING_LITERAL = "\"[^\"\\\\]*\"|'[^'\\\\]*'";
+    protected static final Pattern EQUALITY_PATTERN = Pattern.compile("^(" + ITEM_PATH + "|" + UPPER_CASE_START
+            + ITEM_PATH + "\\))\\s*==\\s*(?:" + UPPER_CASE_START + "(" + STRING_LITERAL + ")\\)|(" + STRING_LITERAL
+            + ")|(-?\\d{1,18}))$");
+
+    protected final Map<String, ExpressionIndex> expressionIndexes = new LinkedHashMap<>();
+    protected final Set<OfferItemCriteria> indexedCriteria = Collections.newSetFromMap(new IdentityHashMap<OfferItemCriteria, Boolean>());
+    protected final Map<PromotableOrderItem, Set<OfferItemCriteria>> possibleCriteriaByItem = new IdentityHashMap<>();
+
+    public static OfferQualificationIndex getQualificationIndex() {
+        return QUALIFICATION_INDEX.get();
+    }
+
+    public static void setQualificationIndex(OfferQualificationIndex qualificationIndex) {
+        QUALIFICATION_INDEX.set(qualificationIndex);
+    }
+
+    /**
+     * Indexes the item criteria of the given offers
+     */
+    public OfferQualificationIndex(List<Offer> offers) {
+        for (Offer offer : offers) {
+            if (offer.getQualifyingItemCriteriaXref() != null) {
+                for (OfferQualifyingCriteriaXref xref : offer.getQualifyingItemCriteriaXref()) {
+                    addCriteria(xref.getOfferItemCriteria());
+                }
+            }
+            if (offer.getTargetItemCriteriaXref() != null) {
+                for (OfferTargetCriteriaXref xref : offer.getTargetItemCriteriaXref()) {
+                    addCriteria(xref.getOfferItemCriteria());
+                }
+            }
+        }
+    }
+
+    protected void addCriteria(OfferItemCriteria criteria) {
+        if (criteria == null || criteria.getMatchRule() == null || indexedCriteria.contains(criteria)) {
+            return;
+        }
+        ItemEqualityPredicate predicate = getPredicate(criteria.getMatchRule());
+        if (predicate == null) {
+            return;
+        }
+        ExpressionIndex expressionIndex = expressionIndexes.get(predicate.getExpression());
+        if (expressionIndex == null) {
+            expressionIndex = new ExpressionIndex();
+            expressionIndexes.put(predicate.getExpression(), expressionIndex);
+        }
+        expressionIndex.add(predicate.getValue(), criteria);
+        indexedCriteria.add(criteria);
+    }
+
+    public boolean isEmpty() {
+        return indexedCriteria.isEmpty();
+    }
+
+    /**
+     * @param criteria the criteria about to be evaluated
+     * @param item the item it is evaluated against
+     * @param evaluator evaluates the indexed property expressions for the item
+     * @return false if the match rule of the criteria cannot be true for the item, true if it has to be executed to
+     * find out
+     */
+    public boolean couldMatch(OfferItemCriteria criteria, PromotableOrderItem item, ItemRuleEvaluator evaluator) {
+        if (!indexedCriteria.contains(criteria)) {
+            return true;
+        }
+        Set<OfferItemCriteria> possibleCriteria = possibleCriteriaByItem.get(item);
+        if (possibleCriteria == null) {
+            possibleCriteria = findPossibleCriteria(item, evaluator);
+            possibleCriteriaByItem.put(item, possibleCriteria);
+        }
+        return possibleCriteria.contains(criteria);
+    }
+
+    protected Set<OfferItemCriteria> findPossibleCriteria(PromotableOrderItem item, ItemRuleEvaluator evaluator) {
+        Set<OfferItemCriteria> possibleCriteria = Collections.newSetFromMap(new IdentityHashMap<OfferItemCriteria, Boolean>());
+        Map<String, Object> vars = evaluator.buildRuleVariables(item);
+        for (Map.Entry<String, ExpressionIndex> entry : expressionIndexes.entrySet()) {
+            Object value;
+            try {
+                value = normalizeValue(evaluator.evaluate(entry.getKey(), vars));
+            } catch (Exception e) {
+                value = null;
+            }
+            entry.getValue().collectPossibleCriteria(value, possibleCriteria);
+        }
+        return possibleCriteria;
+    }
+
+    protected static ItemEqualityPredicate getPredicate(String matchRule) {
+        ItemEqualityPredicate predicate = PREDICATE_CACHE.getIfPresent(matchRule);
+        if (predicate == null) {
+            predicate = extractPredicate(matchRule);
+            PREDICATE_CACHE.put(matchRule, predicate == null ? NO_PREDICATE : predicate);
+        }
+        return predicate == NO_PREDICATE ? null : predicate;
+    }
+
+    /**
+     * Finds an equality between an order item property and a constant that the given match rule requires to be true,
+     * that is one of the operands of its top level conjunction.
+     *
+     * @param matchRule the MVEL match rule of an {@link OfferItemCriteria}
+     * @return the first such equality, or null if there is none
+     */
+    public static ItemEqualityPredicate extractPredicate(String matchRule) {
+        List<String> conjuncts = splitConjunction(matchRule);
+        if (conjuncts == null) {
+            return null;
+        }
+        for (String conjunct : conjuncts) {
+            Matcher matcher = EQUALITY_PATTERN.matcher(conjunct);
+            if (matcher.matches()) {
+                Object value;
+                if (matcher.group(2) != null) {
+                    value = unquote(matcher.group(2)).toUpperCase();
+                } else if (matcher.group(3) != null) {
+                    value = unquote(matcher.group(3));
+                } else {
+                    value = Long.valueOf(matcher.group(4));
+                }
+                return new ItemEqualityPredicate(matcher.group(1), value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits the given expression on its top level "&&" operators
+     *
+     * @return the operands, or null if the expression has a top level "||" operator or is malformed
+     */
+    protected static List<String> splitConjunction(String expression) {
+        String trimmed = stripEnclosingParentheses(expression.trim());
+        List<String> conjuncts = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+                if (depth < 0) {
+                    return null;
+                }
+            } else if (depth == 0 && i + 1 < trimmed.length() && trimmed.charAt(i + 1) == c && (c == '&' || c == '|')) {
+                if (c == '|') {
+                    return null;
+                }
+                conjuncts.add(stripEnclosingParentheses(trimmed.substring(start, i).trim()));
+                i++;
+                start = i + 1;
+            }
+        }
+        if (depth != 0 || quote != 0) {
+            return null;
+        }
+        conjuncts.add(stripEnclosingParentheses(trimmed.substring(start).trim()));
+        return conjuncts;
+    }
+
+    protected static String stripEnclosingParentheses(String expression) {
+        while (expression.length() > 1 && expression.charAt(0) == '('
+                && findClosingParenthesis(expression) == expression.length() - 1) {
+            expression = expression.substring(1, expression.length() - 1).trim();
+        }
+        return expression;
+    }
+
+    protected static int findClosingParenthesis(String expression) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    protected static String unquote(String literal) {
+        return literal.substring(1, literal.length() - 1);
+    }
+
+    /**
+     * @return the given value as a key comparable to the constants of the predicates, or null if it cannot be compared
+     */
+    protected static Object normalizeValue(Object value) {
+        if (value instanceof String) {
+            return value;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return null;
+    }
+
+    /**
+     * Provides what is needed to evaluate the property expression of a predicate for an item, exactly as it would be
+     * evaluated as part of the full match rule
+     */
+    public interface ItemRuleEvaluator {
+
+        Map<String, Object> buildRuleVariables(PromotableOrderItem item);
+
+        Object evaluate(String expression, Map<String, Object> vars);
+
+    }
+
+    /**
+     * An equality between an order item property expression and a String or Long constant
+     */
+    public static class ItemEqualityPredicate {
+
+        protected final String expression;
+        protected final Object value;
+
+        public ItemEqualityPredicate(String expression, Object value) {
+            this.expression = expression;
+            this.value = value;
+        }
+
+        public String getExpression() {
+            return expression;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * The criteria that compare one property expression to a constant, by constant
+     */
+    protected static class ExpressionIndex {
+
+        protected final Map<Object, List<OfferItemCriteria>> criteriaByValue = new HashMap<>();
+        protected final List<OfferItemCriteria> stringCriteria = new ArrayList<>();
+        protected final List<OfferItemCriteria> longCriteria = new ArrayList<>();
+
+        protected void add(Object value, OfferItemCriteria criteria) {
+            List<OfferItemCriteria> criteriaList = criteriaByValue.get(value);
+            if (criteriaList == null) {
+                criteriaList = new ArrayList<>(1);
+                criteriaByValue.put(value, criteriaList);
+            }
+            criteriaList.add(criteria);
+            if (value instanceof String) {
+                stringCriteria.add(criteria);
+            } else {
+                longCriteria.add(criteria);
+            }
+        }
+
+        /**
+         * Adds the criteria that may match an item whose property has the given normalized value. MVEL may coerce a
+         * String and a number to compare them, so only constants of the same kind as the value are ruled out.
+         */
+        protected void collectPossibleCriteria(Object value, Set<OfferItemCriteria> possibleCriteria) {
+            if (value == null) {
+                possibleCriteria.addAll(stringCriteria);
+                possibleCriteria.addAll(longCriteria);
+                return;
+            }
+            List<OfferItemCriteria> matches = criteriaByValue.get(value);
+            if (matches != null) {
+                possibleCriteria.addAll(matches);
+            }
+            possibleCriteria.addAll(value instanceof String ? longCriteria : stringCriteria);
+        }
+    }
+}
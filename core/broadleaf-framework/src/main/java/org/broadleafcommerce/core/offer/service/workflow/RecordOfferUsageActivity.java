@@ -43,7 +43,7 @@ import java.util.Set;
 import javax.annotation.Resource;
 
 /**
- * Saves an instance of OfferAudit for each offer in the passed in order.
+ * Records an instance of OfferAudit for each offer in the passed in order.
  * 
  * @author Phillip Verheyden (phillipuniverse)
  * @see {@link RecordOfferUsageRollbackHandler}
@@ -89,9 +89,10 @@ public class RecordOfferUsageActivity extends BaseActivity<ProcessContext<Checko
     }
     
     /**
-     * Persists each of the offers to the database as {@link OfferAudit}s.
+     * Records each of the offers as an {@link OfferAudit}. The audits may be written to the database in the background,
+     * see {@link OfferAuditService#recordUsages(List)}.
      * 
-     * @return the {@link OfferAudit}s that were persisted
+     * @return the {@link OfferAudit}s that were recorded
      */
     protected List<OfferAudit> saveOfferIds(Set<Offer> offers, Map<Offer, OfferCode> offerToCodeMapping, Order order) {
         List<OfferAudit> audits = new ArrayList<>(offers.size());
@@ -108,11 +109,10 @@ public class RecordOfferUsageActivity extends BaseActivity<ProcessContext<Checko
             }
             
             audit.setRedeemedDate(SystemTime.asDate());
-            audit = offerAuditService.save(audit);
             audits.add(audit);
         }
         
-        return audits;
+        return offerAuditService.recordUsages(audits);
     }
         
 }
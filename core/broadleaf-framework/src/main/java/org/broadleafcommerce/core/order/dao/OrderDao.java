@@ -95,6 +95,16 @@ public interface OrderDao {
      */
     public boolean releaseLock(Order order);
 
+    /**
+     * Updates the last updated time of the {@link OrderLock} of the given order if it is locked, so that it is not
+     * considered abandoned by callers of {@link #acquireLock(Order)} once the lock time to live elapses. Callers of
+     * this method should hold the lock.
+     * 
+     * @param order
+     * @return true if the lock was refreshed, false if the order was not locked
+     */
+    public boolean refreshLock(Order order);
+
     List<Order> readOrdersByEmail(String email);
 
     public Long readNumberOfOrders();
@@ -437,6 +437,33 @@ public class OrderDaoImpl implements OrderDao {
         return response[0];
     }
 
+    @Override
+    public boolean refreshLock(final Order order) {
+        final boolean[] response = {false};
+        try {
+            transUtil.runTransactionalOperation(new StreamCapableTransactionalOperationAdapter() {
+                @Override
+                public void execute() throws Throwable {
+                    Query q = em.createNamedQuery("BC_ORDER_LOCK_REFRESH");
+                    q.setParameter("orderId", order.getId());
+                    q.setParameter("currentTime", System.currentTimeMillis());
+                    q.setParameter("key", getOrderLockKey());
+                    q.setHint(QueryHints.HINT_CACHEABLE, false);
+                    int rowsAffected = q.executeUpdate();
+                    response[0] = rowsAffected == 1;
+                }
+
+                @Override
+                public boolean shouldRetryOnTransactionLockAcquisitionFailure() {
+                    return true;
+                }
+            }, RuntimeException.class);
+        } catch (RuntimeException e) {
+            LOG.error(String.format("Could not refresh order lock (%s)", order.getId()), e);
+        }
+        return response[0];
+    }
+
     protected String getOrderLockKey() {
         return getDatabaseOrderLockSessionAffinity()?ORDER_LOCK_KEY:"NO_KEY";
     }
@@ -385,6 +385,16 @@ public class NullOrderImpl implements Order {
         throw new UnsupportedOperationException("NullOrder does not support any modification operations.");
     }
 
+    @Override
+    public String getPricingFingerprint() {
+        return null;
+    }
+
+    @Override
+    public void setPricingFingerprint(String pricingFingerprint) {
+        throw new UnsupportedOperationException("NullOrder does not support any modification operations.");
+    }
+
     @Override
     public <G extends Order> CreateResponse<G> createOrRetrieveCopyInstance(MultiTenantCopyContext context) throws CloneNotSupportedException {
         return null;
@@ -491,4 +491,17 @@ public interface Order extends Serializable, MultiTenantCloneable<Order> {
      */
     public void setTaxOverride(Boolean taxOverride);
 
+    /**
+     * Gets the digest of the pricing inputs this order was last priced with, see
+     * {@link org.broadleafcommerce.core.order.service.OrderPricingFingerprintService}
+     * @return the fingerprint, or null if the order needs to be priced
+     */
+    public String getPricingFingerprint();
+
+    /**
+     * Sets the digest of the pricing inputs this order was last priced with
+     * @param pricingFingerprint
+     */
+    public void setPricingFingerprint(String pricingFingerprint);
+
 }
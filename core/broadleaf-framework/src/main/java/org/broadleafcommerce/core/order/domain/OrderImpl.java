@@ -276,6 +276,9 @@ public class OrderImpl implements Order, AdminMainEntity, CurrencyCodeIdentifiab
     @Column(name = "TAX_OVERRIDE")
     protected Boolean taxOverride;
 
+    @Column(name = "PRICING_FINGERPRINT", length = 32)
+    protected String pricingFingerprint;
+
     @Transient
     protected List<ActivityMessageDTO> orderMessages;
 
@@ -695,6 +698,16 @@ public class OrderImpl implements Order, AdminMainEntity, CurrencyCodeIdentifiab
         this.taxOverride = taxOverride;
     }
 
+    @Override
+    public String getPricingFingerprint() {
+        return pricingFingerprint;
+    }
+
+    @Override
+    public void setPricingFingerprint(String pricingFingerprint) {
+        this.pricingFingerprint = pricingFingerprint;
+    }
+
     @Override
     public int getItemCount() {
         int count = 0;
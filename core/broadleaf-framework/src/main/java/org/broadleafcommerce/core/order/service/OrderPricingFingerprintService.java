@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.order.service;
+
+import org.broadleafcommerce.core.order.domain.Order;
+
+/**
+ * Computes a digest of everything that goes into pricing an {@link Order}, so that {@link OrderService#save(Order, Boolean)}
+ * can tell whether an order is still priced for its current state and skip running the pricing workflow again.
+ */
+public interface OrderPricingFingerprintService {
+
+    /**
+     * @return whether pricing may be skipped when the fingerprint of an order has not changed
+     */
+    public boolean isEnabled();
+
+    /**
+     * @return a digest of the items, quantities and prices, offer codes, fulfillment options, addresses and the set
+     * of active offers the given order would be priced with
+     */
+    public String computeFingerprint(Order order);
+
+    /**
+     * @return whether the order was priced before and nothing that affects its price changed since
+     */
+    public boolean isPricingCurrent(Order order);
+
+    /**
+     * Stores the fingerprint of the order as it is now, after it has been priced, in {@link Order#setPricingFingerprint(String)}
+     */
+    public void recordFingerprint(Order order);
+
+    /**
+     * Removes the stored fingerprint, so that the next save prices the order again
+     */
+    public void clearFingerprint(Order order);
+
+}
@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.order.service;
+
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferCode;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferOfferRuleXref;
+import org.broadleafcommerce.core.offer.domain.OfferQualifyingCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.order.domain.BundleOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
+import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderAttribute;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.broadleafcommerce.core.order.domain.OrderItemAttribute;
+import org.broadleafcommerce.core.payment.domain.OrderPayment;
+import org.broadleafcommerce.profile.core.domain.Address;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Resource;
+
+/**
+ * Fingerprints an order from the state the pricing workflow reads: the items with their quantities, prices, price
+ * overrides, attributes and the current prices of their skus, the added offer codes, the fulfillment groups with their options and addresses, the
+ * billing addresses, the order attributes, the customer, the currency and locale, and the automatically applied offers
+ * that are currently active. Anything pricing itself computes (adjustments, totals, taxes, fulfillment prices) is
+ * left out, so the fingerprint taken right after pricing matches the one taken before the next save unless one of the
+ * inputs changed in between.
+ */
+@Service("blOrderPricingFingerprintService")
+public class OrderPricingFingerprintServiceImpl implements OrderPricingFingerprintService {
+
+    @Resource(name = "blOfferDao")
+    protected OfferDao offerDao;
+
+    @Value("${pricing.fingerprint.enabled:true}")
+    protected boolean enabled = true;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isPricingCurrent(Order order) {
+        if (!enabled || order.getId() == null) {
+            return false;
+        }
+        String fingerprint = order.getPricingFingerprint();
+        return fingerprint != null && fingerprint.equals(computeFingerprint(order));
+    }
+
+    @Override
+    public void recordFingerprint(Order order) {
+        if (!enabled) {
+            return;
+        }
+        order.setPricingFingerprint(computeFingerprint(order));
+    }
+
+    @Override
+    public void clearFingerprint(Order order) {
+        order.setPricingFingerprint(null);
+    }
+
+    @Override
+    public String computeFingerprint(Order order) {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(order.getCurrency() == null ? null : order.getCurrency().getCurrencyCode());
+        sb.append('|').append(order.getLocale() == null ? null : order.getLocale().getLocaleCode());
+        if (order.getCustomer() != null) {
+            sb.append("|customer:").append(order.getCustomer().getId()).append(',').append(order.getCustomer().isRegistered());
+        }
+
+        for (OrderItem item : order.getOrderItems()) {
+            appendOrderItem(sb, item);
+        }
+
+        for (OfferCode offerCode : order.getAddedOfferCodes()) {
+            sb.append("|code:").append(offerCode.getId()).append(',').append(offerCode.getOfferCode());
+            appendOffer(sb, offerCode.getOffer());
+        }
+
+        for (FulfillmentGroup fulfillmentGroup : order.getFulfillmentGroups()) {
+            sb.append("|fg:").append(fulfillmentGroup.getId()).append(',').append(fulfillmentGroup.getType());
+            sb.append(',').append(fulfillmentGroup.getFulfillmentOption() == null ? null : fulfillmentGroup.getFulfillmentOption().getId());
+            if (Boolean.TRUE.equals(fulfillmentGroup.getShippingOverride())) {
+                sb.append(",override:").append(fulfillmentGroup.getFulfillmentPrice());
+            }
+            appendAddress(sb, fulfillmentGroup.getAddress());
+            for (FulfillmentGroupItem fulfillmentGroupItem : fulfillmentGroup.getFulfillmentGroupItems()) {
+                sb.append(",fgi:").append(fulfillmentGroupItem.getOrderItem() == null ? null : fulfillmentGroupItem.getOrderItem().getId());
+                sb.append('x').append(fulfillmentGroupItem.getQuantity());
+            }
+        }
+
+        for (OrderPayment payment : order.getPayments()) {
+            sb.append("|payment:").append(payment.getId()).append(',').append(payment.getType());
+            appendAddress(sb, payment.getBillingAddress());
+        }
+
+        Map<String, String> attributes = new TreeMap<>();
+        for (Map.Entry<String, OrderAttribute> entry : order.getOrderAttributes().entrySet()) {
+            if (entry.getValue() != null) {
+                attributes.put(entry.getKey(), entry.getValue().getValue());
+            }
+        }
+        sb.append("|attributes:").append(attributes);
+
+        sb.append("|offers:").append(getActiveOfferSetVersion());
+
+        return digest(sb.toString());
+    }
+
+    protected void appendOrderItem(StringBuilder sb, OrderItem item) {
+        sb.append("|item:").append(item.getId()).append(',').append(item.getClass().getSimpleName());
+        sb.append(',').append(item.getQuantity());
+        sb.append(',').append(item.getRetailPrice()).append(',').append(item.isRetailPriceOverride());
+        sb.append(',').append(item.getSalePrice()).append(',').append(item.isSalePriceOverride());
+        sb.append(',').append(item.isDiscountingAllowed());
+        if (item instanceof DiscreteOrderItem) {
+            appendSku(sb, ((DiscreteOrderItem) item).getSku());
+        } else if (item instanceof BundleOrderItem) {
+            BundleOrderItem bundleItem = (BundleOrderItem) item;
+            appendSku(sb, bundleItem.getSku());
+            for (DiscreteOrderItem discreteItem : bundleItem.getDiscreteOrderItems()) {
+                appendOrderItem(sb, discreteItem);
+            }
+        }
+        if (item.getOrderItemAttributes() != null) {
+            Map<String, String> attributes = new TreeMap<>();
+            for (Map.Entry<String, OrderItemAttribute> entry : item.getOrderItemAttributes().entrySet()) {
+                attributes.put(entry.getKey(), entry.getValue() == null ? null : entry.getValue().getValue());
+            }
+            sb.append(",attributes:").append(attributes);
+        }
+        if (item.getChildOrderItems() != null) {
+            for (OrderItem child : item.getChildOrderItems()) {
+                appendOrderItem(sb, child);
+            }
+        }
+    }
+
+    /**
+     * The stored prices of an item only change when it is repriced, so the current prices of its sku are part of the
+     * fingerprint as well. They are read through the sku, which applies dynamic pricing, so price list and dynamic
+     * price changes are seen too.
+     */
+    protected void appendSku(StringBuilder sb, Sku sku) {
+        if (sku == null) {
+            sb.append(",sku:null");
+            return;
+        }
+        sb.append(",sku:").append(sku.getId());
+        sb.append(',').append(sku.getRetailPrice()).append(',').append(sku.getSalePrice());
+    }
+
+    protected void appendAddress(StringBuilder sb, Address address) {
+        if (address == null) {
+            sb.append(",address:null");
+            return;
+        }
+        sb.append(",address:").append(address.getId());
+        sb.append(',').append(address.getAddressLine1()).append(',').append(address.getCity());
+        sb.append(',').append(address.getStateProvinceRegion()).append(',').append(address.getIsoCountrySubdivision());
+        sb.append(',').append(address.getPostalCode()).append(',').append(address.getCounty());
+        sb.append(',').append(address.getIsoCountryAlpha2() == null ? null : address.getIsoCountryAlpha2().getAlpha2());
+    }
+
+    protected void appendOffer(StringBuilder sb, Offer offer) {
+        if (offer == null) {
+            sb.append(",offer:null");
+            return;
+        }
+        sb.append(",offer:").append(offer.getId()).append(',').append(offer.getName());
+        sb.append(',').append(offer.getType()).append(',').append(offer.getDiscountType()).append(',').append(offer.getValue());
+        sb.append(',').append(offer.getStartDate()).append(',').append(offer.getEndDate());
+        sb.append(',').append(offer.getPriority()).append(',').append(offer.isCombinableWithOtherOffers());
+        sb.append(',').append(offer.isTotalitarianOffer()).append(',').append(offer.getApplyDiscountToSalePrice());
+        sb.append(',').append(offer.getOfferItemQualifierRuleType()).append(',').append(offer.getOfferItemTargetRuleType());
+        sb.append(',').append(offer.getMaxUsesPerOrder()).append(',').append(offer.getMaxUsesPerCustomer());
+        sb.append(',').append(offer.getQualifyingItemSubTotal()).append(',').append(offer.getOrderMinSubTotal());
+        sb.append(',').append(offer.getTargetMinSubTotal()).append(',').append(offer.getRequiresRelatedTargetAndQualifiers());
+        if (offer.getOfferMatchRulesXref() != null) {
+            Map<String, String> rules = new TreeMap<>();
+            for (Map.Entry<String, OfferOfferRuleXref> entry : offer.getOfferMatchRulesXref().entrySet()) {
+                OfferOfferRuleXref xref = entry.getValue();
+                rules.put(entry.getKey(), xref == null || xref.getOfferRule() == null ? null : xref.getOfferRule().getMatchRule());
+            }
+            sb.append(",rules:").append(rules);
+        }
+        if (offer.getQualifyingItemCriteriaXref() != null) {
+            List<String> criteria = new ArrayList<>();
+            for (OfferQualifyingCriteriaXref xref : offer.getQualifyingItemCriteriaXref()) {
+                criteria.add(describeItemCriteria(xref.getOfferItemCriteria()));
+            }
+            Collections.sort(criteria);
+            sb.append(",qualifiers:").append(criteria);
+        }
+        if (offer.getTargetItemCriteriaXref() != null) {
+            List<String> criteria = new ArrayList<>();
+            for (OfferTargetCriteriaXref xref : offer.getTargetItemCriteriaXref()) {
+                criteria.add(describeItemCriteria(xref.getOfferItemCriteria()));
+            }
+            Collections.sort(criteria);
+            sb.append(",targets:").append(criteria);
+        }
+    }
+
+    protected String describeItemCriteria(OfferItemCriteria criteria) {
+        return criteria == null ? "null" : criteria.getQuantity() + "x" + criteria.getMatchRule();
+    }
+
+    /**
+     * The automatically applied offers are read through the cacheable query the offer service uses itself, so this is
+     * normally served from the query cache and changes as soon as an offer is added, changed, archived or expires.
+     */
+    protected String getActiveOfferSetVersion() {
+        List<Offer> offers = new ArrayList<>(offerDao.readOffersByAutomaticDeliveryType());
+        Collections.sort(offers, new Comparator<Offer>() {
+            @Override
+            public int compare(Offer o1, Offer o2) {
+                return Long.compare(o1.getId() == null ? 0L : o1.getId(), o2.getId() == null ? 0L : o2.getId());
+            }
+        });
+        StringBuilder sb = new StringBuilder(offers.size() * 32);
+        for (Offer offer : offers) {
+            appendOffer(sb, offer);
+        }
+        return digest(sb.toString());
+    }
+
+    protected String digest(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] messageDigest = md.digest(value.getBytes(StandardCharsets.UTF_8));
+            return new BigInteger(1, messageDigest).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
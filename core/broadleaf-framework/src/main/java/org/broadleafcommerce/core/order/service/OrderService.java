@@ -604,6 +604,13 @@ public interface OrderService {
      */
     public boolean releaseLock(Order order);
 
+    /**
+     * @see OrderDao#refreshLock(Order)
+     * @param order
+     * @return whether or not the lock was refreshed
+     */
+    public boolean refreshLock(Order order);
+
     void refresh(Order order);
 
     /**
@@ -85,6 +85,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Resource;
 import javax.persistence.EntityManager;
@@ -134,6 +135,9 @@ public class OrderServiceImpl implements OrderService {
     
     @Resource(name = "blOrderServiceExtensionManager")
     protected OrderServiceExtensionManager extensionManager;
+
+    @Resource(name = "blOrderPricingFingerprintService")
+    protected OrderPricingFingerprintService pricingFingerprintService;
     
     /* Workflows */
     @Resource(name = "blAddItemWorkflow")
@@ -193,6 +197,9 @@ public class OrderServiceImpl implements OrderService {
     protected EntityManager em;
 
     /* Fields */
+    protected final LongAdder executedPricingCount = new LongAdder();
+    protected final LongAdder skippedPricingCount = new LongAdder();
+
     protected boolean moveNamedOrderItems = true;
     protected boolean deleteEmptyNamedOrders = true;
 
@@ -324,67 +331,79 @@ public class OrderServiceImpl implements OrderService {
 
         //make any pricing changes - possibly retrying with the persisted state if there's a lock failure
         if (priceOrder) {
-            int retryCount = 0;
-            boolean isValid = false;
-            while (!isValid) {
-                Session session = em.unwrap(Session.class);
-                FlushMode current = session.getHibernateFlushMode();
-                try {
-                    if (!autoFlushSaveCart) {
-                        //Performance measure. Hibernate will sometimes perform an autoflush when performing query operations and this can
-                        //be expensive. It is possible to avoid the autoflush if there's no concern about queries in the flow returning
-                        //incorrect results because something has not been flushed to the database yet.
-                        session.setHibernateFlushMode(FlushMode.MANUAL);
-                    }
-                    order = pricingService.executePricing(order);
-                    isValid = true;
-                } catch (Exception ex) {
-                    boolean isValidCause = false;
-                    Throwable cause = ex;
-                    while (!isValidCause) {
-                        if (cause.getClass().equals(LockAcquisitionException.class)) {
-                            isValidCause = true;
-                        }
-                        cause = cause.getCause();
-                        if (cause == null) {
-                            break;
+            //skip pricing when nothing that affects the price changed since the order was last priced
+            boolean pricingCurrent = pricingFingerprintService.isPricingCurrent(order);
+            if (pricingCurrent) {
+                skippedPricingCount.increment();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Skipping pricing of order " + order.getId() + " because its pricing inputs did not change");
+                }
+            } else {
+                executedPricingCount.increment();
+                int retryCount = 0;
+                boolean isValid = false;
+                while (!isValid) {
+                    Session session = em.unwrap(Session.class);
+                    FlushMode current = session.getHibernateFlushMode();
+                    try {
+                        if (!autoFlushSaveCart) {
+                            //Performance measure. Hibernate will sometimes perform an autoflush when performing query operations and this can
+                            //be expensive. It is possible to avoid the autoflush if there's no concern about queries in the flow returning
+                            //incorrect results because something has not been flushed to the database yet.
+                            session.setHibernateFlushMode(FlushMode.MANUAL);
                         }
-                    }
-                    if (isValidCause) {
-                        if (LOG.isInfoEnabled()) {
-                            LOG.info("Problem acquiring lock during pricing call - attempting to price again.");
+                        order = pricingService.executePricing(order);
+                        isValid = true;
+                    } catch (Exception ex) {
+                        boolean isValidCause = false;
+                        Throwable cause = ex;
+                        while (!isValidCause) {
+                            if (cause.getClass().equals(LockAcquisitionException.class)) {
+                                isValidCause = true;
+                            }
+                            cause = cause.getCause();
+                            if (cause == null) {
+                                break;
+                            }
                         }
-                        isValid = false;
-                        if (retryCount >= pricingRetryCountForLockFailure) {
+                        if (isValidCause) {
                             if (LOG.isInfoEnabled()) {
-                                LOG.info("Problem acquiring lock during pricing call. Retry limit exceeded at (" + retryCount + "). Throwing exception.");
+                                LOG.info("Problem acquiring lock during pricing call - attempting to price again.");
                             }
+                            isValid = false;
+                            if (retryCount >= pricingRetryCountForLockFailure) {
+                                if (LOG.isInfoEnabled()) {
+                                    LOG.info("Problem acquiring lock during pricing call. Retry limit exceeded at (" + retryCount + "). Throwing exception.");
+                                }
+                                if (ex instanceof PricingException) {
+                                    throw (PricingException) ex;
+                                } else {
+                                    throw new PricingException(ex);
+                                }
+                            } else {
+                                order = findOrderById(order.getId());
+                                retryCount++;
+                            }
+                            try {
+                                Thread.sleep(pricingRetryWaitIntervalForLockFailure);
+                            } catch (Throwable e) {
+                                //do nothing
+                            }
+                        } else {
                             if (ex instanceof PricingException) {
                                 throw (PricingException) ex;
                             } else {
                                 throw new PricingException(ex);
                             }
-                        } else {
-                            order = findOrderById(order.getId());
-                            retryCount++;
-                        }
-                        try {
-                            Thread.sleep(pricingRetryWaitIntervalForLockFailure);
-                        } catch (Throwable e) {
-                            //do nothing
                         }
-                    } else {
-                        if (ex instanceof PricingException) {
-                            throw (PricingException) ex;
-                        } else {
-                            throw new PricingException(ex);
+                    } finally {
+                        if (!autoFlushSaveCart) {
+                            session.setHibernateFlushMode(current);
                         }
                     }
-                } finally {
-                    if (!autoFlushSaveCart) {
-                        session.setHibernateFlushMode(current);
-                    }
                 }
+
+                pricingFingerprintService.recordFingerprint(order);
             }
 
             //make the final save of the priced order
@@ -893,6 +912,16 @@ public class OrderServiceImpl implements OrderService {
         return deleteEmptyNamedOrders;
     }
 
+    @ManagedAttribute(description="The number of saves that ran the pricing workflow", currencyTimeLimit=15)
+    public long getExecutedPricingCount() {
+        return executedPricingCount.sum();
+    }
+
+    @ManagedAttribute(description="The number of saves that skipped pricing because the pricing inputs did not change", currencyTimeLimit=15)
+    public long getSkippedPricingCount() {
+        return skippedPricingCount.sum();
+    }
+
     @Override
     @Transactional("blTransactionManager")
     public void removeAllPaymentsFromOrder(Order order) {
@@ -1063,6 +1092,11 @@ public class OrderServiceImpl implements OrderService {
         return orderDao.releaseLock(order);
     }
 
+    @Override
+    public boolean refreshLock(Order order) {
+        return orderDao.refreshLock(order);
+    }
+
     @Override
     public void printOrder(Order order, Log log) {
         if (!log.isDebugEnabled()) {
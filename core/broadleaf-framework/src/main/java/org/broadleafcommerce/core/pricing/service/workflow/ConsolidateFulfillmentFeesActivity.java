@@ -18,8 +18,9 @@
 package org.broadleafcommerce.core.pricing.service.workflow;
 
 import org.apache.commons.lang.StringUtils;
+import org.broadleafcommerce.common.cache.CacheStatType;
+import org.broadleafcommerce.common.rule.MvelExpressionCache;
 import org.broadleafcommerce.common.rule.MvelHelper;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.core.catalog.domain.SkuFee;
 import org.broadleafcommerce.core.catalog.service.type.SkuFeeType;
 import org.broadleafcommerce.core.order.domain.BundleOrderItem;
@@ -35,7 +36,6 @@ import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.annotation.Resource;
 
@@ -48,8 +48,8 @@ public class ConsolidateFulfillmentFeesActivity extends BaseActivity<ProcessCont
     
     public static final int ORDER = 2000;
     
-    @SuppressWarnings("unchecked")
-    protected static final Map EXPRESSION_CACHE = new EfficientLRUMap(1000);
+    protected static final MvelExpressionCache EXPRESSION_CACHE = new MvelExpressionCache(1000,
+            CacheStatType.SKU_FEE_MVEL_EXPRESSION_CACHE_HIT_RATE.toString());
     
     @Resource(name = "blFulfillmentGroupService")
     protected FulfillmentGroupService fulfillmentGroupService;
@@ -110,11 +110,9 @@ public class ConsolidateFulfillmentFeesActivity extends BaseActivity<ProcessCont
         String feeExpression = fee.getExpression();
         
         if (StringUtils.isNotEmpty(feeExpression)) {
-            synchronized (EXPRESSION_CACHE) {
-                HashMap<String, Object> vars = new HashMap<>();
-                vars.put("fulfillmentGroup", fulfillmentGroup);
-                MvelHelper.evaluateRule(feeExpression, vars, EXPRESSION_CACHE);
-            }
+            HashMap<String, Object> vars = new HashMap<>();
+            vars.put("fulfillmentGroup", fulfillmentGroup);
+            MvelHelper.evaluateRule(feeExpression, vars, EXPRESSION_CACHE);
         }
         
         return appliesToFulfillmentGroup;
@@ -21,6 +21,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.currency.domain.BroadleafCurrency;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.money.MoneyAccumulator;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
 import org.broadleafcommerce.core.order.domain.Order;
@@ -171,13 +172,13 @@ public class FulfillmentItemPricingActivity extends BaseActivity<ProcessContext<
      * @return
      */
     protected Money calculateTotalPriceForAllFulfillmentItems(Order order) {
-        Money totalAllItemsAmount = new Money(order.getCurrency());
+        MoneyAccumulator totalAllItemsAmount = new MoneyAccumulator(new Money(order.getCurrency()));
         for (FulfillmentGroup fulfillmentGroup : order.getFulfillmentGroups()) {
             for (FulfillmentGroupItem fgItem : fulfillmentGroup.getFulfillmentGroupItems()) {
-                totalAllItemsAmount = totalAllItemsAmount.add(fgItem.getTotalItemAmount());
+                totalAllItemsAmount.add(fgItem.getTotalItemAmount());
             }
         }
-        return totalAllItemsAmount;
+        return totalAllItemsAmount.toMoney();
     }
 
     /**
@@ -187,7 +188,9 @@ public class FulfillmentItemPricingActivity extends BaseActivity<ProcessContext<
      * @return
      */
     protected Money distributeOrderSavingsToItems(Order order, BigDecimal totalAllItems) {
-        Money returnAmount = new Money(order.getCurrency());
+        MoneyAccumulator returnAmount = new MoneyAccumulator(new Money(order.getCurrency()));
+        // resolved once rather than for every item
+        Currency currency = returnAmount.getCurrency();
 
         BigDecimal orderAdjAmt = order.getOrderAdjustmentsValue().getAmount();
 
@@ -195,11 +198,11 @@ public class FulfillmentItemPricingActivity extends BaseActivity<ProcessContext<
             for (FulfillmentGroupItem fgItem : fulfillmentGroup.getFulfillmentGroupItems()) {
                 BigDecimal fgItemAmount = fgItem.getTotalItemAmount().getAmount();
                 BigDecimal proratedAdjAmt = totalAllItems.compareTo(BigDecimal.ZERO) == 0 ? totalAllItems : orderAdjAmt.multiply(fgItemAmount).divide(totalAllItems, RoundingMode.FLOOR);
-                fgItem.setProratedOrderAdjustmentAmount(new Money(proratedAdjAmt, order.getCurrency()));
-                returnAmount = returnAmount.add(fgItem.getProratedOrderAdjustmentAmount());
+                fgItem.setProratedOrderAdjustmentAmount(new Money(proratedAdjAmt, currency));
+                returnAmount.add(fgItem.getProratedOrderAdjustmentAmount());
             }
         }
-        return returnAmount;
+        return returnAmount.toMoney();
     }
 
     /**
@@ -256,19 +259,19 @@ public class FulfillmentItemPricingActivity extends BaseActivity<ProcessContext<
     }
 
     protected Money sumItemAmount(List<FulfillmentGroupItem> items, Order order) {
-        Money totalAmount = new Money(order.getCurrency());
+        MoneyAccumulator totalAmount = new MoneyAccumulator(new Money(order.getCurrency()));
         for (FulfillmentGroupItem fgItem : items) {
-            totalAmount = totalAmount.add(fgItem.getTotalItemAmount());
+            totalAmount.add(fgItem.getTotalItemAmount());
         }
-        return totalAmount;
+        return totalAmount.toMoney();
     }
 
     protected Money sumTaxAmount(List<FulfillmentGroupItem> items, Order order) {
-        Money taxAmount = new Money(order.getCurrency());
+        MoneyAccumulator taxAmount = new MoneyAccumulator(new Money(order.getCurrency()));
         for (FulfillmentGroupItem fgItem : items) {
-            taxAmount = taxAmount.add(fgItem.getTotalItemTaxableAmount());
+            taxAmount.add(fgItem.getTotalItemTaxableAmount());
         }
-        return taxAmount;
+        return taxAmount.toMoney();
     }
 
     public long countNumberOfUnits(Money difference) {
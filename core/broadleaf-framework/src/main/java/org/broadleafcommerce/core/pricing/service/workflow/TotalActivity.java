@@ -19,6 +19,7 @@ package org.broadleafcommerce.core.pricing.service.workflow;
 
 import org.broadleafcommerce.common.currency.util.BroadleafCurrencyUtils;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.money.MoneyAccumulator;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroup;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroupFee;
 import org.broadleafcommerce.core.order.domain.FulfillmentGroupItem;
@@ -53,40 +54,43 @@ public class TotalActivity extends BaseActivity<ProcessContext<Order>> {
         
         setTaxSums(order);
         
-        Money total = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
-        total = total.add(order.getSubTotal());
-        total = total.subtract(order.getOrderAdjustmentsValue());
-        total = total.add(order.getTotalShipping());
+        Money zero = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
+        
+        MoneyAccumulator total = new MoneyAccumulator(zero);
+        total.add(order.getSubTotal());
+        total.subtract(order.getOrderAdjustmentsValue());
+        total.add(order.getTotalShipping());
         // There may not be any taxes on the order
         if (order.getTotalTax() != null) {
-            total = total.add(order.getTotalTax());
+            total.add(order.getTotalTax());
         }
 
-        Money fees = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
+        MoneyAccumulator fees = new MoneyAccumulator(zero);
         for (FulfillmentGroup fulfillmentGroup : order.getFulfillmentGroups()) {
-            Money fgTotal = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
-            fgTotal = fgTotal.add(fulfillmentGroup.getMerchandiseTotal());
-            fgTotal = fgTotal.add(fulfillmentGroup.getShippingPrice());
-            fgTotal = fgTotal.add(fulfillmentGroup.getTotalTax());
+            MoneyAccumulator fgTotal = new MoneyAccumulator(zero);
+            fgTotal.add(fulfillmentGroup.getMerchandiseTotal());
+            fgTotal.add(fulfillmentGroup.getShippingPrice());
+            fgTotal.add(fulfillmentGroup.getTotalTax());
             
             for (FulfillmentGroupFee fulfillmentGroupFee : fulfillmentGroup.getFulfillmentGroupFees()) {
-                fgTotal = fgTotal.add(fulfillmentGroupFee.getAmount());
-                fees = fees.add(fulfillmentGroupFee.getAmount());
+                fgTotal.add(fulfillmentGroupFee.getAmount());
+                fees.add(fulfillmentGroupFee.getAmount());
             }
             
-            fulfillmentGroup.setTotal(fgTotal);
+            fulfillmentGroup.setTotal(fgTotal.toMoney());
         }
 
-        total = total.add(fees);
-        order.setTotal(total);
+        total.add(fees);
+        order.setTotal(total.toMoney());
         
         context.setSeedData(order);
         return context;
     }
     
     protected void setTaxSums(Order order) {
+        Money zeroMoney = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
+
         if (order.getTaxOverride()) {
-            Money zeroMoney = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
 
             for (FulfillmentGroup fg : order.getFulfillmentGroups()) {
                 if (fg.getTaxes() != null) {
@@ -118,59 +122,59 @@ public class TotalActivity extends BaseActivity<ProcessContext<Order>> {
             return;
         }
 
-        Money orderTotalTax = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
+        MoneyAccumulator orderTotalTax = new MoneyAccumulator(zeroMoney);
         
         for (FulfillmentGroup fg : order.getFulfillmentGroups()) {
-            Money fgTotalFgTax = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
-            Money fgTotalItemTax = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
-            Money fgTotalFeeTax = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
+            MoneyAccumulator fgTotalFgTax = new MoneyAccumulator(zeroMoney);
+            MoneyAccumulator fgTotalItemTax = new MoneyAccumulator(zeroMoney);
+            MoneyAccumulator fgTotalFeeTax = new MoneyAccumulator(zeroMoney);
             
             // Add in all FG specific taxes (such as shipping tax)
             if (fg.getTaxes() != null) {
                 for (TaxDetail tax : fg.getTaxes()) {
-                    fgTotalFgTax = fgTotalFgTax.add(tax.getAmount());
+                    fgTotalFgTax.add(tax.getAmount());
                 }
             }
             
             for (FulfillmentGroupItem item : fg.getFulfillmentGroupItems()) {
-                Money itemTotalTax = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
+                MoneyAccumulator itemTotalTax = new MoneyAccumulator(zeroMoney);
                 
                 // Add in all taxes for this item
                 if (item.getTaxes() != null) {
                     for (TaxDetail tax : item.getTaxes()) {
-                        itemTotalTax = itemTotalTax.add(tax.getAmount());
+                        itemTotalTax.add(tax.getAmount());
                     }
                 }
                 
-                item.setTotalTax(itemTotalTax);
-                fgTotalItemTax = fgTotalItemTax.add(itemTotalTax);
+                item.setTotalTax(itemTotalTax.toMoney());
+                fgTotalItemTax.add(itemTotalTax);
             }
             
             for (FulfillmentGroupFee fee : fg.getFulfillmentGroupFees()) {
-                Money feeTotalTax = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency());
+                MoneyAccumulator feeTotalTax = new MoneyAccumulator(zeroMoney);
                 
                 // Add in all taxes for this fee
                 if (fee.getTaxes() != null) {
                     for (TaxDetail tax : fee.getTaxes()) {
-                        feeTotalTax = feeTotalTax.add(tax.getAmount());
+                        feeTotalTax.add(tax.getAmount());
                     }
                 }
                 
-                fee.setTotalTax(feeTotalTax);
-                fgTotalFeeTax = fgTotalFeeTax.add(feeTotalTax);
+                fee.setTotalTax(feeTotalTax.toMoney());
+                fgTotalFeeTax.add(feeTotalTax);
             }
             
-            Money fgTotalTax = BroadleafCurrencyUtils.getMoney(BigDecimal.ZERO, order.getCurrency()).add(fgTotalFgTax).add(fgTotalItemTax).add(fgTotalFeeTax);
+            MoneyAccumulator fgTotalTax = new MoneyAccumulator(zeroMoney).add(fgTotalFgTax).add(fgTotalItemTax).add(fgTotalFeeTax);
             
             // Set the fulfillment group tax sums
-            fg.setTotalFulfillmentGroupTax(fgTotalFgTax);
-            fg.setTotalItemTax(fgTotalItemTax);
-            fg.setTotalFeeTax(fgTotalFeeTax);
-            fg.setTotalTax(fgTotalTax);
+            fg.setTotalFulfillmentGroupTax(fgTotalFgTax.toMoney());
+            fg.setTotalItemTax(fgTotalItemTax.toMoney());
+            fg.setTotalFeeTax(fgTotalFeeTax.toMoney());
+            fg.setTotalTax(fgTotalTax.toMoney());
             
-            orderTotalTax = orderTotalTax.add(fgTotalTax);
+            orderTotalTax.add(fgTotalTax);
         }
         
-        order.setTotalTax(orderTotalTax);
+        order.setTotalTax(orderTotalTax.toMoney());
     }
 }
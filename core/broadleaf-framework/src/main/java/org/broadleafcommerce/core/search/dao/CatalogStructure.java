@@ -31,6 +31,11 @@ import java.util.Set;
  * (2) All the immediate parent categories for a give category and
  * (3) All the child products for a given category
  * </p>
+ * The parent categories by category are also available as an immutable {@link CategoryHierarchy}, which has the
+ * ancestors of every category precomputed. It is built on first use and only rebuilt after
+ * {@link #invalidateCategoryHierarchy()} was called, which whoever changes the map has to do. When every category was
+ * loaded up front (see {@link SolrIndexDao#populateCategoryHierarchy(CatalogStructure)}), the pages of an index run add
+ * no categories and the hierarchy is built once per run.
  *
  * @author Jeff Fischer
  */
@@ -42,6 +47,9 @@ public class CatalogStructure implements Serializable {
     protected Map<Long, Set<Long>> parentCategoriesByCategory = new HashMap<Long, Set<Long>>();
     protected Map<Long, List<Long>> productsByCategory = new HashMap<Long, List<Long>>();
     protected Map<String, BigDecimal> displayOrdersByCategoryProduct = new HashMap<String, BigDecimal>();
+    protected long categoryHierarchyVersion = 0L;
+    protected boolean allCategoriesLoaded = false;
+    protected transient volatile CategoryHierarchy categoryHierarchy;
 
     public Map<Long, Set<Long>> getParentCategoriesByProduct() {
         return parentCategoriesByProduct;
@@ -57,6 +65,47 @@ public class CatalogStructure implements Serializable {
 
     public void setParentCategoriesByCategory(Map<Long, Set<Long>> parentCategoriesByCategory) {
         this.parentCategoriesByCategory = parentCategoriesByCategory;
+        invalidateCategoryHierarchy();
+    }
+
+    /**
+     * @return the hierarchy of {@link #getParentCategoriesByCategory()}, rebuilt when it was built before the last call
+     * to {@link #invalidateCategoryHierarchy()}
+     */
+    public CategoryHierarchy getCategoryHierarchy() {
+        CategoryHierarchy hierarchy = categoryHierarchy;
+        if (hierarchy == null || hierarchy.getVersion() != categoryHierarchyVersion) {
+            hierarchy = CategoryHierarchy.build(parentCategoriesByCategory, categoryHierarchyVersion);
+            categoryHierarchy = hierarchy;
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Has the hierarchy rebuilt on its next use. Must be called whenever {@link #getParentCategoriesByCategory()} was
+     * changed.
+     */
+    public void invalidateCategoryHierarchy() {
+        categoryHierarchyVersion++;
+    }
+
+    /**
+     * @return the number of times the parent categories by category were changed
+     */
+    public long getCategoryHierarchyVersion() {
+        return categoryHierarchyVersion;
+    }
+
+    /**
+     * @return whether {@link #getParentCategoriesByCategory()} holds every category of the catalog, in which case a
+     * category that is not in it has no parents and does not need to be read
+     */
+    public boolean isAllCategoriesLoaded() {
+        return allCategoriesLoaded;
+    }
+
+    public void setAllCategoriesLoaded(boolean allCategoriesLoaded) {
+        this.allCategoriesLoaded = allCategoriesLoaded;
     }
 
     public Map<String, BigDecimal> getDisplayOrdersByCategoryProduct() {
@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, compact form of {@link CatalogStructure#getParentCategoriesByCategory()}. The category ids are kept in a
+ * sorted array and both the parents and the ancestors of each category are kept in flat arrays indexed by offsets,
+ * so looking up every ancestor of a category is a binary search and an array copy rather than a walk through sets
+ * of boxed ids. The ancestors are computed once, when the hierarchy is built.
+ * </p>
+ * A parent that is not a key of the source map is a category without parents of its own. Circular references are
+ * followed only once.
+ *
+ * @see CatalogStructure#getCategoryHierarchy()
+ */
+public class CategoryHierarchy {
+
+    protected static final long[] EMPTY = new long[0];
+
+    protected final long version;
+    protected final long[] categoryIds;
+    protected final int[] parentOffsets;
+    protected final int[] parents;
+    protected final int[] ancestorOffsets;
+    protected final long[] ancestors;
+
+    protected CategoryHierarchy(long version, long[] categoryIds, int[] parentOffsets, int[] parents, int[] ancestorOffsets,
+            long[] ancestors) {
+        this.version = version;
+        this.categoryIds = categoryIds;
+        this.parentOffsets = parentOffsets;
+        this.parents = parents;
+        this.ancestorOffsets = ancestorOffsets;
+        this.ancestors = ancestors;
+    }
+
+    /**
+     * @param parentCategoriesByCategory the immediate parent categories of each category
+     */
+    public static CategoryHierarchy build(Map<Long, Set<Long>> parentCategoriesByCategory) {
+        return build(parentCategoriesByCategory, 0L);
+    }
+
+    /**
+     * @param parentCategoriesByCategory the immediate parent categories of each category
+     * @param version the version of the source map, see {@link CatalogStructure#getCategoryHierarchyVersion()}
+     */
+    public static CategoryHierarchy build(Map<Long, Set<Long>> parentCategoriesByCategory, long version) {
+        // every category and parent, sorted and distinct
+        long[] ids = new long[parentCategoriesByCategory.size() * 2];
+        int count = 0;
+        for (Map.Entry<Long, Set<Long>> entry : parentCategoriesByCategory.entrySet()) {
+            ids = ensureCapacity(ids, count + 1 + (entry.getValue() == null ? 0 : entry.getValue().size()));
+            ids[count++] = entry.getKey();
+            if (entry.getValue() != null) {
+                for (Long parent : entry.getValue()) {
+                    ids[count++] = parent;
+                }
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        long[] categoryIds = Arrays.copyOf(ids, distinct);
+
+        int[] parentOffsets = new int[distinct + 1];
+        for (Map.Entry<Long, Set<Long>> entry : parentCategoriesByCategory.entrySet()) {
+            if (entry.getValue() != null) {
+                parentOffsets[Arrays.binarySearch(categoryIds, entry.getKey()) + 1] = entry.getValue().size();
+            }
+        }
+        for (int i = 0; i < distinct; i++) {
+            parentOffsets[i + 1] += parentOffsets[i];
+        }
+        int[] parents = new int[parentOffsets[distinct]];
+        for (Map.Entry<Long, Set<Long>> entry : parentCategoriesByCategory.entrySet()) {
+            if (entry.getValue() != null) {
+                int pos = parentOffsets[Arrays.binarySearch(categoryIds, entry.getKey())];
+                for (Long parent : entry.getValue()) {
+                    parents[pos++] = Arrays.binarySearch(categoryIds, parent);
+                }
+            }
+        }
+
+        // the category itself followed by its ancestors, depth first
+        int[] ancestorOffsets = new int[distinct + 1];
+        long[] ancestors = new long[distinct * 4];
+        int[] visitedBy = new int[distinct];
+        int[] stack = new int[16];
+        int size = 0;
+        for (int i = 0; i < distinct; i++) {
+            ancestorOffsets[i] = size;
+            int top = 0;
+            stack[top++] = i;
+            visitedBy[i] = i + 1;
+            while (top > 0) {
+                int current = stack[--top];
+                ancestors = ensureCapacity(ancestors, size + 1);
+                ancestors[size++] = categoryIds[current];
+                for (int p = parentOffsets[current + 1] - 1; p >= parentOffsets[current]; p--) {
+                    int parent = parents[p];
+                    if (visitedBy[parent] != i + 1) {
+                        visitedBy[parent] = i + 1;
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[top++] = parent;
+                    }
+                }
+            }
+        }
+        ancestorOffsets[distinct] = size;
+
+        return new CategoryHierarchy(version, categoryIds, parentOffsets, parents, ancestorOffsets,
+                Arrays.copyOf(ancestors, size));
+    }
+
+    protected static long[] ensureCapacity(long[] array, int capacity) {
+        if (capacity <= array.length) {
+            return array;
+        }
+        return Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+    }
+
+    /**
+     * @return the immediate parents of the given category, empty if it has none or is unknown
+     */
+    public long[] getParents(Long categoryId) {
+        int index = indexOf(categoryId);
+        if (index < 0) {
+            return EMPTY;
+        }
+        long[] result = new long[parentOffsets[index + 1] - parentOffsets[index]];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = categoryIds[parents[parentOffsets[index] + i]];
+        }
+        return result;
+    }
+
+    /**
+     * @return the given category followed by all of its ancestors, each of them once
+     */
+    public long[] getSelfAndAncestors(Long categoryId) {
+        int index = indexOf(categoryId);
+        if (index < 0) {
+            return categoryId == null ? EMPTY : new long[] { categoryId };
+        }
+        return Arrays.copyOfRange(ancestors, ancestorOffsets[index], ancestorOffsets[index + 1]);
+    }
+
+    public boolean contains(Long categoryId) {
+        return indexOf(categoryId) >= 0;
+    }
+
+    protected int indexOf(Long categoryId) {
+        return categoryId == null ? -1 : Arrays.binarySearch(categoryIds, categoryId);
+    }
+
+    /**
+     * @return the number of categories, including the parents that had no entry of their own
+     */
+    public int size() {
+        return categoryIds.length;
+    }
+
+    /**
+     * @return the version of the map this was built from
+     */
+    public long getVersion() {
+        return version;
+    }
+}
@@ -36,4 +36,15 @@ public interface SolrIndexDao {
      */
     void populateProductCatalogStructure(List<Long> productIds, CatalogStructure catalogStructure);
 
+    /**
+     * Loads the parent categories of every category into the catalog structure at once, so that the pages that follow
+     * do not have to read categories and the {@link CatalogStructure#getCategoryHierarchy()} is built only once. Meant
+     * to be called at the start of an index run. Does nothing by default, in which case the categories are read with
+     * the products that reference them.
+     *
+     * @param catalogStructure lightweight container defining product and category hierarchies
+     */
+    default void populateCategoryHierarchy(CatalogStructure catalogStructure) {
+    }
+
 }
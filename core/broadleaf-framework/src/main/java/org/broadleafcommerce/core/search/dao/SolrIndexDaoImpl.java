@@ -102,9 +102,11 @@ public class SolrIndexDaoImpl implements SolrIndexDao {
                     BigDecimal displayOrder = (item.getDisplayOrder() == null) ? new BigDecimal("100.00000") : item.getDisplayOrder();
                     catalogStructure.getDisplayOrdersByCategoryProduct().put(item.getCategory() + "-" + item.getProduct(), displayOrder);
                 }
+                // categories missing from a fully loaded structure have no parents
                 for (Map.Entry<Long, Set<Long>> entry : parentCategoriesByProduct.entrySet()) {
                     for (Long categoryId : entry.getValue()) {
-                        if (!catalogStructure.getParentCategoriesByCategory().containsKey(categoryId)) {
+                        if (!catalogStructure.isAllCategoriesLoaded()
+                                && !catalogStructure.getParentCategoriesByCategory().containsKey(categoryId)) {
                             Set<Long> hierarchy = new HashSet<>();
                             parentCategoriesByCategory.put(categoryId, hierarchy);
                         }
@@ -113,14 +115,56 @@ public class SolrIndexDaoImpl implements SolrIndexDao {
                 count++;
                 pos = (count * batchSize) < products.length ? (count * batchSize) : products.length;
             }
-            readFullCategoryHierarchy(parentCategoriesByCategory, new HashSet<Long>());
             catalogStructure.getParentCategoriesByProduct().putAll(parentCategoriesByProduct);
+            if (!parentCategoriesByCategory.isEmpty()) {
+                readFullCategoryHierarchy(parentCategoriesByCategory, new HashSet<Long>());
+                catalogStructure.getParentCategoriesByCategory().putAll(parentCategoriesByCategory);
+                catalogStructure.invalidateCategoryHierarchy();
+            }
+        } finally {
+            context.setInternalIgnoreFilters(oldIgnoreFilters);
+        }
+    }
+
+    @Override
+    public void populateCategoryHierarchy(CatalogStructure catalogStructure) {
+        if (catalogStructure.isAllCategoriesLoaded()) {
+            return;
+        }
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        Boolean oldIgnoreFilters = context.getInternalIgnoreFilters();
+        context.setInternalIgnoreFilters(false);
+        try {
+            Map<Long, Set<Long>> parentCategoriesByCategory = new HashMap<>();
+            TypedQuery<ParentCategoryByCategory> query = em.createNamedQuery("BC_READ_ALL_PARENT_CATEGORY_IDS", ParentCategoryByCategory.class);
+            for (ParentCategoryByCategory item : query.getResultList()) {
+                //only the sandbox versions, as when reading the hierarchy level by level
+                Long child = getSandBoxCategoryId(item.getChild());
+                Set<Long> parents = parentCategoriesByCategory.get(child);
+                if (parents == null) {
+                    parents = new HashSet<>();
+                    parentCategoriesByCategory.put(child, parents);
+                }
+                if (item.getParent() != null) {
+                    parents.add(getSandBoxCategoryId(item.getParent()));
+                }
+                if (item.getDefaultParent() != null) {
+                    parents.add(getSandBoxCategoryId(item.getDefaultParent()));
+                }
+            }
             catalogStructure.getParentCategoriesByCategory().putAll(parentCategoriesByCategory);
+            catalogStructure.setAllCategoriesLoaded(true);
+            catalogStructure.invalidateCategoryHierarchy();
         } finally {
             context.setInternalIgnoreFilters(oldIgnoreFilters);
         }
     }
 
+    protected Long getSandBoxCategoryId(Long categoryId) {
+        Long sandBoxVal = sandBoxHelper.getSandBoxVersionId(CategoryImpl.class, categoryId);
+        return sandBoxVal == null ? categoryId : sandBoxVal;
+    }
+
     /**
      * Build up a map of category to parent categories
      *
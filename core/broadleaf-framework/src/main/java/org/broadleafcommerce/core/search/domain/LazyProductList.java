@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.domain;
+
+import org.broadleafcommerce.core.catalog.domain.Product;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only list of the products of a page of search results that only loads them, all at once, the first time the
+ * list is used. This is what {@link SearchResult#getProducts()} returns when the results are rendered from
+ * {@link ProductSearchTile}s, so that pages that never touch the products do not load them at all.
+ */
+public class LazyProductList extends AbstractList<Product> {
+
+    /**
+     * Loads the products with the given (indexed) ids, keyed by those ids in the same order
+     */
+    public interface Loader {
+
+        Map<Long, Product> load(List<Long> productIds);
+
+    }
+
+    protected final List<Long> productIds;
+    protected final Loader loader;
+    protected volatile List<Product> products;
+    protected Map<Long, Product> productsById;
+
+    public LazyProductList(List<Long> productIds, Loader loader) {
+        this.productIds = Collections.unmodifiableList(new ArrayList<>(productIds));
+        this.loader = loader;
+    }
+
+    @Override
+    public Product get(int index) {
+        return getProducts().get(index);
+    }
+
+    @Override
+    public int size() {
+        return getProducts().size();
+    }
+
+    /**
+     * @return the product with the given id, or null if it no longer exists
+     */
+    public Product getProduct(Long productId) {
+        getProducts();
+        return productsById.get(productId);
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+
+    public boolean isLoaded() {
+        return products != null;
+    }
+
+    protected List<Product> getProducts() {
+        List<Product> result = products;
+        if (result == null) {
+            synchronized (this) {
+                result = products;
+                if (result == null) {
+                    Map<Long, Product> loaded = loader.load(productIds);
+                    if (loaded == null) {
+                        loaded = Collections.emptyMap();
+                    }
+                    productsById = loaded;
+                    result = Collections.unmodifiableList(new ArrayList<>(loaded.values()));
+                    products = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.domain;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Product;
+
+import java.io.Serializable;
+
+/**
+ * Read-only projection of a product in a page of search results, built from the fields stored in the search index so
+ * that product listings can be rendered without loading the products from the database.
+ * </p>
+ * A value that was not stored in the index falls back to the {@link Product}, which is loaded together with the rest
+ * of the page the first time it is needed through {@link #getProduct()}.
+ */
+public class ProductSearchTile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final Long id;
+    protected final String name;
+    protected final String url;
+    protected final Money price;
+    protected final String primaryMediaUrl;
+    protected final transient LazyProductList products;
+
+    public ProductSearchTile(Long id, String name, String url, Money price, String primaryMediaUrl, LazyProductList products) {
+        this.id = id;
+        this.name = name;
+        this.url = url;
+        this.price = price;
+        this.primaryMediaUrl = primaryMediaUrl;
+        this.products = products;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        if (name == null) {
+            Product product = getProduct();
+            return product == null ? null : product.getName();
+        }
+        return name;
+    }
+
+    public String getUrl() {
+        if (url == null) {
+            Product product = getProduct();
+            return product == null ? null : product.getUrl();
+        }
+        return url;
+    }
+
+    public Money getPrice() {
+        if (price == null) {
+            Product product = getProduct();
+            return product == null ? null : product.getPrice();
+        }
+        return price;
+    }
+
+    public String getPrimaryMediaUrl() {
+        if (primaryMediaUrl == null) {
+            Product product = getProduct();
+            return product == null || product.getMedia().get("primary") == null ? null : product.getMedia().get("primary").getUrl();
+        }
+        return primaryMediaUrl;
+    }
+
+    /**
+     * @return whether the full product has been loaded already
+     */
+    public boolean isProductLoaded() {
+        return products != null && products.isLoaded();
+    }
+
+    /**
+     * @return the full product, loading it with the rest of the page if that has not happened yet
+     */
+    public Product getProduct() {
+        return products == null ? null : products.getProduct(id);
+    }
+}
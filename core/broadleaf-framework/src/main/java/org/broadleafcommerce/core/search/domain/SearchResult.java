@@ -30,6 +30,7 @@ import java.util.List;
 public class SearchResult {
     
     protected List<Product> products;
+    protected List<ProductSearchTile> productTiles;
     protected List<SearchFacetDTO> facets;
     
     protected Integer totalResults;
@@ -46,6 +47,18 @@ public class SearchResult {
         this.products = products;
     }
 
+    /**
+     * @return the products of this page built from the search index, or null when the results were not rendered
+     * from the index. When set, {@link #getProducts()} only loads the products once it is used.
+     */
+    public List<ProductSearchTile> getProductTiles() {
+        return productTiles;
+    }
+
+    public void setProductTiles(List<ProductSearchTile> productTiles) {
+        this.productTiles = productTiles;
+    }
+
     public List<SearchFacetDTO> getFacets() {
         return facets;
     }
@@ -79,7 +92,7 @@ public class SearchResult {
     }
     
     public Integer getStartResult() {
-        return (products == null || products.size() == 0) ? 0 : ((page - 1) * pageSize) + 1;
+        return getResultCount() == 0 ? 0 : ((page - 1) * pageSize) + 1;
     }
     
     public Integer getEndResult() {
@@ -87,7 +100,17 @@ public class SearchResult {
     }
     
     public Integer getTotalPages() {
-        return (products == null || products.size() == 0) ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+        return getResultCount() == 0 ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+    }
+
+    /**
+     * @return the number of results on this page, without loading the products when they are rendered from tiles
+     */
+    protected int getResultCount() {
+        if (productTiles != null) {
+            return productTiles.size();
+        }
+        return products == null ? 0 : products.size();
     }
 
     public QueryResponse getQueryResponse() {
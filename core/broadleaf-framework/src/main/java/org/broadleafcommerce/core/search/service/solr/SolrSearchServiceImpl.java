@@ -27,10 +27,12 @@ import org.apache.solr.client.solrj.SolrRequest.METHOD;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
+import org.broadleafcommerce.common.currency.util.BroadleafCurrencyUtils;
 import org.broadleafcommerce.common.exception.ServiceException;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.money.Money;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.dao.ProductDao;
 import org.broadleafcommerce.core.catalog.dao.SkuDao;
@@ -43,6 +45,8 @@ import org.broadleafcommerce.core.search.domain.CategorySearchFacet;
 import org.broadleafcommerce.core.search.domain.FieldEntity;
 import org.broadleafcommerce.core.search.domain.IndexField;
 import org.broadleafcommerce.core.search.domain.IndexFieldType;
+import org.broadleafcommerce.core.search.domain.LazyProductList;
+import org.broadleafcommerce.core.search.domain.ProductSearchTile;
 import org.broadleafcommerce.core.search.domain.SearchCriteria;
 import org.broadleafcommerce.core.search.domain.SearchFacet;
 import org.broadleafcommerce.core.search.domain.SearchFacetDTO;
@@ -61,9 +65,12 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -81,6 +88,12 @@ import javax.annotation.Resource;
 public class SolrSearchServiceImpl implements SearchService, DisposableBean {
     private static final Log LOG = LogFactory.getLog(SolrSearchServiceImpl.class);
 
+    /**
+     * The index field types a tile value is read from, most preferred first
+     */
+    protected static final List<FieldType> PRODUCT_TILE_FIELD_TYPES = Arrays.asList(FieldType.STRING, FieldType.PRICE,
+            FieldType.DOUBLE, FieldType.TEXT);
+
     @Qualifier("blCatalogSolrConfiguration")
     @Autowired(required = false)
     protected SolrConfiguration solrConfiguration;
@@ -115,6 +128,25 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
     @Value("${solr.boost.category.results:false}")
     protected boolean boostSearchResultsCategory;
 
+    /**
+     * Whether search results are built as {@link ProductSearchTile}s from stored index fields, loading the products
+     * from the database only when they are used
+     */
+    @Value("${solr.search.productTiles.enabled:false}")
+    protected boolean useProductTiles;
+
+    @Value("${solr.search.productTiles.nameField:name}")
+    protected String productTileNameField;
+
+    @Value("${solr.search.productTiles.urlField:url}")
+    protected String productTileUrlField;
+
+    @Value("${solr.search.productTiles.priceField:price}")
+    protected String productTilePriceField;
+
+    @Value("${solr.search.productTiles.primaryMediaField:primaryMedia}")
+    protected String productTilePrimaryMediaField;
+
     /**
      * @return whether or not to enable debug query info for the SolrQuery
      */
@@ -200,6 +232,12 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
                 .setRequestHandler(searchCriteria.getRequestHandler());
 
         solrQuery.setFields(shs.getIndexableIdFieldName());
+        Map<String, String> productTileFields = useProductTiles ? getProductTileFieldNames() : null;
+        if (productTileFields != null) {
+            for (String fieldName : productTileFields.values()) {
+                solrQuery.addField(fieldName);
+            }
+        }
         if (filterQueries != null) {
             solrQuery.setFilterQueries(filterQueries);
         }
@@ -273,8 +311,12 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         setPagingAttributes(result, numResults, searchCriteria);
 
         // Get the products
-        List<Product> products = getProducts(responseDocuments);
-        result.setProducts(products);
+        if (productTileFields != null) {
+            setProductTiles(result, responseDocuments, productTileFields);
+        } else {
+            List<Product> products = getProducts(responseDocuments);
+            result.setProducts(products);
+        }
 
         return result;
     }
@@ -540,32 +582,133 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
      * @return the actual Product instances as a result of the search
      */
     protected List<Product> getProducts(List<SolrDocument> responseDocuments) {
-        final List<Long> productIds = new ArrayList<>();
+        List<Long> productIds = getProductIds(responseDocuments);
+
+        List<Product> products = readProductsInIndexOrder(productIds);
+
+        extensionManager.getProxy().modifySearchResults(responseDocuments, products);
+
+        return products;
+    }
+
+    protected List<Long> getProductIds(List<SolrDocument> responseDocuments) {
+        List<Long> productIds = new ArrayList<>(responseDocuments.size());
         for (SolrDocument doc : responseDocuments) {
             productIds.add((Long) doc.getFieldValue(shs.getIndexableIdFieldName()));
         }
+        return productIds;
+    }
 
+    /**
+     * Reads the products with the given ids and sorts them by the order of the ids, so that the UI keeps the order
+     * of the search results
+     */
+    protected List<Product> readProductsInIndexOrder(List<Long> productIds) {
         List<Product> products = productDao.readProductsByIds(productIds);
 
         extensionManager.getProxy().batchFetchCatalogData(products);
 
-        // We have to sort the products list by the order of the productIds list to maintain sortability in the UI
         if (products != null) {
+            final Map<Long, Integer> positions = new HashMap<>(productIds.size() * 2);
+            for (int i = 0; i < productIds.size(); i++) {
+                positions.put(productIds.get(i), i);
+            }
             Collections.sort(products, new Comparator<Product>() {
                 @Override
                 public int compare(Product o1, Product o2) {
-                    Long o1id = shs.getIndexableId(o1);
-                    Long o2id = shs.getIndexableId(o2);
-                    return new Integer(productIds.indexOf(o1id)).compareTo(productIds.indexOf(o2id));
+                    return Integer.compare(getPosition(o1), getPosition(o2));
+                }
+
+                protected int getPosition(Product product) {
+                    Integer position = positions.get(shs.getIndexableId(product));
+                    return position == null ? -1 : position;
                 }
             });
         }
 
-        extensionManager.getProxy().modifySearchResults(responseDocuments, products);
-
         return products;
     }
 
+    /**
+     * Builds a {@link ProductSearchTile} from the stored fields of each result and sets a {@link LazyProductList} as
+     * the products of the result, so that the products are only read once something asks for them
+     */
+    protected void setProductTiles(SearchResult result, final List<SolrDocument> responseDocuments, Map<String, String> productTileFields) {
+        List<Long> productIds = getProductIds(responseDocuments);
+        LazyProductList products = new LazyProductList(productIds, new LazyProductList.Loader() {
+            @Override
+            public Map<Long, Product> load(List<Long> productIds) {
+                List<Product> loaded = readProductsInIndexOrder(productIds);
+                extensionManager.getProxy().modifySearchResults(responseDocuments, loaded);
+                Map<Long, Product> productsById = new LinkedHashMap<>();
+                if (loaded != null) {
+                    for (Product product : loaded) {
+                        productsById.put(shs.getIndexableId(product), product);
+                    }
+                }
+                return productsById;
+            }
+        });
+
+        List<ProductSearchTile> tiles = new ArrayList<>(responseDocuments.size());
+        for (int i = 0; i < responseDocuments.size(); i++) {
+            SolrDocument doc = responseDocuments.get(i);
+            tiles.add(new ProductSearchTile(productIds.get(i),
+                    getStoredString(doc, productTileFields.get(productTileNameField)),
+                    getStoredString(doc, productTileFields.get(productTileUrlField)),
+                    getStoredMoney(doc, productTileFields.get(productTilePriceField)),
+                    getStoredString(doc, productTileFields.get(productTilePrimaryMediaField)),
+                    products));
+        }
+        result.setProductTiles(tiles);
+        result.setProducts(products);
+    }
+
+    /**
+     * @return the Solr field names of the configured tile fields that are indexed, keyed by the configured name. The
+     * names depend on the locale of the request, so they are resolved for every search from the cached index fields.
+     */
+    protected Map<String, String> getProductTileFieldNames() {
+        Map<String, String> fieldNames = new HashMap<>();
+        for (String field : new String[] { productTileNameField, productTileUrlField, productTilePriceField, productTilePrimaryMediaField }) {
+            if (StringUtils.isBlank(field) || fieldNames.containsKey(field)) {
+                continue;
+            }
+            IndexFieldType preferred = null;
+            for (IndexFieldType indexFieldType : indexFieldDao.getIndexFieldTypesByAbbreviationOrPropertyName(field)) {
+                int rank = PRODUCT_TILE_FIELD_TYPES.indexOf(indexFieldType.getFieldType());
+                if (rank >= 0 && (preferred == null || rank < PRODUCT_TILE_FIELD_TYPES.indexOf(preferred.getFieldType()))) {
+                    preferred = indexFieldType;
+                }
+            }
+            if (preferred != null) {
+                fieldNames.put(field, shs.getPropertyNameForIndexField(preferred.getIndexField(), preferred.getFieldType()));
+            }
+        }
+        return fieldNames;
+    }
+
+    protected String getStoredString(SolrDocument doc, String fieldName) {
+        if (fieldName == null) {
+            return null;
+        }
+        Object value = doc.getFirstValue(fieldName);
+        return value == null ? null : value.toString();
+    }
+
+    protected Money getStoredMoney(SolrDocument doc, String fieldName) {
+        if (fieldName == null) {
+            return null;
+        }
+        Object value = doc.getFirstValue(fieldName);
+        if (value == null) {
+            return null;
+        }
+        BigDecimal amount = new BigDecimal(value.toString().trim());
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        return BroadleafCurrencyUtils.getMoney(amount, context == null ? null : context.getBroadleafCurrency());
+    }
+
     /**
      * Create the wrapper DTO around the SearchFacet
      * 
@@ -24,6 +24,7 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.broadleafcommerce.common.exception.ServiceException;
 import org.broadleafcommerce.core.catalog.domain.Indexable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -78,6 +79,21 @@ public interface SolrIndexOperation {
      */
     public List<? extends Indexable> readIndexables(int pageSize, Long lastId) throws ServiceException;
 
+    /**
+     * Reads the ids of the {@link Indexable} items {@link #readIndexables(int, Long)} would read for the same page, in
+     * the same order. Used to find the page boundaries when the index is built by a pipeline. By default this reads the
+     * items themselves; operations that can read the ids alone should override it.
+     * @throws ServiceException
+     */
+    default List<Long> readIndexableIds(int pageSize, Long lastId) throws ServiceException {
+        List<? extends Indexable> indexables = readIndexables(pageSize, lastId);
+        List<Long> ids = new ArrayList<>(indexables.size());
+        for (Indexable indexable : indexables) {
+            ids.add(indexable.getId());
+        }
+        return ids;
+    }
+
     /**
      * Executes after the read, this is where any filters or cleanup for reading can be taken care of
      */
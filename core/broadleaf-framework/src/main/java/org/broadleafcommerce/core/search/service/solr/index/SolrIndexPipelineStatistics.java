@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage counters for a pipelined reindex as executed by
+ * {@link SolrIndexServiceImpl#executePipelinedSolrIndexOperation(SolrIndexOperation)}. Every stage records how many
+ * pages and items it processed along with the time spent doing so, which allows the throughput of each stage to be
+ * compared to find the bottleneck (typically the database read or the Solr add).
+ *
+ * Stages running on several threads accumulate the busy time of all of their threads, so the reported throughput of
+ * a stage is per thread rather than wall clock.
+ */
+public class SolrIndexPipelineStatistics {
+
+    public enum Stage {
+        READ_IDS, LOAD, BUILD, ADD
+    }
+
+    protected final LongAdder[] pages = new LongAdder[Stage.values().length];
+    protected final LongAdder[] items = new LongAdder[Stage.values().length];
+    protected final LongAdder[] nanos = new LongAdder[Stage.values().length];
+
+    public SolrIndexPipelineStatistics() {
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new LongAdder();
+            items[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    public void record(Stage stage, int itemCount, long elapsedNanos) {
+        pages[stage.ordinal()].increment();
+        items[stage.ordinal()].add(itemCount);
+        nanos[stage.ordinal()].add(elapsedNanos);
+    }
+
+    public long getPageCount(Stage stage) {
+        return pages[stage.ordinal()].sum();
+    }
+
+    public long getItemCount(Stage stage) {
+        return items[stage.ordinal()].sum();
+    }
+
+    public long getElapsedMillis(Stage stage) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos[stage.ordinal()].sum());
+    }
+
+    /**
+     * @return the number of items processed per second of time spent in the given stage
+     */
+    public double getThroughput(Stage stage) {
+        long elapsed = nanos[stage.ordinal()].sum();
+        if (elapsed == 0L) {
+            return 0D;
+        }
+        return getItemCount(stage) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(String.format("%s: [pages: %s, items: %s, time: %sms, throughput: %.1f/s]", stage,
+                    getPageCount(stage), getItemCount(stage), getElapsedMillis(stage), getThroughput(stage)));
+        }
+        return sb.toString();
+    }
+}
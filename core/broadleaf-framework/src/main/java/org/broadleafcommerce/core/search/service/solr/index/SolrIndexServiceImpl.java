@@ -62,6 +62,7 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -79,6 +80,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Resource;
 
@@ -119,6 +125,15 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
     @Value(value = "${solr.catalog.useLegacySolrIndexer:true}")
     protected boolean useLegacySolrIndexer = true;
 
+    @Value("${solr.index.pipeline.enabled:false}")
+    protected boolean pipelineEnabled = false;
+
+    @Value("${solr.index.pipeline.parallelism:4}")
+    protected int pipelineParallelism = 4;
+
+    @Value("${solr.index.pipeline.maxPendingPages:8}")
+    protected int pipelineMaxPendingPages = 8;
+
     @Resource(name = "blProductDao")
     protected ProductDao productDao;
 
@@ -195,7 +210,11 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
 
     @Override
     public void buildIndex() throws IOException, ServiceException {
-        executeSolrIndexOperation(getReindexOperation());
+        if (pipelineEnabled) {
+            executePipelinedSolrIndexOperation(getReindexOperation());
+        } else {
+            executeSolrIndexOperation(getReindexOperation());
+        }
     }
 
     @Override
@@ -219,6 +238,11 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
                 return readAllActiveIndexables(pageSize, lastId);
             }
 
+            @Override
+            public List<Long> readIndexableIds(int pageSize, Long lastId) {
+                return readAllActiveIndexableIds(pageSize, lastId);
+            }
+
             @Override
             public Long countIndexables() {
                 return countIndexableItems();
@@ -257,6 +281,8 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
 
                     @Override
                     public void execute() throws ServiceException {
+                        // every page then finds its categories already loaded and the hierarchy is built once
+                        solrIndexDao.populateCategoryHierarchy(SolrIndexCachedOperation.getCache());
                         int page = 1;
                         Long lastId = null;
                         Long remainingNumItemsToIndex = numItemsToIndex;
@@ -283,6 +309,265 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
         }
     }
 
+    /**
+     * Executes the given operation as a pipeline rather than one page at a time:
+     * <ol>
+     *     <li>The calling thread reads the ids to index in keyset pages (see
+     *     {@link SolrIndexOperation#readIndexableIds(int, Long)}) in order to determine the page boundaries</li>
+     *     <li>Each page is then loaded and converted to documents by one of {@link #pipelineParallelism} workers, each of
+     *     which runs in its own transaction (and therefore has its own EntityManager), keeps its own
+     *     {@link CatalogStructure}, loaded with every category when it is created, and works on its own copy of the
+     *     caller's state (see {@link #copyState(Object[])})</li>
+     *     <li>Built pages are handed to a single thread that adds them to Solr asynchronously. No commit is issued
+     *     until every page has been added.</li>
+     * </ol>
+     * At most {@link #pipelineMaxPendingPages} pages can be read but not yet added to Solr, which bounds the memory
+     * used when the workers or Solr cannot keep up with the reader. The first failure in any stage stops the pipeline and
+     * is rethrown to the caller.
+     *
+     * Since pages are loaded by {@link SolrIndexOperation#readIndexables(int, Long)} and then built directly with
+     * {@link #buildDocuments(List)}, {@link SolrIndexOperation#buildPage(List)} is not invoked in this mode.
+     *
+     * @param operation the operation to execute, usually {@link #getReindexOperation()}
+     * @throws ServiceException if any of the stages fail
+     */
+    public void executePipelinedSolrIndexOperation(final SolrIndexOperation operation) throws ServiceException, IOException {
+        operation.obtainLock();
+
+        try {
+            int parallelism = Math.max(1, pipelineParallelism);
+            LOG.info(String.format("Executing pipelined Indexing operation with %s build threads", parallelism));
+            StopWatch s = new StopWatch();
+
+            final Object[] pack = saveState();
+            final SolrIndexPipelineStatistics statistics = new SolrIndexPipelineStatistics();
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final Semaphore pendingPages = new Semaphore(Math.max(1, pipelineMaxPendingPages));
+            final ExecutorService buildExecutor = Executors.newFixedThreadPool(parallelism,
+                    new CustomizableThreadFactory("solr-index-build-"));
+            final ExecutorService addExecutor = Executors.newSingleThreadExecutor(
+                    new CustomizableThreadFactory("solr-index-add-"));
+            try {
+                int page = 1;
+                Long lastId = null;
+                List<Long> ids;
+                do {
+                    long start = System.nanoTime();
+                    ids = readIndexableIds(operation, lastId);
+                    statistics.record(SolrIndexPipelineStatistics.Stage.READ_IDS, ids.size(), System.nanoTime() - start);
+                    if (ids.isEmpty()) {
+                        break;
+                    }
+
+                    try {
+                        pendingPages.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new ServiceException("Interrupted while waiting to index page " + page, e);
+                    }
+                    if (failure.get() != null) {
+                        pendingPages.release();
+                        break;
+                    }
+
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug(buildPageNumberMessage(page, null));
+                    }
+                    buildExecutor.execute(createPipelinedPageTask(operation, lastId, pack, statistics, failure,
+                            pendingPages, addExecutor));
+
+                    lastId = ids.get(ids.size() - 1);
+                    page++;
+                } while (ids.size() >= pageSize && failure.get() == null);
+
+                awaitTermination(buildExecutor);
+                awaitTermination(addExecutor);
+
+                Throwable t = failure.get();
+                if (t != null) {
+                    if (t instanceof ServiceException) {
+                        throw (ServiceException) t;
+                    }
+                    throw new ServiceException("Could not rebuild index", t);
+                }
+
+                commit(operation.getSolrCollectionForIndexing(), operation.getSolrServerForIndexing());
+            } finally {
+                buildExecutor.shutdownNow();
+                addExecutor.shutdownNow();
+                restoreState(pack);
+            }
+
+            LOG.info(String.format("Pipelined Indexing operation completed in %s - %s", s.toLapString(), statistics));
+        } finally {
+            operation.releaseLock();
+        }
+    }
+
+    /**
+     * Builds the task that loads, builds and hands off a single page for
+     * {@link #executePipelinedSolrIndexOperation(SolrIndexOperation)}. The task always releases its permit from
+     * <b>pendingPages</b>, either once the page was added to Solr or as soon as it fails.
+     */
+    protected Runnable createPipelinedPageTask(final SolrIndexOperation operation, final Long startAfterId,
+            final Object[] pack, final SolrIndexPipelineStatistics statistics, final AtomicReference<Throwable> failure,
+            final Semaphore pendingPages, final ExecutorService addExecutor) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                boolean handedOff = false;
+                try {
+                    if (failure.get() != null) {
+                        return;
+                    }
+                    restoreState(copyState(pack));
+                    if (SolrIndexCachedOperation.getCache() == null) {
+                        CatalogStructure cache = new CatalogStructure();
+                        solrIndexDao.populateCategoryHierarchy(cache);
+                        SolrIndexCachedOperation.setCache(cache);
+                    }
+
+                    final Collection<SolrInputDocument> documents = buildPipelinedPage(operation, startAfterId, statistics);
+                    if (CollectionUtils.isEmpty(documents) || operation.getSolrServerForIndexing() == null) {
+                        return;
+                    }
+
+                    addExecutor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            try {
+                                if (failure.get() == null) {
+                                    addPipelinedPage(operation, documents, statistics);
+                                }
+                            } catch (Throwable t) {
+                                failure.compareAndSet(null, t);
+                            } finally {
+                                pendingPages.release();
+                            }
+                        }
+                    });
+                    handedOff = true;
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    if (!handedOff) {
+                        pendingPages.release();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads and builds the documents for the page following <b>startAfterId</b> in a transaction of its own.
+     */
+    protected Collection<SolrInputDocument> buildPipelinedPage(SolrIndexOperation operation, Long startAfterId,
+            SolrIndexPipelineStatistics statistics) throws ServiceException {
+        TransactionStatus status = TransactionUtils.createTransaction("buildPipelinedPage",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            long start = System.nanoTime();
+            List<? extends Indexable> indexables;
+            try {
+                operation.beforeReadIndexables();
+                indexables = operation.readIndexables(pageSize, startAfterId);
+            } finally {
+                operation.afterReadIndexables();
+            }
+            statistics.record(SolrIndexPipelineStatistics.Stage.LOAD, indexables.size(), System.nanoTime() - start);
+
+            start = System.nanoTime();
+            Collection<SolrInputDocument> documents;
+            try {
+                operation.beforeBuildPage();
+                sandBoxHelper.ignoreCloneCache(true);
+                extensionManager.getProxy().startBatchEvent(indexables);
+                try {
+                    documents = buildDocuments(indexables);
+                } finally {
+                    extensionManager.getProxy().endBatchEvent(indexables);
+                }
+            } finally {
+                sandBoxHelper.ignoreCloneCache(false);
+                operation.afterBuildPage();
+            }
+            statistics.record(SolrIndexPipelineStatistics.Stage.BUILD, documents.size(), System.nanoTime() - start);
+
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return documents;
+        } catch (ServiceException | RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a built page to the index of the given operation without committing
+     */
+    protected void addPipelinedPage(SolrIndexOperation operation, Collection<SolrInputDocument> documents,
+            SolrIndexPipelineStatistics statistics) throws ServiceException {
+        long start = System.nanoTime();
+        try {
+            operation.getSolrServerForIndexing().add(operation.getSolrCollectionForIndexing(), documents);
+        } catch (SolrServerException | IOException e) {
+            throw new ServiceException("Could not rebuild index", e);
+        }
+        statistics.record(SolrIndexPipelineStatistics.Stage.ADD, documents.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * Reads the ids of the next page to index through {@link SolrIndexOperation#readIndexableIds(int, Long)} in a
+     * read-only transaction
+     */
+    protected List<Long> readIndexableIds(SolrIndexOperation operation, Long lastId) throws ServiceException {
+        TransactionStatus status = TransactionUtils.createTransaction("readIdsToIndex",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, true);
+        try {
+            List<Long> ids;
+            try {
+                operation.beforeReadIndexables();
+                ids = operation.readIndexableIds(pageSize, lastId);
+            } finally {
+                operation.afterReadIndexables();
+            }
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return ids == null ? new ArrayList<Long>() : ids;
+        } catch (ServiceException | RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the state saved by {@link #saveState()} for a pipeline worker, so that the workers do not share the
+     * request context and the pricing consideration map of the calling thread
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    protected Object[] copyState(Object[] pack) {
+        Object[] copy = pack.clone();
+        if (pack[0] != null) {
+            copy[0] = ((BroadleafRequestContext) pack[0]).createLightWeightClone();
+        }
+        if (pack[1] != null) {
+            copy[1] = new HashMap((HashMap) pack[1]);
+        }
+        return copy;
+    }
+
+    protected void awaitTermination(ExecutorService executor) throws ServiceException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.debug("Waiting for Solr index pipeline to drain");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while waiting for the Solr index pipeline to complete", e);
+        }
+    }
+
     protected long getTotalPageCount(Long numItemsToIndex) {
         long numPagesToIndex = numItemsToIndex / pageSize;
         boolean hasRemainingItemsToIndex = numItemsToIndex % pageSize != 0;
@@ -291,7 +576,8 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
     }
 
     protected String buildPageNumberMessage(int page, Long totalPages) {
-        String pageNumberMessage = String.format("Building page number %s of %s", page, totalPages);
+        String pageNumberMessage = totalPages == null ? String.format("Building page number %s", page)
+                : String.format("Building page number %s of %s", page, totalPages);
 
         Catalog currentCatalog = BroadleafRequestContext.getBroadleafRequestContext().getCurrentCatalog();
         if (currentCatalog != null) {
@@ -414,37 +700,7 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
         try {
             sandBoxHelper.ignoreCloneCache(true);
             extensionManager.getProxy().startBatchEvent(indexables);
-            Collection<SolrInputDocument> documents = new ArrayList<>();
-            List<Locale> locales = getAllLocales();
-
-            List<Long> productIds = BLCCollectionUtils.collectList(indexables, new TypedTransformer<Long>() {
-                @Override
-                public Long transform(Object input) {
-                    return shs.getCurrentProductId((Indexable) input);
-                }
-            });
-
-            solrIndexDao.populateProductCatalogStructure(productIds, SolrIndexCachedOperation.getCache());
-
-            List<IndexField> fields = null;
-            FieldEntity currentFieldType = null;
-            for (Indexable indexable : indexables) {
-                if (fields == null || ObjectUtils.notEqual(currentFieldType, indexable.getFieldEntityType())) {
-                    fields = indexFieldDao.readFieldsByEntityType(indexable.getFieldEntityType());
-                }
-
-                SolrInputDocument doc = buildDocument(indexable, fields, locales);
-                //If someone overrides the buildDocument method and determines that they don't want a product 
-                //indexed, then they can return null. If the document is null it does not get added to 
-                //to the index.
-                if (doc != null) {
-                    documents.add(doc);
-                }
-            }
-
-            extensionManager.getProxy().modifyBuiltDocuments(documents, indexables, fields, locales);
-
-            logDocuments(documents);
+            Collection<SolrInputDocument> documents = buildDocuments(indexables);
 
             if (!CollectionUtils.isEmpty(documents) && solrServer != null) {
                 solrServer.add(collection, documents);
@@ -472,10 +728,58 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
         }
     }
 
+    /**
+     * Builds the documents for the given page of indexables, without adding them to Solr. The caller is responsible for
+     * the surrounding transaction and batch events.
+     */
+    protected Collection<SolrInputDocument> buildDocuments(List<? extends Indexable> indexables) {
+        Collection<SolrInputDocument> documents = new ArrayList<>();
+        List<Locale> locales = getAllLocales();
+
+        List<Long> productIds = BLCCollectionUtils.collectList(indexables, new TypedTransformer<Long>() {
+            @Override
+            public Long transform(Object input) {
+                return shs.getCurrentProductId((Indexable) input);
+            }
+        });
+
+        solrIndexDao.populateProductCatalogStructure(productIds, SolrIndexCachedOperation.getCache());
+
+        List<IndexField> fields = null;
+        FieldEntity currentFieldType = null;
+        for (Indexable indexable : indexables) {
+            if (fields == null || ObjectUtils.notEqual(currentFieldType, indexable.getFieldEntityType())) {
+                fields = indexFieldDao.readFieldsByEntityType(indexable.getFieldEntityType());
+            }
+
+            SolrInputDocument doc = buildDocument(indexable, fields, locales);
+            //If someone overrides the buildDocument method and determines that they don't want a product 
+            //indexed, then they can return null. If the document is null it does not get added to 
+            //to the index.
+            if (doc != null) {
+                documents.add(doc);
+            }
+        }
+
+        extensionManager.getProxy().modifyBuiltDocuments(documents, indexables, fields, locales);
+
+        logDocuments(documents);
+
+        return documents;
+    }
+
     protected List<? extends Indexable> readAllActiveIndexables(int pageSize, Long lastId) {
         return productDao.readAllActiveProducts(pageSize, lastId);
     }
 
+    /**
+     * The ids of the items read by {@link #readAllActiveIndexables(int, Long)}, in the same order. Must be overridden
+     * along with it.
+     */
+    protected List<Long> readAllActiveIndexableIds(int pageSize, Long lastId) {
+        return productDao.readAllActiveProductIds(lastId, pageSize);
+    }
+
     @Override
     public List<Locale> getAllLocales() {
         List<Locale> allLocales = localeService.findAllLocales();
@@ -622,25 +926,24 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
     }
 
     /**
-     * Walk the category hierarchy upwards, adding a field for each level to the solr document
+     * Walk the category hierarchy upwards, adding a field for each level to the solr document. The ancestors are
+     * read from the precomputed {@link CatalogStructure#getCategoryHierarchy()}.
      *
      * @param document the solr document for the product
      * @param cache the catalog structure cache
      * @param categoryId the current category id
      */
     protected void buildFullCategoryHierarchy(SolrInputDocument document, CatalogStructure cache, Long categoryId, Set<Long> indexedParents) {
-        Long catIdToAdd = shs.getCategoryId(categoryId); 
-
-        Collection<Object> existingValues = document.getFieldValues(shs.getCategoryFieldName());
-        if (existingValues == null || !existingValues.contains(catIdToAdd)) {
-            document.addField(shs.getCategoryFieldName(), catIdToAdd);
-        }
+        String categoryFieldName = shs.getCategoryFieldName();
+        for (long id : cache.getCategoryHierarchy().getSelfAndAncestors(categoryId)) {
+            Long catIdToAdd = shs.getCategoryId(id);
 
-        Set<Long> parents = cache.getParentCategoriesByCategory().get(categoryId);
-        for (Long parent : parents) {
-            if (!indexedParents.contains(parent)) {
-                indexedParents.add(parent);
-                buildFullCategoryHierarchy(document, cache, parent, indexedParents);
+            Collection<Object> existingValues = document.getFieldValues(categoryFieldName);
+            if (existingValues == null || !existingValues.contains(catIdToAdd)) {
+                document.addField(categoryFieldName, catIdToAdd);
+            }
+            if (id != categoryId) {
+                indexedParents.add(id);
             }
         }
     }
@@ -25,6 +25,7 @@ import org.broadleafcommerce.common.exception.ServiceException;
 import org.broadleafcommerce.common.util.GenericOperation;
 import org.broadleafcommerce.common.util.GenericOperationUtil;
 import org.broadleafcommerce.core.search.service.solr.SolrConfiguration;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.util.Assert;
 
 import java.io.IOException;
@@ -40,6 +41,9 @@ public abstract class AbstractSolrIndexUpdateCommandHandlerImpl implements SolrI
     private static final Log LOG = LogFactory.getLog(AbstractSolrIndexUpdateCommandHandlerImpl.class);
     
     private final String commandGroup;
+
+    @Value("${solr.index.incremental.commitWithinMillis:-1}")
+    protected int commitWithinMillis = -1;
     
     public AbstractSolrIndexUpdateCommandHandlerImpl(String commandGroup) {
         Assert.notNull(commandGroup, "Command group cannot be null.");
@@ -67,6 +71,8 @@ public abstract class AbstractSolrIndexUpdateCommandHandlerImpl implements SolrI
      * This will apply updates in the specified collection, and will commit, when finished, if no errors occur. 
      * Deletes, if available, will be applied first.  Then, updates.  This should be considered an autonomous method.
      * Do not use this to make incremental updates within the scope of a larger update process because this will apply commits, by default.
+     * When {@link #getCommitWithinMillis()} is positive, the deletes and updates are sent with that commitWithin instead, leaving 
+     * it to Solr to commit them along with any other change made in that time.
      * 
      * @param command
      * @param collectionName
@@ -77,20 +83,31 @@ public abstract class AbstractSolrIndexUpdateCommandHandlerImpl implements SolrI
         Assert.notNull(collectionName, "The collection name cannot be null.");
         
         boolean changeMade = false;
+        int commitWithin = getCommitWithinMillis();
         try {
             
             if (command.getDeleteQueries() != null && ! command.getDeleteQueries().isEmpty()) {
-                deleteByQueries(collectionName, command.getDeleteQueries());
+                if (commitWithin > 0) {
+                    for (String query : command.getDeleteQueries()) {
+                        deleteByQuery(collectionName, query, commitWithin);
+                    }
+                } else {
+                    deleteByQueries(collectionName, command.getDeleteQueries());
+                }
                 changeMade = true;
             }
             
             if (command.getSolrInputDocuments() != null && ! command.getSolrInputDocuments().isEmpty()) {
-                addDocuments(collectionName, command.getSolrInputDocuments());
+                if (commitWithin > 0) {
+                    addDocuments(collectionName, command.getSolrInputDocuments(), commitWithin);
+                } else {
+                    addDocuments(collectionName, command.getSolrInputDocuments());
+                }
                 changeMade = true;
             }
             
             try {
-                if (changeMade) {
+                if (changeMade && commitWithin <= 0) {
                     commit(collectionName, true, true, false);
                 }
             } catch (Exception e) {
@@ -201,6 +218,26 @@ public abstract class AbstractSolrIndexUpdateCommandHandlerImpl implements SolrI
         });
     }
     
+    /**
+     * Adds the documents to the specified collection, to be committed by Solr within the given time.
+     * 
+     * @param collection
+     * @param docs
+     * @param commitWithinMillis
+     * @throws Exception
+     */
+    protected void addDocuments(final String collection, final List<SolrInputDocument> docs, final int commitWithinMillis) throws Exception {
+        GenericOperationUtil.executeRetryableOperation(new GenericOperation<Void>() {
+            @Override
+            public Void execute() throws Exception {
+                if (docs != null && !docs.isEmpty()) {
+                    getSolrConfiguration().getReindexServer().add(collection, docs, commitWithinMillis);
+                }
+                return null;
+            }
+        });
+    }
+    
     /**
      * Deletes items for the provided query.  This does not issue a commit.
      * 
@@ -221,6 +258,26 @@ public abstract class AbstractSolrIndexUpdateCommandHandlerImpl implements SolrI
         });
     }
     
+    /**
+     * Deletes items for the provided query, to be committed by Solr within the given time.
+     * 
+     * @param collection
+     * @param query
+     * @param commitWithinMillis
+     * @throws Exception
+     */
+    protected void deleteByQuery(final String collection, final String query, final int commitWithinMillis) throws Exception {
+        GenericOperationUtil.executeRetryableOperation(new GenericOperation<Void>() {
+            @Override
+            public Void execute() throws Exception {
+                if (query != null) {
+                    getSolrConfiguration().getReindexServer().deleteByQuery(collection, query, commitWithinMillis);
+                }
+                return null;
+            }
+        });
+    }
+    
     /**
      * Deletes items for the provided queries.  This does not issue a commit.
      * 
@@ -257,6 +314,14 @@ public abstract class AbstractSolrIndexUpdateCommandHandlerImpl implements SolrI
         });
     }
     
+    /**
+     * @return the commitWithin, in milliseconds, of incremental updates, or a value that is not positive to commit each
+     * incremental update explicitly
+     */
+    protected int getCommitWithinMillis() {
+        return commitWithinMillis;
+    }
+    
     @Override
     public String getForegroundCollectionName() {
         return getSolrConfiguration().getPrimaryName();
@@ -202,18 +202,16 @@ public class CatalogDocumentBuilderImpl implements CatalogDocumentBuilder {
     }
     
     protected void buildFullCategoryHierarchy(SolrInputDocument document, CatalogStructure cache, Long categoryId, Set<Long> indexedParents) {
-        Long catIdToAdd = shs.getCategoryId(categoryId); 
+        String categoryFieldName = shs.getCategoryFieldName();
+        for (long id : cache.getCategoryHierarchy().getSelfAndAncestors(categoryId)) {
+            Long catIdToAdd = shs.getCategoryId(id);
 
-        Collection<Object> existingValues = document.getFieldValues(shs.getCategoryFieldName());
-        if (existingValues == null || !existingValues.contains(catIdToAdd)) {
-            document.addField(shs.getCategoryFieldName(), catIdToAdd);
-        }
-
-        Set<Long> parents = cache.getParentCategoriesByCategory().get(categoryId);
-        for (Long parent : parents) {
-            if (!indexedParents.contains(parent)) {
-                indexedParents.add(parent);
-                buildFullCategoryHierarchy(document, cache, parent, indexedParents);
+            Collection<Object> existingValues = document.getFieldValues(categoryFieldName);
+            if (existingValues == null || !existingValues.contains(catIdToAdd)) {
+                document.addField(categoryFieldName, catIdToAdd);
+            }
+            if (id != categoryId) {
+                indexedParents.add(id);
             }
         }
     }
@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2019 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.indexer;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.springframework.util.Assert;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local {@link BlockingQueue} of {@link SolrUpdateCommand}s that coalesces consecutive {@link IncrementalUpdateCommand}s
+ * into batches, so that a burst of updates (e.g. an admin editing the same product several times, or many products
+ * at once) is sent to Solr as a single add with a single commit.
+ * </p>
+ * The documents of a batch are partitioned by their id: a later version of a document replaces the earlier one in
+ * place. Delete queries are applied before the documents of their batch, so an incremental update with delete
+ * queries only joins a batch that has no documents yet, and starts a new batch otherwise. Any other command is kept
+ * as is and ends the batch before it. The first batch becomes available {@link #getCoalesceWindowMillis()} after
+ * its first update was added, or as soon as it holds {@link #getMaxBatchSize()} documents.
+ *
+ * @see LocalSolrIndexQueueProvider
+ */
+public class CoalescingSolrUpdateCommandQueue extends AbstractQueue<SolrUpdateCommand> implements BlockingQueue<SolrUpdateCommand> {
+
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected final Condition notEmpty = lock.newCondition();
+    protected final Condition notFull = lock.newCondition();
+    protected final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    protected final int capacity;
+    protected final long coalesceWindowMillis;
+    protected final int maxBatchSize;
+    protected final String idFieldName;
+
+    /**
+     * @param capacity the maximum number of commands and batches in the queue
+     * @param coalesceWindowMillis how long updates are held to be coalesced with the following ones
+     * @param maxBatchSize the maximum number of documents in a batch
+     * @param idFieldName the name of the unique key field of the documents
+     */
+    public CoalescingSolrUpdateCommandQueue(int capacity, long coalesceWindowMillis, int maxBatchSize, String idFieldName) {
+        Assert.isTrue(capacity > 0, "The capacity must be positive.");
+        Assert.isTrue(maxBatchSize > 0, "The maximum batch size must be positive.");
+        Assert.hasText(idFieldName, "The id field name must not be empty.");
+        this.capacity = capacity;
+        this.coalesceWindowMillis = Math.max(0L, coalesceWindowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.idFieldName = idFieldName;
+    }
+
+    @Override
+    public boolean offer(SolrUpdateCommand command) {
+        Assert.notNull(command, "The command cannot be null.");
+        lock.lock();
+        try {
+            return enqueue(command);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(SolrUpdateCommand command, long timeout, TimeUnit unit) throws InterruptedException {
+        Assert.notNull(command, "The command cannot be null.");
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!enqueue(command)) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(SolrUpdateCommand command) throws InterruptedException {
+        Assert.notNull(command, "The command cannot be null.");
+        lock.lockInterruptibly();
+        try {
+            while (!enqueue(command)) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Merges the command into the last batch when possible, or adds it at the end of the queue if there is room.
+     * Must be called while holding the lock.
+     */
+    protected boolean enqueue(SolrUpdateCommand command) {
+        Entry last = entries.peekLast();
+        if (command instanceof IncrementalUpdateCommand && last != null && last.canMerge((IncrementalUpdateCommand) command)) {
+            last.merge((IncrementalUpdateCommand) command);
+            if (last.isFull()) {
+                notEmpty.signal();
+            }
+            return true;
+        }
+        if (entries.size() >= capacity) {
+            return false;
+        }
+        Entry entry = new Entry(command, System.currentTimeMillis());
+        if (command instanceof IncrementalUpdateCommand) {
+            entry.merge((IncrementalUpdateCommand) command);
+        }
+        entries.addLast(entry);
+        notEmpty.signal();
+        return true;
+    }
+
+    @Override
+    public SolrUpdateCommand poll() {
+        lock.lock();
+        try {
+            Entry head = entries.peekFirst();
+            if (head != null && head.getRemainingWaitMillis(System.currentTimeMillis()) <= 0L) {
+                return dequeue();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SolrUpdateCommand poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                Entry head = entries.peekFirst();
+                long waitNanos = nanos;
+                if (head != null) {
+                    long remaining = head.getRemainingWaitMillis(System.currentTimeMillis());
+                    if (remaining <= 0L) {
+                        return dequeue();
+                    }
+                    waitNanos = Math.min(nanos, TimeUnit.MILLISECONDS.toNanos(remaining));
+                }
+                if (nanos <= 0L) {
+                    return null;
+                }
+                long left = notEmpty.awaitNanos(waitNanos);
+                nanos -= waitNanos - Math.max(0L, left);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SolrUpdateCommand take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                Entry head = entries.peekFirst();
+                if (head == null) {
+                    notEmpty.await();
+                } else {
+                    long remaining = head.getRemainingWaitMillis(System.currentTimeMillis());
+                    if (remaining <= 0L) {
+                        return dequeue();
+                    }
+                    notEmpty.await(remaining, TimeUnit.MILLISECONDS);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock
+     */
+    protected SolrUpdateCommand dequeue() {
+        Entry head = entries.pollFirst();
+        notFull.signal();
+        if (!entries.isEmpty()) {
+            notEmpty.signal();
+        }
+        return head.toCommand();
+    }
+
+    @Override
+    public SolrUpdateCommand peek() {
+        lock.lock();
+        try {
+            Entry head = entries.peekFirst();
+            return head == null ? null : head.toCommand();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drains the commands and batches regardless of the coalescing window
+     */
+    @Override
+    public int drainTo(Collection<? super SolrUpdateCommand> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super SolrUpdateCommand> c, int maxElements) {
+        Assert.isTrue(c != this, "Cannot drain a queue to itself.");
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !entries.isEmpty()) {
+                c.add(entries.pollFirst().toCommand());
+                drained++;
+            }
+            if (drained > 0) {
+                notFull.signalAll();
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the queued commands, with the batches as they currently are
+     */
+    @Override
+    public Iterator<SolrUpdateCommand> iterator() {
+        lock.lock();
+        try {
+            List<SolrUpdateCommand> commands = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                commands.add(entry.toCommand());
+            }
+            return Collections.unmodifiableList(commands).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Membership of the commands that are kept as is, batches are never equal to the updates they were built from
+     */
+    @Override
+    public boolean contains(Object o) {
+        lock.lock();
+        try {
+            for (Entry entry : entries) {
+                if (entry.command != null && !(entry.command instanceof IncrementalUpdateCommand) && entry.command.equals(o)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCoalesceWindowMillis() {
+        return coalesceWindowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * A command kept as is, or a batch of incremental updates
+     */
+    protected class Entry {
+
+        protected final SolrUpdateCommand command;
+        protected final long createdAt;
+        protected final List<String> deleteQueries = new ArrayList<>();
+        protected final Map<Object, SolrInputDocument> documents = new LinkedHashMap<>();
+        protected final List<SolrInputDocument> documentsWithoutId = new ArrayList<>();
+
+        public Entry(SolrUpdateCommand command, long createdAt) {
+            this.command = command instanceof IncrementalUpdateCommand ? null : command;
+            this.createdAt = createdAt;
+        }
+
+        public boolean isBatch() {
+            return command == null;
+        }
+
+        public int getDocumentCount() {
+            return documents.size() + documentsWithoutId.size();
+        }
+
+        public boolean isFull() {
+            return getDocumentCount() >= maxBatchSize;
+        }
+
+        public boolean canMerge(IncrementalUpdateCommand update) {
+            if (!isBatch() || isFull()) {
+                return false;
+            }
+            boolean hasDeletes = update.getDeleteQueries() != null && !update.getDeleteQueries().isEmpty();
+            return !hasDeletes || getDocumentCount() == 0;
+        }
+
+        public void merge(IncrementalUpdateCommand update) {
+            if (update.getDeleteQueries() != null) {
+                deleteQueries.addAll(update.getDeleteQueries());
+            }
+            if (update.getSolrInputDocuments() != null) {
+                for (SolrInputDocument document : update.getSolrInputDocuments()) {
+                    Object id = document.getFieldValue(idFieldName);
+                    if (id == null) {
+                        documentsWithoutId.add(document);
+                    } else {
+                        // a document that is replaced keeps its position, which does not matter within an add
+                        documents.put(id, document);
+                    }
+                }
+            }
+        }
+
+        public long getRemainingWaitMillis(long now) {
+            if (!isBatch() || isFull()) {
+                return 0L;
+            }
+            return createdAt + coalesceWindowMillis - now;
+        }
+
+        public SolrUpdateCommand toCommand() {
+            if (!isBatch()) {
+                return command;
+            }
+            List<SolrInputDocument> docs = new ArrayList<>(getDocumentCount());
+            docs.addAll(documents.values());
+            docs.addAll(documentsWithoutId);
+            return new IncrementalUpdateCommand(docs, new ArrayList<>(deleteQueries));
+        }
+    }
+}
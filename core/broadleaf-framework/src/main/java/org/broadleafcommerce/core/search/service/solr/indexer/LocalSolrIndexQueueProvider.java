@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2019 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.indexer;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link SolrIndexQueueProvider} for a single node, providing {@link CoalescingSolrUpdateCommandQueue}s and local locks.
+ * Incremental updates issued within {@link #getCoalesceWindowMillis()} of each other are sent to Solr as one batch with
+ * a single commit. The window is read from "solr.index.queue.coalesceWindowMillis". No concrete
+ * {@link AbstractSolrIndexUpdateServiceImpl} ships with the framework, so the provider is not registered by default;
+ * declare it and pass it to the update service that should use it, e.g.:
+ * 
+ * <pre>
+ * &lt;bean id="blSolrIndexQueueProvider" class="org.broadleafcommerce.core.search.service.solr.indexer.LocalSolrIndexQueueProvider"/&gt;
+ * </pre>
+ * 
+ * @see SolrIndexQueueProvider
+ */
+public class LocalSolrIndexQueueProvider implements SolrIndexQueueProvider {
+
+    protected final ConcurrentMap<String, BlockingQueue<SolrUpdateCommand>> queues = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<String, Lock> locks = new ConcurrentHashMap<>();
+
+    protected int capacity = 10000;
+    @Value("${solr.index.queue.coalesceWindowMillis:1000}")
+    protected long coalesceWindowMillis = 1000L;
+    protected int maxBatchSize = 500;
+    protected String idFieldName = "id";
+
+    @Override
+    public BlockingQueue<? super SolrUpdateCommand> createOrRetrieveCommandQueue(String queueName) {
+        BlockingQueue<SolrUpdateCommand> queue = queues.get(queueName);
+        if (queue == null) {
+            BlockingQueue<SolrUpdateCommand> created = createQueue(queueName);
+            queue = queues.putIfAbsent(queueName, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+        return queue;
+    }
+
+    protected BlockingQueue<SolrUpdateCommand> createQueue(String queueName) {
+        return new CoalescingSolrUpdateCommandQueue(capacity, coalesceWindowMillis, maxBatchSize, idFieldName);
+    }
+
+    @Override
+    public Lock createOrRetrieveCommandLock(String lockName) {
+        Lock lock = locks.get(lockName);
+        if (lock == null) {
+            Lock created = new ReentrantLock();
+            lock = locks.putIfAbsent(lockName, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    @Override
+    public boolean isDistributed() {
+        return false;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param capacity the maximum number of commands and batches waiting in each queue
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getCoalesceWindowMillis() {
+        return coalesceWindowMillis;
+    }
+
+    /**
+     * @param coalesceWindowMillis how long incremental updates are held to be batched with the following ones, 0 to
+     * only batch the updates that are issued while the previous command is being executed
+     */
+    public void setCoalesceWindowMillis(long coalesceWindowMillis) {
+        this.coalesceWindowMillis = coalesceWindowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public String getIdFieldName() {
+        return idFieldName;
+    }
+
+    /**
+     * @param idFieldName the unique key field of the documents, by which the updates of a batch are coalesced
+     */
+    public void setIdFieldName(String idFieldName) {
+        this.idFieldName = idFieldName;
+    }
+}
@@ -50,8 +50,8 @@ class VerifyCustomerMaxOfferUsesActivitySpec extends BaseCheckoutActivitySpec {
 
     def "Test that exception is thrown when one customer has used an offer more times than is allowed"() {
         setup:
-        mockOfferAuditService.countUsesByCustomer(_,_,_) >> 3
-        mockOfferAuditService.countOfferCodeUses(_,_) >> 1
+        mockOfferAuditService.countAuditedUsesByCustomer(_,_,_) >> 3
+        mockOfferAuditService.countAuditedOfferCodeUses(_,_) >> 1
         activity = new VerifyCustomerMaxOfferUsesActivity().with {
             offerService = mockOfferService
             offerAuditService = mockOfferAuditService
@@ -67,8 +67,8 @@ class VerifyCustomerMaxOfferUsesActivitySpec extends BaseCheckoutActivitySpec {
 
     def "Test that exception is thrown when an offer code has been used the maximum number of times"() {
         setup:
-        mockOfferAuditService.countUsesByCustomer(_,_,_) >> 1
-        mockOfferAuditService.countOfferCodeUses(_,_) >> 3
+        mockOfferAuditService.countAuditedUsesByCustomer(_,_,_) >> 1
+        mockOfferAuditService.countAuditedOfferCodeUses(_,_) >> 3
         activity = new VerifyCustomerMaxOfferUsesActivity().with {
             offerService = mockOfferService
             offerAuditService = mockOfferAuditService
@@ -84,8 +84,8 @@ class VerifyCustomerMaxOfferUsesActivitySpec extends BaseCheckoutActivitySpec {
 
     def "Test that no exception is thrown on valid state"() {
         setup:
-        mockOfferAuditService.countUsesByCustomer(_,_,_) >> 1
-        mockOfferAuditService.countOfferCodeUses(_,_) >> 1
+        mockOfferAuditService.countAuditedUsesByCustomer(_,_,_) >> 1
+        mockOfferAuditService.countAuditedOfferCodeUses(_,_) >> 1
         activity = new VerifyCustomerMaxOfferUsesActivity().with {
             offerService = mockOfferService
             offerAuditService = mockOfferAuditService
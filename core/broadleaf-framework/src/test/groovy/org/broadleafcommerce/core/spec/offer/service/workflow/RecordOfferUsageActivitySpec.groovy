@@ -54,7 +54,7 @@ class RecordOfferUsageActivitySpec extends BaseCheckoutActivitySpec {
 
         OfferAuditService mockAuditService = Mock()
         mockAuditService.create() >> offerAudit
-        mockAuditService.save(_) >> {OfferAudit audit -> audit}
+        mockAuditService.recordUsages(_) >> {List<OfferAudit> audits -> audits}
 
         OfferService mockOfferService = Mock()
         mockOfferService.getUniqueOffersFromOrder(_) >> {Order order -> appliedOffers}
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+package org.broadleafcommerce.core.spec.search.domain
+
+import org.broadleafcommerce.core.catalog.domain.Product
+import org.broadleafcommerce.core.search.domain.LazyProductList
+import spock.lang.Specification
+
+class LazyProductListSpec extends Specification {
+
+    LazyProductList.Loader loader = Mock()
+
+    def "The products are only loaded once, on first use"() {
+        setup:
+        LazyProductList products = new LazyProductList([2L, 1L], loader)
+
+        expect:
+        !products.loaded
+        products.productIds == [2L, 1L]
+
+        when:
+        int size = products.size()
+        Product first = products.get(0)
+        Product missing = products.getProduct(3L)
+
+        then:
+        1 * loader.load([2L, 1L]) >> ([(2L): product(2L), (1L): product(1L)] as LinkedHashMap)
+        size == 2
+        first.id == 2L
+        missing == null
+        products.loaded
+    }
+
+    def "Deleted products are left out of the list"() {
+        setup:
+        LazyProductList products = new LazyProductList([1L, 2L, 3L], loader)
+
+        when:
+        List<Long> ids = products*.id
+        Product deleted = products.getProduct(2L)
+
+        then:
+        1 * loader.load(_) >> ([(1L): product(1L), (3L): product(3L)] as LinkedHashMap)
+        ids == [1L, 3L]
+        deleted == null
+    }
+
+    def "A loader returning nothing yields an empty list"() {
+        setup:
+        LazyProductList products = new LazyProductList([1L], loader)
+
+        when:
+        boolean empty = products.isEmpty()
+
+        then:
+        1 * loader.load(_) >> null
+        empty
+        products.getProduct(1L) == null
+    }
+
+    protected Product product(Long productId) {
+        return Stub(Product) {
+            getId() >> productId
+        }
+    }
+}
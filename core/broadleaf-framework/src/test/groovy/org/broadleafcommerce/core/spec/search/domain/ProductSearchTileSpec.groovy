@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+package org.broadleafcommerce.core.spec.search.domain
+
+import org.broadleafcommerce.common.media.domain.Media
+import org.broadleafcommerce.common.money.Money
+import org.broadleafcommerce.core.catalog.domain.Product
+import org.broadleafcommerce.core.search.domain.LazyProductList
+import org.broadleafcommerce.core.search.domain.ProductSearchTile
+import spock.lang.Specification
+
+class ProductSearchTileSpec extends Specification {
+
+    LazyProductList.Loader loader = Mock()
+
+    def "Tile values stored in the index do not load the product"() {
+        setup:
+        LazyProductList products = new LazyProductList([1L], loader)
+        ProductSearchTile tile = new ProductSearchTile(1L, "Sudden Death Sauce", "/hot-sauces/sudden_death_sauce",
+                new Money("10.99", "USD"), "/img/sauces/Sudden-Death-Sauce-Bottle.jpg", products)
+
+        when:
+        String name = tile.name
+        String url = tile.url
+        Money price = tile.price
+        String media = tile.primaryMediaUrl
+
+        then:
+        0 * loader.load(_)
+        name == "Sudden Death Sauce"
+        url == "/hot-sauces/sudden_death_sauce"
+        price == new Money("10.99", "USD")
+        media == "/img/sauces/Sudden-Death-Sauce-Bottle.jpg"
+        !tile.productLoaded
+    }
+
+    def "Tile values missing from the index fall back to the product"() {
+        setup:
+        LazyProductList products = new LazyProductList([1L, 2L], loader)
+        ProductSearchTile tile = new ProductSearchTile(1L, null, null, null, null, products)
+        ProductSearchTile deletedTile = new ProductSearchTile(2L, null, null, null, null, products)
+
+        when:
+        String name = tile.name
+        String url = tile.url
+        Money price = tile.price
+        String media = tile.primaryMediaUrl
+        String deletedName = deletedTile.name
+
+        then:
+        1 * loader.load([1L, 2L]) >> [(1L): product(1L)]
+        name == "Product 1"
+        url == "/product-1"
+        price == new Money("5.99", "USD")
+        media == "/img/1.jpg"
+        deletedName == null
+        deletedTile.product == null
+        tile.productLoaded
+    }
+
+    protected Product product(Long productId) {
+        Media media = Stub(Media) {
+            getUrl() >> "/img/" + productId + ".jpg"
+        }
+        return Stub(Product) {
+            getId() >> productId
+            getName() >> "Product " + productId
+            getUrl() >> "/product-" + productId
+            getPrice() >> new Money("5.99", "USD")
+            getMedia() >> ["primary": media]
+        }
+    }
+}
@@ -18,13 +18,17 @@
 package org.broadleafcommerce.core.spec.search.service.solr
 
 import org.apache.solr.client.solrj.SolrClient
+import org.apache.solr.common.SolrInputDocument
+import org.broadleafcommerce.common.exception.ServiceException
 import org.broadleafcommerce.common.locale.service.LocaleService
 import org.broadleafcommerce.common.sandbox.SandBoxHelper
+import org.broadleafcommerce.common.web.BroadleafRequestContext
 import org.broadleafcommerce.core.catalog.dao.ProductDao
 import org.broadleafcommerce.core.catalog.dao.SkuDao
 import org.broadleafcommerce.core.catalog.domain.ProductImpl
 import org.broadleafcommerce.core.catalog.domain.Sku
 import org.broadleafcommerce.core.catalog.domain.SkuImpl
+import org.broadleafcommerce.core.catalog.service.dynamic.SkuPricingConsiderationContext
 import org.broadleafcommerce.core.search.dao.IndexFieldDao
 import org.broadleafcommerce.core.search.dao.SolrIndexDao
 import org.broadleafcommerce.core.search.domain.Field
@@ -32,10 +36,12 @@ import org.broadleafcommerce.core.search.domain.FieldEntity
 import org.broadleafcommerce.core.search.service.solr.SolrHelperService
 import org.broadleafcommerce.core.search.service.solr.SolrHelperServiceImpl
 import org.broadleafcommerce.core.search.service.solr.SolrSearchServiceExtensionHandler
+import org.broadleafcommerce.core.search.service.solr.index.SolrIndexOperation
 import org.broadleafcommerce.core.search.service.solr.index.SolrIndexServiceExtensionHandler
 import org.broadleafcommerce.core.search.service.solr.index.SolrIndexServiceExtensionManager
 import org.broadleafcommerce.core.search.service.solr.index.SolrIndexServiceImpl
 import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.SimpleTransactionStatus
 import spock.lang.Specification
 
 class SolrIndexServiceSpec extends Specification {
@@ -65,6 +71,99 @@ class SolrIndexServiceSpec extends Specification {
         service.shs = mockShs
         service.extensionManager = mockExtensionManager
         service.sandBoxHelper = mockSandBoxHelper
+        service.pageSize = 2
+        service.pipelineParallelism = 2
+        mockTransactionManager.getTransaction(_) >> { new SimpleTransactionStatus() }
     }
-    
+
+    def cleanup() {
+        BroadleafRequestContext.setBroadleafRequestContext(null)
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(null)
+    }
+
+    def "The pipeline reads the page boundaries through the operation"() {
+        setup:
+        SolrIndexOperation operation = Mock()
+        operation.getSolrServerForIndexing() >> mockSolrClient
+        operation.getSolrCollectionForIndexing() >> "catalog"
+        operation.readIndexables(2, null) >> [product(1L), product(2L)]
+        operation.readIndexables(2, 2L) >> [product(3L)]
+        service.buildDocuments(_) >> { List indexables -> indexables[0].collect { new SolrInputDocument() } }
+
+        when:
+        service.executePipelinedSolrIndexOperation(operation)
+
+        then:
+        1 * operation.readIndexableIds(2, null) >> [1L, 2L]
+        1 * operation.readIndexableIds(2, 2L) >> [3L]
+        0 * mockProductDao.readAllActiveProductIds(_, _)
+        1 * mockSolrClient.add("catalog", { it.size() == 2 })
+        1 * mockSolrClient.add("catalog", { it.size() == 1 })
+        1 * service.commit("catalog", mockSolrClient) >> {}
+    }
+
+    def "Each pipeline worker gets its own copy of the request context and pricing map"() {
+        setup:
+        BroadleafRequestContext callerContext = new BroadleafRequestContext()
+        HashMap callerPricing = new HashMap([customer: "caller"])
+        BroadleafRequestContext.setBroadleafRequestContext(callerContext)
+        SkuPricingConsiderationContext.setSkuPricingConsiderationContext(callerPricing)
+
+        SolrIndexOperation operation = Mock()
+        operation.getSolrServerForIndexing() >> mockSolrClient
+        operation.getSolrCollectionForIndexing() >> "catalog"
+        operation.readIndexableIds(2, null) >> [1L, 2L]
+        operation.readIndexableIds(2, 2L) >> [3L, 4L]
+        operation.readIndexableIds(2, 4L) >> []
+        operation.readIndexables(2, _) >> [product(1L)]
+
+        List contexts = Collections.synchronizedList([])
+        List pricingMaps = Collections.synchronizedList([])
+        service.buildDocuments(_) >> {
+            contexts << BroadleafRequestContext.getBroadleafRequestContext()
+            pricingMaps << SkuPricingConsiderationContext.getSkuPricingConsiderationContext()
+            SkuPricingConsiderationContext.getSkuPricingConsiderationContext().put("customer", "worker")
+            [new SolrInputDocument()]
+        }
+        service.commit(_, _) >> {}
+
+        when:
+        service.executePipelinedSolrIndexOperation(operation)
+
+        then:
+        contexts.size() == 2
+        contexts.every { !it.is(callerContext) }
+        !contexts[0].is(contexts[1])
+        pricingMaps.every { !it.is(callerPricing) }
+        !pricingMaps[0].is(pricingMaps[1])
+        callerPricing.customer == "caller"
+        BroadleafRequestContext.getBroadleafRequestContext().is(callerContext)
+    }
+
+    def "A failing page stops the pipeline without committing"() {
+        setup:
+        SolrIndexOperation operation = Mock()
+        operation.getSolrServerForIndexing() >> mockSolrClient
+        operation.getSolrCollectionForIndexing() >> "catalog"
+        operation.readIndexableIds(2, null) >> [1L]
+        operation.readIndexables(2, null) >> [product(1L)]
+        service.buildDocuments(_) >> { throw new ServiceException("Unable to build") }
+
+        when:
+        service.executePipelinedSolrIndexOperation(operation)
+
+        then:
+        ServiceException e = thrown()
+        e.message == "Unable to build"
+        0 * mockSolrClient.add(_, _)
+        0 * service.commit(_, _)
+        1 * operation.releaseLock()
+    }
+
+    protected ProductImpl product(Long id) {
+        ProductImpl product = new ProductImpl()
+        product.id = id
+        return product
+    }
+
 }
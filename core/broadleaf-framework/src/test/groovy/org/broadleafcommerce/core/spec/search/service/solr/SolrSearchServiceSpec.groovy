@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+package org.broadleafcommerce.core.spec.search.service.solr
+
+import org.apache.solr.common.SolrDocument
+import org.broadleafcommerce.common.media.domain.Media
+import org.broadleafcommerce.common.money.Money
+import org.broadleafcommerce.core.catalog.dao.ProductDao
+import org.broadleafcommerce.core.catalog.domain.Product
+import org.broadleafcommerce.core.search.domain.SearchResult
+import org.broadleafcommerce.core.search.service.solr.SolrHelperService
+import org.broadleafcommerce.core.search.service.solr.SolrSearchServiceExtensionHandler
+import org.broadleafcommerce.core.search.service.solr.SolrSearchServiceExtensionManager
+import org.broadleafcommerce.core.search.service.solr.SolrSearchServiceImpl
+import spock.lang.Specification
+
+class SolrSearchServiceSpec extends Specification {
+
+    SolrSearchServiceImpl service
+    ProductDao mockProductDao = Mock()
+    SolrHelperService mockShs = Mock()
+    SolrSearchServiceExtensionManager mockExtensionManager = Mock()
+    SolrSearchServiceExtensionHandler mockExtensionHandler = Mock()
+
+    Map<String, String> tileFields = ["name": "name_t", "url": "url_s", "price": "price_d"]
+
+    def setup() {
+        mockExtensionManager.getProxy() >> mockExtensionHandler
+        mockShs.getIndexableIdFieldName() >> "id"
+        mockShs.getIndexableId(_) >> { Product product -> product.id }
+
+        service = new SolrSearchServiceImpl()
+        service.productDao = mockProductDao
+        service.shs = mockShs
+        service.extensionManager = mockExtensionManager
+        service.productTileNameField = "name"
+        service.productTileUrlField = "url"
+        service.productTilePriceField = "price"
+        service.productTilePrimaryMediaField = "primaryMedia"
+    }
+
+    def "Products are returned in the order of the index"() {
+        when:
+        List<Product> products = service.readProductsInIndexOrder([3L, 1L, 2L])
+
+        then:
+        1 * mockProductDao.readProductsByIds([3L, 1L, 2L]) >> [product(1L), product(2L), product(3L)]
+        1 * mockExtensionHandler.batchFetchCatalogData(_)
+        products*.id == [3L, 1L, 2L]
+    }
+
+    def "Products deleted since they were indexed are left out"() {
+        when:
+        List<Product> products = service.readProductsInIndexOrder([3L, 1L, 2L])
+
+        then:
+        1 * mockProductDao.readProductsByIds(_) >> [product(2L), product(3L)]
+        products*.id == [3L, 2L]
+    }
+
+    def "Tiles are built from the stored fields without reading the products"() {
+        setup:
+        SearchResult result = new SearchResult()
+        List<SolrDocument> documents = [
+                document(2L, "Sudden Death Sauce", "/hot-sauces/sudden_death_sauce", "10.99"),
+                document(1L, "Green Ghost", "/hot-sauces/green_ghost", "11.99")]
+
+        when:
+        service.setProductTiles(result, documents, tileFields)
+
+        then:
+        0 * mockProductDao._
+        result.productTiles*.id == [2L, 1L]
+        result.productTiles*.name == ["Sudden Death Sauce", "Green Ghost"]
+        result.productTiles*.url == ["/hot-sauces/sudden_death_sauce", "/hot-sauces/green_ghost"]
+        result.productTiles[0].price.amount == 10.99
+        result.productTiles.every { !it.productLoaded }
+    }
+
+    def "The products of the tiles are read in one batch the first time they are needed"() {
+        setup:
+        SearchResult result = new SearchResult()
+        List<SolrDocument> documents = [document(3L, null, null, null), document(1L, null, null, null),
+                document(2L, "Day of the Dead", null, null)]
+        service.setProductTiles(result, documents, tileFields)
+
+        when:
+        List<String> names = result.productTiles*.name
+        List<String> mediaUrls = result.productTiles*.primaryMediaUrl
+        List<Long> productIds = result.products*.id
+
+        then:
+        1 * mockProductDao.readProductsByIds([3L, 1L, 2L]) >> [product(1L), product(3L)]
+        1 * mockExtensionHandler.modifySearchResults(documents, _)
+        names == ["Product 3", "Product 1", "Day of the Dead"]
+        mediaUrls == ["/img/3.jpg", "/img/1.jpg", null]
+        productIds == [3L, 1L]
+        result.productTiles.every { it.productLoaded }
+    }
+
+    protected SolrDocument document(Long productId, String name, String url, String price) {
+        SolrDocument document = new SolrDocument()
+        document.setField("id", productId)
+        if (name != null) {
+            document.setField("name_t", name)
+        }
+        if (url != null) {
+            document.setField("url_s", url)
+        }
+        if (price != null) {
+            document.setField("price_d", price)
+        }
+        return document
+    }
+
+    protected Product product(Long productId) {
+        Media media = Stub(Media) {
+            getUrl() >> "/img/" + productId + ".jpg"
+        }
+        return Stub(Product) {
+            getId() >> productId
+            getName() >> "Product " + productId
+            getUrl() >> "/product-" + productId
+            getPrice() >> new Money("5.99", "USD")
+            getMedia() >> ["primary": media]
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service.dynamic;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+public class DynamicSkuPricesCacheTest extends TestCase {
+
+    protected DynamicSkuPricesCache cache;
+
+    protected Cache region;
+
+    @Override
+    protected void setUp() throws Exception {
+        region = new Cache(new CacheConfiguration("dynamicSkuPricesCacheTest", 1000));
+        CacheManager.getInstance().addCache(region);
+        cache = new DynamicSkuPricesCache();
+        cache.setCache(region);
+        cache.setEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        CacheManager.getInstance().removeCache(region.getName());
+    }
+
+    public void testPricesAreCachedPerSkuAndSegment() {
+        DynamicSkuPrices prices = new DynamicSkuPrices();
+        cache.put(1L, "retail", prices, cache.getInvalidationVersion());
+
+        assertSame(prices, cache.get(1L, "retail"));
+        assertNull(cache.get(1L, "wholesale"));
+        assertNull(cache.get(2L, "retail"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    public void testInvalidationRemovesEverySegmentOfTheSku() {
+        cache.put(1L, "retail", new DynamicSkuPrices(), cache.getInvalidationVersion());
+        cache.put(1L, "wholesale", new DynamicSkuPrices(), cache.getInvalidationVersion());
+        cache.put(2L, "retail", new DynamicSkuPrices(), cache.getInvalidationVersion());
+
+        assertEquals(2, cache.invalidate(Arrays.asList(1L, 3L)));
+        assertNull(cache.get(1L, "retail"));
+        assertNull(cache.get(1L, "wholesale"));
+        assertNotNull(cache.get(2L, "retail"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertNull(cache.get(2L, "retail"));
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getInvalidatedCount());
+    }
+
+    public void testPricesComputedDuringAnInvalidationAreNotCached() {
+        long version = cache.getInvalidationVersion();
+        cache.invalidate(1L);
+        cache.put(1L, "retail", new DynamicSkuPrices(), version);
+
+        assertNull(cache.get(1L, "retail"));
+        assertEquals(0, cache.size());
+    }
+
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        region.getCacheConfiguration().setMaxEntriesLocalHeap(10);
+        cache.put(0L, "retail", new DynamicSkuPrices(), cache.getInvalidationVersion());
+        for (long i = 1; i <= 30; i++) {
+            Thread.sleep(1);
+            cache.get(0L, "retail");
+            cache.put(i, "retail", new DynamicSkuPrices(), cache.getInvalidationVersion());
+        }
+
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.getEvictionCount() >= 20);
+        assertNotNull(cache.get(0L, "retail"));
+        assertNotNull(cache.get(30L, "retail"));
+    }
+
+    public void testEntriesExpire() throws Exception {
+        region.getCacheConfiguration().setTimeToLiveSeconds(1);
+        cache.put(1L, "retail", new DynamicSkuPrices(), cache.getInvalidationVersion());
+        assertNotNull(cache.get(1L, "retail"));
+
+        Thread.sleep(1100);
+        assertNull(cache.get(1L, "retail"));
+    }
+
+    public void testDisablingClearsTheCache() {
+        cache.put(1L, "retail", new DynamicSkuPrices(), cache.getInvalidationVersion());
+        cache.setEnabled(false);
+
+        assertFalse(cache.isEnabled());
+        assertEquals(0, cache.size());
+    }
+}
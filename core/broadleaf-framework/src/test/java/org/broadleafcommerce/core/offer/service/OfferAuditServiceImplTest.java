@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.dao.OfferAuditDao;
+import org.broadleafcommerce.core.offer.domain.OfferAudit;
+import org.broadleafcommerce.core.offer.domain.OfferAuditImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.service.type.OrderStatus;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+public class OfferAuditServiceImplTest extends TestCase {
+
+    protected OfferAuditServiceImpl service;
+    protected OfferAuditDao offerAuditDao;
+    protected List<List<OfferAudit>> savedBatches;
+    protected Order order;
+
+    @Override
+    protected void setUp() throws Exception {
+        offerAuditDao = EasyMock.createMock(OfferAuditDao.class);
+        savedBatches = new ArrayList<>();
+
+        PlatformTransactionManager transactionManager = EasyMock.createNiceMock(PlatformTransactionManager.class);
+        EasyMock.expect(transactionManager.getTransaction(EasyMock.anyObject(TransactionDefinition.class)))
+                .andAnswer(new IAnswer<SimpleTransactionStatus>() {
+                    @Override
+                    public SimpleTransactionStatus answer() throws Throwable {
+                        return new SimpleTransactionStatus();
+                    }
+                }).anyTimes();
+        EasyMock.replay(transactionManager);
+
+        service = new OfferAuditServiceImpl();
+        service.offerAuditDao = offerAuditDao;
+        service.usageCounters = new OfferUsageCounters();
+        service.transactionManager = transactionManager;
+        // no scheduled flush, the tests flush themselves
+        service.writeBehindExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        order = new OrderImpl();
+        order.setId(50L);
+        order.setStatus(OrderStatus.SUBMITTED);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        service.writeBehindExecutor.shutdownNow();
+    }
+
+    public void testQueuedAuditsAreCountedAndWritten() {
+        expectSaveAll(false);
+        expectCountUsesByCustomer();
+        EasyMock.replay(offerAuditDao);
+
+        OfferAudit first = createAudit(1L);
+        OfferAudit second = createAudit(2L);
+        service.recordUsages(Arrays.asList(first, second));
+
+        assertEquals(Long.valueOf(2L), service.countUsesByCustomer(order, 10L, 20L));
+        assertEquals(2, service.readOfferAuditsByOrderId(1L).size() + service.readOfferAuditsByOrderId(2L).size());
+
+        assertEquals(2, service.flushPendingAudits());
+        assertEquals(Collections.singletonList(Arrays.asList(first, second)), savedBatches);
+        assertTrue(service.pendingAudits.isEmpty());
+        assertTrue(service.writingAudits.isEmpty());
+        assertEquals(0, service.flushPendingAudits());
+        EasyMock.verify(offerAuditDao);
+    }
+
+    public void testAuditsAreQueuedAfterCommit() {
+        EasyMock.replay(offerAuditDao);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.recordUsages(Collections.singletonList(createAudit(1L)));
+            assertTrue("Nothing is queued before the transaction commits", service.pendingAudits.isEmpty());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            assertEquals(1, service.pendingAudits.size());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    public void testFullQueueWritesThrough() {
+        expectSaveAll(false);
+        EasyMock.replay(offerAuditDao);
+        service.writeBehindMaxQueueSize = 1;
+
+        List<OfferAudit> audits = Arrays.asList(createAudit(1L), createAudit(2L));
+        service.recordUsages(audits);
+
+        assertEquals(Collections.singletonList(audits), savedBatches);
+        assertTrue(service.pendingAudits.isEmpty());
+        EasyMock.verify(offerAuditDao);
+    }
+
+    public void testFailedBatchIsRetriedThenDropped() {
+        expectSaveAll(true);
+        expectSaveAll(true);
+        EasyMock.replay(offerAuditDao);
+        service.writeBehindMaxRetries = 2;
+
+        OfferAudit audit = createAudit(1L);
+        service.recordUsages(Collections.singletonList(audit));
+
+        assertEquals(0, service.flushPendingAudits());
+        assertEquals(1, service.pendingAudits.size());
+        assertNull(audit.getId());
+
+        assertEquals(0, service.flushPendingAudits());
+        assertTrue("The audit should be given up after the last retry", service.pendingAudits.isEmpty());
+        EasyMock.verify(offerAuditDao);
+    }
+
+    public void testDeletePendingAudit() {
+        EasyMock.replay(offerAuditDao);
+
+        OfferAudit audit = createAudit(1L);
+        service.recordUsages(Collections.singletonList(audit));
+        service.delete(audit);
+
+        assertTrue(service.pendingAudits.isEmpty());
+        assertEquals(0, service.flushPendingAudits());
+        EasyMock.verify(offerAuditDao);
+    }
+
+    public void testDeleteWhileWriting() {
+        final OfferAudit audit = createAudit(1L);
+        offerAuditDao.saveAll(EasyMock.<List<OfferAudit>>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                service.delete(audit);
+                return null;
+            }
+        });
+        offerAuditDao.delete(audit);
+        EasyMock.replay(offerAuditDao);
+
+        service.recordUsages(Collections.singletonList(audit));
+        assertEquals(1, service.flushPendingAudits());
+
+        assertTrue(service.cancelledAudits.isEmpty());
+        assertTrue(service.pendingAudits.isEmpty());
+        EasyMock.verify(offerAuditDao);
+    }
+
+    public void testCheckoutCountsBypassTheUsageCounters() {
+        order.setStatus(OrderStatus.IN_PROCESS);
+        service.usageCounters.setEnabled(true);
+        EasyMock.expect(offerAuditDao.countUsesByCustomer(order, 10L, 20L)).andReturn(1L).times(2);
+        EasyMock.expect(offerAuditDao.countUsesByCustomer(order, 10L, 20L)).andReturn(3L).times(2);
+        EasyMock.replay(offerAuditDao);
+
+        // the cart count is loaded once and then kept, as another node's usage would not be seen
+        assertEquals(Long.valueOf(1L), service.countUsesByCustomer(order, 10L, 20L));
+        assertEquals(Long.valueOf(1L), service.countAuditedUsesByCustomer(order, 10L, 20L));
+        assertEquals(Long.valueOf(1L), service.countUsesByCustomer(order, 10L, 20L));
+        assertEquals(Long.valueOf(3L), service.countAuditedUsesByCustomer(order, 10L, 20L));
+        assertEquals(Long.valueOf(3L), service.countAuditedUsesByCustomer(order, 10L, 20L));
+        EasyMock.verify(offerAuditDao);
+    }
+
+    public void testUsageCountersAreDisabledByDefault() {
+        order.setStatus(OrderStatus.IN_PROCESS);
+        EasyMock.expect(offerAuditDao.countUsesByCustomer(order, 10L, 20L)).andReturn(1L).times(2);
+        EasyMock.replay(offerAuditDao);
+
+        assertFalse(service.usageCounters.isEnabled());
+        assertEquals(Long.valueOf(1L), service.countUsesByCustomer(order, 10L, 20L));
+        assertEquals(Long.valueOf(1L), service.countUsesByCustomer(order, 10L, 20L));
+        EasyMock.verify(offerAuditDao);
+    }
+
+    protected void expectSaveAll(final boolean fail) {
+        offerAuditDao.saveAll(EasyMock.<List<OfferAudit>>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object answer() throws Throwable {
+                List<OfferAudit> batch = (List<OfferAudit>) EasyMock.getCurrentArguments()[0];
+                if (fail) {
+                    batch.get(0).setId(1000L);
+                    throw new IllegalStateException("database unavailable");
+                }
+                savedBatches.add(new ArrayList<>(batch));
+                return null;
+            }
+        });
+    }
+
+    protected void expectCountUsesByCustomer() {
+        EasyMock.expect(offerAuditDao.countUsesByCustomer(order, 10L, 20L)).andReturn(0L).anyTimes();
+        EasyMock.expect(offerAuditDao.readOfferAuditsByOrderId(EasyMock.anyLong()))
+                .andReturn(new ArrayList<OfferAudit>()).anyTimes();
+    }
+
+    protected OfferAudit createAudit(Long orderId) {
+        OfferAudit audit = new OfferAuditImpl();
+        audit.setOrderId(orderId);
+        audit.setCustomerId(10L);
+        audit.setOfferId(20L);
+        return audit;
+    }
+}
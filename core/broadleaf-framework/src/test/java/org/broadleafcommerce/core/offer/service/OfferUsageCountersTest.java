@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.service.OfferUsageCounters.CountLoader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class OfferUsageCountersTest extends TestCase {
+
+    protected OfferUsageCounters counters;
+
+    @Override
+    protected void setUp() throws Exception {
+        counters = new OfferUsageCounters();
+    }
+
+    public void testCountsAreLoadedOnceAndKeptUpToDate() {
+        CountingLoader loader = new CountingLoader(3L);
+        String key = OfferUsageCounters.getCustomerOfferKey(1L, 2L);
+
+        assertEquals(Long.valueOf(3L), counters.get(key, loader));
+        counters.add(key, 1);
+        counters.add(OfferUsageCounters.getOfferCodeKey(5L), 1);
+        assertEquals(Long.valueOf(4L), counters.get(key, loader));
+
+        assertEquals(1, loader.loads.get());
+        assertEquals(1, counters.getHitCount());
+        assertEquals(1, counters.getSize());
+    }
+
+    public void testCountChangedWhileLoadingIsNotKept() {
+        final String key = OfferUsageCounters.getOfferCodeKey(5L);
+        final AtomicInteger loads = new AtomicInteger();
+        CountLoader loader = new CountLoader() {
+            @Override
+            public Long load() {
+                if (loads.incrementAndGet() == 1) {
+                    counters.add(key, 1);
+                }
+                return 7L;
+            }
+        };
+
+        assertEquals(Long.valueOf(7L), counters.get(key, loader));
+        assertEquals(0, counters.getSize());
+        assertEquals(Long.valueOf(7L), counters.get(key, loader));
+        assertEquals(1, counters.getSize());
+        assertEquals(2, loads.get());
+    }
+
+    public void testUnknownCountIsNotKept() {
+        CountingLoader loader = new CountingLoader(null);
+
+        assertNull(counters.get("code:1", loader));
+        assertNull(counters.get("code:1", loader));
+        assertEquals(2, loader.loads.get());
+    }
+
+    public void testCountsAreReloadedAfterTheirTimeToLive() throws Exception {
+        counters.setTimeToLiveMillis(20);
+        CountingLoader loader = new CountingLoader(1L);
+
+        counters.get("code:1", loader);
+        counters.get("code:1", loader);
+        Thread.sleep(40);
+        counters.get("code:1", loader);
+
+        assertEquals(2, loader.loads.get());
+    }
+
+    public void testInvalidatedCountIsReloaded() {
+        CountingLoader loader = new CountingLoader(1L);
+
+        counters.get("code:1", loader);
+        counters.invalidate("code:1");
+        counters.get("code:1", loader);
+
+        assertEquals(2, loader.loads.get());
+    }
+
+    public void testCountsAreDroppedWhenFull() {
+        counters.setMaximumSize(10);
+
+        for (long i = 0; i < 25; i++) {
+            counters.get(OfferUsageCounters.getOfferCodeKey(i), new CountingLoader(i));
+        }
+
+        assertTrue(counters.getSize() <= 10);
+    }
+
+    protected static class CountingLoader implements CountLoader {
+
+        protected final AtomicInteger loads = new AtomicInteger();
+        protected final Long count;
+
+        public CountingLoader(Long count) {
+            this.count = count;
+        }
+
+        @Override
+        public Long load() {
+            loads.incrementAndGet();
+            return count;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service.processor;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteriaImpl;
+import org.broadleafcommerce.core.offer.service.discount.domain.PromotableOrderItem;
+import org.broadleafcommerce.core.offer.service.processor.OfferQualificationIndex.ItemEqualityPredicate;
+import org.easymock.EasyMock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class OfferQualificationIndexTest extends TestCase {
+
+    public void testExtractPredicate() {
+        ItemEqualityPredicate predicate = OfferQualificationIndex.extractPredicate("discreteOrderItem.sku.id == 5");
+        assertEquals("discreteOrderItem.sku.id", predicate.getExpression());
+        assertEquals(5L, predicate.getValue());
+
+        predicate = OfferQualificationIndex.extractPredicate(
+                "MvelHelper.toUpperCase(discreteOrderItem.?category.?name)==MvelHelper.toUpperCase(\"merchandise\")");
+        assertEquals("MvelHelper.toUpperCase(discreteOrderItem.?category.?name)", predicate.getExpression());
+        assertEquals("MERCHANDISE", predicate.getValue());
+
+        predicate = OfferQualificationIndex.extractPredicate(
+                "(discreteOrderItem.?quantity>1&&discreteOrderItem.?category.?name==\"test category\"&&!(discreteOrderItem.?product.?manufacturer==\"x\"))");
+        assertEquals("discreteOrderItem.?category.?name", predicate.getExpression());
+        assertEquals("test category", predicate.getValue());
+
+        predicate = OfferQualificationIndex.extractPredicate("orderItem.?product.?getProductAttributes()[\"color\"]=='red'");
+        assertEquals("orderItem.?product.?getProductAttributes()[\"color\"]", predicate.getExpression());
+        assertEquals("red", predicate.getValue());
+
+        // nothing is required when the equality is negated or only one side of a disjunction
+        assertNull(OfferQualificationIndex.extractPredicate("!(discreteOrderItem.?product.?manufacturer==\"test manufacturer\")"));
+        assertNull(OfferQualificationIndex.extractPredicate("discreteOrderItem.sku.id == 5 || discreteOrderItem.sku.id == 6"));
+        assertNull(OfferQualificationIndex.extractPredicate("discreteOrderItem.sku.id == 5 && (discreteOrderItem.sku.id == 6"));
+        assertNull(OfferQualificationIndex.extractPredicate("order.?subTotal.getAmount()>=100"));
+        assertNull(OfferQualificationIndex.extractPredicate("discreteOrderItem.?price.getAmount()==5.5"));
+    }
+
+    public void testCouldMatch() {
+        OfferQualificationIndex index = new OfferQualificationIndex(new ArrayList<Offer>());
+        OfferItemCriteria sku1 = createCriteria("discreteOrderItem.sku.id == 1");
+        OfferItemCriteria sku2 = createCriteria("discreteOrderItem.sku.id == 2");
+        OfferItemCriteria category = createCriteria("discreteOrderItem.?category.?name==\"shirts\"&&discreteOrderItem.?quantity>1");
+        OfferItemCriteria unindexed = createCriteria("discreteOrderItem.?quantity>1");
+        index.addCriteria(sku1);
+        index.addCriteria(sku2);
+        index.addCriteria(category);
+        index.addCriteria(unindexed);
+
+        PromotableOrderItem shirt = EasyMock.createNiceMock(PromotableOrderItem.class);
+        PromotableOrderItem nullCategory = EasyMock.createNiceMock(PromotableOrderItem.class);
+        final Map<PromotableOrderItem, Map<String, Object>> values = new HashMap<>();
+        values.put(shirt, createValues(1L, "shirts"));
+        values.put(nullCategory, createValues(3L, null));
+
+        final int[] variableBuilds = {0};
+        OfferQualificationIndex.ItemRuleEvaluator evaluator = new OfferQualificationIndex.ItemRuleEvaluator() {
+
+            @Override
+            public Map<String, Object> buildRuleVariables(PromotableOrderItem item) {
+                variableBuilds[0]++;
+                return values.get(item);
+            }
+
+            @Override
+            public Object evaluate(String expression, Map<String, Object> vars) {
+                return vars.get(expression);
+            }
+        };
+
+        assertTrue(index.couldMatch(sku1, shirt, evaluator));
+        assertFalse(index.couldMatch(sku2, shirt, evaluator));
+        assertTrue(index.couldMatch(category, shirt, evaluator));
+        assertTrue(index.couldMatch(unindexed, shirt, evaluator));
+
+        assertFalse(index.couldMatch(sku1, nullCategory, evaluator));
+        assertFalse(index.couldMatch(sku2, nullCategory, evaluator));
+        // a null value is left to the full rule
+        assertTrue(index.couldMatch(category, nullCategory, evaluator));
+
+        assertEquals("The item values should be evaluated once per item", 2, variableBuilds[0]);
+    }
+
+    protected OfferItemCriteria createCriteria(String matchRule) {
+        OfferItemCriteria criteria = new OfferItemCriteriaImpl();
+        criteria.setMatchRule(matchRule);
+        criteria.setQuantity(1);
+        return criteria;
+    }
+
+    protected Map<String, Object> createValues(Long skuId, String categoryName) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("discreteOrderItem.sku.id", skuId);
+        values.put("discreteOrderItem.?category.?name", categoryName);
+        return values;
+    }
+}
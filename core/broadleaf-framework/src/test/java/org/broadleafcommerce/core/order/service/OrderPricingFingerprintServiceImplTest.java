@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ *
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.order.service;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.offer.dao.OfferDao;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferDiscountType;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItemImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class OrderPricingFingerprintServiceImplTest extends TestCase {
+
+    protected OrderPricingFingerprintServiceImpl service;
+    protected List<Offer> activeOffers;
+    protected Order order;
+    protected DiscreteOrderItemImpl item;
+
+    @Override
+    protected void setUp() throws Exception {
+        activeOffers = new ArrayList<>();
+        activeOffers.add(createOffer(1L, "10 percent off"));
+
+        OfferDao offerDao = EasyMock.createNiceMock(OfferDao.class);
+        EasyMock.expect(offerDao.readOffersByAutomaticDeliveryType()).andAnswer(new IAnswer<List<Offer>>() {
+            @Override
+            public List<Offer> answer() throws Throwable {
+                return activeOffers;
+            }
+        }).anyTimes();
+        EasyMock.replay(offerDao);
+
+        service = new OrderPricingFingerprintServiceImpl();
+        service.offerDao = offerDao;
+
+        order = new OrderImpl();
+        order.setId(1L);
+        item = new DiscreteOrderItemImpl();
+        item.setId(100L);
+        item.setQuantity(2);
+        item.setRetailPrice(new Money(19.99D));
+        item.setSalePrice(new Money(17.99D));
+        item.setDiscountingAllowed(true);
+        item.setOrder(order);
+        order.getOrderItems().add(item);
+    }
+
+    public void testUnchangedOrderIsCurrent() {
+        assertFalse("An order that was never priced is not current", service.isPricingCurrent(order));
+        service.recordFingerprint(order);
+        assertTrue(service.isPricingCurrent(order));
+
+        // storing the fingerprint must not change it
+        String fingerprint = service.computeFingerprint(order);
+        service.recordFingerprint(order);
+        assertEquals(fingerprint, service.computeFingerprint(order));
+        assertTrue(service.isPricingCurrent(order));
+    }
+
+    public void testPricingInputsChangeTheFingerprint() {
+        service.recordFingerprint(order);
+
+        item.setQuantity(3);
+        assertFalse(service.isPricingCurrent(order));
+        item.setQuantity(2);
+        assertTrue(service.isPricingCurrent(order));
+
+        item.setSalePrice(new Money(15.99D));
+        assertFalse(service.isPricingCurrent(order));
+        item.setSalePrice(new Money(17.99D));
+        assertTrue(service.isPricingCurrent(order));
+
+        activeOffers.add(createOffer(2L, "free shipping"));
+        assertFalse("A new active offer should require pricing", service.isPricingCurrent(order));
+    }
+
+    public void testSkuPriceChangesTheFingerprint() {
+        SkuImpl sku = new SkuImpl();
+        sku.setId(10L);
+        sku.setRetailPrice(new Money(19.99D));
+        item.setSku(sku);
+        service.recordFingerprint(order);
+        assertTrue(service.isPricingCurrent(order));
+
+        // the stored item prices stay the same until the order is repriced
+        sku.setRetailPrice(new Money(21.99D));
+        assertFalse("A changed sku price should require pricing", service.isPricingCurrent(order));
+    }
+
+    public void testOfferChangesTheFingerprint() {
+        service.recordFingerprint(order);
+
+        // none of these are covered by the offer hash code
+        activeOffers.get(0).setDiscountType(OfferDiscountType.AMOUNT_OFF);
+        assertFalse(service.isPricingCurrent(order));
+        service.recordFingerprint(order);
+
+        activeOffers.get(0).setCombinableWithOtherOffers(false);
+        assertFalse(service.isPricingCurrent(order));
+    }
+
+    public void testFingerprintIsNotAnOrderAttribute() {
+        service.recordFingerprint(order);
+        assertNotNull(order.getPricingFingerprint());
+        assertTrue(order.getOrderAttributes().isEmpty());
+
+        service.clearFingerprint(order);
+        assertFalse(service.isPricingCurrent(order));
+    }
+
+    public void testDisabled() {
+        service.recordFingerprint(order);
+        service.enabled = false;
+        assertFalse(service.isPricingCurrent(order));
+    }
+
+    protected Offer createOffer(Long id, String name) {
+        Offer offer = new OfferImpl();
+        offer.setId(id);
+        offer.setName(name);
+        return offer;
+    }
+}
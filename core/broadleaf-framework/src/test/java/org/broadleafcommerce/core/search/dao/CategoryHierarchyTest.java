@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2016 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.dao;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+public class CategoryHierarchyTest extends TestCase {
+
+    public void testAncestorsIncludeEveryLevel() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(4L, set(2L, 3L));
+        parents.put(3L, set(1L));
+        parents.put(2L, set(1L));
+        parents.put(1L, new HashSet<Long>());
+
+        CategoryHierarchy hierarchy = CategoryHierarchy.build(parents);
+
+        assertEquals(4, hierarchy.size());
+        assertEquals(set(1L, 2L, 3L, 4L), toSet(hierarchy.getSelfAndAncestors(4L)));
+        assertEquals(4L, hierarchy.getSelfAndAncestors(4L)[0]);
+        assertEquals(4, hierarchy.getSelfAndAncestors(4L).length);
+        assertEquals(set(2L, 3L), toSet(hierarchy.getParents(4L)));
+        assertEquals(0, hierarchy.getParents(1L).length);
+    }
+
+    public void testUnknownAndParentOnlyCategories() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(2L, set(1L));
+
+        CategoryHierarchy hierarchy = CategoryHierarchy.build(parents);
+
+        assertTrue(hierarchy.contains(1L));
+        assertTrue(Arrays.equals(new long[] { 1L }, hierarchy.getSelfAndAncestors(1L)));
+        assertTrue(Arrays.equals(new long[] { 9L }, hierarchy.getSelfAndAncestors(9L)));
+        assertEquals(0, hierarchy.getSelfAndAncestors(null).length);
+    }
+
+    public void testCatalogStructureRebuildsOnlyAfterInvalidation() {
+        CatalogStructure structure = new CatalogStructure();
+        structure.getParentCategoriesByCategory().put(2L, set(1L));
+        structure.invalidateCategoryHierarchy();
+
+        CategoryHierarchy hierarchy = structure.getCategoryHierarchy();
+        assertEquals(structure.getCategoryHierarchyVersion(), hierarchy.getVersion());
+        assertSame(hierarchy, structure.getCategoryHierarchy());
+
+        // a page that found no new categories leaves the version, and so the hierarchy, as it is
+        structure.getParentCategoriesByProduct().put(10L, set(2L));
+        assertSame(hierarchy, structure.getCategoryHierarchy());
+
+        // a changed parent set with the same number of entries is picked up once invalidated
+        structure.getParentCategoriesByCategory().put(2L, set(3L));
+        structure.invalidateCategoryHierarchy();
+        CategoryHierarchy rebuilt = structure.getCategoryHierarchy();
+        assertNotSame(hierarchy, rebuilt);
+        assertTrue(Arrays.equals(new long[] { 2L, 3L }, rebuilt.getSelfAndAncestors(2L)));
+    }
+
+    public void testCyclesAreFollowedOnce() {
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(1L, set(2L));
+        parents.put(2L, set(3L));
+        parents.put(3L, set(1L));
+
+        long[] ancestors = CategoryHierarchy.build(parents).getSelfAndAncestors(2L);
+
+        assertEquals(3, ancestors.length);
+        assertEquals(set(1L, 2L, 3L), toSet(ancestors));
+    }
+
+    public void testMatchesWalkingTheMap() {
+        Random random = new Random(42L);
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        for (long id = 1; id <= 500; id++) {
+            Set<Long> categoryParents = new HashSet<>();
+            int count = random.nextInt(4);
+            for (int i = 0; i < count; i++) {
+                categoryParents.add(1L + random.nextInt(600));
+            }
+            parents.put(id, categoryParents);
+        }
+
+        CategoryHierarchy hierarchy = CategoryHierarchy.build(parents);
+
+        for (long id = 1; id <= 600; id++) {
+            Set<Long> expected = new TreeSet<>();
+            walk(parents, id, expected);
+            long[] ancestors = hierarchy.getSelfAndAncestors(id);
+            assertEquals(expected.size(), ancestors.length);
+            assertEquals(expected, toSet(ancestors));
+        }
+    }
+
+    protected void walk(Map<Long, Set<Long>> parents, Long categoryId, Set<Long> visited) {
+        if (visited.add(categoryId) && parents.containsKey(categoryId)) {
+            for (Long parent : parents.get(categoryId)) {
+                walk(parents, parent, visited);
+            }
+        }
+    }
+
+    protected Set<Long> set(Long... ids) {
+        return new TreeSet<>(Arrays.asList(ids));
+    }
+
+    protected Set<Long> toSet(long[] ids) {
+        Set<Long> result = new TreeSet<>();
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+}
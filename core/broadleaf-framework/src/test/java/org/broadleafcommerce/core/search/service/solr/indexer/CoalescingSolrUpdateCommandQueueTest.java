@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2019 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.indexer;
+
+import org.apache.solr.common.SolrInputDocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class CoalescingSolrUpdateCommandQueueTest extends TestCase {
+
+    public void testUpdatesAreCoalescedByDocumentId() throws Exception {
+        CoalescingSolrUpdateCommandQueue queue = new CoalescingSolrUpdateCommandQueue(10, 0L, 100, "id");
+        SolrInputDocument latest = document("1", "second");
+        queue.offer(update(Collections.singletonList("id:3"), document("1", "first")));
+        queue.offer(update(null, document("2", "first"), latest));
+
+        assertEquals(1, queue.size());
+        IncrementalUpdateCommand batch = (IncrementalUpdateCommand) queue.poll(1, TimeUnit.SECONDS);
+        assertEquals(2, batch.getSolrInputDocuments().size());
+        assertSame(latest, batch.getSolrInputDocuments().get(0));
+        assertEquals(Collections.singletonList("id:3"), batch.getDeleteQueries());
+        assertNull(queue.poll());
+    }
+
+    public void testDeletesAfterDocumentsStartANewBatch() throws Exception {
+        CoalescingSolrUpdateCommandQueue queue = new CoalescingSolrUpdateCommandQueue(10, 0L, 100, "id");
+        queue.offer(update(null, document("1", "first")));
+        queue.offer(update(Collections.singletonList("id:1"), document("2", "first")));
+        queue.offer(update(null, document("1", "second")));
+
+        assertEquals(2, queue.size());
+        IncrementalUpdateCommand first = (IncrementalUpdateCommand) queue.poll();
+        IncrementalUpdateCommand second = (IncrementalUpdateCommand) queue.poll();
+        assertEquals(1, first.getSolrInputDocuments().size());
+        assertTrue(first.getDeleteQueries().isEmpty());
+        assertEquals(2, second.getSolrInputDocuments().size());
+        assertEquals(1, second.getDeleteQueries().size());
+    }
+
+    public void testOtherCommandsAreNotMergedAndEndTheBatch() throws Exception {
+        CoalescingSolrUpdateCommandQueue queue = new CoalescingSolrUpdateCommandQueue(10, 0L, 100, "id");
+        queue.offer(update(null, document("1", "first")));
+        queue.offer(FullReindexCommand.DEFAULT_INSTANCE);
+        queue.offer(update(null, document("1", "second")));
+
+        assertEquals(3, queue.size());
+        assertTrue(queue.contains(FullReindexCommand.DEFAULT_INSTANCE));
+        assertTrue(queue.poll() instanceof IncrementalUpdateCommand);
+        assertSame(FullReindexCommand.DEFAULT_INSTANCE, queue.poll());
+        assertTrue(queue.poll() instanceof IncrementalUpdateCommand);
+    }
+
+    public void testBatchIsHeldForTheCoalesceWindowUnlessFull() throws Exception {
+        CoalescingSolrUpdateCommandQueue queue = new CoalescingSolrUpdateCommandQueue(10, 200L, 2, "id");
+        queue.offer(update(null, document("1", "first")));
+
+        assertNull(queue.poll());
+        long start = System.currentTimeMillis();
+        assertNotNull(queue.poll(5, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 150);
+
+        queue.offer(update(null, document("1", "first")));
+        queue.offer(update(null, document("2", "first")));
+        assertNotNull(queue.poll());
+    }
+
+    public void testOfferFailsWhenFull() throws Exception {
+        CoalescingSolrUpdateCommandQueue queue = new CoalescingSolrUpdateCommandQueue(1, 0L, 100, "id");
+        assertTrue(queue.offer(FullReindexCommand.DEFAULT_INSTANCE));
+        assertFalse(queue.offer(update(null, document("1", "first")), 10, TimeUnit.MILLISECONDS));
+
+        List<SolrUpdateCommand> drained = new ArrayList<>();
+        assertEquals(1, queue.drainTo(drained));
+        assertEquals(0, queue.size());
+    }
+
+    protected IncrementalUpdateCommand update(List<String> deleteQueries, SolrInputDocument... documents) {
+        return new IncrementalUpdateCommand(Arrays.asList(documents), deleteQueries);
+    }
+
+    protected SolrInputDocument document(String id, String name) {
+        SolrInputDocument document = new SolrInputDocument();
+        document.addField("id", id);
+        document.addField("name", name);
+        return document;
+    }
+}
@@ -28,8 +28,11 @@ import org.testng.annotations.Test;
 
 import java.math.BigDecimal;
 import java.util.Calendar;
+import java.util.Collections;
 
 import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 public class SkuDaoTest extends TestNGSiteIntegrationSetup {
 
@@ -41,6 +44,9 @@ public class SkuDaoTest extends TestNGSiteIntegrationSetup {
     @Resource
     private CatalogService catalogService;
 
+    @PersistenceContext(unitName = "blPU")
+    private EntityManager em;
+
     @Test(groups = { "createSku" }, dataProvider = "basicSku", dataProviderClass = SkuDaoDataProvider.class, dependsOnGroups = { "readCustomer", "createOrder", "createProducts" })
     @Rollback(false)
     public void createSku(Sku sku) {
@@ -72,4 +78,36 @@ public class SkuDaoTest extends TestNGSiteIntegrationSetup {
         assert item.getId() == skuId;
     }
 
+    @Test(groups = { "decrementSkuQuantity" }, dependsOnGroups = { "createSku" })
+    @Transactional
+    public void decrementQuantityAvailableSurvivesFlush() {
+        Sku sku = skuDao.readSkuById(skuId);
+        sku.setQuantityAvailable(10);
+
+        // the pending quantity is flushed before the update, and the managed sku is refreshed after it
+        assert skuDao.decrementQuantitiesAvailable(Collections.singletonMap(skuId, 3)) == null;
+        assert sku.getQuantityAvailable() == 7;
+
+        // a later flush of the dirty sku must not write the old quantity back
+        sku.setName("renamed test sku");
+        em.flush();
+        assert skuDao.readQuantityAvailable(skuId) == 7;
+
+        assert skuId.equals(skuDao.decrementQuantitiesAvailable(Collections.singletonMap(skuId, 8)));
+        assert skuDao.readQuantityAvailable(skuId) == 7;
+        assert sku.getQuantityAvailable() == 7;
+    }
+
+    @Test(groups = { "decrementUntrackedSkuQuantity" }, dependsOnGroups = { "decrementSkuQuantity" })
+    @Transactional
+    public void decrementNullQuantityAvailableIsSkipped() {
+        Sku sku = skuDao.readSkuById(skuId);
+        sku.setQuantityAvailable(null);
+
+        // inventory that is not tracked is neither reported unavailable nor changed
+        assert skuDao.decrementQuantitiesAvailable(Collections.singletonMap(skuId, 3)) == null;
+        assert skuDao.readQuantityAvailable(skuId) == null;
+        assert sku.getQuantityAvailable() == null;
+    }
+
 }